@@ -0,0 +1,48 @@
+package net.ripe.rpki.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import static net.ripe.rpki.util.SerialNumberSupplier.SERIAL_RANDOM_BITS;
+
+/**
+ * Compares the per-thread serial number supplier with a single shared <code>SecureRandom</code> when used from many
+ * threads, as happens when signing manifests, CRLs, ROAs and provisioning responses in parallel.
+ * <p>
+ * Run using <code>./gradlew jmh -PjmhArgs="SerialNumberSupplierBenchmark"</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class SerialNumberSupplierBenchmark {
+
+    private final SerialNumberSupplier supplier = SerialNumberSupplier.getInstance();
+    private final SecureRandom sharedSecureRandom = new SecureRandom();
+
+    @Benchmark
+    public BigInteger perThreadSupplier() {
+        return supplier.get();
+    }
+
+    @Benchmark
+    public BigInteger sharedSecureRandom() {
+        BigInteger now = BigInteger.valueOf(System.currentTimeMillis());
+        return now.shiftLeft(SERIAL_RANDOM_BITS).or(new BigInteger(SERIAL_RANDOM_BITS, sharedSecureRandom));
+    }
+}
@@ -4,12 +4,18 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.CertificateAuthority;
+import net.ripe.rpki.domain.audit.CaStatEventType;
 import net.ripe.rpki.domain.audit.CommandAudit;
 import net.ripe.rpki.domain.audit.CommandAuditService;
+import net.ripe.rpki.server.api.commands.ActivateHostedCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.ActivateNonHostedCertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommandGroup;
 import net.ripe.rpki.server.api.commands.CommandContext;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCreationCommand;
+import net.ripe.rpki.server.api.commands.DeleteCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.DeleteNonHostedCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.UpdateRoaConfigurationCommand;
 import net.ripe.rpki.server.api.dto.CommandAuditData;
 import net.ripe.rpki.server.api.security.RoleBasedAuthenticationStrategy;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +25,8 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import javax.security.auth.x500.X500Principal;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -30,6 +38,8 @@ public class CommandAuditServiceBean implements CommandAuditService {
 
     public static final int MAX_HISTORY_ENTRIES_RETURNED = 2500;
 
+    private static final int MENTIONS_PAGE_SIZE = 1000;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -48,8 +58,10 @@ public class CommandAuditServiceBean implements CommandAuditService {
     @Override
     public List<CommandAuditData> findMostRecentCommandsForCa(long caId) {
         List<CommandAudit> commands = entityManager.createQuery(
+                // The CA version increases with the execution time. Ordering by execution time first lets PostgreSQL scan
+                // the (monthly) partitions newest first and stop at the limit.
                 "SELECT cd FROM CommandAudit cd WHERE deletedAt IS NULL AND cd.certificateAuthorityId = :caId " +
-                    "ORDER BY cd.certificateAuthorityVersion DESC",
+                    "ORDER BY cd.executionTime DESC, cd.certificateAuthorityVersion DESC",
                 CommandAudit.class
             )
             .setParameter("caId", caId)
@@ -119,6 +131,40 @@ public class CommandAuditServiceBean implements CommandAuditService {
             commandAudit.setCommandEvents(String.join("\n", events));
             entityManager.persist(commandAudit);
         }
+
+        recordStatEvent(command, commandAudit);
+    }
+
+    /**
+     * Record the structured CA statistics event (if any) for the command, so the CA statistics API does not need to
+     * parse the command summaries.
+     */
+    private void recordStatEvent(CertificateAuthorityCommand command, CommandAudit commandAudit) {
+        CaStatEventType type;
+        int roasAdded = 0;
+        int roasDeleted = 0;
+        if (command instanceof ActivateHostedCertificateAuthorityCommand || command instanceof ActivateNonHostedCertificateAuthorityCommand) {
+            type = CaStatEventType.CA_CREATED;
+        } else if (command instanceof DeleteCertificateAuthorityCommand || command instanceof DeleteNonHostedCertificateAuthorityCommand) {
+            type = CaStatEventType.CA_DELETED;
+        } else if (command instanceof UpdateRoaConfigurationCommand roaCommand) {
+            type = CaStatEventType.ROAS_UPDATED;
+            roasAdded = roaCommand.getAdditions().size();
+            roasDeleted = roaCommand.getDeletions().size();
+        } else {
+            return;
+        }
+
+        entityManager.createNativeQuery(
+                "INSERT INTO ca_stat_event (event_type, ca_id, ca_name, roas_added, roas_deleted, occurred_at) " +
+                    "VALUES (:type, :caId, :caName, :roasAdded, :roasDeleted, :occurredAt)")
+            .setParameter("type", type.name())
+            .setParameter("caId", commandAudit.getCertificateAuthorityId())
+            .setParameter("caName", commandAudit.getCaName().getName())
+            .setParameter("roasAdded", roasAdded)
+            .setParameter("roasDeleted", roasDeleted)
+            .setParameter("occurredAt", Instant.ofEpochMilli(commandAudit.getExecutionTime().getMillis()))
+            .executeUpdate();
     }
 
     @Override
@@ -128,16 +174,32 @@ public class CommandAuditServiceBean implements CommandAuditService {
         query.executeUpdate();
     }
 
+    /**
+     * Counts the commands mentioning <code>item</code> in their summary, by command type. The <code>LIKE</code>
+     * patterns are supported by the trigram index on the command summary. Matches are read in pages ordered by id, so
+     * an item with many mentions does not load the complete matching history at once.
+     */
     @Override
-    @SuppressWarnings("unchecked")
     public Map<String, Long> findMentionsInSummary(String item) {
-        Query query = entityManager.createQuery(
-                "SELECT ca FROM CommandAudit ca " +
-                        "WHERE commandSummary LIKE :itemSpaces " +
-                        "OR commandSummary LIKE :itemParens");
-        query.setParameter("itemSpaces", "% " + item + " %");
-        query.setParameter("itemParens", "%'" + item + "'%");
-        List<CommandAudit> commands = query.getResultList();
-        return commands.stream().collect(Collectors.toMap(CommandAudit::getCommandType, c -> 1L, Long::sum));
+        Map<String, Long> result = new HashMap<>();
+        long after = Long.MIN_VALUE;
+        while (true) {
+            List<Object[]> page = entityManager.createQuery(
+                    "SELECT ca.id, ca.commandType FROM CommandAudit ca " +
+                        "WHERE (ca.commandSummary LIKE :itemSpaces OR ca.commandSummary LIKE :itemParens) " +
+                        "AND ca.id > :after " +
+                        "ORDER BY ca.id ASC",
+                    Object[].class)
+                .setParameter("itemSpaces", "% " + item + " %")
+                .setParameter("itemParens", "%'" + item + "'%")
+                .setParameter("after", after)
+                .setMaxResults(MENTIONS_PAGE_SIZE)
+                .getResultList();
+            page.forEach(row -> result.merge((String) row[1], 1L, Long::sum));
+            if (page.size() < MENTIONS_PAGE_SIZE) {
+                return result;
+            }
+            after = (Long) page.get(page.size() - 1)[0];
+        }
     }
 }
@@ -1,13 +1,20 @@
 package net.ripe.rpki.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.ripencc.support.persistence.StatementStatistics;
+import net.ripe.rpki.ripencc.support.persistence.StatementStatisticsDataSource;
 import org.flywaydb.core.api.output.ValidateResult;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
 import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
 
+import javax.sql.DataSource;
 import java.util.Collections;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -25,6 +32,37 @@ public class DbConfig {
         return configuration -> configuration.placeholders(placeholders);
     }
 
+    /**
+     * Savepoints are used by group committed commands to isolate the changes of each command. Savepoints only apply
+     * to the JDBC connection, so the command service flushes and clears the JPA persistence context around them.
+     */
+    @Bean
+    public TransactionManagerCustomizer<AbstractPlatformTransactionManager> nestedTransactionsAllowed() {
+        return transactionManager -> transactionManager.setNestedTransactionAllowed(true);
+    }
+
+    /**
+     * Instruments the data source so the SQL statements executed by commands, background services and requests are
+     * counted, see {@link StatementStatistics}.
+     */
+    @Bean
+    public static BeanPostProcessor statementStatisticsDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof StatementStatisticsDataSource)) {
+                    return new StatementStatisticsDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder statementStatisticsMetrics() {
+        return StatementStatistics::bindTo;
+    }
+
     @Bean
     public FlywayMigrationStrategy migrateStrategy() {
         return flyway -> {
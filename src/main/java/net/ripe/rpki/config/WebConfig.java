@@ -26,6 +26,7 @@ public class WebConfig implements WebMvcConfigurer {
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(new SpringAuthInterceptor()).addPathPatterns("/api/**");
+        registry.addInterceptor(new StatementStatisticsInterceptor());
     }
 
     @Bean
@@ -19,6 +19,7 @@ import jakarta.persistence.LockModeType;
 import jakarta.persistence.TypedQuery;
 import javax.security.auth.x500.X500Principal;
 import java.util.*;
+import java.util.function.LongPredicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -104,7 +105,8 @@ public class CertificateAuthorityViewServiceImpl implements CertificateAuthority
     public Collection<ManagedCertificateAuthorityData> findManagedCasEligibleForKeyRoll(
         Class<? extends ManagedCertificateAuthority> type,
         final Instant oldestKpCreationTime,
-        final Optional<Integer> batchSize
+        final Optional<Integer> batchSize,
+        final LongPredicate caIdFilter
     ) {
         final TypedQuery<ManagedCertificateAuthority> query = entityManager.createQuery(
             "SELECT ca " +
@@ -121,9 +123,12 @@ public class CertificateAuthorityViewServiceImpl implements CertificateAuthority
             ManagedCertificateAuthority.class)
             .setParameter("current", KeyPairStatus.CURRENT)
             .setParameter("maxKpAge", oldestKpCreationTime);
-        batchSize.ifPresent(query::setMaxResults);
-        return query.getResultStream()
+        // Filter while streaming the results, so the batch is filled with the selected CAs
+        try (Stream<ManagedCertificateAuthority> cas = query.getResultStream()) {
+            Stream<ManagedCertificateAuthority> selected = cas.filter(ca -> caIdFilter.test(ca.getId()));
+            return batchSize.map(selected::limit).orElse(selected)
                 .map(ManagedCertificateAuthority::toData).toList();
+        }
     }
 
     @Override
@@ -180,6 +185,23 @@ public class CertificateAuthorityViewServiceImpl implements CertificateAuthority
             .toList();
     }
 
+    @Override
+    public List<List<CertificateAuthorityData>> findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth() {
+        Stream<ManagedCertificateAuthority> certificateAuthorities = entityManager.createQuery(
+                "SELECT DISTINCT ca " +
+                    " FROM ManagedCertificateAuthority ca JOIN ca.keyPairs kp" +
+                    " WHERE kp.status = :pending",
+                ManagedCertificateAuthority.class)
+            .setParameter("pending", KeyPairStatus.PENDING)
+            .getResultStream();
+        Map<Integer, List<CertificateAuthorityData>> byDepth = certificateAuthorities.collect(Collectors.groupingBy(
+            CertificateAuthority::depth,
+            TreeMap::new,
+            Collectors.mapping(ca -> (CertificateAuthorityData) ca.toData(), Collectors.toList())
+        ));
+        return List.copyOf(byDepth.values());
+    }
+
     private CertificateAuthorityData convertToCaData(CertificateAuthority ca) {
         return ca == null ? null : ca.toData();
     }
@@ -17,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
+import java.math.BigInteger;
 import java.security.PublicKey;
 import java.util.Optional;
 
@@ -63,6 +64,23 @@ public class ResourceCertificateViewServiceImpl implements ResourceCertificateVi
         }
     }
 
+    @Override
+    public Optional<BigInteger> findCurrentIncomingResourceCertificateSerial(long caId) {
+        return entityManager.createQuery(
+                "SELECT rc.serial" +
+                    "      FROM ManagedCertificateAuthority ca" +
+                    "      JOIN ca.keyPairs kp" +
+                    "      JOIN kp.incomingResourceCertificate rc " +
+                    " WHERE ca.id = :caId " +
+                    "   AND kp.status = :current",
+                BigInteger.class
+            )
+            .setParameter("caId", caId)
+            .setParameter("current", KeyPairStatus.CURRENT)
+            .getResultStream()
+            .findFirst();
+    }
+
     @Override
     public Optional<ResourceCertificateData> findCurrentOutgoingResourceCertificate(long requestingCaId, @NonNull PublicKey subjectPublicKey) {
         try {
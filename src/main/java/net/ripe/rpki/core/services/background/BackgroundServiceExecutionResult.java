@@ -1,8 +1,10 @@
 package net.ripe.rpki.core.services.background;
 
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
 @Value
+@AllArgsConstructor
 public class BackgroundServiceExecutionResult {
     public enum Status {
         SUCCESS,
@@ -10,6 +12,16 @@ public class BackgroundServiceExecutionResult {
         SKIPPED
     }
 
+    /**
+     * Whether the service found work to do, as reported by the service. Used to adapt the interval between runs.
+     */
+    public enum Workload {
+        UNKNOWN,
+        IDLE,
+        DID_WORK,
+        BACKLOG
+    }
+
     // Execution time of the service "runService" method.
     private long pureDuration;
 
@@ -17,4 +29,10 @@ public class BackgroundServiceExecutionResult {
     private long fullDuration;
 
     private Status status;
+
+    private Workload workload;
+
+    public BackgroundServiceExecutionResult(long pureDuration, long fullDuration, Status status) {
+        this(pureDuration, fullDuration, status, Workload.UNKNOWN);
+    }
 }
@@ -0,0 +1,144 @@
+package net.ripe.rpki.core.services.background;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.CheckForNull;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Exclusive lock shared by the sequential background services. Waiting services acquire the lock in order of priority
+ * and then in order of arrival. The lock is owned by a service rather than a thread, so the per-CA tasks a service runs
+ * on the {@link BackgroundTaskRunner} pool can yield it on behalf of the service.
+ * <p>
+ * Yielding is a barrier: once a service with a higher priority is waiting, the owner stops starting new tasks and only
+ * hands over the lock when its running tasks have completed, so the tasks of both services never overlap. Like
+ * {@link java.util.concurrent.locks.Lock#lock()} waiting is not interruptible.
+ */
+@Slf4j
+final class BackgroundServiceLock {
+
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+        Comparator.comparing(Waiter::priority).reversed().thenComparingLong(Waiter::sequence)
+    );
+    private long nextSequence;
+
+    @CheckForNull
+    private Waiter owner;
+
+    /** Number of tasks of the owner that started and have not completed yet. */
+    private int runningTasks;
+
+    /** True when the owner no longer starts tasks, and hands over the lock once its running tasks completed. */
+    private boolean yielding;
+
+    /**
+     * Waits until <code>service</code> owns the lock.
+     *
+     * @return true when the service had to wait for another service
+     */
+    boolean lock(Object service, BackgroundServicePriority priority) {
+        synchronized (this) {
+            Waiter waiter = new Waiter(service, priority, nextSequence++);
+            if (owner == null && waiters.isEmpty()) {
+                owner = waiter;
+                return false;
+            }
+            waiters.add(waiter);
+            awaitOwnership(service);
+            return true;
+        }
+    }
+
+    synchronized void unlock(Object service) {
+        if (!isOwnedBy(service)) {
+            throw new IllegalStateException("background service lock is not held by " + service);
+        }
+        grantToNextWaiter();
+    }
+
+    /**
+     * Called before a task of <code>service</code> starts. When a service with a higher priority is waiting, the task
+     * waits until the running tasks have completed, the service with the higher priority has released the lock, and
+     * <code>service</code> owns the lock again. The service keeps its place in the queue, so it runs before services
+     * with the same priority that arrived later.
+     *
+     * @return true when the task is counted as running and must call {@link #endTask(Object)} when it completes, false
+     * when <code>service</code> is not running with the lock, e.g. a concurrent service
+     */
+    synchronized boolean beginTask(Object service) {
+        while (true) {
+            if (isOwnedBy(service)) {
+                if (!yielding) {
+                    Waiter head = waiters.peek();
+                    if (head == null || head.priority().compareTo(owner.priority()) <= 0) {
+                        runningTasks++;
+                        return true;
+                    }
+                    log.info("Background service {} yields to waiting services with a higher priority", service);
+                    yielding = true;
+                }
+                if (runningTasks == 0) {
+                    handOver();
+                }
+            } else if (waiters.stream().noneMatch(waiter -> waiter.service() == service)) {
+                return false;
+            }
+            awaitOwnership(service);
+        }
+    }
+
+    /**
+     * Called when a task for which {@link #beginTask(Object)} returned true has completed.
+     */
+    synchronized void endTask(Object service) {
+        if (!isOwnedBy(service) || runningTasks == 0) {
+            throw new IllegalStateException("no running task of " + service);
+        }
+        runningTasks--;
+        if (yielding && runningTasks == 0) {
+            handOver();
+        }
+    }
+
+    synchronized boolean isOwnedBy(Object service) {
+        return owner != null && owner.service() == service;
+    }
+
+    synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    private void handOver() {
+        waiters.add(owner);
+        grantToNextWaiter();
+    }
+
+    private void grantToNextWaiter() {
+        owner = waiters.poll();
+        runningTasks = 0;
+        yielding = false;
+        notifyAll();
+    }
+
+    /**
+     * Waits until <code>service</code> owns the lock and is not yielding it. Must be called while synchronized on this
+     * lock.
+     */
+    private void awaitOwnership(Object service) {
+        boolean interrupted = false;
+        while (!isOwnedBy(service) || yielding) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Waiter(Object service, BackgroundServicePriority priority, long sequence) {
+    }
+}
@@ -0,0 +1,13 @@
+package net.ripe.rpki.core.services.background;
+
+/**
+ * Priority of a sequential background service when waiting for the global background services lock. Services that
+ * hold the lock yield it between their per-CA tasks when a service with a higher priority is waiting.
+ */
+public enum BackgroundServicePriority {
+    /** Long-running bulk jobs that can be interrupted, e.g. updating or rolling the keys of all CAs. */
+    LOW,
+    NORMAL,
+    /** Latency-critical jobs, e.g. publishing changed objects before manifests and CRLs expire. */
+    HIGH
+}
@@ -1,8 +1,10 @@
 package net.ripe.rpki.core.services.background;
 
 import lombok.NonNull;
+import net.ripe.rpki.ripencc.support.persistence.StatementStatistics;
 import net.ripe.rpki.server.api.security.RunAsUserHolder;
 import net.ripe.rpki.server.api.services.background.BackgroundService;
+import net.ripe.rpki.server.api.services.system.FencingTokenHolder;
 import net.ripe.rpki.util.Time;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -16,6 +18,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.Callable;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -26,7 +29,7 @@ import static net.ripe.rpki.server.api.security.RunAsUser.ADMIN;
 
 public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implements BackgroundService {
 
-    private static final ReentrantLock GLOBAL_LOCK = new ReentrantLock(true);
+    private static final BackgroundServiceLock GLOBAL_LOCK = new BackgroundServiceLock();
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -54,9 +57,20 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
     @NonNull
     private Instant stateChangedAt = Instant.now();
 
+    /**
+     * Workload reported by the last run, see {@link #reportWorkload(BackgroundServiceExecutionResult.Workload)}.
+     * Executions of a service never overlap.
+     */
+    private volatile BackgroundServiceExecutionResult.Workload workload = BackgroundServiceExecutionResult.Workload.UNKNOWN;
+
     private final BackgroundTaskRunner backgroundTaskRunner;
     private final boolean useGlobalLocking;
 
+    /**
+     * True while the current thread runs a task of this service that is counted as running by the global lock.
+     */
+    private final ThreadLocal<Boolean> runningTask = ThreadLocal.withInitial(() -> false);
+
     BackgroundServiceWithAdminPrivilegesOnActiveNode(BackgroundTaskRunner backgroundTaskRunner, boolean useGlobalLocking) {
         this.useGlobalLocking = useGlobalLocking;
         this.backgroundTaskRunner = backgroundTaskRunner;
@@ -75,7 +89,27 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
 
     @Override
     public boolean isActive() {
-        return backgroundTaskRunner.isActiveNode();
+        return isRunningSharded() || backgroundTaskRunner.isActiveNode();
+    }
+
+    /**
+     * Services that only do independent per-CA work can return true, so that the work is spread across all live nodes
+     * when sharding is enabled. These services must only process the CAs for which {@link #isAssignedToCurrentNode(long)}
+     * is true. Services that need a consistent view across CAs (such as publication) must keep running on the active node.
+     */
+    protected boolean isSharded() {
+        return false;
+    }
+
+    private boolean isRunningSharded() {
+        return isSharded() && backgroundTaskRunner.isShardingEnabled();
+    }
+
+    /**
+     * @return true when the per-CA work for the CA should be done by this execution of the service
+     */
+    protected boolean isAssignedToCurrentNode(long caId) {
+        return !isRunningSharded() || backgroundTaskRunner.isAssignedToCurrentNode(caId);
     }
 
     @Override
@@ -101,7 +135,7 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
         final Time.Timed<Pair<BackgroundServiceExecutionResult.Status, Long>> timed = Time.timed(() -> doExecute(() -> runService(parameters)));
         final long pureDuration = timed.getResult().getRight();
         final long fullDuration = timed.getTime();
-        return new BackgroundServiceExecutionResult(pureDuration, fullDuration, timed.getResult().getLeft());
+        return new BackgroundServiceExecutionResult(pureDuration, fullDuration, timed.getResult().getLeft(), workload);
     }
 
     /**
@@ -120,19 +154,37 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
             return Pair.of(BackgroundServiceExecutionResult.Status.SKIPPED, 0L);
         }
 
-        // Only allow a single service to execute at a time.
-        if (useGlobalLocking && !GLOBAL_LOCK.tryLock()) {
-            log.info("Waiting for lock on background services…");
-            GLOBAL_LOCK.lock();
+        // Only allow a single sequential service to execute at a time, in order of priority.
+        Instant waitingSince = Instant.now();
+        if (useGlobalLocking && GLOBAL_LOCK.lock(this, getPriority())) {
+            log.info("Acquired lock on background services after waiting for {}", Time.formatDuration(Duration.between(waitingSince, Instant.now())));
         }
         try {
             // Now we have the global lock, if needed. Update our state and run the service.
             updateState(State.RUNNING);
+            workload = BackgroundServiceExecutionResult.Workload.UNKNOWN;
             try {
+                // Commands executed by the service verify they are still executed on the active node, sharded
+                // services run on every node and rely on the CA locks instead. The lease may have been lost while
+                // waiting for the global lock, in which case the service must not run unfenced.
+                OptionalLong fencingToken = OptionalLong.empty();
+                if (!isRunningSharded()) {
+                    fencingToken = backgroundTaskRunner.getFencingToken();
+                    if (fencingToken.isEmpty()) {
+                        log.warn("Skipping execution of {}: no longer the active node ({})", getName(), backgroundTaskRunner.getCurrentNodeName());
+                        return Pair.of(BackgroundServiceExecutionResult.Status.SKIPPED, 0L);
+                    }
+                }
                 RunAsUserHolder.set(ADMIN);
                 try {
                     log.info("Started execution of background service: {}", getName());
-                    long duration = Time.timed(runService);
+                    StatementStatistics.Scope statementStatistics = StatementStatistics.open("background", getClass().getSimpleName());
+                    long duration;
+                    try {
+                        duration = FencingTokenHolder.with(fencingToken, () -> Time.timed(runService));
+                    } finally {
+                        statementStatistics.close();
+                    }
                     log.info("Finished execution of background service: {}, duration: {}ms.", getName(), duration);
                     return Pair.of(BackgroundServiceExecutionResult.Status.SUCCESS, duration);
                 } catch (Exception e) {
@@ -146,7 +198,7 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
             }
         } finally {
             if (useGlobalLocking) {
-                GLOBAL_LOCK.unlock();
+                GLOBAL_LOCK.unlock(this);
             }
         }
     }
@@ -180,19 +232,75 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
         }
     }
 
+    /**
+     * Verifies that this node is still the active node the service was started on. Must be called in a transaction.
+     * Call this right before publishing outside of the database, note that the publication itself is not fenced.
+     */
+    protected void verifyFencingToken() {
+        backgroundTaskRunner.verifyFencingToken();
+    }
+
     protected <T> List<T> runParallel(Stream<BackgroundTaskRunner.Task<T>> tasks) {
-        return backgroundTaskRunner.runParallel(tasks);
+        if (!useGlobalLocking) {
+            return backgroundTaskRunner.runParallel(tasks);
+        }
+        if (!runningTask.get()) {
+            return backgroundTaskRunner.runParallel(getPriority(), tasks);
+        }
+
+        // A task waiting for its nested tasks is not running itself, so it must not keep the service from yielding
+        GLOBAL_LOCK.endTask(this);
+        runningTask.set(false);
+        try {
+            return backgroundTaskRunner.runParallel(getPriority(), tasks);
+        } finally {
+            runningTask.set(GLOBAL_LOCK.beginTask(this));
+        }
+    }
+
+    /**
+     * Reports whether this run found work to do, so that adaptively scheduled services can run less often when idle
+     * and more often when there is a backlog.
+     */
+    protected void reportWorkload(BackgroundServiceExecutionResult.Workload workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * Priority of this service when waiting for the global lock, only used by sequential services.
+     */
+    protected BackgroundServicePriority getPriority() {
+        return BackgroundServicePriority.NORMAL;
     }
 
     protected BackgroundTaskRunner.Task<Void> task(Runnable task, Consumer<Exception> onError) {
-        return backgroundTaskRunner.task(() -> {
+        return task(() -> {
             task.run();
             return null;
         }, onError);
     }
 
+    /**
+     * Creates a task that temporarily releases the global lock when a sequential service with a higher priority is
+     * waiting for it, so long-running services yield between per-CA tasks. The service stops starting tasks and hands
+     * over the lock once its running tasks have completed. The tasks continue once the lock is available again.
+     */
     protected <T> BackgroundTaskRunner.Task<T> task(Callable<T> task, Consumer<Exception> onError) {
-        return backgroundTaskRunner.task(task, onError);
+        return backgroundTaskRunner.task(() -> {
+            if (!useGlobalLocking || !GLOBAL_LOCK.beginTask(this)) {
+                return task.call();
+            }
+            boolean wasRunningTask = runningTask.get();
+            runningTask.set(true);
+            try {
+                return task.call();
+            } finally {
+                if (runningTask.get()) {
+                    GLOBAL_LOCK.endTask(this);
+                }
+                runningTask.set(wasRunningTask);
+            }
+        }, onError);
     }
 
     protected Optional<String> parseForceUpdateParameter(Map<String, String> parameters) {
@@ -3,13 +3,22 @@ package net.ripe.rpki.core.services.background;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.ripencc.support.persistence.StatementStatistics;
 import net.ripe.rpki.server.api.security.RunAsUserHolder;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.CaShardService;
+import net.ripe.rpki.server.api.services.system.FencingTokenHolder;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
+import jakarta.inject.Inject;
+
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
@@ -24,16 +33,61 @@ import java.util.stream.Stream;
 public class BackgroundTaskRunner implements SmartLifecycle {
     public static final int MAX_ALLOWED_EXCEPTIONS = 20;
 
+    private static final int MAX_SPARE_THREADS = 8;
+
+    private static final CaShardService SHARDING_DISABLED = new CaShardService() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isAssignedToCurrentNode(long caId) {
+            return false;
+        }
+    };
+
     private final ActiveNodeService activeNodeService;
+    private final CaShardService caShardService;
 
     // Create a separate pool to avoid blocking the whole
     // ForkJoinPool.default() with threads waiting for IO
-    private final ForkJoinPool forkJoinPool = new ForkJoinPool();
+    private final ForkJoinPool forkJoinPool = newForkJoinPool();
+
+    /**
+     * Sequential services run their tasks on the pool for their priority. The tasks of a service that yields the
+     * global lock stay parked on its pool, which is then not used by the service with a higher priority taking over.
+     */
+    private final Map<BackgroundServicePriority, ForkJoinPool> priorityForkJoinPools = new EnumMap<>(BackgroundServicePriority.class);
     private final AtomicBoolean stopping = new AtomicBoolean(false);
 
     public BackgroundTaskRunner(ActiveNodeService activeNodeService, MeterRegistry meterRegistry) {
+        this(activeNodeService, SHARDING_DISABLED, meterRegistry);
+    }
+
+    @Inject
+    public BackgroundTaskRunner(ActiveNodeService activeNodeService, CaShardService caShardService, MeterRegistry meterRegistry) {
         this.activeNodeService = activeNodeService;
+        this.caShardService = caShardService;
         ExecutorServiceMetrics.monitor(meterRegistry, forkJoinPool, "rpkicore.backgroundtask.forkjoinpool");
+        for (BackgroundServicePriority priority : BackgroundServicePriority.values()) {
+            ForkJoinPool pool = newForkJoinPool();
+            priorityForkJoinPools.put(priority, pool);
+            ExecutorServiceMetrics.monitor(meterRegistry, pool, "rpkicore.backgroundtask.forkjoinpool." + priority.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Bounds the spare threads a pool creates to compensate for blocked threads (e.g. in
+     * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}). Once the bound is reached blocked threads are
+     * not compensated for.
+     */
+    private static ForkJoinPool newForkJoinPool() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(
+            parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false,
+            0, parallelism + MAX_SPARE_THREADS, 1, pool -> true, 60, TimeUnit.SECONDS
+        );
     }
 
     public boolean isActiveNode() {
@@ -44,6 +98,26 @@ public class BackgroundTaskRunner implements SmartLifecycle {
         return activeNodeService.getCurrentNodeName();
     }
 
+    public boolean isShardingEnabled() {
+        return caShardService.isEnabled();
+    }
+
+    public boolean isAssignedToCurrentNode(long caId) {
+        return caShardService.isAssignedToCurrentNode(caId);
+    }
+
+    public OptionalLong getFencingToken() {
+        return activeNodeService.getFencingToken();
+    }
+
+    /**
+     * Verifies the fencing token the current background job was started with (if any), see
+     * {@link ActiveNodeService#verifyFencingToken(long)}.
+     */
+    public void verifyFencingToken() {
+        FencingTokenHolder.get().ifPresent(activeNodeService::verifyFencingToken);
+    }
+
     @Override
     public void start() {
         // do nothing
@@ -59,6 +133,9 @@ public class BackgroundTaskRunner implements SmartLifecycle {
         log.info("application is shutting down, stopping background services");
 
         boolean quiescent = forkJoinPool.awaitQuiescence(30, TimeUnit.SECONDS);
+        for (ForkJoinPool pool : priorityForkJoinPools.values()) {
+            quiescent = pool.awaitQuiescence(30, TimeUnit.SECONDS) && quiescent;
+        }
 
         log.info("background services stopped {}", quiescent ? "successfully" : "timed out");
     }
@@ -75,6 +152,17 @@ public class BackgroundTaskRunner implements SmartLifecycle {
     }
 
     public <T> List<T> runParallel(Stream<Task<T>> tasks) {
+        return runParallel(forkJoinPool, tasks);
+    }
+
+    /**
+     * Runs the tasks of a sequential service on the pool for its priority.
+     */
+    public <T> List<T> runParallel(BackgroundServicePriority priority, Stream<Task<T>> tasks) {
+        return runParallel(priorityForkJoinPools.get(priority), tasks);
+    }
+
+    private <T> List<T> runParallel(ForkJoinPool forkJoinPool, Stream<Task<T>> tasks) {
         MaxExceptionsTemplate maxExceptionsTemplate = new MaxExceptionsTemplate(20);
         List<T> result = forkJoinPool.submit(
                 () -> tasks.parallel()
@@ -87,10 +175,15 @@ public class BackgroundTaskRunner implements SmartLifecycle {
     }
 
     public <T> Task<T> task(Callable<T> task, Consumer<Exception> onException) {
+        // Tasks run on the fork join pool, so pass on the fencing token and statement statistics scope of the
+        // background job creating the task
+        OptionalLong fencingToken = FencingTokenHolder.get();
+        Optional<StatementStatistics.Scope> statementStatistics = StatementStatistics.current();
         return new Task<>() {
             @Override
             public T execute() throws Exception {
-                return RunAsUserHolder.asAdmin((RunAsUserHolder.GetE<T, Exception>) task::call);
+                return StatementStatistics.with(statementStatistics, () ->
+                    FencingTokenHolder.with(fencingToken, () -> RunAsUserHolder.asAdmin((RunAsUserHolder.GetE<T, Exception>) task::call)));
             }
 
             @Override
@@ -13,15 +13,20 @@ import net.ripe.rpki.domain.audit.CommandAuditService;
 import net.ripe.rpki.rest.exception.PreconditionRequiredException;
 import net.ripe.rpki.ripencc.support.event.EventDelegateTracker;
 import net.ripe.rpki.ripencc.support.event.EventSubscription;
+import net.ripe.rpki.ripencc.support.persistence.StatementStatistics;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CommandContext;
+import net.ripe.rpki.server.api.commands.GroupCommittableCommand;
 import net.ripe.rpki.server.api.services.command.*;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.FencingTokenHolder;
 import net.ripe.rpki.services.impl.handlers.CommandHandlerMetrics;
 import net.ripe.rpki.services.impl.handlers.LockCertificateAuthorityHandler;
 import net.ripe.rpki.services.impl.handlers.MessageDispatcher;
 import org.slf4j.MDC;
 import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.inject.Inject;
@@ -32,10 +37,12 @@ import jakarta.persistence.PessimisticLockException;
 import jakarta.persistence.Query;
 import java.math.BigInteger;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 
@@ -53,10 +60,12 @@ public class CommandServiceImpl implements CommandService {
     private final CommandHandlerMetrics commandHandlerMetrics;
     private final LockCertificateAuthorityHandler lockCertificateAuthorityHandler;
     private final EntityManager entityManager;
+    private final ActiveNodeService activeNodeService;
 
     private final MeterRegistry meterRegistry;
     private final Map<Class<?>, Timer> commandExecutionTimers = new ConcurrentHashMap<>();
     private final Counter commandRetryCounter;
+    private final Counter groupCommitFallbackCounter;
 
     @Inject
     public CommandServiceImpl(
@@ -67,6 +76,7 @@ public class CommandServiceImpl implements CommandService {
         CommandHandlerMetrics commandHandlerMetrics,
         LockCertificateAuthorityHandler lockCertificateAuthorityHandler,
         EntityManager entityManager,
+        ActiveNodeService activeNodeService,
         MeterRegistry meterRegistry
     ) {
         this.commandDispatcher = commandDispatcher;
@@ -76,6 +86,7 @@ public class CommandServiceImpl implements CommandService {
         this.commandHandlerMetrics = commandHandlerMetrics;
         this.lockCertificateAuthorityHandler = lockCertificateAuthorityHandler;
         this.entityManager = entityManager;
+        this.activeNodeService = activeNodeService;
 
         this.meterRegistry = meterRegistry;
 
@@ -83,6 +94,10 @@ public class CommandServiceImpl implements CommandService {
                 .description("Number of retries for commands because of transaction failures.")
                 .baseUnit("total")
                 .register(meterRegistry);
+        this.groupCommitFallbackCounter = Counter.builder("rpkicore.command.group.commit.fallbacks")
+                .description("Number of group committed commands that were executed again in their own transaction.")
+                .baseUnit("total")
+                .register(meterRegistry);
     }
 
     @Override
@@ -97,9 +112,11 @@ public class CommandServiceImpl implements CommandService {
     @Override
     public CommandStatus execute(final CertificateAuthorityCommand command) {
         MDC.put("command", command.getCommandGroup() + ":" + command.getCommandType() + ":" + command.getCertificateAuthorityId());
+        StatementStatistics.Scope statementStatistics = StatementStatistics.open("command", command.getClass().getSimpleName());
         try {
             return executeCommandWithRetries(command);
         } finally {
+            statementStatistics.close();
             MDC.remove("command");
         }
     }
@@ -137,7 +154,11 @@ public class CommandServiceImpl implements CommandService {
     }
 
     private CommandStatus executeTimedCommand(CertificateAuthorityCommand command) {
-        Timer timer = commandExecutionTimers.computeIfAbsent(command.getClass(), clazz ->
+        return commandExecutionTimer(command).record(() -> executeCommand(command));
+    }
+
+    private Timer commandExecutionTimer(CertificateAuthorityCommand command) {
+        return commandExecutionTimers.computeIfAbsent(command.getClass(), clazz ->
             Timer.builder("rpkicore.command.execution.duration")
                 .description("execution duration of command")
                 .tag("command", clazz.getSimpleName())
@@ -145,23 +166,14 @@ public class CommandServiceImpl implements CommandService {
                 .publishPercentileHistogram()
                 .register(meterRegistry)
         );
-        return timer.record(() -> executeCommand(command));
     }
 
-    @SuppressWarnings("try")
     private CommandStatus executeCommand(CertificateAuthorityCommand command) {
         final CommandStatus commandStatus = new CommandStatus();
         transactionTemplate.executeWithoutResult(status -> {
-            EventDelegateTracker.get().reset();
-            CommandContext commandContext = commandAuditService.startRecording(command);
-            List<EventSubscription> subscriptions = eventVisitors.stream().map(visitor -> ManagedCertificateAuthority.subscribe(visitor, commandContext)).toList();
-            try (
-                EventSubscription commandAuditSubscription = ManagedCertificateAuthority.EVENTS.subscribe(commandContext::recordEvent)
-            ) {
-                commandStatus.setTransactionStatus(status);
-                commandDispatcher.dispatch(command, commandStatus);
-                commandAuditService.finishRecording(commandContext);
-                log.debug("Command completed.");
+            commandStatus.setTransactionStatus(status);
+            try {
+                dispatchAndRecord(command, commandStatus);
             } catch (CommandWithoutEffectException e) {
                 log.debug("Command without effect: {}", command);
                 commandStatus.setHasEffect(false);
@@ -169,14 +181,117 @@ public class CommandServiceImpl implements CommandService {
             } catch (Exception e) {
                 status.setRollbackOnly();
                 throw e;
-            } finally {
-                subscriptions.forEach(EventSubscription::close);
-                EventDelegateTracker.get().reset();
             }
         });
         return commandStatus;
     }
 
+    @Override
+    public void executeGroupCommitted(List<? extends CertificateAuthorityCommand> commands, BiConsumer<CertificateAuthorityCommand, Exception> onError) {
+        for (CertificateAuthorityCommand command : commands) {
+            if (!(command instanceof GroupCommittableCommand)) {
+                throw new IllegalArgumentException("command does not support group commit: " + command);
+            }
+        }
+
+        List<CertificateAuthorityCommand> failedCommands = new ArrayList<>();
+        try {
+            boolean committed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                for (CertificateAuthorityCommand command : commands) {
+                    MDC.put("command", command.getCommandGroup() + ":" + command.getCommandType() + ":" + command.getCertificateAuthorityId());
+                    try {
+                        if (!executeCommandInSavepoint(command, status)) {
+                            failedCommands.add(command);
+                        }
+                    } finally {
+                        MDC.remove("command");
+                    }
+                    if (status.isRollbackOnly()) {
+                        // A persistence exception marks the whole transaction as rollback-only, rolling back to the
+                        // savepoint does not undo that. Stop executing commands that can no longer be committed.
+                        log.info("Group commit transaction was marked as rollback-only by {}", command);
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                }
+                return true;
+            }));
+            if (!committed) {
+                failedCommands.clear();
+                failedCommands.addAll(commands);
+            }
+        } catch (RuntimeException e) {
+            // Nothing of this group was committed (e.g. the transaction was marked as rollback-only by a failed
+            // command), so every command needs to be executed again.
+            log.warn("Group commit of {} commands failed, executing commands individually", commands.size(), e);
+            failedCommands.clear();
+            failedCommands.addAll(commands);
+        }
+
+        groupCommitFallbackCounter.increment(failedCommands.size());
+        for (CertificateAuthorityCommand command : failedCommands) {
+            try {
+                execute(command);
+            } catch (Exception e) {
+                onError.accept(command, e);
+            }
+        }
+    }
+
+    /**
+     * Executes the command inside a savepoint of the current (group) transaction. Changes are flushed before the
+     * savepoint is released, so the persistence context can be cleared when a command needs to be rolled back without
+     * losing the changes of earlier commands in the group.
+     *
+     * @return false when the command failed and must be executed again in its own transaction.
+     */
+    private boolean executeCommandInSavepoint(CertificateAuthorityCommand command, TransactionStatus status) {
+        Object savepoint = status.createSavepoint();
+        CommandStatus commandStatus = new CommandStatus(status);
+        StatementStatistics.Scope statementStatistics = StatementStatistics.open("command", command.getClass().getSimpleName());
+        try {
+            commandExecutionTimer(command).record(() -> dispatchAndRecord(command, commandStatus));
+            entityManager.flush();
+            status.releaseSavepoint(savepoint);
+            return true;
+        } catch (CommandWithoutEffectException e) {
+            log.debug("Command without effect: {}", command);
+            rollbackToSavepoint(status, savepoint);
+            return true;
+        } catch (Exception e) {
+            log.info("Command failed in group commit, rolled back to savepoint: {}", command, e);
+            rollbackToSavepoint(status, savepoint);
+            return false;
+        } finally {
+            statementStatistics.close();
+        }
+    }
+
+    private void rollbackToSavepoint(TransactionStatus status, Object savepoint) {
+        entityManager.clear();
+        status.rollbackToSavepoint(savepoint);
+    }
+
+    @SuppressWarnings("try")
+    private void dispatchAndRecord(CertificateAuthorityCommand command, CommandStatus commandStatus) {
+        // Commands of background jobs are only committed while this node still holds the active node lease the job
+        // was started with, the lease is verified again right before commit.
+        FencingTokenHolder.get().ifPresent(activeNodeService::verifyFencingToken);
+        EventDelegateTracker.get().reset();
+        CommandContext commandContext = commandAuditService.startRecording(command);
+        List<EventSubscription> subscriptions = eventVisitors.stream().map(visitor -> ManagedCertificateAuthority.subscribe(visitor, commandContext)).toList();
+        try (
+            EventSubscription commandAuditSubscription = ManagedCertificateAuthority.EVENTS.subscribe(commandContext::recordEvent)
+        ) {
+            commandDispatcher.dispatch(command, commandStatus);
+            commandAuditService.finishRecording(commandContext);
+            log.debug("Command completed.");
+        } finally {
+            subscriptions.forEach(EventSubscription::close);
+            EventDelegateTracker.get().reset();
+        }
+    }
+
     @VisibleForTesting
     void setCommandDispatcher(MessageDispatcher commandDispatcher) {
         this.commandDispatcher = commandDispatcher;
@@ -0,0 +1,30 @@
+package net.ripe.rpki.domain;
+
+import net.ripe.rpki.core.events.CertificateAuthorityEventVisitor;
+import net.ripe.rpki.core.events.IncomingCertificateRevokedEvent;
+import net.ripe.rpki.core.events.KeyPairActivatedEvent;
+import net.ripe.rpki.server.api.commands.CommandContext;
+import org.springframework.stereotype.Service;
+
+/**
+ * Marks the child CAs of a CA that activated a new key or lost its incoming certificate, so the all CA certificate
+ * update service requests new certificates for them from the current key of the parent.
+ */
+@Service
+public class CaUpdateNeededMaintenanceServiceBean implements CertificateAuthorityEventVisitor {
+    private final CaUpdateNeededRepository caUpdateNeededRepository;
+
+    public CaUpdateNeededMaintenanceServiceBean(CaUpdateNeededRepository caUpdateNeededRepository) {
+        this.caUpdateNeededRepository = caUpdateNeededRepository;
+    }
+
+    @Override
+    public void visitKeyPairActivatedEvent(KeyPairActivatedEvent event, CommandContext context) {
+        caUpdateNeededRepository.markChildrenUpdateNeeded(event.getCertificateAuthorityId(), "parent key activated");
+    }
+
+    @Override
+    public void visitIncomingCertificateRevokedEvent(IncomingCertificateRevokedEvent event, CommandContext context) {
+        caUpdateNeededRepository.markChildrenUpdateNeeded(event.getCertificateAuthorityId(), "parent certificate revoked");
+    }
+}
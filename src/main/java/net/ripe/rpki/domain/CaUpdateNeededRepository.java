@@ -0,0 +1,53 @@
+package net.ripe.rpki.domain;
+
+import org.joda.time.DateTime;
+
+import javax.security.auth.x500.X500Principal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Index of CAs whose incoming resource certificate may need to be updated. Marking a CA that is already marked
+ * refreshes its request time, so a CA that is marked again while it is being processed is not removed from the index.
+ * All request times are based on the database clock.
+ */
+public interface CaUpdateNeededRepository {
+
+    void markUpdateNeeded(Collection<X500Principal> caNames, String reason);
+
+    /**
+     * Marks the child CAs of <code>parentCaId</code>, e.g. after the parent started signing with a new key.
+     */
+    void markChildrenUpdateNeeded(long parentCaId, String reason);
+
+    /**
+     * Marks the CAs with a current or pending key whose incoming certificate expires before <code>notValidAfter</code>,
+     * and the non-hosted CAs with a current certificate for one of their public keys that expires before
+     * <code>notValidAfter</code>, so the certificate is re-issued with the new validity time.
+     *
+     * @return the number of CAs marked
+     */
+    int markIncomingCertificatesExpiringBefore(DateTime notValidAfter);
+
+    /**
+     * @return the request time of every marked CA by CA id
+     */
+    Map<Long, Instant> findUpdateNeeded();
+
+    /**
+     * @return the number of marked CAs
+     */
+    int countUpdateNeeded();
+
+    /**
+     * @return the oldest request time of the marked CAs, if any
+     */
+    Optional<Instant> findOldestRequestedAt();
+
+    /**
+     * Removes the mark of <code>caId</code> if it was not marked again since <code>requestedAt</code>.
+     */
+    void remove(long caId, Instant requestedAt);
+}
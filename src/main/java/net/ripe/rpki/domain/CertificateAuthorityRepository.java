@@ -1,5 +1,6 @@
 package net.ripe.rpki.domain;
 
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.ripencc.support.persistence.Repository;
 import net.ripe.rpki.server.api.dto.CaStatEvent;
 import net.ripe.rpki.server.api.dto.CaStat;
@@ -20,6 +21,12 @@ public interface CertificateAuthorityRepository extends Repository<CertificateAu
 
     <T extends CertificateAuthority> T findByTypeAndUuid(Class<T> type, UUID uuid, LockModeType lockModeType);
 
+    /**
+     * @return the id and version of the down stream provisioning communicator of the production CA with the given
+     * UUID, without loading the entities. Empty when there is no such CA or its identity material is not initialised.
+     */
+    Optional<VersionedId> findDownStreamProvisioningCommunicatorVersion(UUID productionCaUuid);
+
     ProductionCertificateAuthority findRootCAByName(X500Principal name);
 
     AllResourcesCertificateAuthority findAllResourcesCAByName(X500Principal name);
@@ -38,7 +45,7 @@ public interface CertificateAuthorityRepository extends Repository<CertificateAu
 
     Collection<ManagedCertificateAuthority> findAllWithOutdatedManifests(boolean includeUpdatedConfiguration, DateTime nextUpdateCutoff, int maxResults);
 
-    int deleteNonHostedPublicKeysWithoutSigningCertificates();
+    int deleteNonHostedPublicKeysWithoutSigningCertificates(int maxResults);
 
     Collection<ManagedCertificateAuthority> getCasWithoutKeyPairsAndRoaConfigurationsAndUserActivityDuringTheLastYear();
 
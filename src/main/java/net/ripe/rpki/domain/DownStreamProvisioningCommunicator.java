@@ -3,12 +3,10 @@ package net.ripe.rpki.domain;
 import net.ripe.rpki.commons.crypto.crl.X509Crl;
 import net.ripe.rpki.commons.crypto.crl.X509CrlBuilder;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
-import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectBuilder;
 import net.ripe.rpki.commons.provisioning.payload.AbstractProvisioningPayload;
 import net.ripe.rpki.commons.provisioning.x509.*;
-import net.ripe.rpki.domain.naming.UuidRepositoryObjectNamingStrategy;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.ncc.core.domain.support.EntitySupport;
-import net.ripe.rpki.util.SerialNumberSupplier;
 import org.apache.commons.lang.Validate;
 
 import jakarta.persistence.*;
@@ -98,33 +96,22 @@ public class DownStreamProvisioningCommunicator extends EntitySupport {
         return crlHelper.getCrl();
     }
 
-    public ProvisioningCmsObject createProvisioningCmsResponseObject(SingleUseKeyPairFactory singleUseKeyPairFactory, AbstractProvisioningPayload responsePayload) {
-        ProvisioningCmsObjectBuilder cmsObjectBuilder = new ProvisioningCmsObjectBuilder();
-
-        cmsObjectBuilder.withPayloadContent(responsePayload);
-        cmsObjectBuilder.withCrl(getProvisioningCrl());
-        cmsObjectBuilder.withSignatureProvider(singleUseKeyPairFactory.signatureProvider());
-
-        KeyPair eeKeyPair = singleUseKeyPairFactory.get();
-        cmsObjectBuilder.withCmsCertificate(createCmsCertificate(eeKeyPair).getCertificate());
-
-        return cmsObjectBuilder.build(eeKeyPair.getPrivate());
+    /**
+     * @return a read-only copy of the identity material that can be used to sign up-down responses outside of the
+     * persistence context.
+     */
+    public DownStreamProvisioningSigningContext createSigningContext() {
+        return new DownStreamProvisioningSigningContext(
+            // Not persisted yet when the communicator is used directly (e.g. while initialising the identity material)
+            id == null ? null : new VersionedId(id, version),
+            getKeyPair(),
+            persistedKeyPair.getSignatureProvider(),
+            getProvisioningIdentityCertificate(),
+            getProvisioningCrl()
+        );
     }
 
-    private ProvisioningCmsCertificate createCmsCertificate(KeyPair eeKeyPair) {
-        ProvisioningCmsCertificateBuilder builder = new ProvisioningCmsCertificateBuilder();
-
-        builder.withIssuerDN(getProvisioningIdentityCertificate().getSubject());
-
-        BigInteger serial = SerialNumberSupplier.getInstance().get();
-
-        builder.withSerial(serial);
-        builder.withPublicKey(eeKeyPair.getPublic());
-
-        builder.withSubjectDN(new UuidRepositoryObjectNamingStrategy().getCertificateSubject(eeKeyPair.getPublic()));
-        builder.withSigningKeyPair(getKeyPair());
-        builder.withSignatureProvider(persistedKeyPair.getSignatureProvider());
-        return builder.build();
+    public ProvisioningCmsObject createProvisioningCmsResponseObject(SingleUseKeyPairFactory singleUseKeyPairFactory, AbstractProvisioningPayload responsePayload) {
+        return createSigningContext().createProvisioningCmsResponseObject(singleUseKeyPairFactory, responsePayload);
     }
-
 }
@@ -0,0 +1,70 @@
+package net.ripe.rpki.domain;
+
+import lombok.Getter;
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectBuilder;
+import net.ripe.rpki.commons.provisioning.payload.AbstractProvisioningPayload;
+import net.ripe.rpki.commons.provisioning.x509.ProvisioningCmsCertificate;
+import net.ripe.rpki.commons.provisioning.x509.ProvisioningCmsCertificateBuilder;
+import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificate;
+import net.ripe.rpki.commons.util.VersionedId;
+import net.ripe.rpki.domain.naming.UuidRepositoryObjectNamingStrategy;
+import net.ripe.rpki.util.SerialNumberSupplier;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509CRL;
+
+/**
+ * Read-only copy of the identity material of a {@link DownStreamProvisioningCommunicator}, used to sign up-down
+ * responses without loading the communicator entity. The version identifies the state of the communicator the
+ * context was created from, so callers can detect when it needs to be refreshed.
+ */
+public class DownStreamProvisioningSigningContext {
+
+    @Getter
+    private final VersionedId communicatorVersion;
+    private final KeyPair identityKeyPair;
+    private final String signatureProvider;
+    @Getter
+    private final ProvisioningIdentityCertificate identityCertificate;
+    private final X509CRL identityCrl;
+
+    public DownStreamProvisioningSigningContext(VersionedId communicatorVersion, KeyPair identityKeyPair, String signatureProvider,
+                                                ProvisioningIdentityCertificate identityCertificate, X509CRL identityCrl) {
+        this.communicatorVersion = communicatorVersion;
+        this.identityKeyPair = identityKeyPair;
+        this.signatureProvider = signatureProvider;
+        this.identityCertificate = identityCertificate;
+        this.identityCrl = identityCrl;
+    }
+
+    public ProvisioningCmsObject createProvisioningCmsResponseObject(SingleUseKeyPairFactory singleUseKeyPairFactory, AbstractProvisioningPayload responsePayload) {
+        ProvisioningCmsObjectBuilder cmsObjectBuilder = new ProvisioningCmsObjectBuilder();
+
+        cmsObjectBuilder.withPayloadContent(responsePayload);
+        cmsObjectBuilder.withCrl(identityCrl);
+        cmsObjectBuilder.withSignatureProvider(singleUseKeyPairFactory.signatureProvider());
+
+        KeyPair eeKeyPair = singleUseKeyPairFactory.get();
+        cmsObjectBuilder.withCmsCertificate(createCmsCertificate(eeKeyPair).getCertificate());
+
+        return cmsObjectBuilder.build(eeKeyPair.getPrivate());
+    }
+
+    private ProvisioningCmsCertificate createCmsCertificate(KeyPair eeKeyPair) {
+        ProvisioningCmsCertificateBuilder builder = new ProvisioningCmsCertificateBuilder();
+
+        builder.withIssuerDN(identityCertificate.getSubject());
+
+        BigInteger serial = SerialNumberSupplier.getInstance().get();
+
+        builder.withSerial(serial);
+        builder.withPublicKey(eeKeyPair.getPublic());
+
+        builder.withSubjectDN(new UuidRepositoryObjectNamingStrategy().getCertificateSubject(eeKeyPair.getPublic()));
+        builder.withSigningKeyPair(identityKeyPair);
+        builder.withSignatureProvider(signatureProvider);
+        return builder.build();
+    }
+}
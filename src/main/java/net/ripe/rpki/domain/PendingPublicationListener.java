@@ -0,0 +1,45 @@
+package net.ripe.rpki.domain;
+
+import net.ripe.rpki.server.api.services.background.BackgroundServiceTrigger;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Requests a run of the publication service when a transaction that created objects to be published or withdrawn
+ * (e.g. ROAs after a ROA configuration change) commits. A transaction requests at most one run, no matter how many
+ * objects it changed.
+ */
+@Component
+public class PendingPublicationListener {
+
+    private final BackgroundServiceTrigger backgroundServiceTrigger;
+
+    public PendingPublicationListener(@Lazy BackgroundServiceTrigger backgroundServiceTrigger) {
+        this.backgroundServiceTrigger = backgroundServiceTrigger;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void onChange(GenericPublishedObject object) {
+        if (!object.isPending()
+            || !TransactionSynchronizationManager.isSynchronizationActive()
+            || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(PendingPublicationListener.this);
+                if (status == STATUS_COMMITTED) {
+                    backgroundServiceTrigger.requestPublication();
+                }
+            }
+        });
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Objects;
 })
 @Entity
 @Table(name = "published_object")
+@EntityListeners(PendingPublicationListener.class)
 public class PublishedObject extends GenericPublishedObject {
 
     @ManyToOne(optional = true)
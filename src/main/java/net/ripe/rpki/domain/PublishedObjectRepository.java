@@ -44,7 +44,11 @@ public interface PublishedObjectRepository extends Repository<PublishedObject> {
      */
     int publishObjects(KeyPairEntity issuingKeyPair);
 
-    int deleteExpiredObjects(DateTime expirationTime);
+    /**
+     * Deletes at most <code>maxResults</code> withdrawn objects that expired before <code>expirationTime</code> and are
+     * no longer referenced.
+     */
+    int deleteExpiredObjects(DateTime expirationTime, int maxResults);
 
     /**
      * Withdraw all <code>TO_BE_WITHDRAWN</code> objects issued by deleted key pairs (changing the status to <code>WITHDRAWN</code>>).
@@ -78,17 +78,33 @@ public interface ResourceCertificateRepository extends Repository<ResourceCertif
         long deletedRoaCount;
         long deletedAspaCount;
         long withdrawnObjectCount;
+
+        public ExpireOutgoingResourceCertificatesResult plus(ExpireOutgoingResourceCertificatesResult other) {
+            return new ExpireOutgoingResourceCertificatesResult(
+                expiredCertificateCount + other.expiredCertificateCount,
+                deletedRoaCount + other.deletedRoaCount,
+                deletedAspaCount + other.deletedAspaCount,
+                withdrawnObjectCount + other.withdrawnObjectCount
+            );
+        }
     }
 
     /**
-     * Expires all outgoing resource certificates that have a <em>not valid after</em> time before <code>now</code>.
+     * Expires at most <code>maxResults</code> outgoing resource certificates that have a <em>not valid after</em> time
+     * before <code>now</code>.
      *
-     * Deletes ROA entities that were issued by a certificate that was expired. Withdraws all published objects for
-     * the expired certificates or deleted ROAs.
+     * Deletes ROA entities that were issued by a certificate that was expired. Withdraws at most
+     * <code>maxResults</code> published objects that have a <em>not valid after</em> time before <code>now</code>,
+     * which includes the published objects for the expired certificates or deleted ROAs. Rows locked by other
+     * transactions are skipped, so call this repeatedly (in separate transactions) until both the expired certificate
+     * and withdrawn object counts are less than <code>maxResults</code>.
      */
-    ExpireOutgoingResourceCertificatesResult expireOutgoingResourceCertificates(DateTime now);
+    ExpireOutgoingResourceCertificatesResult expireOutgoingResourceCertificates(DateTime now, int maxResults);
 
-    int deleteExpiredOutgoingResourceCertificates(DateTime expirationTime);
+    /**
+     * Deletes at most <code>maxResults</code> expired outgoing resource certificates that are no longer referenced.
+     */
+    int deleteExpiredOutgoingResourceCertificates(DateTime expirationTime, int maxResults);
 
     Optional<IncomingResourceCertificate> findIncomingResourceCertificateBySubjectKeyPair(KeyPairEntity subjectKeyPair);
 }
@@ -16,9 +16,12 @@ import org.apache.commons.lang.Validate;
 
 import jakarta.persistence.*;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.stream.Collectors;
 
 import static net.ripe.rpki.util.Streams.streamToSortedMap;
 
@@ -47,6 +50,20 @@ public class AspaEntity extends EntitySupport {
     @Column(name = "profile_version", nullable = false)
     private Long profileVersion;
 
+    /**
+     * The customer ASN, providers, and parent certificate URI are extracted from the CMS object when it is issued, so
+     * that validation against the configuration does not need to parse the CMS object. Entities issued before these
+     * columns existed have <code>null</code> values that are filled in from the CMS object on first access.
+     */
+    @Column(name = "customer_asn")
+    private Asn customerAsn;
+
+    @Column(name = "provider_asns")
+    private String providerAsns;
+
+    @Column(name = "parent_certificate_uri")
+    private URI parentCertificateUri;
+
     @Transient
     private AspaCms cms;
 
@@ -58,6 +75,8 @@ public class AspaEntity extends EntitySupport {
         this.publishedObject = new PublishedObject(
                 eeCertificate.getSigningKeyPair(), filename, aspaCms.getEncoded(), true, directory, aspaCms.getValidityPeriod(), aspaCms.getSigningTime());
         this.profileVersion = profileVersion;
+        this.cms = aspaCms;
+        extractContent(aspaCms);
     }
 
     public static SortedMap<Asn, SortedSet<Asn>> entitiesToMaps(List<AspaEntity> entities) {
@@ -100,10 +119,34 @@ public class AspaEntity extends EntitySupport {
     }
 
     public Asn getCustomerAsn() {
-        return getAspaCms().getCustomerAsn();
+        ensureContentExtracted();
+        return customerAsn;
     }
 
     public SortedSet<Asn> getProviders() {
-        return ImmutableSortedSet.copyOf(getAspaCms().getProviderASSet());
+        ensureContentExtracted();
+        if (providerAsns.isEmpty()) {
+            return ImmutableSortedSet.of();
+        }
+        return Arrays.stream(providerAsns.split(","))
+            .map(Asn::parse)
+            .collect(ImmutableSortedSet.toImmutableSortedSet(Comparator.naturalOrder()));
+    }
+
+    public URI getParentCertificateUri() {
+        ensureContentExtracted();
+        return parentCertificateUri;
+    }
+
+    private void ensureContentExtracted() {
+        if (customerAsn == null || providerAsns == null || parentCertificateUri == null) {
+            extractContent(getAspaCms());
+        }
+    }
+
+    private void extractContent(AspaCms aspaCms) {
+        this.customerAsn = aspaCms.getCustomerAsn();
+        this.providerAsns = aspaCms.getProviderASSet().stream().map(Asn::toString).collect(Collectors.joining(","));
+        this.parentCertificateUri = aspaCms.getParentCertificateUri();
     }
 }
@@ -3,6 +3,8 @@ package net.ripe.rpki.domain.aspa;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SortedMapDifference;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.ImmutableResourceSet;
@@ -33,6 +35,7 @@ import net.ripe.rpki.server.api.services.command.UnparseableRpkiObjectException;
 import org.apache.commons.lang3.tuple.Pair;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.inject.Inject;
@@ -40,7 +43,11 @@ import javax.security.auth.x500.X500Principal;
 import java.net.URI;
 import java.security.KeyPair;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static net.ripe.rpki.util.Streams.toSortedMap;
@@ -56,6 +63,9 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
     private final SingleUseKeyPairFactory singleUseKeyPairFactory;
     private final SingleUseEeCertificateFactory singleUseEeCertificateFactory;
     private final ResourceCertificateInformationAccessStrategy informationAccessStrategy = new ResourceCertificateInformationAccessStrategyBean();
+    private final ForkJoinPool signingPool;
+    private final Timer unchangedTimer;
+    private final Timer updatedTimer;
 
     @Inject
     public AspaEntityServiceBean(
@@ -63,13 +73,25 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
         AspaConfigurationRepository aspaConfigurationRepository,
         AspaEntityRepository aspaEntityRepository,
         SingleUseKeyPairFactory singleUseKeyPairFactory,
-        SingleUseEeCertificateFactory singleUseEeCertificateFactory
+        SingleUseEeCertificateFactory singleUseEeCertificateFactory,
+        MeterRegistry meterRegistry,
+        @Value("${aspa.signing.threads:4}") int signingThreads
     ) {
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.aspaConfigurationRepository = aspaConfigurationRepository;
         this.aspaEntityRepository = aspaEntityRepository;
         this.singleUseKeyPairFactory = singleUseKeyPairFactory;
         this.singleUseEeCertificateFactory = singleUseEeCertificateFactory;
+        this.signingPool = new ForkJoinPool(Math.max(1, signingThreads));
+
+        this.unchangedTimer = Timer.builder("rpkicore.aspa.update.duration")
+            .description("Time to check (and if needed re-issue) the ASPA objects of a certificate authority")
+            .tag("outcome", "unchanged")
+            .register(meterRegistry);
+        this.updatedTimer = Timer.builder("rpkicore.aspa.update.duration")
+            .description("Time to check (and if needed re-issue) the ASPA objects of a certificate authority")
+            .tag("outcome", "updated")
+            .register(meterRegistry);
     }
 
     @Override
@@ -148,18 +170,24 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
 
     @Override
     public void updateAspaIfNeeded(ManagedCertificateAuthority ca) {
+        long start = System.nanoTime();
+
         Pair<Collection<AspaEntity>, SortedMap<Asn, AspaConfiguration>> validated = validateAspaConfiguration(ca);
-        if (!validated.getLeft().isEmpty() || !validated.getRight().isEmpty()) {
-            log.debug("revoking {} and issuing {} ASPA entities", validated.getLeft().size(), validated.getRight().size());
+        if (validated.getLeft().isEmpty() && validated.getRight().isEmpty()) {
+            unchangedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
         }
 
         for (AspaEntity aspaEntity : validated.getLeft()) {
             aspaEntity.revokeAndRemove(aspaEntityRepository);
         }
-        for (AspaConfiguration aspaConfiguration : validated.getRight().values()) {
-            Optional<AspaEntity> aspaEntity = createAspaEntity(ca, aspaConfiguration);
-            aspaEntity.ifPresent(aspaEntityRepository::add);
-        }
+        List<AspaEntity> issued = createAspaEntities(ca, validated.getRight().values());
+        issued.forEach(aspaEntityRepository::add);
+
+        long duration = System.nanoTime() - start;
+        updatedTimer.record(duration, TimeUnit.NANOSECONDS);
+        log.debug("revoked {} and issued {} ASPA entities for CA {} in {}ms",
+            validated.getLeft().size(), issued.size(), ca.getName(), TimeUnit.NANOSECONDS.toMillis(duration));
     }
 
     private static boolean isValidAspaEntity(IncomingResourceCertificate incomingResourceCertificate, AspaEntity aspa) {
@@ -168,7 +196,7 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
             isValidAndCurrent = aspa.getCertificate().isValid()
                     && aspa.getCertificate().getSigningKeyPair().isCurrent()
                     && aspa.getProfileVersion() == CURRENT_ASPA_PROFILE_VERSION
-                    && Objects.equals(incomingResourceCertificate.getPublicationUri(), aspa.getAspaCms().getParentCertificateUri())
+                    && Objects.equals(incomingResourceCertificate.getPublicationUri(), aspa.getParentCertificateUri())
                     && incomingResourceCertificate.getCertifiedResources().contains(aspa.getCustomerAsn());
 
             return isValidAndCurrent;
@@ -179,7 +207,7 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
                 if (!isValidAndCurrent && log.isInfoEnabled()) {
                     log.info("Will re-issue ASPA at {} certificate-valid={} keypair-current={} profile-version={} (current={}) parent-uri={} resources-match={}",
                             aspa.getCertificate().isValid(), aspa.getCertificate().getSigningKeyPair().isCurrent(), aspa.getProfileVersion(), CURRENT_ASPA_PROFILE_VERSION,
-                            Objects.equals(incomingResourceCertificate.getPublicationUri(), aspa.getAspaCms().getParentCertificateUri()), incomingResourceCertificate.getCertifiedResources().contains(aspa.getCustomerAsn())
+                            Objects.equals(incomingResourceCertificate.getPublicationUri(), aspa.getParentCertificateUri()), incomingResourceCertificate.getCertifiedResources().contains(aspa.getCustomerAsn())
                     );
                 }
             } catch (Exception e) {
@@ -196,10 +224,25 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
      */
     @VisibleForTesting
     Optional<AspaEntity> createAspaEntity(ManagedCertificateAuthority certificateAuthority, AspaConfiguration aspaConfiguration) {
+        return createAspaEntities(certificateAuthority, Collections.singletonList(aspaConfiguration)).stream().findFirst();
+    }
+
+    /**
+     * Create the AspaEntities for all configurations that can result in a valid ASPA.
+     *
+     * Generating the single-use key pairs and signing the CMS objects is CPU bound and independent for every ASPA, so
+     * this is done on the bounded signing pool. The EE certificates are signed by the CA key and added to the
+     * repository, so they are issued sequentially on the calling (transaction) thread.
+     */
+    private List<AspaEntity> createAspaEntities(ManagedCertificateAuthority certificateAuthority, Collection<AspaConfiguration> aspaConfigurations) {
         // Filter out configurations that can not result in a valid ASPA entity, and would cause failures when trying
         // to get the CMS payload
-        if (aspaConfiguration.getProviders().isEmpty() || !certificateAuthority.getCertifiedResources().contains(aspaConfiguration.getCustomerAsn())) {
-            return Optional.empty();
+        List<AspaConfiguration> issuable = aspaConfigurations.stream()
+            .filter(aspaConfiguration -> !aspaConfiguration.getProviders().isEmpty()
+                && certificateAuthority.getCertifiedResources().contains(aspaConfiguration.getCustomerAsn()))
+            .toList();
+        if (issuable.isEmpty()) {
+            return Collections.emptyList();
         }
 
         DateTime now = DateTime.now(DateTimeZone.UTC);
@@ -207,15 +250,31 @@ public class AspaEntityServiceBean implements AspaEntityService, CertificateAuth
         KeyPairEntity currentKeyPair = certificateAuthority.getCurrentKeyPair();
         IncomingResourceCertificate incomingResourceCertificate = currentKeyPair.getCurrentIncomingCertificate();
         ValidityPeriod validityPeriod = new ValidityPeriod(now, incomingResourceCertificate.getNotValidAfter());
+        URI publicationDirectory = CertificateInformationAccessUtil.extractPublicationDirectory(
+            incomingResourceCertificate.getSia());
 
-        KeyPair eeKeyPair = singleUseKeyPairFactory.get();
-        OutgoingResourceCertificate endEntityCertificate = createEndEntityCertificate(aspaConfiguration.getCustomerAsn(), validityPeriod, eeKeyPair, currentKeyPair);
+        List<KeyPair> eeKeyPairs = mapOnSigningPool(issuable, aspaConfiguration -> singleUseKeyPairFactory.get());
 
-        AspaCms aspaCms = generateAspaCms(aspaConfiguration, eeKeyPair, endEntityCertificate.getCertificate());
-        URI publicationDirectory = CertificateInformationAccessUtil.extractPublicationDirectory(
-            currentKeyPair.getCurrentIncomingCertificate().getSia());
-        return Optional.of(new AspaEntity(endEntityCertificate, aspaCms,
-            informationAccessStrategy.aspaFilename(endEntityCertificate), publicationDirectory, CURRENT_ASPA_PROFILE_VERSION));
+        List<OutgoingResourceCertificate> endEntityCertificates = IntStream.range(0, issuable.size())
+            .mapToObj(i -> createEndEntityCertificate(issuable.get(i).getCustomerAsn(), validityPeriod, eeKeyPairs.get(i), currentKeyPair))
+            .toList();
+
+        List<AspaCms> aspaCmss = mapOnSigningPool(
+            IntStream.range(0, issuable.size()).boxed().toList(),
+            i -> generateAspaCms(issuable.get(i), eeKeyPairs.get(i), endEntityCertificates.get(i).getCertificate())
+        );
+
+        return IntStream.range(0, issuable.size())
+            .mapToObj(i -> new AspaEntity(endEntityCertificates.get(i), aspaCmss.get(i),
+                informationAccessStrategy.aspaFilename(endEntityCertificates.get(i)), publicationDirectory, CURRENT_ASPA_PROFILE_VERSION))
+            .toList();
+    }
+
+    private <T, R> List<R> mapOnSigningPool(List<T> items, Function<T, R> mapper) {
+        if (items.size() < 2) {
+            return items.stream().map(mapper).toList();
+        }
+        return signingPool.submit(() -> items.parallelStream().map(mapper).toList()).join();
     }
 
     private OutgoingResourceCertificate createEndEntityCertificate(
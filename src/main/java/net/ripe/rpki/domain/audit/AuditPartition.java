@@ -0,0 +1,20 @@
+package net.ripe.rpki.domain.audit;
+
+import lombok.NonNull;
+
+import javax.annotation.CheckForNull;
+import java.time.Instant;
+
+/**
+ * A range partition of an audit table on execution time.
+ *
+ * @param name  name of the partition table
+ * @param from  inclusive lower bound, <code>null</code> when the partition is unbounded below
+ * @param until exclusive upper bound
+ */
+public record AuditPartition(@NonNull String name, @CheckForNull Instant from, @NonNull Instant until) {
+
+    public boolean overlaps(Instant start, Instant end) {
+        return (from == null || from.isBefore(end)) && start.isBefore(until);
+    }
+}
@@ -0,0 +1,30 @@
+package net.ripe.rpki.domain.audit;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Maintains the monthly range partitions of the audit tables (<code>commandaudit</code> and
+ * <code>provisioning_audit_log</code>). Entries outside the monthly partitions are stored in the default partition of
+ * the table, which is not included in the partitions returned by {@link #findPartitions}.
+ */
+public interface AuditPartitionRepository {
+
+    String COMMAND_AUDIT_TABLE = "commandaudit";
+    String PROVISIONING_AUDIT_LOG_TABLE = "provisioning_audit_log";
+
+    List<AuditPartition> findPartitions(String table);
+
+    /**
+     * Create the partition of the table for the month (in UTC). Entries for the month in the default partition are
+     * moved to the new partition.
+     */
+    AuditPartition createMonthlyPartition(String table, YearMonth month);
+
+    /**
+     * Detach the partition from the table. The detached table is kept so it can be archived before it is dropped.
+     */
+    void detachPartition(String table, AuditPartition partition);
+
+    void dropPartition(String table, AuditPartition partition);
+}
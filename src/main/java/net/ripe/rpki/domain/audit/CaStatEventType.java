@@ -0,0 +1,10 @@
+package net.ripe.rpki.domain.audit;
+
+/**
+ * Type of the events stored in the <code>ca_stat_event</code> table, reported by the CA statistics API.
+ */
+public enum CaStatEventType {
+    CA_CREATED,
+    CA_DELETED,
+    ROAS_UPDATED
+}
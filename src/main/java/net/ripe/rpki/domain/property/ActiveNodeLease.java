@@ -0,0 +1,15 @@
+package net.ripe.rpki.domain.property;
+
+import lombok.NonNull;
+
+import java.time.Instant;
+
+/**
+ * Lease on being the active node.
+ *
+ * @param owner         name of the node holding the lease
+ * @param expiresAt     time the lease expires (according to the database clock) unless it is renewed
+ * @param fencingToken  incremented on every change of owner
+ */
+public record ActiveNodeLease(@NonNull String owner, @NonNull Instant expiresAt, long fencingToken) {
+}
@@ -0,0 +1,49 @@
+package net.ripe.rpki.domain.property;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Stores the single active node lease. All expiry times are based on the database clock, so the clocks of the nodes
+ * do not need to be synchronized.
+ */
+public interface ActiveNodeLeaseRepository {
+
+    Optional<ActiveNodeLease> find();
+
+    /**
+     * Extends the lease when it is still held by <code>owner</code> with the same fencing token.
+     */
+    Optional<ActiveNodeLease> renew(String owner, long fencingToken, Duration duration);
+
+    /**
+     * Acquires the lease for <code>owner</code> when there is no lease or the current lease has expired. Waits until
+     * the transactions that locked the expired fencing token with {@link #lockFencingToken(long)} have completed.
+     */
+    Optional<ActiveNodeLease> acquireExpired(String owner, Duration duration);
+
+    /**
+     * Unconditionally assigns the lease to <code>owner</code>, as selected by an administrator. Waits until the
+     * transactions that locked the previous fencing token with {@link #lockFencingToken(long)} have completed.
+     */
+    ActiveNodeLease assign(String owner, Duration duration);
+
+    /**
+     * Lets the lease expire immediately, when it is still held by <code>owner</code> with the same fencing token.
+     */
+    void release(String owner, long fencingToken);
+
+    /**
+     * Takes a shared lock on the fencing token until the end of the current transaction. Taking over or assigning the
+     * lease waits for this lock, so the lease does not change owner while a transaction fenced with the token of the
+     * previous owner is still running.
+     */
+    void lockFencingToken(long fencingToken);
+
+    /**
+     * Checks that the lease is held by <code>owner</code> with the same fencing token and has not expired according
+     * to the current database clock. The lease is not locked, so the heartbeat of the owner can keep renewing it while
+     * long transactions are running.
+     */
+    boolean isHeld(String owner, long fencingToken);
+}
@@ -0,0 +1,21 @@
+package net.ripe.rpki.domain.property;
+
+import java.util.List;
+
+/**
+ * Delivers requests to run a background service from any node to the active node, which runs the background services.
+ */
+public interface BackgroundServiceRunRequestRepository {
+
+    /**
+     * Requests a run of <code>serviceName</code>. Requests for the same service are coalesced until they are taken.
+     */
+    void request(String serviceName);
+
+    /**
+     * Removes the pending requests.
+     *
+     * @return the names of the services with a pending request
+     */
+    List<String> takeRequested();
+}
@@ -0,0 +1,26 @@
+package net.ripe.rpki.domain.property;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Stores the nodes that take part in sharded background work. Like the {@link ActiveNodeLeaseRepository} all times are
+ * based on the database clock.
+ */
+public interface NodeMembershipRepository {
+
+    /**
+     * Registers <code>nodeName</code> as live, or refreshes its heartbeat.
+     */
+    void heartbeat(String nodeName);
+
+    /**
+     * @return the names of the nodes with a heartbeat within <code>timeout</code>, ordered by name
+     */
+    List<String> findLiveNodes(Duration timeout);
+
+    /**
+     * Removes <code>nodeName</code>, so that the other nodes take over its shard without waiting for the timeout.
+     */
+    void remove(String nodeName);
+}
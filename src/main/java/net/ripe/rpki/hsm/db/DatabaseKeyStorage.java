@@ -1,5 +1,11 @@
 package net.ripe.rpki.hsm.db;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import net.ripe.rpki.domain.hsm.HsmCertificateChain;
 import net.ripe.rpki.domain.hsm.HsmKey;
 import net.ripe.rpki.domain.hsm.HsmKeyStore;
@@ -9,22 +15,66 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static net.ripe.rpki.commons.crypto.x509cert.X509CertificateUtil.parseX509Certificate;
 
+/**
+ * Stores the HSM key blobs and certificate chains in the database.
+ * <p>
+ * Key blobs and parsed certificate chains are cached by key store name and alias, since the same key is loaded for
+ * every signing operation. Entries are invalidated when a key is stored or deleted, both immediately and after the
+ * modifying transaction completes. Transactions that modified the key store bypass the cache, so uncommitted keys
+ * are never visible to other transactions.
+ */
 @Component
 @Transactional(propagation = Propagation.MANDATORY)
 public class DatabaseKeyStorage implements KeyStorage {
 
+    static final int KEY_CACHE_MAXIMUM_SIZE = 10_000;
+
     private final HsmKeyStoreRepository hsmKeyStoreRepository;
 
+    private final Cache<KeyStoreAlias, CachedKey> keyCache = CacheBuilder.newBuilder()
+        .maximumSize(KEY_CACHE_MAXIMUM_SIZE)
+        .expireAfterAccess(10, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+
+    /**
+     * Incremented on every invalidation, used to avoid caching keys that were loaded concurrently with a modification.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Transaction resource key marking that the current transaction modified the key store.
+     */
+    private final Object pendingModificationsKey = new Object();
+
     @Autowired
-    public DatabaseKeyStorage(HsmKeyStoreRepository hsmKeyStoreRepository) {
+    public DatabaseKeyStorage(HsmKeyStoreRepository hsmKeyStoreRepository, MeterRegistry meterRegistry) {
         this.hsmKeyStoreRepository = hsmKeyStoreRepository;
+        // Registered here rather than through the (transactional) proxy, which does not hold the cache.
+        GuavaCacheMetrics.monitor(meterRegistry, keyCache, "hsm.database.key.cache");
+    }
+
+    @VisibleForTesting
+    Cache<?, ?> getKeyCache() {
+        return keyCache;
+    }
+
+    @VisibleForTesting
+    void invalidateKeyCache() {
+        invalidations.incrementAndGet();
+        keyCache.invalidateAll();
     }
 
     @Override
@@ -34,6 +84,7 @@ public class DatabaseKeyStorage implements KeyStorage {
 
     @Override
     public void storeEncryptedKeyAndCerts(final String keyStoreName, final String alias, final byte[] keyBlob, final Certificate[] chain) {
+        invalidate(keyStoreName, alias);
         try {
             final List<HsmCertificateChain> certificateChain = makeCertificateChain(chain);
             final HsmKey hsmKey = new HsmKey(keyBlob, alias, certificateChain);
@@ -58,29 +109,21 @@ public class DatabaseKeyStorage implements KeyStorage {
 
     @Override
     public byte[] getEncryptedKey(final String keyStoreName, final String alias) {
-        return getHsmKey(keyStoreName, alias).getKeyBlob();
+        return getCachedKey(keyStoreName, alias).keyBlob().clone();
     }
 
     @Override
     public Certificate getCertificate(final String keyStoreName, final String alias) {
-        final HsmKey hsmKey = getHsmKey(keyStoreName, alias);
-        final List<HsmCertificateChain> chain = hsmKey.getCertificateChain();
-        if (chain.isEmpty()) {
+        final Certificate[] chain = getCachedKey(keyStoreName, alias).certificateChain();
+        if (chain.length == 0) {
             throw new DatabaseKeyStorageException(String.format("empty certificate chain for '%s' key '%s'", keyStoreName, alias));
         }
-        return parseX509Certificate(chain.get(0).getContent());
+        return chain[0];
     }
 
     @Override
     public Certificate[] getCertificateChain(final String keyStoreName, final String alias) {
-        final HsmKey hsmKey = getHsmKey(keyStoreName, alias);
-        final List<HsmCertificateChain> certificateChain = hsmKey.getCertificateChain();
-        final Certificate[] certificates = new Certificate[certificateChain.size()];
-        int c = 0;
-        for (final HsmCertificateChain cci : certificateChain) {
-            certificates[c++] = parseX509Certificate(cci.getContent());
-        }
-        return certificates;
+        return getCachedKey(keyStoreName, alias).certificateChain().clone();
     }
 
     @Override
@@ -90,6 +133,7 @@ public class DatabaseKeyStorage implements KeyStorage {
 
     @Override
     public void deleteEntry(final String keyStoreName, final String alias) {
+        invalidate(keyStoreName, alias);
         hsmKeyStoreRepository.deleteHsmKey(keyStoreName, alias);
     }
 
@@ -125,6 +169,65 @@ public class DatabaseKeyStorage implements KeyStorage {
         return hsmKeyStoreRepository.listKeyStores();
     }
 
+    private CachedKey getCachedKey(String keyStoreName, String alias) {
+        if (TransactionSynchronizationManager.hasResource(pendingModificationsKey)) {
+            return loadKey(keyStoreName, alias);
+        }
+
+        final KeyStoreAlias key = new KeyStoreAlias(keyStoreName, alias);
+        final long invalidationsBeforeLoad = invalidations.get();
+        try {
+            final CachedKey result = keyCache.get(key, () -> loadKey(keyStoreName, alias));
+            if (invalidations.get() != invalidationsBeforeLoad) {
+                // The key store was modified while loading, so the loaded key may already be outdated.
+                keyCache.invalidate(key);
+            }
+            return result;
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new DatabaseKeyStorageException(e.getCause());
+        } catch (ExecutionException e) {
+            throw new DatabaseKeyStorageException(e.getCause());
+        }
+    }
+
+    private CachedKey loadKey(String keyStoreName, String alias) {
+        final HsmKey hsmKey = getHsmKey(keyStoreName, alias);
+        final List<HsmCertificateChain> certificateChain = hsmKey.getCertificateChain();
+        final Certificate[] certificates = new Certificate[certificateChain.size()];
+        int c = 0;
+        for (final HsmCertificateChain cci : certificateChain) {
+            certificates[c++] = parseX509Certificate(cci.getContent());
+        }
+        return new CachedKey(hsmKey.getKeyBlob(), certificates);
+    }
+
+    private void invalidate(String keyStoreName, String alias) {
+        final KeyStoreAlias key = new KeyStoreAlias(keyStoreName, alias);
+        invalidations.incrementAndGet();
+        keyCache.invalidate(key);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (!TransactionSynchronizationManager.hasResource(pendingModificationsKey)) {
+                TransactionSynchronizationManager.bindResource(pendingModificationsKey, new HashSet<KeyStoreAlias>());
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void afterCompletion(int status) {
+                        Set<KeyStoreAlias> modified = (Set<KeyStoreAlias>) TransactionSynchronizationManager.unbindResource(pendingModificationsKey);
+                        invalidations.incrementAndGet();
+                        keyCache.invalidateAll(modified);
+                    }
+                });
+            }
+            @SuppressWarnings("unchecked")
+            Set<KeyStoreAlias> modified = (Set<KeyStoreAlias>) TransactionSynchronizationManager.getResource(pendingModificationsKey);
+            modified.add(key);
+        }
+    }
+
     private HsmKey getHsmKey(String keyStoreName, String alias) {
         return hsmKeyStoreRepository.findKeyByKeyStoreAndAlias(keyStoreName, alias)
             .orElseThrow(() -> new DatabaseKeyStorageException(String.format("key store '%s' with key '%s' not found", keyStoreName, alias)));
@@ -140,4 +243,9 @@ public class DatabaseKeyStorage implements KeyStorage {
         return certificateChain;
     }
 
+    private record KeyStoreAlias(String keyStoreName, String alias) {
+    }
+
+    private record CachedKey(byte[] keyBlob, Certificate[] certificateChain) {
+    }
 }
@@ -0,0 +1,16 @@
+package net.ripe.rpki.rest.pojo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HistoryPage {
+    private final List<HistoryItem> items;
+    /**
+     * Cursor for the next (older) page, absent on the last page.
+     */
+    private final String olderThan;
+}
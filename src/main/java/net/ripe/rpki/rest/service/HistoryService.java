@@ -4,6 +4,8 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.rest.pojo.HistoryItem;
+import net.ripe.rpki.rest.pojo.HistoryPage;
+import net.ripe.rpki.server.api.dto.CaHistoryPage;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityHistoryItem;
 import net.ripe.rpki.server.api.ports.InternalNamePresenter;
@@ -15,9 +17,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Map;
 
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
 import static net.ripe.rpki.rest.service.AbstractCaRestService.API_URL_PREFIX;
@@ -43,17 +47,30 @@ public class HistoryService extends AbstractCaRestService {
     public ResponseEntity<List<HistoryItem>> getHistoryForCa(@PathVariable("caName") final CaName caName) {
         log.info("Getting history for CA: {}", caName);
 
-        final List<HistoryItem> items = caHistoryService.getHistoryItems(getCa(CertificateAuthorityData.class, caName)).stream()
-                .map(caHistoryItem -> {
-                    final String humanizedUserPrincipal = getHumanizedUserPrincipal(caHistoryItem);
-                    return new HistoryItem(humanizedUserPrincipal, caHistoryItem);
-                }).toList();
+        return ok(toHistoryItems(caHistoryService.getHistoryItems(getCa(CertificateAuthorityData.class, caName))));
+    }
+
+    @GetMapping("/page")
+    @Operation(summary = "Get a page of the history of a CA, newest first. Pass the returned `olderThan` cursor to get the next page")
+    public ResponseEntity<?> getHistoryPageForCa(@PathVariable("caName") final CaName caName,
+                                                 @RequestParam(value = "olderThan", required = false) final String olderThan,
+                                                 @RequestParam(value = "pageSize", defaultValue = "100") final int pageSize) {
+        log.info("Getting history page for CA: {}", caName);
 
-        return ok(items);
+        final CaHistoryPage page;
+        try {
+            page = caHistoryService.getHistoryPage(getCa(CertificateAuthorityData.class, caName), olderThan, pageSize);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        return ok(new HistoryPage(toHistoryItems(page.getItems()), page.getOlderThan()));
     }
 
-    private String getHumanizedUserPrincipal(CertificateAuthorityHistoryItem historyItem) {
-        String humanizedUserPrincipal = statsCollectorNames.humanizeUserPrincipal(historyItem.getPrincipal());
-        return humanizedUserPrincipal != null ? humanizedUserPrincipal : historyItem.getPrincipal();
+    private List<HistoryItem> toHistoryItems(List<CertificateAuthorityHistoryItem> historyItems) {
+        final Map<String, String> humanizedUserPrincipals = statsCollectorNames.humanizeUserPrincipals(
+                historyItems.stream().map(CertificateAuthorityHistoryItem::getPrincipal).toList());
+        return historyItems.stream()
+                .map(caHistoryItem -> new HistoryItem(humanizedUserPrincipals.getOrDefault(caHistoryItem.getPrincipal(), caHistoryItem.getPrincipal()), caHistoryItem))
+                .toList();
     }
 }
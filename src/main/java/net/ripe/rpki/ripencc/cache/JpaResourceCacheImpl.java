@@ -88,6 +88,20 @@ public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
         return Optional.of(ImmutableResourceSet.parse(resources));
     }
 
+    @Override
+    public Optional<String> lookupResourcesVersion(CaName member) {
+        var row = (Object[]) entityManager
+            .createNativeQuery("SELECT EXISTS(SELECT 1 FROM resource_cache WHERE name = :productionCaName), (SELECT md5(resources) FROM resource_cache WHERE name = :member)")
+            .setParameter("productionCaName", productionCaName.toString())
+            .setParameter("member", member.toString())
+            .getSingleResult();
+        var available = (boolean) row[0];
+        if (!available) {
+            return Optional.empty();
+        }
+        return Optional.of(Objects.requireNonNullElse((String) row[1], ""));
+    }
+
     @Override
     public Map<CaName, ImmutableResourceSet> allMemberResources() {
         return entityManager.createQuery(
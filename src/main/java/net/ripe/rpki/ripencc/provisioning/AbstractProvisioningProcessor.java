@@ -16,7 +16,7 @@ import java.util.Collections;
 
 abstract class AbstractProvisioningProcessor {
 
-    private final ResourceLookupService resourceLookupService;
+    protected final ResourceLookupService resourceLookupService;
 
     protected AbstractProvisioningProcessor(ResourceLookupService resourceLookupService) {
         this.resourceLookupService = resourceLookupService;
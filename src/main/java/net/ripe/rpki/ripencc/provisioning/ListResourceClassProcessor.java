@@ -1,5 +1,10 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.commons.provisioning.payload.common.CertificateElement;
@@ -8,7 +13,9 @@ import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassLis
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponsePayload;
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponsePayloadBuilder;
 import net.ripe.rpki.domain.CertificateAuthority;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.server.api.dto.NonHostedCertificateAuthorityData;
+import net.ripe.rpki.server.api.dto.NonHostedPublicKeyData;
 import net.ripe.rpki.server.api.dto.ResourceCertificateData;
 import net.ripe.rpki.server.api.ports.ResourceInformationNotAvailableException;
 import net.ripe.rpki.server.api.ports.ResourceLookupService;
@@ -17,57 +24,148 @@ import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.springframework.stereotype.Component;
 
+import java.math.BigInteger;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.UUID;
 
 import static net.ripe.rpki.domain.Resources.DEFAULT_RESOURCE_CLASS;
 
+/**
+ * Answers resource class list queries. Most list queries are periodic polls for which nothing changed, so the class
+ * element is cached per non-hosted CA. The cache key only needs cheap lookups: the CA version (which covers public key
+ * and certificate changes) and public keys, the serial number of the parent's current incoming certificate, the version
+ * of the certifiable resources in the resource cache, and the validity not after. The parent certificate and the
+ * resources are only loaded and parsed when the key changed. The outer CMS object is still generated and signed for
+ * every response.
+ */
 @Component
 class ListResourceClassProcessor extends AbstractProvisioningProcessor {
 
+    private static final int MAX_CACHED_RESPONSES = 100_000;
+
     private final ResourceCertificateViewService resourceCertificateViewService;
+    private final Cache<UUID, CachedClassElement> classElementCache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_RESPONSES)
+        .expireAfterAccess(Duration.ofHours(1))
+        .build();
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
 
-    ListResourceClassProcessor(ResourceLookupService resourceLookupService, ResourceCertificateViewService resourceCertificateViewService) {
+    ListResourceClassProcessor(ResourceLookupService resourceLookupService, ResourceCertificateViewService resourceCertificateViewService, MeterRegistry meterRegistry) {
         super(resourceLookupService);
         this.resourceCertificateViewService = resourceCertificateViewService;
+        this.cacheHits = Counter.builder("rpkicore.provisioning.list.response.cache")
+            .description("Number of resource class list responses served from the cached class element")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.cacheMisses = Counter.builder("rpkicore.provisioning.list.response.cache")
+            .description("Number of resource class list responses for which the class element was (re-)built")
+            .tag("result", "miss")
+            .register(meterRegistry);
     }
 
     public ResourceClassListResponsePayload process(NonHostedCertificateAuthorityData nonHostedCertificateAuthority)
         throws ResourceInformationNotAvailableException
     {
+        final UUID uuid = nonHostedCertificateAuthority.getUuid();
+        final DateTime validityNotAfter = CertificateAuthority.calculateValidityNotAfter(new DateTime(DateTimeZone.UTC));
+
+        // The key is determined before the class element is built, so a concurrent change can at worst cause a
+        // newer class element to be cached under an older key, which is then rebuilt on the next request.
+        Optional<CacheKey> key = cacheKey(nonHostedCertificateAuthority, validityNotAfter);
+        CachedClassElement cached = key.isPresent() ? classElementCache.getIfPresent(uuid) : null;
+        if (cached != null && cached.key().equals(key.get())) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+            cached = new CachedClassElement(key.orElse(null), buildClassElement(nonHostedCertificateAuthority, validityNotAfter));
+            if (key.isPresent()) {
+                classElementCache.put(uuid, cached);
+            } else {
+                classElementCache.invalidate(uuid);
+            }
+        }
+
+        // The class element is not modified after it is built, so it is safe to share between responses. The
+        // payload itself is always new, since the sender and recipient are set on it.
         final ResourceClassListResponsePayloadBuilder responsePayloadBuilder = new ResourceClassListResponsePayloadBuilder();
+        cached.classElement().ifPresent(responsePayloadBuilder::addClassElement);
+        return responsePayloadBuilder.build();
+    }
+
+    @VisibleForTesting
+    void invalidateCache() {
+        classElementCache.invalidateAll();
+    }
+
+    /**
+     * @return the cache key, or empty when the parent certificate or resources are not available, in which case the
+     * response is not cached.
+     */
+    private Optional<CacheKey> cacheKey(NonHostedCertificateAuthorityData nonHostedCertificateAuthority, DateTime validityNotAfter) {
+        Optional<BigInteger> parentCertificateSerial = resourceCertificateViewService
+            .findCurrentIncomingResourceCertificateSerial(nonHostedCertificateAuthority.getParentId());
+        if (parentCertificateSerial.isEmpty()) {
+            return Optional.empty();
+        }
+        return resourceLookupService.lookupMemberCaPotentialResourcesVersion(nonHostedCertificateAuthority.getName())
+            .map(resourcesVersion -> new CacheKey(
+                nonHostedCertificateAuthority.getVersionedId(),
+                parentCertificateSerial.get(),
+                resourcesVersion,
+                validityNotAfter,
+                nonHostedCertificateAuthority.getPublicKeys()
+            ));
+    }
 
+    private Optional<ResourceClassListResponseClassElement> buildClassElement(NonHostedCertificateAuthorityData nonHostedCertificateAuthority, DateTime validityNotAfter)
+        throws ResourceInformationNotAvailableException
+    {
         Optional<ResourceCertificateData> maybeIncomingResourceCertificate = resourceCertificateViewService
             .findCurrentIncomingResourceCertificate(nonHostedCertificateAuthority.getParentId());
-        if (maybeIncomingResourceCertificate.isPresent()) {
-            ResourceCertificateData currentIncomingResourceCertificate = maybeIncomingResourceCertificate.get();
-            ImmutableResourceSet resources = getCertifiableResources(nonHostedCertificateAuthority, currentIncomingResourceCertificate);
-            if (resources.isEmpty()) {
-                return responsePayloadBuilder.build();
-            }
-            final ResourceClassListResponseClassElement classElement = new GenericClassElementBuilder()
-                .withClassName(DEFAULT_RESOURCE_CLASS)
-                .withIpResourceSet(new IpResourceSet(resources))
-                .withCertificateAuthorityUri(Collections.singletonList(currentIncomingResourceCertificate.getPublicationUri()))
-                .withIssuer(currentIncomingResourceCertificate.getCertificate())
-                .withValidityNotAfter(CertificateAuthority.calculateValidityNotAfter(new DateTime(DateTimeZone.UTC)))
-                .buildResourceClassListResponseClassElement();
-
-            final List<CertificateElement> certificateElements = nonHostedCertificateAuthority.getPublicKeys().stream()
-                    .filter(publicKeyData -> publicKeyData.getCurrentCertificate() != null)
-                    .map(publicKeyData -> createClassElement(
-                            publicKeyData.getCurrentCertificate().getCertificate(),
-                            publicKeyData.getRequestedResourceSets(),
-                            publicKeyData.getCurrentCertificate().getPublicationUri()
-                    )).toList();
-
-            classElement.setCertificateElements(certificateElements);
-            responsePayloadBuilder.addClassElement(classElement);
+        if (maybeIncomingResourceCertificate.isEmpty()) {
+            return Optional.empty();
         }
 
-        return responsePayloadBuilder.build();
+        ResourceCertificateData currentIncomingResourceCertificate = maybeIncomingResourceCertificate.get();
+        ImmutableResourceSet resources = getCertifiableResources(nonHostedCertificateAuthority, currentIncomingResourceCertificate);
+        if (resources.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final ResourceClassListResponseClassElement classElement = new GenericClassElementBuilder()
+            .withClassName(DEFAULT_RESOURCE_CLASS)
+            .withIpResourceSet(new IpResourceSet(resources))
+            .withCertificateAuthorityUri(Collections.singletonList(currentIncomingResourceCertificate.getPublicationUri()))
+            .withIssuer(currentIncomingResourceCertificate.getCertificate())
+            .withValidityNotAfter(validityNotAfter)
+            .buildResourceClassListResponseClassElement();
+
+        final List<CertificateElement> certificateElements = nonHostedCertificateAuthority.getPublicKeys().stream()
+                .filter(publicKeyData -> publicKeyData.getCurrentCertificate() != null)
+                .map(publicKeyData -> createClassElement(
+                        publicKeyData.getCurrentCertificate().getCertificate(),
+                        publicKeyData.getRequestedResourceSets(),
+                        publicKeyData.getCurrentCertificate().getPublicationUri()
+                )).toList();
+
+        classElement.setCertificateElements(certificateElements);
+        return Optional.of(classElement);
     }
 
+    private record CacheKey(
+        VersionedId caVersion,
+        BigInteger parentCertificateSerial,
+        String certifiableResourcesVersion,
+        DateTime validityNotAfter,
+        Set<NonHostedPublicKeyData> publicKeys
+    ) {
+    }
+
+    private record CachedClassElement(CacheKey key, Optional<ResourceClassListResponseClassElement> classElement) {
+    }
 }
@@ -0,0 +1,154 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for up-down requests, applied before any database work is done for a request.
+ *
+ * <ul>
+ *     <li>Only one request per sender is processed at a time. RFC6492 requires concurrent requests with a common
+ *     sender to be rejected with error 1101 (already processing request), so a second request is not admitted.</li>
+ *     <li>The number of requests processed concurrently is limited. Waiting requests are admitted in arrival order.
+ *     When too many requests are waiting, or a request waited too long, a 503 response with a Retry-After header is
+ *     returned.</li>
+ * </ul>
+ *
+ * This prevents a child CA that retries in a tight loop from exhausting the database connection pool.
+ */
+@Slf4j
+@Component
+class ProvisioningAdmissionControl {
+
+    private final Set<UUID> sendersInFlight = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int maxWaiting;
+    private final long maxWaitNanos;
+    private final Duration retryAfter;
+
+    private final Timer queueWaitTimer;
+    private final Counter alreadyProcessingCounter;
+    private final Counter overloadedCounter;
+
+    @Autowired
+    ProvisioningAdmissionControl(
+        MeterRegistry meterRegistry,
+        @Value("${provisioning.admission.max.concurrent:20}") int maxConcurrent,
+        @Value("${provisioning.admission.max.waiting:200}") int maxWaiting,
+        @Value("${provisioning.admission.max.wait:PT5S}") Duration maxWait,
+        @Value("${provisioning.admission.retry.after:PT30S}") Duration retryAfter
+    ) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxWaiting = maxWaiting;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retryAfter = retryAfter;
+
+        Gauge.builder("rpkicore.rfc6492.admission.in.flight", sendersInFlight, Set::size)
+            .description("Number of up-down requests that are admitted or waiting for admission")
+            .register(meterRegistry);
+        Gauge.builder("rpkicore.rfc6492.admission.waiting", waiting, AtomicInteger::get)
+            .description("Number of up-down requests waiting for admission")
+            .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("rpkicore.rfc6492.admission.queue.wait")
+            .description("Time up-down requests waited for admission")
+            .register(meterRegistry);
+        this.alreadyProcessingCounter = Counter.builder("rpkicore.rfc6492.admission.rejected")
+            .description("Number of up-down requests that were not admitted")
+            .tag("reason", "already_processing")
+            .register(meterRegistry);
+        this.overloadedCounter = Counter.builder("rpkicore.rfc6492.admission.rejected")
+            .description("Number of up-down requests that were not admitted")
+            .tag("reason", "overloaded")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Admit a request from the sender. The returned admission must be closed when processing the request finished.
+     *
+     * @return an admission that is not {@link Admission#isAdmitted() admitted} when a request from the same sender
+     * is already being processed.
+     * @throws ProvisioningException.ServiceUnavailable when the request could not be admitted in time.
+     */
+    Admission admit(UUID sender) {
+        if (!sendersInFlight.add(sender)) {
+            alreadyProcessingCounter.increment();
+            log.info("Rejecting concurrent up-down request for memberUuid: {}", sender);
+            return new Admission(sender, false);
+        }
+
+        boolean acquired = false;
+        try {
+            acquired = acquirePermit();
+        } finally {
+            if (!acquired) {
+                sendersInFlight.remove(sender);
+            }
+        }
+        if (!acquired) {
+            overloadedCounter.increment();
+            log.warn("Rejecting up-down request for memberUuid: {}, too many requests in progress", sender);
+            throw new ProvisioningException.ServiceUnavailable(retryAfter);
+        }
+        return new Admission(sender, true);
+    }
+
+    private boolean acquirePermit() {
+        if (permits.tryAcquire()) {
+            queueWaitTimer.record(0, TimeUnit.NANOSECONDS);
+            return true;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+            queueWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    class Admission implements AutoCloseable {
+        private final UUID sender;
+        private final boolean admitted;
+        private boolean closed;
+
+        private Admission(UUID sender, boolean admitted) {
+            this.sender = sender;
+            this.admitted = admitted;
+        }
+
+        boolean isAdmitted() {
+            return admitted;
+        }
+
+        @Override
+        public void close() {
+            if (admitted && !closed) {
+                closed = true;
+                permits.release();
+                sendersInFlight.remove(sender);
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@ import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,8 +24,10 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import java.util.Base64;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
@@ -40,33 +44,65 @@ class ProvisioningAuditLogServiceBean implements ProvisioningAuditLogService {
     @PersistenceContext
     protected EntityManager entityManager;
 
-    public ProvisioningAuditLogServiceBean() {
-        this(null);
+    private final ProvisioningAuditLogWriter asyncWriter;
+
+    /**
+     * Message types that are written by the asynchronous writer. Entries for all other message types (such as
+     * certificate issuance and revocation) are written synchronously, as part of the request.
+     */
+    private final Set<PayloadMessageType> asyncMessageTypes;
+
+    @Autowired
+    public ProvisioningAuditLogServiceBean(
+        ProvisioningAuditLogWriter asyncWriter,
+        @Value("${provisioning.audit.log.async.message.types:error_response}") Set<PayloadMessageType> asyncMessageTypes
+    ) {
+        this(null, asyncWriter, asyncMessageTypes);
     }
 
-    public ProvisioningAuditLogServiceBean(EntityManager entityManager) {
+    ProvisioningAuditLogServiceBean(EntityManager entityManager, ProvisioningAuditLogWriter asyncWriter, Set<PayloadMessageType> asyncMessageTypes) {
         this.entityManager = entityManager;
+        this.asyncWriter = asyncWriter;
+        this.asyncMessageTypes = asyncMessageTypes.isEmpty() ? EnumSet.noneOf(PayloadMessageType.class) : EnumSet.copyOf(asyncMessageTypes);
     }
 
-    @SuppressWarnings("java:S3457")
-    @SneakyThrows
     @Override
     public void log(ProvisioningAuditLogEntity entry, byte[] request) {
-        // We use structured/json logging: The LogEntry will be added to the json.
-        // There is no need to also template it into the log line (this would bloat the log). SonarQube warning is ignored.
-        provisioningLog.info("Up-down message", kv("entry", LogEntry.make(entry, request)));
         final PayloadMessageType requestMessageType = entry.getRequestMessageType();
-        if (requestMessageType != PayloadMessageType.list &&
-            requestMessageType != PayloadMessageType.list_response) {
+        if (asyncMessageTypes.contains(requestMessageType) && asyncWriter.offer(entry, request)) {
+            return;
+        }
+
+        logMessage(entry, request);
+        if (isPersisted(requestMessageType)) {
             entityManager.persist(entry);
         }
     }
 
+    /**
+     * List queries and responses are only written to the provisioning log, they are too frequent to be useful in
+     * the database.
+     */
+    static boolean isPersisted(PayloadMessageType requestMessageType) {
+        return requestMessageType != PayloadMessageType.list &&
+            requestMessageType != PayloadMessageType.list_response;
+    }
+
+    @SuppressWarnings("java:S3457")
+    @SneakyThrows
+    static void logMessage(ProvisioningAuditLogEntity entry, byte[] request) {
+        // We use structured/json logging: The LogEntry will be added to the json.
+        // There is no need to also template it into the log line (this would bloat the log). SonarQube warning is ignored.
+        provisioningLog.info("Up-down message", kv("entry", LogEntry.make(entry, request)));
+    }
+
     @Override
     public List<ProvisioningAuditData> findRecentMessagesForCA(UUID caUUID) {
         final TypedQuery<ProvisioningAuditLogEntity> query = entityManager.createQuery(
+            // Ordering by execution time lets PostgreSQL scan the (monthly) partitions newest first and stop at the limit
             "select pal from ProvisioningAuditLogEntity pal " +
-                "where pal.nonHostedCaUUID = :caUUID", ProvisioningAuditLogEntity.class);
+                "where pal.nonHostedCaUUID = :caUUID " +
+                "order by pal.executionTime desc", ProvisioningAuditLogEntity.class);
         query.setParameter("caUUID", caUUID);
         query.setMaxResults(CommandAuditServiceBean.MAX_HISTORY_ENTRIES_RETURNED);
         List<ProvisioningAuditLogEntity> messages = query.getResultList();
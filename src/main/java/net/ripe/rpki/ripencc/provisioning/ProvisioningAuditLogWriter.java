@@ -0,0 +1,205 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.domain.ProvisioningAuditLogEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes provisioning audit log entries from a bounded queue on a background thread, so that the up-down request
+ * path does not wait for the audit log insert and log line. Entries are inserted using JDBC batching.
+ *
+ * When the queue is full {@link #offer} waits for a short time before giving up, after which the caller is expected
+ * to write the entry synchronously. This slows down the producers instead of dropping audit entries.
+ */
+@Slf4j
+@Component
+class ProvisioningAuditLogWriter implements SmartLifecycle {
+
+    private static final String INSERT_SQL = "INSERT INTO provisioning_audit_log " +
+        "(id, version, created_at, updated_at, non_hosted_ca_uuid, request_message_type, provisioning_cms_object, principal, summary, executiontime, entry_uuid) " +
+        "VALUES (nextval('seq_all'), 0, :created_at, :updated_at, :non_hosted_ca_uuid, :request_message_type, :provisioning_cms_object, :principal, :summary, :executiontime, :entry_uuid)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingEntry> queue;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+
+    private final Timer lagTimer;
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    ProvisioningAuditLogWriter(
+        NamedParameterJdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        @Value("${provisioning.audit.log.queue.capacity:10000}") int queueCapacity,
+        @Value("${provisioning.audit.log.batch.size:500}") int batchSize,
+        @Value("${provisioning.audit.log.offer.timeout.ms:100}") long offerTimeoutMillis
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+
+        Gauge.builder("rpkicore.provisioning.audit.log.queue.depth", queue, BlockingQueue::size)
+            .description("Number of provisioning audit log entries waiting to be written")
+            .register(meterRegistry);
+        this.lagTimer = Timer.builder("rpkicore.provisioning.audit.log.lag")
+            .description("Time between queueing and writing a provisioning audit log entry")
+            .register(meterRegistry);
+        this.writtenCounter = Counter.builder("rpkicore.provisioning.audit.log.written")
+            .description("Number of provisioning audit log entries written asynchronously")
+            .tag("status", "success")
+            .register(meterRegistry);
+        this.failedCounter = Counter.builder("rpkicore.provisioning.audit.log.written")
+            .description("Number of provisioning audit log entries written asynchronously")
+            .tag("status", "failure")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("rpkicore.provisioning.audit.log.rejected")
+            .description("Number of provisioning audit log entries that were written synchronously because the queue was full")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queue the entry for writing.
+     *
+     * @return <code>false</code> when the writer is not running or the queue stayed full, in which case the entry was
+     * not queued and must be written by the caller.
+     */
+    boolean offer(ProvisioningAuditLogEntity entry, byte[] request) {
+        if (!running) {
+            return false;
+        }
+        try {
+            if (queue.offer(new PendingEntry(entry, request, System.nanoTime()), offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        worker = new Thread(this::drainQueue, getClass().getSimpleName());
+        worker.setDaemon(true);
+        worker.start();
+        log.info("started");
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        log.info("stopping, {} entries queued", queue.size());
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+            log.info("{}", worker.isAlive() ? "writer termination timed out" : "stopped");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            worker = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainQueue() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingEntry> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error writing provisioning audit log entries", e);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void write(List<PendingEntry> batch) {
+        List<SqlParameterSource> inserts = new ArrayList<>(batch.size());
+        for (PendingEntry pending : batch) {
+            ProvisioningAuditLogServiceBean.logMessage(pending.entry(), pending.request());
+            if (ProvisioningAuditLogServiceBean.isPersisted(pending.entry().getRequestMessageType())) {
+                inserts.add(parameters(pending.entry()));
+            }
+        }
+
+        try {
+            if (!inserts.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, inserts.toArray(new SqlParameterSource[0])));
+            }
+            writtenCounter.increment(inserts.size());
+        } catch (RuntimeException e) {
+            failedCounter.increment(inserts.size());
+            log.error("Failed to insert {} provisioning audit log entries, the entries are only available in the provisioning log", inserts.size(), e);
+        }
+
+        long now = System.nanoTime();
+        for (PendingEntry pending : batch) {
+            lagTimer.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static SqlParameterSource parameters(ProvisioningAuditLogEntity entry) {
+        return new MapSqlParameterSource()
+            .addValue("created_at", new Timestamp(entry.getCreatedAt().getMillis()))
+            .addValue("updated_at", new Timestamp(entry.getUpdatedAt().getMillis()))
+            .addValue("non_hosted_ca_uuid", entry.getNonHostedCaUUID())
+            .addValue("request_message_type", entry.getRequestMessageType().name())
+            .addValue("provisioning_cms_object", entry.getProvisioningCmsObject())
+            .addValue("principal", entry.getPrincipal())
+            .addValue("summary", entry.getSummary())
+            .addValue("executiontime", entry.getExecutionTime())
+            .addValue("entry_uuid", entry.getEntryUuid());
+    }
+
+    @VisibleForTesting
+    record PendingEntry(ProvisioningAuditLogEntity entry, byte[] request, long enqueuedAt) {
+    }
+}
@@ -1,37 +1,97 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import com.google.common.annotations.VisibleForTesting;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
 import net.ripe.rpki.commons.provisioning.payload.AbstractProvisioningResponsePayload;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
+import net.ripe.rpki.domain.DownStreamProvisioningSigningContext;
 import net.ripe.rpki.domain.ProductionCertificateAuthority;
 import net.ripe.rpki.domain.SingleUseKeyPairFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.persistence.LockModeType;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Generate a CMS response signed by the production CA downstream communicator key. This class is transactional
- * since it uses domain classes, but read-only since we do not track generated CMS response objects in the
- * database.
+ * Generate a CMS response signed by the production CA downstream communicator key.
+ *
+ * The identity material of the communicator is kept in a read-only {@link DownStreamProvisioningSigningContext}, so
+ * signing a response does not need to load the production CA. The communicator version is re-checked (using a single
+ * scalar query) at most once per refresh interval and the signing context is rebuilt when it changed.
  */
 @Component
-@Transactional(readOnly = true)
+@Slf4j
 class ProvisioningCmsResponseGenerator {
     private final CertificateAuthorityRepository certificateAuthorityRepository;
     private final SingleUseKeyPairFactory singleUseKeyPairFactory;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final long refreshIntervalNanos;
 
+    private final AtomicReference<CachedSigningContext> cachedSigningContext = new AtomicReference<>();
+
+    @Autowired
     public ProvisioningCmsResponseGenerator(
         CertificateAuthorityRepository certificateAuthorityRepository,
-        SingleUseKeyPairFactory singleUseKeyPairFactory
+        SingleUseKeyPairFactory singleUseKeyPairFactory,
+        PlatformTransactionManager transactionManager,
+        @Value("${provisioning.signing.context.refresh.interval:PT1M}") Duration refreshInterval
     ) {
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.singleUseKeyPairFactory = singleUseKeyPairFactory;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.refreshIntervalNanos = refreshInterval.toNanos();
     }
 
     public ProvisioningCmsObject createProvisioningCmsResponseObject(AbstractProvisioningResponsePayload response) {
-        ProductionCertificateAuthority productionCertificateAuthority = certificateAuthorityRepository.findByTypeAndUuid(ProductionCertificateAuthority.class, UUID.fromString(response.getSender()), LockModeType.NONE);
-        return productionCertificateAuthority.getMyDownStreamProvisioningCommunicator().createProvisioningCmsResponseObject(singleUseKeyPairFactory, response);
+        return getSigningContext(UUID.fromString(response.getSender()))
+            .createProvisioningCmsResponseObject(singleUseKeyPairFactory, response);
+    }
+
+    @VisibleForTesting
+    DownStreamProvisioningSigningContext getSigningContext(UUID productionCaUuid) {
+        CachedSigningContext cached = cachedSigningContext.get();
+        if (cached != null && cached.isFreshFor(productionCaUuid, System.nanoTime())) {
+            return cached.context();
+        }
+        return refreshSigningContext(productionCaUuid);
+    }
+
+    private synchronized DownStreamProvisioningSigningContext refreshSigningContext(UUID productionCaUuid) {
+        CachedSigningContext cached = cachedSigningContext.get();
+        long now = System.nanoTime();
+        if (cached != null && cached.isFreshFor(productionCaUuid, now)) {
+            // Refreshed by another thread while waiting
+            return cached.context();
+        }
+
+        CachedSigningContext refreshed = readOnlyTransactionTemplate.execute(status -> {
+            VersionedId currentVersion = certificateAuthorityRepository.findDownStreamProvisioningCommunicatorVersion(productionCaUuid)
+                .orElseThrow(() -> new IllegalStateException("production CA " + productionCaUuid + " not found or its identity material is not initialised"));
+            if (cached != null && cached.productionCaUuid().equals(productionCaUuid) && currentVersion.equals(cached.context().getCommunicatorVersion())) {
+                return new CachedSigningContext(productionCaUuid, cached.context(), now + refreshIntervalNanos);
+            }
+
+            ProductionCertificateAuthority productionCa = certificateAuthorityRepository.findByTypeAndUuid(ProductionCertificateAuthority.class, productionCaUuid, LockModeType.NONE);
+            DownStreamProvisioningSigningContext context = productionCa.getMyDownStreamProvisioningCommunicator().createSigningContext();
+            log.info("loaded up-down signing context for production CA {} (communicator {})", productionCaUuid, context.getCommunicatorVersion());
+            return new CachedSigningContext(productionCaUuid, context, now + refreshIntervalNanos);
+        });
+        cachedSigningContext.set(refreshed);
+        return refreshed.context();
+    }
+
+    private record CachedSigningContext(UUID productionCaUuid, DownStreamProvisioningSigningContext context, long refreshAfterNanos) {
+        boolean isFreshFor(UUID uuid, long nanoTime) {
+            return productionCaUuid.equals(uuid) && nanoTime - refreshAfterNanos < 0;
+        }
     }
 }
@@ -1,6 +1,13 @@
 package net.ripe.rpki.ripencc.provisioning;
 
-import lombok.AllArgsConstructor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectValidator;
@@ -8,21 +15,70 @@ import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificate;
 import net.ripe.rpki.commons.validation.ValidationOptions;
 import net.ripe.rpki.commons.validation.ValidationResult;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.Optional;
 
 import static net.ripe.rpki.commons.validation.ValidationString.SIGNING_TIME_GREATER_OR_EQUAL;
 
+/**
+ * Validates up-down CMS objects using the rpki-commons {@link ProvisioningCmsObjectValidator}.
+ *
+ * The identity certificate of a child changes rarely and clients may re-use the EE certificate and CRL for multiple
+ * requests. Successfully validated combinations of identity certificate, EE certificate and CRL are cached (keyed by
+ * the hash of their encoding) until the first of their validity periods ends. For a cached combination only the
+ * signing time of the CMS object is checked against the last seen signing time, since the CMS signature is already
+ * verified when parsing. A new identity certificate results in a different key, so cached entries never apply to
+ * changed identity material.
+ */
 @Slf4j
-@AllArgsConstructor
 @Component
 class ProvisioningCmsValidationStrategyImpl implements ProvisioningCmsValidationStrategy {
+    private static final int MAX_CACHED_CHAINS = 100_000;
+
     private final ProvisioningMetricsService provisioningMetrics;
 
+    private final Cache<HashCode, ValidityInterval> validatedChains = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_CHAINS)
+        .expireAfterWrite(Duration.ofDays(1))
+        .build();
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    @Autowired
+    ProvisioningCmsValidationStrategyImpl(ProvisioningMetricsService provisioningMetrics, MeterRegistry meterRegistry) {
+        this.provisioningMetrics = provisioningMetrics;
+        this.cacheHits = Counter.builder("rpkicore.rfc6492.validation.cache")
+            .description("Number of up-down CMS validations that used a cached validated certificate chain")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.cacheMisses = Counter.builder("rpkicore.rfc6492.validation.cache")
+            .description("Number of up-down CMS validations that used a cached validated certificate chain")
+            .tag("result", "miss")
+            .register(meterRegistry);
+    }
+
     @Override
     public void validateProvisioningCmsAndIdentityCertificate(ProvisioningCmsObject unvalidatedProvisioningObject, Optional<DateTime> lastSigningTime, ProvisioningIdentityCertificate provisioningIdentityCertificate) throws ProvisioningException {
+        Optional<HashCode> chainKey = chainKey(unvalidatedProvisioningObject, provisioningIdentityCertificate);
+        long now = DateTimeUtils.currentTimeMillis();
+
+        ValidityInterval cached = chainKey.map(validatedChains::getIfPresent).orElse(null);
+        if (cached != null && cached.contains(now)) {
+            cacheHits.increment();
+            validateSigningTime(unvalidatedProvisioningObject, lastSigningTime);
+            return;
+        }
+        cacheMisses.increment();
+
         // Validate the EE certificate + identity certificate
         ProvisioningCmsObjectValidator provisioningCmsValidator = new ProvisioningCmsObjectValidator(
                 ValidationOptions.strictValidation(),
@@ -43,5 +99,66 @@ class ProvisioningCmsValidationStrategyImpl implements ProvisioningCmsValidation
             // Includes sending bad data when the certificates are expired.
             throw new ProvisioningException.BadData();
         }
+
+        chainKey.ifPresent(key -> validatedChains.put(key, ValidityInterval.of(unvalidatedProvisioningObject, provisioningIdentityCertificate)));
+    }
+
+    @VisibleForTesting
+    void invalidateCache() {
+        validatedChains.invalidateAll();
+    }
+
+    private static void validateSigningTime(ProvisioningCmsObject provisioningObject, Optional<DateTime> lastSigningTime) {
+        DateTime signingTime = provisioningObject.getSigningTime();
+        if (signingTime == null) {
+            throw new ProvisioningException.BadData();
+        }
+        if (lastSigningTime.map(signingTime::isBefore).orElse(false)) {
+            log.info("Rejected up-down payload with signing time {} before last seen signing time {}", signingTime, lastSigningTime.get());
+            throw new ProvisioningException.PotentialReplayAttack();
+        }
+    }
+
+    private static Optional<HashCode> chainKey(ProvisioningCmsObject provisioningObject, ProvisioningIdentityCertificate identityCertificate) {
+        X509Certificate cmsCertificate = provisioningObject.getCmsCertificate();
+        X509CRL crl = provisioningObject.getCrl();
+        if (cmsCertificate == null || crl == null) {
+            return Optional.empty();
+        }
+        try {
+            Hasher hasher = Hashing.sha256().newHasher();
+            putEncoded(hasher, identityCertificate.getEncoded());
+            putEncoded(hasher, cmsCertificate.getEncoded());
+            putEncoded(hasher, crl.getEncoded());
+            return Optional.of(hasher.hash());
+        } catch (CertificateEncodingException | CRLException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static void putEncoded(Hasher hasher, byte[] encoded) {
+        hasher.putInt(encoded.length).putBytes(encoded);
+    }
+
+    /**
+     * Period in which all of the identity certificate, the EE certificate, and the CRL are valid.
+     */
+    private record ValidityInterval(long notBeforeMillis, long notAfterMillis) {
+        static ValidityInterval of(ProvisioningCmsObject provisioningObject, ProvisioningIdentityCertificate identityCertificate) {
+            X509Certificate identity = identityCertificate.getCertificate();
+            X509Certificate ee = provisioningObject.getCmsCertificate();
+            X509CRL crl = provisioningObject.getCrl();
+
+            long notBefore = Math.max(identity.getNotBefore().getTime(), ee.getNotBefore().getTime());
+            long notAfter = Math.min(identity.getNotAfter().getTime(), ee.getNotAfter().getTime());
+            if (crl.getNextUpdate() != null) {
+                notAfter = Math.min(notAfter, crl.getNextUpdate().getTime());
+            }
+            return new ValidityInterval(notBefore, notAfter);
+        }
+
+        boolean contains(long millis) {
+            return notBeforeMillis <= millis && millis <= notAfterMillis;
+        }
     }
 }
@@ -2,6 +2,7 @@ package net.ripe.rpki.ripencc.provisioning;
 
 import net.ripe.rpki.commons.provisioning.protocol.ResponseExceptionType;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,20 +18,27 @@ import static java.lang.String.format;
 class ProvisioningException extends RuntimeException {
 	private static final long serialVersionUID = 2L;
 
-    private final ResponseExceptionType protocolError;
+    private final String name;
+    private final int httpStatusCode;
+    private final String description;
 
     private ProvisioningException(ResponseExceptionType protocolError) {
-        super(format("%s: %s", protocolError.name(), protocolError.getDescription()));
-        this.protocolError = protocolError;
+        this(protocolError.name(), protocolError.getHttpResponseCode(), protocolError.getDescription(), null);
     }
 
     private ProvisioningException(ResponseExceptionType protocolError, Throwable cause) {
-        super(format("%s: %s", protocolError.name(), protocolError.getDescription()), cause);
-        this.protocolError = protocolError;
+        this(protocolError.name(), protocolError.getHttpResponseCode(), protocolError.getDescription(), cause);
+    }
+
+    private ProvisioningException(String name, int httpStatusCode, String description, Throwable cause) {
+        super(format("%s: %s", name, description), cause);
+        this.name = name;
+        this.httpStatusCode = httpStatusCode;
+        this.description = description;
     }
 
     public final String getName() {
-        return protocolError.name();
+        return name;
     }
 
     public Optional<String> getSender() {
@@ -38,11 +46,18 @@ class ProvisioningException extends RuntimeException {
     }
 
     public int getHttpStatusCode() {
-        return protocolError.getHttpResponseCode();
+        return httpStatusCode;
     }
 
     public String getDescription() {
-        return protocolError.getDescription();
+        return description;
+    }
+
+    /**
+     * @return the time after which the client can retry the request, when applicable.
+     */
+    public Optional<Duration> getRetryAfter() {
+        return Optional.empty();
     }
 
     static class PotentialReplayAttack extends ProvisioningException {
@@ -100,4 +115,21 @@ class ProvisioningException extends RuntimeException {
             super(ResponseExceptionType.UNKNOWN_PROVISIONING_URL);
         }
     }
+
+    /**
+     * Not part of RFC6492: the request was not admitted because too many requests are being processed.
+     */
+    static class ServiceUnavailable extends ProvisioningException {
+        private final Duration retryAfter;
+
+        ServiceUnavailable(Duration retryAfter) {
+            super("SERVICE_UNAVAILABLE", 503, "Too many requests in progress, retry later", null);
+            this.retryAfter = retryAfter;
+        }
+
+        @Override
+        public Optional<Duration> getRetryAfter() {
+            return Optional.of(retryAfter);
+        }
+    }
 }
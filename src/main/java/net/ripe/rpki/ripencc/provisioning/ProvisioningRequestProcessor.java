@@ -6,4 +6,10 @@ interface ProvisioningRequestProcessor {
 
     ProvisioningCmsObject process(ProvisioningCmsObject request);
 
+    /**
+     * Create the error response for a request that is rejected because another request from the same sender is being
+     * processed. Does not validate the request.
+     */
+    ProvisioningCmsObject createAlreadyProcessingResponse(ProvisioningCmsObject request);
+
 }
@@ -86,6 +86,20 @@ class ProvisioningRequestProcessorBean implements ProvisioningRequestProcessor {
         return provisioningCmsResponseGenerator.createProvisioningCmsResponseObject(responsePayload);
     }
 
+    @Override
+    public ProvisioningCmsObject createAlreadyProcessingResponse(ProvisioningCmsObject request) {
+        // https://datatracker.ietf.org/doc/html/rfc6492#section-3
+        // multiple concurrent requests with a common sender MUST be detected and rejected with an error response
+        // (i.e., an error code 1101 response).
+        UUID recipientUuid = parseSenderAndRecipientUUID(request.getPayload().getRecipient());
+
+        AbstractProvisioningResponsePayload responsePayload = buildError(NotPerformedError.ALREADY_PROCESSING_REQUEST);
+        responsePayload.setRecipient(request.getPayload().getSender());
+        responsePayload.setSender(recipientUuid.toString());
+
+        return provisioningCmsResponseGenerator.createProvisioningCmsResponseObject(responsePayload);
+    }
+
     @VisibleForTesting
     protected AbstractProvisioningResponsePayload processRequestPayload(NonHostedCertificateAuthorityData nonHostedMemberCa,
                                                                         AbstractProvisioningPayload requestPayload) {
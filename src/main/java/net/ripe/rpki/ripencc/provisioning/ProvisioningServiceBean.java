@@ -20,14 +20,17 @@ class ProvisioningServiceBean implements ProvisioningService {
     private final ProvisioningAuditLogService provisioningAuditLogService;
 
     private final ProvisioningMetricsService provisioningMetricsService;
+    private final ProvisioningAdmissionControl provisioningAdmissionControl;
 
     @Autowired
     public ProvisioningServiceBean(ProvisioningRequestProcessor provisioningRequestProcessor,
                                    ProvisioningAuditLogService provisioningAuditLogService,
-                                   ProvisioningMetricsService provisioningMetricsService) {
+                                   ProvisioningMetricsService provisioningMetricsService,
+                                   ProvisioningAdmissionControl provisioningAdmissionControl) {
         this.provisioningRequestProcessor = provisioningRequestProcessor;
         this.provisioningAuditLogService = provisioningAuditLogService;
         this.provisioningMetricsService = provisioningMetricsService;
+        this.provisioningAdmissionControl = provisioningAdmissionControl;
     }
 
     @Override
@@ -39,10 +42,15 @@ class ProvisioningServiceBean implements ProvisioningService {
             try {
                 final UUID memberUUID = ProvisioningRequestProcessorBean.parseSenderAndRecipientUUID(requestObject.getPayload().getSender());
 
-                final ProvisioningAuditLogEntity requestLogEntry = new ProvisioningAuditLogEntity(requestObject, "non-hosted CA", memberUUID);
-                provisioningAuditLogService.log(requestLogEntry, request);
+                ProvisioningCmsObject responseObject;
+                try (ProvisioningAdmissionControl.Admission admission = provisioningAdmissionControl.admit(memberUUID)) {
+                    final ProvisioningAuditLogEntity requestLogEntry = new ProvisioningAuditLogEntity(requestObject, "non-hosted CA", memberUUID);
+                    provisioningAuditLogService.log(requestLogEntry, request);
 
-                ProvisioningCmsObject responseObject = provisioningRequestProcessor.process(requestObject);
+                    responseObject = admission.isAdmitted()
+                        ? provisioningRequestProcessor.process(requestObject)
+                        : provisioningRequestProcessor.createAlreadyProcessingResponse(requestObject);
+                }
 
                 ProvisioningAuditLogEntity responseLogEntry = new ProvisioningAuditLogEntity(responseObject, RunAsUser.ADMIN.getFriendlyName(), memberUUID);
                 provisioningAuditLogService.log(responseLogEntry, request);
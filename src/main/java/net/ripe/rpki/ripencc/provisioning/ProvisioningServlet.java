@@ -55,6 +55,7 @@ public class ProvisioningServlet extends HttpServlet {
             provisioningMetrics.trackProvisioningExceptionCause(e);
             // content-type not set for HTTP 400/503, non-CMS error responses
             log.warn("provisioning error, HTTP {}: {}", e.getHttpStatusCode(), e.getDescription());
+            e.getRetryAfter().ifPresent(retryAfter -> resp.setHeader("Retry-After", String.valueOf(retryAfter.toSeconds())));
             resp.sendError(e.getHttpStatusCode(), e.getDescription());
         }
     }
@@ -65,4 +65,8 @@ public class RipeNccResourceLookupService implements ResourceLookupService {
         return resources.isEmpty() ? Optional.empty() : Optional.of(ResourceExtension.ofResources(resources));
     }
 
+    @Override
+    public Optional<String> lookupMemberCaPotentialResourcesVersion(X500Principal caPrincipal) {
+        return resourceCacheService.getCaResourcesVersion(CaName.of(caPrincipal));
+    }
 }
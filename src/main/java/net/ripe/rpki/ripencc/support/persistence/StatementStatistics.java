@@ -0,0 +1,165 @@
+package net.ripe.rpki.ripencc.support.persistence;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attributes the SQL statements executed by the current thread to the operation that caused them, such as a command,
+ * a background service or a REST request. Statements are counted by {@link StatementStatisticsDataSource} while a
+ * scope is open. Scopes nest: the statements of an inner scope (e.g. a command executed by a REST request) also count
+ * for the outer scope.
+ * <p>
+ * When a scope is closed the number of statements, the number of rows and the time spent executing statements are
+ * recorded as <code>rpkicore.sql.*</code> metrics, tagged with the kind and name of the scope. A high number of
+ * statements per operation is a good indication of N+1 queries.
+ * <p>
+ * Work handed off to other threads (such as the parallel tasks of a background service) is attributed to the scope
+ * that created it by running it {@link #with} that scope, so a scope can be updated by multiple threads at once.
+ */
+public final class StatementStatistics {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private static volatile MeterRegistry meterRegistry;
+
+    private StatementStatistics() {
+    }
+
+    public static void bindTo(MeterRegistry registry) {
+        meterRegistry = registry;
+    }
+
+    /**
+     * Opens a new scope for the current thread. The scope must be closed on the same thread.
+     */
+    public static Scope open(String kind, String name) {
+        Scope scope = new Scope(kind, name, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the scope of the current thread, if any
+     */
+    public static Optional<Scope> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Runs <code>callable</code> with the statements counted in <code>scope</code> (or not counted when empty),
+     * restoring the previous scope of the current thread afterwards.
+     */
+    public static <T> T with(Optional<Scope> scope, Callable<T> callable) throws Exception {
+        Scope previous = CURRENT.get();
+        try {
+            if (scope.isPresent()) {
+                CURRENT.set(scope.get());
+            } else {
+                CURRENT.remove();
+            }
+            return callable.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    static void recordStatement(long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.statements.increment();
+            scope.nanos.add(nanos);
+        }
+    }
+
+    static void recordRows(long rows) {
+        Scope scope = CURRENT.get();
+        if (scope != null && rows > 0) {
+            scope.rows.add(rows);
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+        @Getter
+        private final String kind;
+        @Getter
+        private final String name;
+        private final Scope parent;
+
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Scope(String kind, String name, Scope parent) {
+            this.kind = kind;
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public long getStatements() {
+            return statements.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public Duration getDuration() {
+            return Duration.ofNanos(nanos.sum());
+        }
+
+        @Override
+        public void close() {
+            // Only restore the parent when closed on the thread that opened the scope
+            if (CURRENT.get() == this) {
+                if (parent == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(parent);
+                }
+            }
+            long statementCount = statements.sum();
+            long rowCount = rows.sum();
+            long nanoCount = nanos.sum();
+            if (parent != null) {
+                parent.statements.add(statementCount);
+                parent.rows.add(rowCount);
+                parent.nanos.add(nanoCount);
+            }
+
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                DistributionSummary.builder("rpkicore.sql.statements")
+                    .description("Number of SQL statements executed per operation")
+                    .tags("kind", kind, "name", name)
+                    .register(registry)
+                    .record(statementCount);
+                DistributionSummary.builder("rpkicore.sql.rows")
+                    .description("Number of rows read or updated by the SQL statements of an operation")
+                    .tags("kind", kind, "name", name)
+                    .register(registry)
+                    .record(rowCount);
+                Timer.builder("rpkicore.sql.duration")
+                    .description("Time spent executing the SQL statements of an operation")
+                    .tags("kind", kind, "name", name)
+                    .register(registry)
+                    .record(nanoCount, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package net.ripe.rpki.ripencc.support.persistence;
+
+import lombok.experimental.Delegate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Data source that reports the statements executed on its connections to {@link StatementStatistics}. Instrumenting
+ * the JDBC connections covers both Hibernate and plain JDBC access, and unlike a Hibernate statement inspector it also
+ * sees the number of rows and the execution time of every statement.
+ * <p>
+ * Rows are counted as the rows read from result sets plus the update counts of updates and batches. Statements that
+ * are executed while no scope is open are not instrumented.
+ * <p>
+ * Connections, statements and result sets are wrapped in plain delegating classes rather than reflective proxies,
+ * since their methods are called for every statement, and for every column of every row.
+ */
+public class StatementStatisticsDataSource extends DelegatingDataSource {
+
+    public StatementStatisticsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return instrument(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return instrument(super.getConnection(username, password));
+    }
+
+    static Connection instrument(Connection connection) {
+        return new InstrumentedConnection(connection);
+    }
+
+    private static ResultSet instrument(ResultSet resultSet) {
+        return resultSet != null && StatementStatistics.isActive() ? new RowCountingResultSet(resultSet) : resultSet;
+    }
+
+    private interface Execution<T> {
+        T execute() throws SQLException;
+    }
+
+    private static <T> T timed(Execution<T> execution) throws SQLException {
+        if (!StatementStatistics.isActive()) {
+            return execution.execute();
+        }
+        long start = System.nanoTime();
+        try {
+            return execution.execute();
+        } finally {
+            StatementStatistics.recordStatement(System.nanoTime() - start);
+        }
+    }
+
+    private static ResultSet query(Execution<ResultSet> execution) throws SQLException {
+        return instrument(timed(execution));
+    }
+
+    private static int update(Execution<Integer> execution) throws SQLException {
+        int count = timed(execution);
+        StatementStatistics.recordRows(count);
+        return count;
+    }
+
+    private static long largeUpdate(Execution<Long> execution) throws SQLException {
+        long count = timed(execution);
+        StatementStatistics.recordRows(count);
+        return count;
+    }
+
+    private static final class InstrumentedConnection implements Connection {
+        private interface StatementFactory {
+            Statement createStatement() throws SQLException;
+            Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException;
+            Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException;
+            PreparedStatement prepareStatement(String sql) throws SQLException;
+            PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException;
+            PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException;
+            PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException;
+            PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException;
+            PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException;
+            CallableStatement prepareCall(String sql) throws SQLException;
+            CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException;
+            CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException;
+        }
+
+        @Delegate(types = Connection.class, excludes = StatementFactory.class)
+        private final Connection target;
+
+        private InstrumentedConnection(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Statement createStatement() throws SQLException {
+            return new InstrumentedStatement(target.createStatement());
+        }
+
+        @Override
+        public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+            return new InstrumentedStatement(target.createStatement(resultSetType, resultSetConcurrency));
+        }
+
+        @Override
+        public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+            return new InstrumentedStatement(target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            return new InstrumentedPreparedStatement(target.prepareStatement(sql));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+            return new InstrumentedPreparedStatement(target.prepareStatement(sql, resultSetType, resultSetConcurrency));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+            return new InstrumentedPreparedStatement(target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+            return new InstrumentedPreparedStatement(target.prepareStatement(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+            return new InstrumentedPreparedStatement(target.prepareStatement(sql, columnIndexes));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+            return new InstrumentedPreparedStatement(target.prepareStatement(sql, columnNames));
+        }
+
+        @Override
+        public CallableStatement prepareCall(String sql) throws SQLException {
+            return new InstrumentedCallableStatement(target.prepareCall(sql));
+        }
+
+        @Override
+        public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+            return new InstrumentedCallableStatement(target.prepareCall(sql, resultSetType, resultSetConcurrency));
+        }
+
+        @Override
+        public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+            return new InstrumentedCallableStatement(target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+    }
+
+    private static class InstrumentedStatement implements Statement {
+        private interface Executions {
+            ResultSet executeQuery(String sql) throws SQLException;
+            int executeUpdate(String sql) throws SQLException;
+            int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException;
+            int executeUpdate(String sql, int[] columnIndexes) throws SQLException;
+            int executeUpdate(String sql, String[] columnNames) throws SQLException;
+            long executeLargeUpdate(String sql) throws SQLException;
+            long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException;
+            long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException;
+            long executeLargeUpdate(String sql, String[] columnNames) throws SQLException;
+            boolean execute(String sql) throws SQLException;
+            boolean execute(String sql, int autoGeneratedKeys) throws SQLException;
+            boolean execute(String sql, int[] columnIndexes) throws SQLException;
+            boolean execute(String sql, String[] columnNames) throws SQLException;
+            int[] executeBatch() throws SQLException;
+            long[] executeLargeBatch() throws SQLException;
+            ResultSet getResultSet() throws SQLException;
+        }
+
+        @Delegate(types = Statement.class, excludes = Executions.class)
+        private final Statement target;
+
+        private InstrumentedStatement(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public ResultSet executeQuery(String sql) throws SQLException {
+            return query(() -> target.executeQuery(sql));
+        }
+
+        @Override
+        public int executeUpdate(String sql) throws SQLException {
+            return update(() -> target.executeUpdate(sql));
+        }
+
+        @Override
+        public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+            return update(() -> target.executeUpdate(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+            return update(() -> target.executeUpdate(sql, columnIndexes));
+        }
+
+        @Override
+        public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+            return update(() -> target.executeUpdate(sql, columnNames));
+        }
+
+        @Override
+        public long executeLargeUpdate(String sql) throws SQLException {
+            return largeUpdate(() -> target.executeLargeUpdate(sql));
+        }
+
+        @Override
+        public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+            return largeUpdate(() -> target.executeLargeUpdate(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+            return largeUpdate(() -> target.executeLargeUpdate(sql, columnIndexes));
+        }
+
+        @Override
+        public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+            return largeUpdate(() -> target.executeLargeUpdate(sql, columnNames));
+        }
+
+        @Override
+        public boolean execute(String sql) throws SQLException {
+            return timed(() -> target.execute(sql));
+        }
+
+        @Override
+        public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+            return timed(() -> target.execute(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+            return timed(() -> target.execute(sql, columnIndexes));
+        }
+
+        @Override
+        public boolean execute(String sql, String[] columnNames) throws SQLException {
+            return timed(() -> target.execute(sql, columnNames));
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            int[] counts = timed(target::executeBatch);
+            for (int count : counts) {
+                StatementStatistics.recordRows(count);
+            }
+            return counts;
+        }
+
+        @Override
+        public long[] executeLargeBatch() throws SQLException {
+            long[] counts = timed(target::executeLargeBatch);
+            for (long count : counts) {
+                StatementStatistics.recordRows(count);
+            }
+            return counts;
+        }
+
+        @Override
+        public ResultSet getResultSet() throws SQLException {
+            return instrument(target.getResultSet());
+        }
+    }
+
+    private static class InstrumentedPreparedStatement extends InstrumentedStatement implements PreparedStatement {
+        private interface Executions {
+            ResultSet executeQuery() throws SQLException;
+            int executeUpdate() throws SQLException;
+            long executeLargeUpdate() throws SQLException;
+            boolean execute() throws SQLException;
+        }
+
+        @Delegate(types = PreparedStatement.class, excludes = {Statement.class, Executions.class})
+        private final PreparedStatement target;
+
+        private InstrumentedPreparedStatement(PreparedStatement target) {
+            super(target);
+            this.target = target;
+        }
+
+        @Override
+        public ResultSet executeQuery() throws SQLException {
+            return query(target::executeQuery);
+        }
+
+        @Override
+        public int executeUpdate() throws SQLException {
+            return update(target::executeUpdate);
+        }
+
+        @Override
+        public long executeLargeUpdate() throws SQLException {
+            return largeUpdate(target::executeLargeUpdate);
+        }
+
+        @Override
+        public boolean execute() throws SQLException {
+            return timed(target::execute);
+        }
+    }
+
+    private static final class InstrumentedCallableStatement extends InstrumentedPreparedStatement implements CallableStatement {
+        @Delegate(types = CallableStatement.class, excludes = PreparedStatement.class)
+        private final CallableStatement target;
+
+        private InstrumentedCallableStatement(CallableStatement target) {
+            super(target);
+            this.target = target;
+        }
+    }
+
+    /**
+     * Counts the rows read, the other methods are delegated since they are called for every column of every row.
+     */
+    private static final class RowCountingResultSet implements ResultSet {
+        private interface Next {
+            boolean next() throws SQLException;
+        }
+
+        @Delegate(types = ResultSet.class, excludes = Next.class)
+        private final ResultSet target;
+
+        private RowCountingResultSet(ResultSet target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            boolean next = target.next();
+            if (next) {
+                StatementStatistics.recordRows(1);
+            }
+            return next;
+        }
+    }
+}
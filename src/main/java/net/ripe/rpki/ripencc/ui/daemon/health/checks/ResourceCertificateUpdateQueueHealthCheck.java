@@ -0,0 +1,37 @@
+package net.ripe.rpki.ripencc.ui.daemon.health.checks;
+
+import net.ripe.rpki.ripencc.ui.daemon.health.Health;
+import net.ripe.rpki.services.impl.background.ResourceCertificateUpdateQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+@Component
+public class ResourceCertificateUpdateQueueHealthCheck extends Health.Check {
+
+    private final ResourceCertificateUpdateQueue resourceCertificateUpdateQueue;
+    private final int maxDepth;
+
+    @Autowired
+    public ResourceCertificateUpdateQueueHealthCheck(ResourceCertificateUpdateQueue resourceCertificateUpdateQueue,
+                                                     @Value("${certificate.authority.update.queue.health.max-depth:50000}") int maxDepth) {
+        super("resource-certificate-update-queue");
+        this.resourceCertificateUpdateQueue = resourceCertificateUpdateQueue;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public Health.Status check() {
+        int depth = resourceCertificateUpdateQueue.getDepth();
+        if (depth == 0) {
+            return Health.ok();
+        }
+
+        String message = String.format("%d CAs queued, oldest waiting for %s", depth,
+            resourceCertificateUpdateQueue.getOldestAge().orElse(Duration.ZERO).truncatedTo(ChronoUnit.SECONDS));
+        return depth > maxDepth ? Health.error(message) : Health.ok(message);
+    }
+}
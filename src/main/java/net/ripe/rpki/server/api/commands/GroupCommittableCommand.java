@@ -0,0 +1,11 @@
+package net.ripe.rpki.server.api.commands;
+
+/**
+ * Marker interface for commands that may be executed together with other commands of the same type in a single
+ * database transaction (see {@link net.ripe.rpki.server.api.services.command.CommandService#executeGroupCommitted}).
+ * <p>
+ * Only system commands that affect a single CA and have no side effects outside the database transaction should
+ * opt in, since a command in a group can still be rolled back when another command in the group fails.
+ */
+public interface GroupCommittableCommand {
+}
@@ -7,7 +7,7 @@ import net.ripe.rpki.commons.util.VersionedId;
  * Issue an updated manifest and CRL if needed (mainly due to nearing the next update time of current manifest and CRL)
  * </p>
  */
-public class IssueUpdatedManifestAndCrlCommand extends CertificateAuthorityModificationCommand {
+public class IssueUpdatedManifestAndCrlCommand extends CertificateAuthorityModificationCommand implements GroupCommittableCommand {
 
     public IssueUpdatedManifestAndCrlCommand(VersionedId certificateAuthorityId) {
         super(certificateAuthorityId, CertificateAuthorityCommandGroup.SYSTEM);
@@ -0,0 +1,19 @@
+package net.ripe.rpki.server.api.dto;
+
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of the combined command and up-down message history of a CA, newest first.
+ */
+@Value
+public class CaHistoryPage implements Serializable {
+    List<CertificateAuthorityHistoryItem> items;
+
+    /**
+     * Cursor to pass to get the next (older) page, or <code>null</code> when there are no older items.
+     */
+    String olderThan;
+}
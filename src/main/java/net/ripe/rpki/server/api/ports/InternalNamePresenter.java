@@ -1,6 +1,10 @@
 package net.ripe.rpki.server.api.ports;
 
 import javax.security.auth.x500.X500Principal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
 public interface InternalNamePresenter {
     /**
@@ -12,4 +16,17 @@ public interface InternalNamePresenter {
      * Turns an internal user principal into a human readable string for the stats collector report.
      */
     String humanizeUserPrincipal(String commandPrincipal);
+
+    /**
+     * Humanizes each distinct principal once.
+     *
+     * @return the human readable string for each principal, or the principal itself when it can not be humanized.
+     */
+    default Map<String, String> humanizeUserPrincipals(Collection<String> commandPrincipals) {
+        Map<String, String> result = new HashMap<>();
+        for (String principal : commandPrincipals) {
+            result.computeIfAbsent(principal, p -> Objects.requireNonNullElse(humanizeUserPrincipal(p), p));
+        }
+        return result;
+    }
 }
@@ -19,6 +19,15 @@ public interface ResourceCache {
      */
     Optional<ImmutableResourceSet> lookupResources(CaName member);
 
+    /**
+     * Returns a version of the resources of a RIPE NCC member that changes whenever the resources change, so callers
+     * can detect changes without parsing the resources. {@link Optional#empty()} is returned when the resource cache
+     * is not populated, like {@link #lookupResources(CaName)}.
+     */
+    default Optional<String> lookupResourcesVersion(CaName member) {
+        return lookupResources(member).map(ImmutableResourceSet::toString);
+    }
+
     Optional<Instant> lastUpdateTime();
 
     boolean hasNoMemberResources();
@@ -29,4 +29,11 @@ public interface ResourceLookupService {
      * @throws ResourceInformationNotAvailableException resource information is not available for this CA.
      */
     Optional<ResourceExtension> lookupMemberCaPotentialResources(X500Principal caName) throws ResourceInformationNotAvailableException;
+
+    /**
+     * @param caName the name of the member (hosted or non-hosted) CA.
+     * @return a version of the certifiable resources of the specified CA that changes whenever the resources change,
+     * without parsing the resources. Empty when resource information is not available.
+     */
+    Optional<String> lookupMemberCaPotentialResourcesVersion(X500Principal caName);
 }
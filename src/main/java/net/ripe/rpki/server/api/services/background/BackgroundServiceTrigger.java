@@ -0,0 +1,21 @@
+package net.ripe.rpki.server.api.services.background;
+
+/**
+ * Lets changes that a background service needs to process trigger a run of that service, instead of waiting for its
+ * next scheduled run.
+ */
+public interface BackgroundServiceTrigger {
+
+    /**
+     * Requests a run of the service as soon as possible. Requests made while the service is running result in a
+     * single additional run after the current one. Requests made on a node other than the active node are delivered to
+     * the active node. Only services that are scheduled adaptively are triggered, other services run on their fixed
+     * schedule.
+     */
+    void requestRun(String serviceName);
+
+    /**
+     * Requests a run of the service that publishes objects that are pending publication or withdrawal.
+     */
+    void requestPublication();
+}
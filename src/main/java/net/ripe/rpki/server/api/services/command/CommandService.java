@@ -2,6 +2,10 @@ package net.ripe.rpki.server.api.services.command;
 
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.GroupCommittableCommand;
+
+import java.util.List;
+import java.util.function.BiConsumer;
 
 /**
  * Send commands here. Use getNextId to get unique ids for use in commands.
@@ -26,4 +30,19 @@ public interface CommandService {
      */
     CommandStatus execute(CertificateAuthorityCommand command) throws OfflineResponseProcessorException, CertificateAuthorityNameNotUniqueException;
 
+    /**
+     * <p>
+     * Execute a group of {@link GroupCommittableCommand}s in a single transaction. Every command is executed in its
+     * own savepoint and recorded in the command audit separately, so a failing command only rolls back its own
+     * changes.
+     * </p>
+     * <p>
+     * Commands that fail inside the group, and all commands of a group that could not be committed, are executed
+     * again using {@link #execute(CertificateAuthorityCommand)}. Exceptions of these executions are passed to
+     * <code>onError</code> instead of being thrown.
+     * </p>
+     *
+     * @throws IllegalArgumentException when one of the commands does not implement {@link GroupCommittableCommand}
+     */
+    void executeGroupCommitted(List<? extends CertificateAuthorityCommand> commands, BiConsumer<CertificateAuthorityCommand, Exception> onError);
 }
@@ -10,6 +10,7 @@ import org.joda.time.Instant;
 
 import javax.security.auth.x500.X500Principal;
 import java.util.*;
+import java.util.function.LongPredicate;
 
 /**
  * Read-only service for information related to CertificateAuthorities
@@ -50,10 +51,24 @@ public interface CertificateAuthorityViewService {
      * @param oldestKpCreationTime oldest creation time of keypair to be selected
      * @param type type of ManagedCertificateAuthority to select
      */
-    Collection<ManagedCertificateAuthorityData> findManagedCasEligibleForKeyRoll(
+    default Collection<ManagedCertificateAuthorityData> findManagedCasEligibleForKeyRoll(
         Class<? extends ManagedCertificateAuthority> type,
         Instant oldestKpCreationTime,
         Optional<Integer> batchSize
+    ) {
+        return findManagedCasEligibleForKeyRoll(type, oldestKpCreationTime, batchSize, caId -> true);
+    }
+
+    /**
+     * Like {@link #findManagedCasEligibleForKeyRoll(Class, Instant, Optional)}, but only selects the CAs whose id is
+     * accepted by <code>caIdFilter</code>, so the batch is filled with CAs that are processed by the caller (e.g. the
+     * CAs of the shard of the current node).
+     */
+    Collection<ManagedCertificateAuthorityData> findManagedCasEligibleForKeyRoll(
+        Class<? extends ManagedCertificateAuthority> type,
+        Instant oldestKpCreationTime,
+        Optional<Integer> batchSize,
+        LongPredicate caIdFilter
     );
 
     /**
@@ -83,4 +98,10 @@ public interface CertificateAuthorityViewService {
      * followed by its immediate children, followed by their immediate children, etc).
      */
     List<CertificateAuthorityData> findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth();
+
+    /**
+     * @return the same CAs as {@link #findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()}, with
+     * a list for every depth of the parent CA chain, starting with the shallowest depth
+     */
+    List<List<CertificateAuthorityData>> findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth();
 }
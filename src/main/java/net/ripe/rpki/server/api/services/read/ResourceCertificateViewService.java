@@ -4,6 +4,7 @@ import lombok.NonNull;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.rpki.server.api.dto.ResourceCertificateData;
 
+import java.math.BigInteger;
 import java.security.PublicKey;
 import java.util.Optional;
 
@@ -14,5 +15,10 @@ public interface ResourceCertificateViewService {
 
     Optional<ResourceCertificateData> findCurrentIncomingResourceCertificate(long caId);
 
+    /**
+     * @return the serial number of the current incoming certificate of the CA, without loading the certificate.
+     */
+    Optional<BigInteger> findCurrentIncomingResourceCertificateSerial(long caId);
+
     Optional<ResourceCertificateData> findCurrentOutgoingResourceCertificate(long requestingCaId, @NonNull PublicKey subjectPublicKey);
 }
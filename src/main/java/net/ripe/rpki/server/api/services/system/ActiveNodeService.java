@@ -1,5 +1,7 @@
 package net.ripe.rpki.server.api.services.system;
 
+import java.util.OptionalLong;
+
 public interface ActiveNodeService {
 
     void activateCurrentNode();
@@ -11,4 +13,17 @@ public interface ActiveNodeService {
 	String getActiveNodeName();
 
 	void setActiveNodeName(String nodeName);
+
+    /**
+     * @return the fencing token of the active node lease held by this node, empty when this is not the active node.
+     */
+    OptionalLong getFencingToken();
+
+    /**
+     * Verifies that this node still holds the active node lease with the given fencing token. Must be called in the
+     * transaction that is about to commit, the lease is verified again right before that transaction commits.
+     *
+     * @throws IllegalStateException when the lease was lost
+     */
+    void verifyFencingToken(long fencingToken);
 }
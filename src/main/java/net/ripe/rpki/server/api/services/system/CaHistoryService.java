@@ -1,10 +1,21 @@
 package net.ripe.rpki.server.api.services.system;
 
+import net.ripe.rpki.server.api.dto.CaHistoryPage;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityHistoryItem;
 
+import javax.annotation.CheckForNull;
 import java.util.List;
 
 public interface CaHistoryService {
     List<CertificateAuthorityHistoryItem> getHistoryItems(CertificateAuthorityData certificateAuthority);
+
+    /**
+     * Gets a page of the history of the CA, newest first.
+     *
+     * @param olderThan the cursor returned with the previous page, or <code>null</code> for the most recent items.
+     * @param pageSize maximum number of items returned, limited to the maximum number of history entries.
+     * @throws IllegalArgumentException when the cursor is invalid.
+     */
+    CaHistoryPage getHistoryPage(CertificateAuthorityData certificateAuthority, @CheckForNull String olderThan, int pageSize);
 }
@@ -0,0 +1,15 @@
+package net.ripe.rpki.server.api.services.system;
+
+/**
+ * Partitions per-CA background work across the live nodes. When sharding is disabled all work stays on the active
+ * node, see {@link ActiveNodeService}.
+ */
+public interface CaShardService {
+
+    boolean isEnabled();
+
+    /**
+     * @return true when sharding is enabled and per-CA background work for the CA is assigned to this node
+     */
+    boolean isAssignedToCurrentNode(long caId);
+}
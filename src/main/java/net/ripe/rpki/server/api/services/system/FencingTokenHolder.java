@@ -0,0 +1,45 @@
+package net.ripe.rpki.server.api.services.system;
+
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+
+/**
+ * Holds the fencing token of the active node lease that the background job running on the current thread was started
+ * with. Commands executed for the background job verify the token before committing.
+ */
+public final class FencingTokenHolder {
+
+    private FencingTokenHolder() {
+        //Utility classes should not have a public or default constructor.
+    }
+
+    /** Thread local holder of the fencing token. */
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    public static OptionalLong get() {
+        Long token = CURRENT.get();
+        return token == null ? OptionalLong.empty() : OptionalLong.of(token);
+    }
+
+    /**
+     * Runs <code>callable</code> with the fencing token set (or cleared when empty), restoring the previous token
+     * afterwards.
+     */
+    public static <T> T with(OptionalLong fencingToken, Callable<T> callable) throws Exception {
+        Long previous = CURRENT.get();
+        try {
+            if (fencingToken.isPresent()) {
+                CURRENT.set(fencingToken.getAsLong());
+            } else {
+                CURRENT.remove();
+            }
+            return callable.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -1,33 +1,113 @@
 package net.ripe.rpki.services.impl;
 
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.domain.property.ActiveNodeLease;
+import net.ripe.rpki.domain.property.ActiveNodeLeaseRepository;
 import net.ripe.rpki.server.api.configuration.Environment;
-import net.ripe.rpki.domain.property.PropertyEntity;
-import net.ripe.rpki.domain.property.PropertyEntityRepository;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.CheckForNull;
 import jakarta.inject.Inject;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-
+/**
+ * The active node holds a lease in the database that it renews with a heartbeat. Whether this node is the active node
+ * is answered from memory: the lease is considered held until its duration has passed since the start of the last
+ * successful renewal, which is never later than the expiry time in the database.
+ * <p>
+ * An administrator assigns the lease to a node. When take-over is enabled any node can acquire the lease after it
+ * expired, e.g. when the active node stopped. Every change of owner increments the fencing token. Background jobs
+ * verify their fencing token in the transactions they commit, both when the command starts and right before commit,
+ * so a former active node that was paused for longer than the lease duration does not commit changes after another
+ * node took over. The first check takes a shared lock on the fencing token that is held until the transaction
+ * completes, and a take-over or assignment waits for it, so a transaction that passed the check commits before the
+ * lease changes owner. The lease itself is read in a separate read committed transaction, since the snapshot of a
+ * repeatable read transaction would not show a take-over or renewal that committed after it started.
+ */
+@Slf4j
 @Service
-@Transactional
-public class ActiveNodeServiceBean implements ActiveNodeService {
-    public static final String ACTIVE_NODE_KEY = "activeNode";
+public class ActiveNodeServiceBean implements ActiveNodeService, SmartLifecycle {
+
+    private final ActiveNodeLeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate mandatoryTransactionTemplate;
+    private final TransactionTemplate leaseCheckTransactionTemplate;
+    private final Duration leaseDuration;
+    private final Duration heartbeatInterval;
+    private final boolean takeOverExpiredLease;
+    private final Ticker ticker;
+    private final Counter lostLeaseCounter;
+
+    /**
+     * Transaction resource key marking that the lease is verified again before the current transaction commits.
+     */
+    private final Object verifyBeforeCommitKey = new Object();
 
-    private final PropertyEntityRepository propertyEntityRepository;
+    @CheckForNull
+    private volatile HeldLease heldLease;
+
+    @CheckForNull
+    private ScheduledExecutorService heartbeatExecutor;
 
     @Inject
-    public ActiveNodeServiceBean(PropertyEntityRepository propertyEntityRepository, MeterRegistry meterRegistry) {
-        this.propertyEntityRepository = propertyEntityRepository;
+    public ActiveNodeServiceBean(ActiveNodeLeaseRepository leaseRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${active.node.lease.duration:PT1M}") Duration leaseDuration,
+                                 @Value("${active.node.lease.heartbeat.interval:PT10S}") Duration heartbeatInterval,
+                                 @Value("${active.node.lease.take-over:true}") boolean takeOverExpiredLease) {
+        this(leaseRepository, transactionManager, meterRegistry, leaseDuration, heartbeatInterval, takeOverExpiredLease, Ticker.systemTicker());
+    }
+
+    ActiveNodeServiceBean(ActiveNodeLeaseRepository leaseRepository,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          Duration leaseDuration,
+                          Duration heartbeatInterval,
+                          boolean takeOverExpiredLease,
+                          Ticker ticker) {
+        this.leaseRepository = leaseRepository;
+        // Read committed, so a take-over that waited for the lock on the fencing token sees the latest lease
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.leaseCheckTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseCheckTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseCheckTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.leaseCheckTransactionTemplate.setReadOnly(true);
+        this.mandatoryTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.mandatoryTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_MANDATORY);
+        this.leaseDuration = leaseDuration;
+        this.heartbeatInterval = heartbeatInterval;
+        this.takeOverExpiredLease = takeOverExpiredLease;
+        this.ticker = ticker;
 
         // Reference is kept through the meter registry
         Gauge.builder("rpkicore_is_active_node", () -> this.isActiveNode() ? 1 : 0)
                 .description("Is the current node the active node")
                 .tag("node", getCurrentNodeName())
                 .register(meterRegistry);
+        this.lostLeaseCounter = Counter.builder("rpkicore.active.node.lease.fencing.rejected")
+                .description("Number of transactions rejected because the active node lease was lost")
+                .register(meterRegistry);
     }
 
     @Override
@@ -40,41 +120,155 @@ public class ActiveNodeServiceBean implements ActiveNodeService {
         return Environment.getInstanceName();
     }
 
-	private boolean isActiveNode(String nodeName) {
-		return nodeName.equals(getActiveNodeName());
-	}
+    @Override
+    public boolean isActiveNode() {
+        return getFencingToken().isPresent();
+    }
 
     @Override
-    public boolean isActiveNode() { return this.isActiveNode(getCurrentNodeName()); }
+    public OptionalLong getFencingToken() {
+        HeldLease lease = heldLease;
+        return lease != null && lease.isValidAt(ticker.read()) ? OptionalLong.of(lease.fencingToken()) : OptionalLong.empty();
+    }
+
+    @Override
+    public String getActiveNodeName() {
+        return transactionTemplate.execute(status -> leaseRepository.find().map(ActiveNodeLease::owner).orElse(null));
+    }
+
+    @Override
+    public void setActiveNodeName(String nodeName) {
+        long startedAt = ticker.read();
+        ActiveNodeLease lease = transactionTemplate.execute(status -> leaseRepository.assign(nodeName, leaseDuration));
+        log.info("Active node lease assigned to {} with fencing token {}", lease.owner(), lease.fencingToken());
+        updateHeldLease(Optional.of(lease), startedAt);
+    }
+
+    @Override
+    public void verifyFencingToken(long fencingToken) {
+        mandatoryTransactionTemplate.executeWithoutResult(status -> {
+            // Lock before reading the lease, so a take-over either committed before the check or waits until this
+            // transaction completes.
+            leaseRepository.lockFencingToken(fencingToken);
+            checkLeaseHeld(fencingToken);
+
+            // The lease row is not locked, since that would block the heartbeat from renewing the lease for as long
+            // as the transaction runs. Check the lease again right before the transaction commits, since it may have
+            // expired in the meantime.
+            if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(verifyBeforeCommitKey)) {
+                TransactionSynchronizationManager.bindResource(verifyBeforeCommitKey, fencingToken);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        checkLeaseHeld(fencingToken);
+                    }
 
-	@Override
-	public String getActiveNodeName() {
-		return getValueForKey(ACTIVE_NODE_KEY);
-	}
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(verifyBeforeCommitKey);
+                    }
+                });
+            }
+        });
+    }
+
+    private void checkLeaseHeld(long fencingToken) {
+        boolean held = Boolean.TRUE.equals(leaseCheckTransactionTemplate.execute(status -> leaseRepository.isHeld(getCurrentNodeName(), fencingToken)));
+        if (!held) {
+            lostLeaseCounter.increment();
+            throw new IllegalStateException("node " + getCurrentNodeName() + " no longer holds the active node lease with fencing token " + fencingToken);
+        }
+    }
+
+    /**
+     * Renews the lease held by this node, picks up a lease assigned to this node, or takes over an expired lease.
+     */
+    void heartbeat() {
+        long startedAt = ticker.read();
+        String nodeName = getCurrentNodeName();
+        HeldLease held = heldLease;
+        try {
+            Optional<ActiveNodeLease> lease = transactionTemplate.execute(status -> {
+                if (held != null) {
+                    Optional<ActiveNodeLease> renewed = leaseRepository.renew(nodeName, held.fencingToken(), leaseDuration);
+                    if (renewed.isPresent()) {
+                        return renewed;
+                    }
+                }
+                Optional<ActiveNodeLease> current = leaseRepository.find().filter(l -> l.owner().equals(nodeName));
+                if (current.isPresent()) {
+                    return leaseRepository.renew(nodeName, current.get().fencingToken(), leaseDuration);
+                }
+                return takeOverExpiredLease ? leaseRepository.acquireExpired(nodeName, leaseDuration) : Optional.empty();
+            });
+            updateHeldLease(lease, startedAt);
+        } catch (RuntimeException e) {
+            // Keep the lease in memory, it will no longer be considered held once the lease duration has passed
+            log.warn("Failed to renew the active node lease", e);
+        }
+    }
 
-	@Override
-	public void setActiveNodeName(String nodeName) {
-		setValueForKey(ACTIVE_NODE_KEY, nodeName);
-	}
+    private void updateHeldLease(Optional<ActiveNodeLease> lease, long startedAt) {
+        String nodeName = getCurrentNodeName();
+        HeldLease previous = heldLease;
+        HeldLease next = lease
+            .filter(l -> l.owner().equals(nodeName))
+            .map(l -> new HeldLease(l.fencingToken(), startedAt + leaseDuration.toNanos()))
+            .orElse(null);
+        heldLease = next;
 
+        if (next != null && (previous == null || previous.fencingToken() != next.fencingToken())) {
+            log.info("Node {} acquired the active node lease with fencing token {}", nodeName, next.fencingToken());
+        } else if (next == null && previous != null) {
+            log.warn("Node {} lost the active node lease with fencing token {}", nodeName, previous.fencingToken());
+        }
+    }
 
-    private String getValueForKey(String key) {
-        PropertyEntity property = propertyEntityRepository.findByKey(key);
-        return property != null? property.getValue() : null;
+    @Override
+    public synchronized void start() {
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("active-node-heartbeat-%d").setDaemon(true).build()
+        );
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    private void setValueForKey(String key, String value) {
-        PropertyEntity property = propertyEntityRepository.findByKey(key);
-        if (property == null) {
-            addProperty(key, value);
-        } else {
-            property.setValue(value);
-            propertyEntityRepository.merge(property);
+    @Override
+    public synchronized void stop() {
+        if (heartbeatExecutor != null) {
+            MoreExecutors.shutdownAndAwaitTermination(heartbeatExecutor, Duration.ofSeconds(5));
+            heartbeatExecutor = null;
+        }
+
+        // Let another node take over immediately instead of waiting for the lease to expire
+        HeldLease held = heldLease;
+        heldLease = null;
+        if (held != null) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> leaseRepository.release(getCurrentNodeName(), held.fencingToken()));
+                log.info("Released the active node lease with fencing token {}", held.fencingToken());
+            } catch (RuntimeException e) {
+                log.warn("Failed to release the active node lease", e);
+            }
         }
     }
 
-    private void addProperty(String key, String value) {
-        propertyEntityRepository.add(new PropertyEntity(key, value));
+    @Override
+    public synchronized boolean isRunning() {
+        return heartbeatExecutor != null;
     }
 
+    @Override
+    public int getPhase() {
+        // Start before and stop after the background services
+        return DEFAULT_PHASE - 1;
+    }
+
+    /**
+     * @param validUntilNanos ticker value until which the lease is held, measured from the start of the renewal
+     */
+    private record HeldLease(long fencingToken, long validUntilNanos) {
+        boolean isValidAt(long nanos) {
+            return nanos - validUntilNanos < 0;
+        }
+    }
 }
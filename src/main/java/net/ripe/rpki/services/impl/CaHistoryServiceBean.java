@@ -1,21 +1,51 @@
 package net.ripe.rpki.services.impl;
 
+import net.ripe.rpki.application.impl.CommandAuditServiceBean;
+import net.ripe.rpki.commons.util.VersionedId;
+import net.ripe.rpki.server.api.commands.CertificateAuthorityCommandGroup;
+import net.ripe.rpki.server.api.dto.CaHistoryPage;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityHistoryItem;
+import net.ripe.rpki.server.api.dto.CommandAuditData;
+import net.ripe.rpki.server.api.dto.ProvisioningAuditData;
 import net.ripe.rpki.server.api.services.system.CaHistoryService;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 @Service
 public class CaHistoryServiceBean implements CaHistoryService {
+    private static final String COMMAND_SOURCE = "C";
+    private static final String PROVISIONING_SOURCE = "P";
+
     private final CertificateAuthorityViewService certificateAuthorityViewService;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
     public CaHistoryServiceBean(CertificateAuthorityViewService certificateAuthorityViewService) {
+        this(certificateAuthorityViewService, null);
+    }
+
+    CaHistoryServiceBean(CertificateAuthorityViewService certificateAuthorityViewService, EntityManager entityManager) {
         this.certificateAuthorityViewService = certificateAuthorityViewService;
+        this.entityManager = entityManager;
     }
+
     @Override
     public List<CertificateAuthorityHistoryItem> getHistoryItems(CertificateAuthorityData certificateAuthority) {
         List<CertificateAuthorityHistoryItem> historyItems = new ArrayList<>();
@@ -25,4 +55,98 @@ public class CaHistoryServiceBean implements CaHistoryService {
         historyItems.sort((object1, object2) -> object2.getExecutionTime().compareTo(object1.getExecutionTime()));
         return historyItems;
     }
-}
\ No newline at end of file
+
+    /**
+     * Merges the command audit and provisioning audit log in the database. Both sources are read newest first using
+     * their (CA, execution time) index and are limited to the page size before merging, so a page only reads as many
+     * rows as it returns (plus one to detect the next page). Items are ordered by (execution time, source, id), which
+     * is unique and used as the cursor.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public CaHistoryPage getHistoryPage(CertificateAuthorityData certificateAuthority, String olderThan, int pageSize) {
+        int limit = Math.max(1, Math.min(pageSize, CommandAuditServiceBean.MAX_HISTORY_ENTRIES_RETURNED));
+        Cursor cursor = olderThan == null ? null : Cursor.parse(olderThan);
+
+        String commandCondition = cursor == null ? "" : " AND cd.executiontime <= :time AND (cd.executiontime, '" + COMMAND_SOURCE + "', cd.id) < (:time, :source, :id)";
+        String provisioningCondition = cursor == null ? "" : " AND pal.executiontime <= :time AND (pal.executiontime, '" + PROVISIONING_SOURCE + "', pal.id) < (:time, :source, :id)";
+        Query query = entityManager.createNativeQuery(
+            "SELECT * FROM (" +
+                "  (SELECT '" + COMMAND_SOURCE + "' AS source, cd.id, cd.executiontime, cd.principal, cd.commandtype, cd.commandgroup, " +
+                "          cd.commandsummary AS summary, cd.commandevents, cd.ca_id, cd.ca_version " +
+                "     FROM commandaudit cd " +
+                "    WHERE cd.ca_id = :caId AND cd.deleted_at IS NULL" + commandCondition +
+                "    ORDER BY cd.executiontime DESC, cd.id DESC " +
+                "    LIMIT :limit) " +
+                "  UNION ALL " +
+                "  (SELECT '" + PROVISIONING_SOURCE + "' AS source, pal.id, pal.executiontime, pal.principal, NULL, NULL, " +
+                "          pal.summary, NULL, NULL, NULL " +
+                "     FROM provisioning_audit_log pal " +
+                "    WHERE pal.non_hosted_ca_uuid = :caUuid" + provisioningCondition +
+                "    ORDER BY pal.executiontime DESC, pal.id DESC " +
+                "    LIMIT :limit) " +
+                ") history " +
+                "ORDER BY history.executiontime DESC, history.source DESC, history.id DESC " +
+                "LIMIT :limit")
+            .setParameter("caId", certificateAuthority.getId())
+            .setParameter("caUuid", certificateAuthority.getUuid())
+            .setParameter("limit", limit + 1);
+        if (cursor != null) {
+            query.setParameter("time", cursor.executionTime())
+                .setParameter("source", cursor.source())
+                .setParameter("id", cursor.id());
+        }
+
+        List<Object[]> rows = query.getResultList();
+        List<CertificateAuthorityHistoryItem> items = rows.stream().limit(limit).map(CaHistoryServiceBean::toHistoryItem).toList();
+        String next = null;
+        if (rows.size() > limit) {
+            Object[] last = rows.get(limit - 1);
+            next = new Cursor((Instant) last[2], (String) last[0], ((Number) last[1]).longValue()).format();
+        }
+        return new CaHistoryPage(items, next);
+    }
+
+    private static CertificateAuthorityHistoryItem toHistoryItem(Object[] row) {
+        DateTime executionTime = new DateTime(((Instant) row[2]).toEpochMilli(), DateTimeZone.UTC);
+        String principal = (String) row[3];
+        String summary = (String) row[6];
+        if (PROVISIONING_SOURCE.equals(row[0])) {
+            return new ProvisioningAuditData(executionTime, principal, summary);
+        }
+        return new CommandAuditData(
+            executionTime,
+            new VersionedId(((Number) row[8]).longValue(), ((Number) row[9]).longValue()),
+            principal,
+            (String) row[4],
+            CertificateAuthorityCommandGroup.valueOf((String) row[5]),
+            summary,
+            (String) row[7]
+        );
+    }
+
+    /**
+     * Position in the history, encoded as an opaque URL-safe string.
+     */
+    record Cursor(Instant executionTime, String source, long id) {
+        private static final String SEPARATOR = "/";
+
+        String format() {
+            String value = executionTime + SEPARATOR + source + SEPARATOR + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        static Cursor parse(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(SEPARATOR, -1);
+                if (parts.length != 3 || !(COMMAND_SOURCE.equals(parts[1]) || PROVISIONING_SOURCE.equals(parts[1]))) {
+                    throw new IllegalArgumentException("invalid history cursor: " + cursor);
+                }
+                return new Cursor(Instant.parse(parts[0]), parts[1], Long.parseLong(parts[2]));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("invalid history cursor: " + cursor, e);
+            }
+        }
+    }
+}
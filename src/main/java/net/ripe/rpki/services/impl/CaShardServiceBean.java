@@ -0,0 +1,220 @@
+package net.ripe.rpki.services.impl;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.domain.property.NodeMembershipRepository;
+import net.ripe.rpki.server.api.configuration.Environment;
+import net.ripe.rpki.server.api.services.system.CaShardService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.CheckForNull;
+import jakarta.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns CAs to the live nodes using consistent hashing. Every node registers itself in the membership table with a
+ * heartbeat and rebuilds its hash ring when the set of live nodes changes, so a node joining or leaving only moves the
+ * CAs of its own shard. All nodes read the same membership table, so they converge on the same assignment within a
+ * heartbeat interval. Per-CA commands lock the CA, so the short overlap while nodes converge is harmless.
+ * <p>
+ * Like the active node lease, a node only considers its shard assigned until the membership timeout has passed since
+ * its last successful heartbeat. By then the other nodes no longer see it as live and take over its CAs.
+ */
+@Slf4j
+@Service
+public class CaShardServiceBean implements CaShardService, SmartLifecycle {
+
+    static final int VIRTUAL_NODES_PER_NODE = 64;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final NodeMembershipRepository membershipRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration heartbeatInterval;
+    private final Duration membershipTimeout;
+    private final Ticker ticker;
+    private final Counter rebalanceCounter;
+
+    @CheckForNull
+    private volatile Membership membership;
+
+    @CheckForNull
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @Inject
+    public CaShardServiceBean(NodeMembershipRepository membershipRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${background-services.sharding.enabled:false}") boolean enabled,
+                              @Value("${background-services.sharding.heartbeat.interval:PT10S}") Duration heartbeatInterval,
+                              @Value("${background-services.sharding.membership.timeout:PT1M}") Duration membershipTimeout) {
+        this(membershipRepository, transactionManager, meterRegistry, enabled, heartbeatInterval, membershipTimeout, Ticker.systemTicker());
+    }
+
+    CaShardServiceBean(NodeMembershipRepository membershipRepository,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       boolean enabled,
+                       Duration heartbeatInterval,
+                       Duration membershipTimeout,
+                       Ticker ticker) {
+        this.membershipRepository = membershipRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.heartbeatInterval = heartbeatInterval;
+        this.membershipTimeout = membershipTimeout;
+        this.ticker = ticker;
+
+        // Reference is kept through the meter registry
+        Gauge.builder("rpkicore.sharding.live.nodes", () -> {
+                Membership current = membership;
+                return current == null ? 0 : current.nodes().size();
+            })
+            .description("Number of live nodes the per-CA background work is sharded across")
+            .tag("node", getCurrentNodeName())
+            .register(meterRegistry);
+        this.rebalanceCounter = Counter.builder("rpkicore.sharding.rebalanced")
+            .description("Number of times the CA shards were rebalanced because the live nodes changed")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isAssignedToCurrentNode(long caId) {
+        Membership current = membership;
+        return enabled
+            && current != null
+            && current.isValidAt(ticker.read())
+            && getCurrentNodeName().equals(current.ring().ownerOf(caId));
+    }
+
+    String getCurrentNodeName() {
+        return Environment.getInstanceName();
+    }
+
+    /**
+     * Refreshes the heartbeat of this node and rebalances the shards when the live nodes changed.
+     */
+    void heartbeat() {
+        long startedAt = ticker.read();
+        String nodeName = getCurrentNodeName();
+        try {
+            List<String> liveNodes = transactionTemplate.execute(status -> {
+                membershipRepository.heartbeat(nodeName);
+                return membershipRepository.findLiveNodes(membershipTimeout);
+            });
+            updateMembership(liveNodes, startedAt);
+        } catch (RuntimeException e) {
+            // Keep the shard in memory, it will no longer be considered assigned once the membership timeout has passed
+            log.warn("Failed to refresh the background node membership", e);
+        }
+    }
+
+    private void updateMembership(List<String> liveNodes, long startedAt) {
+        Membership previous = membership;
+        Ring ring = previous != null && previous.nodes().equals(liveNodes) ? previous.ring() : Ring.of(liveNodes);
+        membership = new Membership(liveNodes, ring, startedAt + membershipTimeout.toNanos());
+
+        if (previous == null || !previous.nodes().equals(liveNodes)) {
+            rebalanceCounter.increment();
+            log.info("Rebalanced per-CA background work of node {} across live nodes {}", getCurrentNodeName(), liveNodes);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("background-node-heartbeat-%d").setDaemon(true).build()
+        );
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (heartbeatExecutor == null) {
+            return;
+        }
+        MoreExecutors.shutdownAndAwaitTermination(heartbeatExecutor, Duration.ofSeconds(5));
+        heartbeatExecutor = null;
+
+        // Let the other nodes take over the shard immediately instead of waiting for the membership timeout
+        membership = null;
+        try {
+            transactionTemplate.executeWithoutResult(status -> membershipRepository.remove(getCurrentNodeName()));
+            log.info("Node {} left the background node membership", getCurrentNodeName());
+        } catch (RuntimeException e) {
+            log.warn("Failed to leave the background node membership", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return heartbeatExecutor != null;
+    }
+
+    @Override
+    public int getPhase() {
+        // Start before and stop after the background services
+        return DEFAULT_PHASE - 1;
+    }
+
+    /**
+     * @param validUntilNanos ticker value until which this node considers the membership current
+     */
+    private record Membership(List<String> nodes, Ring ring, long validUntilNanos) {
+        boolean isValidAt(long nanos) {
+            return nanos - validUntilNanos < 0;
+        }
+    }
+
+    /**
+     * Consistent hash ring with a number of virtual nodes per node to spread the CAs evenly.
+     */
+    record Ring(ImmutableSortedMap<Long, String> positions) {
+        static Ring of(List<String> nodes) {
+            TreeMap<Long, String> positions = new TreeMap<>();
+            for (String node : nodes) {
+                for (int i = 0; i < VIRTUAL_NODES_PER_NODE; ++i) {
+                    positions.put(HASH_FUNCTION.hashString(node + "#" + i, StandardCharsets.UTF_8).asLong(), node);
+                }
+            }
+            return new Ring(ImmutableSortedMap.copyOfSorted(positions));
+        }
+
+        @CheckForNull
+        String ownerOf(long caId) {
+            if (positions.isEmpty()) {
+                return null;
+            }
+            Map.Entry<Long, String> entry = positions.ceilingEntry(HASH_FUNCTION.hashLong(caId).asLong());
+            return entry != null ? entry.getValue() : positions.firstEntry().getValue();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.ripe.rpki.services.impl.background;
 
 import net.ripe.rpki.application.CertificationConfiguration;
+import net.ripe.rpki.core.services.background.BackgroundServicePriority;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
@@ -47,7 +48,8 @@ public abstract class AbstractKeyRolloverManagementServiceBean extends Sequentia
 
         final Instant oldestCreationTime = Instant.now().minus(
             Duration.standardDays(certificationConfiguration.getAutoKeyRolloverMaxAgeDays()));
-        runParallel(caViewService.findManagedCasEligibleForKeyRoll(type, oldestCreationTime, actualBatchSize)
+        // Select by shard before applying the batch size, so every node rolls a full batch of its own CAs
+        runParallel(caViewService.findManagedCasEligibleForKeyRoll(type, oldestCreationTime, actualBatchSize, this::isAssignedToCurrentNode)
             .stream()
             .map(ca -> task(
                 () -> commandService.execute(new KeyManagementInitiateRollCommand(ca.getVersionedId(), certificationConfiguration.getAutoKeyRolloverMaxAgeDays())),
@@ -55,6 +57,16 @@ public abstract class AbstractKeyRolloverManagementServiceBean extends Sequentia
             )));
     }
 
+    @Override
+    protected BackgroundServicePriority getPriority() {
+        return BackgroundServicePriority.LOW;
+    }
+
+    @Override
+    protected boolean isSharded() {
+        return true;
+    }
+
     @Override
     public Map<String, String> supportedParameters() {
         return defaultBatchSize
@@ -0,0 +1,271 @@
+package net.ripe.rpki.services.impl.background;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.domain.property.BackgroundServiceRunRequestRepository;
+import net.ripe.rpki.server.api.services.background.BackgroundServiceTrigger;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.CheckForNull;
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+/**
+ * Schedules background services with a single-shot trigger that is moved after every run, based on the workload the
+ * run reported (see {@link AdaptiveInterval}). Change events can move the trigger forward with
+ * {@link #requestRun(String)}, so changes are processed quickly without polling every minute when nothing changes.
+ * <p>
+ * Every node schedules the services, but they only run on the active node. A run requested on another node (e.g. the
+ * node that handled the API request that created ROAs) is stored in the database, and the active node polls for these
+ * requests with a cheap query on a table that is almost always empty.
+ */
+@Slf4j
+@Component
+public class AdaptiveBackgroundServiceScheduler implements BackgroundServiceTrigger, SmartLifecycle {
+
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final ActiveNodeService activeNodeService;
+    private final BackgroundServiceRunRequestRepository runRequestRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration runRequestPollInterval;
+
+    private final ConcurrentHashMap<String, ServiceSchedule> schedules = new ConcurrentHashMap<>();
+
+    @CheckForNull
+    private ScheduledExecutorService runRequestPollExecutor;
+
+    @Inject
+    public AdaptiveBackgroundServiceScheduler(Scheduler scheduler,
+                                              MeterRegistry meterRegistry,
+                                              ActiveNodeService activeNodeService,
+                                              BackgroundServiceRunRequestRepository runRequestRepository,
+                                              PlatformTransactionManager transactionManager,
+                                              @Value("${background-services.adaptive.enabled:false}") boolean enabled,
+                                              @Value("${background-services.adaptive.run-request.poll-interval:PT5S}") Duration runRequestPollInterval) {
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+        this.activeNodeService = activeNodeService;
+        this.runRequestRepository = runRequestRepository;
+        // Requests are made after the transaction that made the changes completed
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.runRequestPollInterval = runRequestPollInterval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedules the first run of the (durable) job, later runs are scheduled when the previous run completes.
+     */
+    void schedule(JobDetail job, Date startAt, AdaptiveInterval interval) throws SchedulerException {
+        String serviceName = job.getKey().getName();
+        ServiceSchedule schedule = new ServiceSchedule(serviceName, interval, startAt.toInstant());
+        schedules.put(serviceName, schedule);
+        Gauge.builder("rpkicore.service.adaptive.interval.seconds", schedule, s -> s.currentInterval().toMillis() / 1000.0)
+            .description("Current interval between runs of an adaptively scheduled service")
+            .tag("service", serviceName)
+            .register(meterRegistry);
+
+        scheduler.scheduleJob(job, trigger(serviceName, startAt));
+        log.info("Scheduled '{}' adaptively every {} to {}, starting from '{}'", serviceName, interval.min(), interval.max(), startAt);
+    }
+
+    void onStarted(String serviceName) {
+        ServiceSchedule schedule = schedules.get(serviceName);
+        if (schedule != null) {
+            schedule.started();
+        }
+    }
+
+    void onCompleted(String serviceName, BackgroundServiceExecutionResult result) {
+        ServiceSchedule schedule = schedules.get(serviceName);
+        if (schedule != null) {
+            reschedule(serviceName, schedule.completed(result, Instant.now()));
+        }
+    }
+
+    @Override
+    public void requestRun(String serviceName) {
+        ServiceSchedule schedule = schedules.get(serviceName);
+        if (schedule == null) {
+            return;
+        }
+        if (activeNodeService.isActiveNode()) {
+            requestLocalRun(serviceName, schedule);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> runRequestRepository.request(serviceName));
+            log.debug("Requested a run of '{}' on the active node", serviceName);
+        } catch (RuntimeException e) {
+            // The service still runs within its maximum interval
+            log.warn("Failed to request a run of '{}' on the active node", serviceName, e);
+        }
+    }
+
+    /**
+     * Runs the services that other nodes requested, when this node is the active node.
+     */
+    void pollRunRequests() {
+        if (!activeNodeService.isActiveNode()) {
+            return;
+        }
+        try {
+            List<String> requested = transactionTemplate.execute(status -> runRequestRepository.takeRequested());
+            for (String serviceName : requested) {
+                ServiceSchedule schedule = schedules.get(serviceName);
+                if (schedule != null) {
+                    requestLocalRun(serviceName, schedule);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll for background service run requests", e);
+        }
+    }
+
+    private void requestLocalRun(String serviceName, ServiceSchedule schedule) {
+        schedule.requestRun(Instant.now()).ifPresent(startAt -> reschedule(serviceName, startAt));
+    }
+
+    @Override
+    public void requestPublication() {
+        requestRun(PUBLIC_REPOSITORY_PUBLICATION_SERVICE);
+    }
+
+    private void reschedule(String serviceName, Instant startAt) {
+        try {
+            Trigger trigger = trigger(serviceName, Date.from(startAt));
+            if (scheduler.rescheduleJob(trigger.getKey(), trigger) == null) {
+                // The single-shot trigger was removed after it fired
+                scheduler.scheduleJob(trigger);
+            }
+            log.debug("Next run of '{}' at '{}'", serviceName, startAt);
+        } catch (SchedulerException e) {
+            log.error("Failed to reschedule background service '{}'", serviceName, e);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        runRequestPollExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("background-service-run-request-poll-%d").setDaemon(true).build()
+        );
+        runRequestPollExecutor.scheduleWithFixedDelay(this::pollRunRequests, runRequestPollInterval.toMillis(), runRequestPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (runRequestPollExecutor != null) {
+            MoreExecutors.shutdownAndAwaitTermination(runRequestPollExecutor, Duration.ofSeconds(5));
+            runRequestPollExecutor = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return runRequestPollExecutor != null;
+    }
+
+    private static Trigger trigger(String serviceName, Date startAt) {
+        return newTrigger()
+            .withIdentity(TriggerKey.triggerKey(serviceName + "Trigger"))
+            .forJob(serviceName)
+            .startAt(startAt)
+            .build();
+    }
+
+    /**
+     * Interval and pending run requests of a service. A run that is requested while the service is running is
+     * scheduled when it completes, so a change committed after the running service read its input is not missed.
+     */
+    static final class ServiceSchedule {
+        private final String serviceName;
+        private final AdaptiveInterval interval;
+
+        private Duration currentInterval;
+        private Instant nextRunAt;
+        private boolean running;
+        private boolean runRequested;
+
+        ServiceSchedule(String serviceName, AdaptiveInterval interval, Instant nextRunAt) {
+            this.serviceName = serviceName;
+            this.interval = interval;
+            this.currentInterval = interval.min();
+            this.nextRunAt = nextRunAt;
+        }
+
+        synchronized Duration currentInterval() {
+            return currentInterval;
+        }
+
+        synchronized void started() {
+            running = true;
+            runRequested = false;
+        }
+
+        /**
+         * @return the time of the next run
+         */
+        synchronized Instant completed(BackgroundServiceExecutionResult result, Instant now) {
+            Duration previous = currentInterval;
+            currentInterval = interval.next(currentInterval, result);
+            if (!currentInterval.equals(previous)) {
+                log.info("Interval of '{}' changed from {} to {} after a run with workload {}", serviceName, previous, currentInterval, result.getWorkload());
+            }
+            running = false;
+            nextRunAt = runRequested ? now : now.plus(currentInterval);
+            runRequested = false;
+            return nextRunAt;
+        }
+
+        /**
+         * @return the time of the next run if it needs to be moved forward
+         */
+        synchronized Optional<Instant> requestRun(Instant now) {
+            if (running) {
+                runRequested = true;
+                return Optional.empty();
+            }
+            if (!nextRunAt.isAfter(now)) {
+                // Already due, the request is coalesced with the pending run
+                return Optional.empty();
+            }
+            nextRunAt = now;
+            return Optional.of(now);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package net.ripe.rpki.services.impl.background;
+
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import org.apache.commons.lang.Validate;
+
+import java.time.Duration;
+
+/**
+ * Bounds and policy for the interval between runs of an adaptively scheduled background service. The interval doubles
+ * after an idle run, halves after a run that did work and drops to the minimum when the service reports a backlog.
+ * Unless there is a backlog the interval is at least as long as the last run, so a slow service does not spend most
+ * of its time running. Skipped and failed runs, and runs that do not report their workload, keep the interval.
+ */
+record AdaptiveInterval(Duration min, Duration max) {
+
+    AdaptiveInterval {
+        Validate.isTrue(!min.isNegative() && !min.isZero(), "minimum interval must be positive");
+        Validate.isTrue(min.compareTo(max) <= 0, "minimum interval must not exceed the maximum interval");
+    }
+
+    Duration next(Duration current, BackgroundServiceExecutionResult result) {
+        if (result.getStatus() != BackgroundServiceExecutionResult.Status.SUCCESS) {
+            return current;
+        }
+        Duration next = switch (result.getWorkload()) {
+            case UNKNOWN -> current;
+            case IDLE -> current.multipliedBy(2);
+            case DID_WORK -> current.dividedBy(2);
+            case BACKLOG -> min;
+        };
+        if (result.getWorkload() != BackgroundServiceExecutionResult.Workload.BACKLOG) {
+            next = max(next, Duration.ofMillis(result.getPureDuration()));
+        }
+        return clamp(next);
+    }
+
+    Duration clamp(Duration interval) {
+        return interval.compareTo(min) < 0 ? min : interval.compareTo(max) > 0 ? max : interval;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
@@ -3,6 +3,9 @@ package net.ripe.rpki.services.impl.background;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
+import net.ripe.rpki.domain.CaUpdateNeededRepository;
+import net.ripe.rpki.domain.CertificateAuthority;
+import net.ripe.rpki.core.services.background.BackgroundServicePriority;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.commands.UpdateAllIncomingResourceCertificatesCommand;
@@ -11,14 +14,19 @@ import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.services.command.CommandService;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
 import jakarta.persistence.EntityNotFoundException;
 import javax.security.auth.x500.X500Principal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -26,9 +34,28 @@ import java.util.stream.Stream;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.ALL_CA_CERTIFICATE_UPDATE_SERVICE;
 
+/**
+ * Updates the incoming resource certificates of the CAs in the CA tree, parents before their children.
+ * <p>
+ * When change-driven updates are enabled only the hosted and non-hosted CAs in the {@link CaUpdateNeededRepository}
+ * index are updated. The index is populated when the resources of a CA change in the resource cache, when the parent
+ * of a CA activates or loses a key, and by a query for incoming certificates that expire before the current validity
+ * time. Since most CAs need no update on most runs this avoids tens of thousands of commands without effect. A full
+ * sweep of all CAs is still done at a low frequency as a safety net, and can be forced using the
+ * <code>fullSweep</code> parameter.
+ * <p>
+ * When sharding is enabled every node updates the hosted and non-hosted CAs in its shard. The other CAs are their
+ * parents, so every node updates them before the CAs in its shard. The batch size applies per node.
+ */
 @Service(ALL_CA_CERTIFICATE_UPDATE_SERVICE)
 public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
+    public static final String FULL_SWEEP_PARAMETER = "fullSweep";
+
     private final int updateBatchSize;
+    private final boolean changeDrivenEnabled;
+    private final Duration fullSweepInterval;
+
+    private volatile Instant lastFullSweepAt;
 
     private final Counter certificateUpdates;
 
@@ -36,6 +63,8 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
     private final CommandService commandService;
     private final ResourceCache resourceCache;
     private final RepositoryConfiguration repositoryConfiguration;
+    private final CaUpdateNeededRepository caUpdateNeededRepository;
+    private final TransactionOperations transactionOperations;
 
 
     public AllCaCertificateUpdateServiceBean(BackgroundTaskRunner backgroundTaskRunner,
@@ -43,36 +72,112 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
                                              CommandService commandService,
                                              ResourceCache resourceCache,
                                              RepositoryConfiguration repositoryConfiguration,
+                                             CaUpdateNeededRepository caUpdateNeededRepository,
+                                             TransactionOperations transactionOperations,
                                              @Value("${certificate.authority.update.batch.size:1000}") int updateBatchSize,
+                                             @Value("${certificate.authority.update.change-driven.enabled:true}") boolean changeDrivenEnabled,
+                                             @Value("${certificate.authority.update.change-driven.full-sweep-interval:P1D}") Duration fullSweepInterval,
                                              MeterRegistry meterRegistry) {
         super(backgroundTaskRunner);
         this.caViewService = caViewService;
         this.commandService = commandService;
         this.resourceCache = resourceCache;
         this.repositoryConfiguration = repositoryConfiguration;
+        this.caUpdateNeededRepository = caUpdateNeededRepository;
+        this.transactionOperations = transactionOperations;
         this.updateBatchSize = updateBatchSize;
+        this.changeDrivenEnabled = changeDrivenEnabled;
+        this.fullSweepInterval = fullSweepInterval;
 
         certificateUpdates = Counter.builder("rpkicore.all.certificate.update.progress")
                 .description("Number of certificates updated by All CA certificate update service")
                 .register(meterRegistry);
     }
 
+    @Override
+    protected BackgroundServicePriority getPriority() {
+        return BackgroundServicePriority.LOW;
+    }
+
     @Override
     public String getName() {
         return "All CA certificate update service";
     }
 
+    @Override
+    protected boolean isSharded() {
+        return true;
+    }
+
     @Override
     public Map<String, String> supportedParameters() {
-        return Collections.singletonMap(BATCH_SIZE_PARAMETER, String.valueOf(this.updateBatchSize));
+        return Map.of(
+            BATCH_SIZE_PARAMETER, String.valueOf(this.updateBatchSize),
+            FULL_SWEEP_PARAMETER, String.valueOf(!this.changeDrivenEnabled)
+        );
+    }
+
+    public boolean isChangeDrivenEnabled() {
+        return changeDrivenEnabled;
+    }
+
+    /**
+     * @return the number of CAs in the update needed index
+     */
+    public int countUpdateNeeded() {
+        return transactionOperations.execute(status -> caUpdateNeededRepository.countUpdateNeeded());
+    }
+
+    /**
+     * @return the oldest request time of the CAs in the update needed index, if any
+     */
+    public Optional<Instant> findOldestUpdateNeeded() {
+        return transactionOperations.execute(status -> caUpdateNeededRepository.findOldestRequestedAt());
     }
 
     @Override
     protected void runService(Map<String, String> parameters) {
-        runService(parameters, x -> true);
+        if (isFullSweepDue(parameters)) {
+            Instant startedAt = Instant.now();
+            runService(parameters, x -> true);
+            lastFullSweepAt = startedAt;
+        } else {
+            runUpdateNeeded(parameters);
+        }
+    }
+
+    /**
+     * Updates the CAs in the update needed index. All CAs that are not hosted or non-hosted are always updated, since
+     * they are parents of the CAs in the index.
+     */
+    public void runUpdateNeeded(Map<String, String> parameters) {
+        DateTime now = new DateTime(DateTimeZone.UTC);
+        int expiring = transactionOperations.execute(status -> caUpdateNeededRepository.markIncomingCertificatesExpiringBefore(CertificateAuthority.calculateValidityNotAfter(now)));
+        if (expiring > 0) {
+            log.info("Marked {} CAs with an incoming certificate that expires before the current validity time", expiring);
+        }
+
+        Map<Long, Instant> updateNeeded = transactionOperations.execute(status -> caUpdateNeededRepository.findUpdateNeeded());
+        if (updateNeeded.isEmpty()) {
+            log.info("No CAs need an update of their incoming certificate");
+            return;
+        }
+        log.info("{} CAs need an update of their incoming certificate", updateNeeded.size());
+
+        runService(parameters, ca -> switch (ca.getType()) {
+            case HOSTED, NONHOSTED -> updateNeeded.containsKey(ca.getId());
+            case ALL_RESOURCES, ROOT, INTERMEDIATE -> true;
+        }, updateNeeded);
     }
 
     public void runService(Map<String, String> parameters, Predicate<CertificateAuthorityData> certificateAuthorityFilter) {
+        Map<Long, Instant> updateNeeded = changeDrivenEnabled
+            ? transactionOperations.execute(status -> caUpdateNeededRepository.findUpdateNeeded())
+            : Map.of();
+        runService(parameters, certificateAuthorityFilter, updateNeeded);
+    }
+
+    private void runService(Map<String, String> parameters, Predicate<CertificateAuthorityData> certificateAuthorityFilter, Map<Long, Instant> updateNeeded) {
         CertificateAuthorityData productionCa = verifyPreconditions();
         if (productionCa == null) {
             return;
@@ -81,8 +186,21 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
         int batchSize = parseBatchSizeParameter(parameters).orElse(this.updateBatchSize);
         log.info("Updating incoming certificate for at most {} CAs", batchSize);
 
+        Predicate<CertificateAuthorityData> inShard = ca -> switch (ca.getType()) {
+            case HOSTED, NONHOSTED -> isAssignedToCurrentNode(ca.getId());
+            case ALL_RESOURCES, ROOT, INTERMEDIATE -> true;
+        };
+
         AtomicInteger remainingCounter = new AtomicInteger(batchSize);
-        new RecursiveUpdater(remainingCounter, certificateAuthorityFilter).accept(productionCa);
+        new RecursiveUpdater(remainingCounter, inShard.and(certificateAuthorityFilter), updateNeeded).accept(productionCa);
+    }
+
+    private boolean isFullSweepDue(Map<String, String> parameters) {
+        if (!changeDrivenEnabled || Boolean.parseBoolean(parameters.get(FULL_SWEEP_PARAMETER))) {
+            return true;
+        }
+        Instant last = lastFullSweepAt;
+        return last == null || last.plus(fullSweepInterval).isBefore(Instant.now());
     }
 
     private CertificateAuthorityData verifyPreconditions() {
@@ -107,6 +225,11 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
     private class RecursiveUpdater implements Consumer<CertificateAuthorityData> {
         private AtomicInteger remainingCounter;
         private Predicate<CertificateAuthorityData> certificateAuthorityFilter;
+        /**
+         * Request time of the CAs in the update needed index when the run started, used to remove the CAs that were
+         * updated from the index unless they were marked again in the meantime.
+         */
+        private Map<Long, Instant> updateNeeded;
 
         @Override
         public void accept(CertificateAuthorityData ca) {
@@ -137,6 +260,10 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
                         remainingCounter.decrementAndGet();
                         certificateUpdates.increment();
                     }
+                    Instant requestedAt = updateNeeded.get(parentCa.getId());
+                    if (requestedAt != null) {
+                        transactionOperations.executeWithoutResult(status -> caUpdateNeededRepository.remove(parentCa.getId(), requestedAt));
+                    }
 
                     long updateCount = updateChildren(parentCa);
                     if (updateCount > 0) {
@@ -0,0 +1,110 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
+import net.ripe.rpki.domain.audit.AuditPartition;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import org.joda.time.DateTimeUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.inject.Inject;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.AUDIT_PARTITION_MAINTENANCE_SERVICE;
+
+/**
+ * Creates the monthly partitions of the audit tables ahead of time and removes partitions that only contain entries
+ * older than the retention period. Expired partitions are detached (so they can be archived and dropped manually)
+ * unless the service is configured to drop them.
+ */
+@Slf4j
+@Service(AUDIT_PARTITION_MAINTENANCE_SERVICE)
+public class AuditPartitionMaintenanceServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
+
+    private final AuditPartitionRepository auditPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final Map<String, Integer> retentionMonths;
+    private final boolean dropExpiredPartitions;
+    private final MeterRegistry meterRegistry;
+
+    @Inject
+    public AuditPartitionMaintenanceServiceBean(BackgroundTaskRunner backgroundTaskRunner,
+                                                AuditPartitionRepository auditPartitionRepository,
+                                                PlatformTransactionManager transactionManager,
+                                                MeterRegistry meterRegistry,
+                                                @Value("${audit.partition.months.ahead:3}") int monthsAhead,
+                                                @Value("${audit.partition.retention.months.commandaudit:120}") int commandAuditRetentionMonths,
+                                                @Value("${audit.partition.retention.months.provisioning:24}") int provisioningAuditLogRetentionMonths,
+                                                @Value("${audit.partition.expired.drop:false}") boolean dropExpiredPartitions) {
+        super(backgroundTaskRunner);
+        this.auditPartitionRepository = auditPartitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = Map.of(
+            AuditPartitionRepository.COMMAND_AUDIT_TABLE, commandAuditRetentionMonths,
+            AuditPartitionRepository.PROVISIONING_AUDIT_LOG_TABLE, provisioningAuditLogRetentionMonths
+        );
+        this.dropExpiredPartitions = dropExpiredPartitions;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return "Audit partition maintenance service";
+    }
+
+    @Override
+    protected void runService(Map<String, String> parameters) {
+        YearMonth currentMonth = YearMonth.from(Instant.ofEpochMilli(DateTimeUtils.currentTimeMillis()).atOffset(ZoneOffset.UTC));
+        retentionMonths.forEach((table, retention) ->
+            transactionTemplate.executeWithoutResult(status -> maintainPartitions(table, currentMonth, retention)));
+    }
+
+    private void maintainPartitions(String table, YearMonth currentMonth, int retention) {
+        List<AuditPartition> partitions = auditPartitionRepository.findPartitions(table);
+
+        for (int i = 0; i <= monthsAhead; ++i) {
+            YearMonth month = currentMonth.plusMonths(i);
+            Instant start = month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+            Instant end = month.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+            if (partitions.stream().noneMatch(partition -> partition.overlaps(start, end))) {
+                AuditPartition created = auditPartitionRepository.createMonthlyPartition(table, month);
+                counter(table, "created").increment();
+                log.info("Created audit partition {} for {}", created.name(), month);
+            }
+        }
+
+        Instant retentionCutoff = currentMonth.minusMonths(retention).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        for (AuditPartition partition : partitions) {
+            if (!partition.until().isAfter(retentionCutoff)) {
+                if (dropExpiredPartitions) {
+                    auditPartitionRepository.dropPartition(table, partition);
+                    log.info("Dropped expired audit partition {} with entries before {}", partition.name(), partition.until());
+                } else {
+                    auditPartitionRepository.detachPartition(table, partition);
+                    log.info("Detached expired audit partition {} with entries before {}, the table can be archived and dropped", partition.name(), partition.until());
+                }
+                counter(table, "expired").increment();
+            }
+        }
+    }
+
+    private Counter counter(String table, String action) {
+        return Counter.builder("rpkicore.audit.partitions")
+            .description("Number of audit table partitions created or removed")
+            .tag("table", table)
+            .tag("action", action)
+            .register(meterRegistry);
+    }
+}
@@ -26,13 +26,18 @@ public class BackgroundJob implements Job {
     @Autowired
     BackgroundServiceMetrics backgroundServiceMetrics;
 
+    @Autowired
+    AdaptiveBackgroundServiceScheduler adaptiveScheduler;
+
     @Override
     @Transactional(propagation = Propagation.NEVER)
     public void execute(JobExecutionContext context) {
         final JobDataMap jobDataMap = context.getJobDetail().getJobDataMap();
         final String name = jobDataMap.getString(BACKGROUND_SERVICE_KEY);
 
+        BackgroundServiceExecutionResult result = new BackgroundServiceExecutionResult(0, 0, BackgroundServiceExecutionResult.Status.FAILURE);
         try {
+            adaptiveScheduler.onStarted(name);
             backgroundServiceMetrics.trackStartTime(name);
 
             Map<String, String> parameters = new HashMap<>();
@@ -42,7 +47,7 @@ public class BackgroundJob implements Job {
                 }
             }
 
-            BackgroundServiceExecutionResult result = applicationContext.getBean(name, BackgroundService.class).execute(parameters);
+            result = applicationContext.getBean(name, BackgroundService.class).execute(parameters);
 
             backgroundServiceMetrics.trackResult(name, result);
         } catch (BeansException e) {
@@ -51,6 +56,8 @@ public class BackgroundJob implements Job {
         } catch (Exception e) {
             backgroundServiceMetrics.trackFailure(name);
             throw e;
+        } finally {
+            adaptiveScheduler.onCompleted(name, result);
         }
     }
 }
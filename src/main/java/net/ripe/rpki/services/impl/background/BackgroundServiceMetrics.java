@@ -4,6 +4,7 @@ import com.google.common.util.concurrent.AtomicDouble;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.NonNull;
 import lombok.Value;
 import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
@@ -20,6 +22,9 @@ public class BackgroundServiceMetrics {
     public static final String SERVICE_RESULT_COUNTER_METRIC = "rpkicore.service.result";
     public static final String SERVICE_RESULT_COUNTER_DESCRIPTION = "Service execution status by name and result";
 
+    public static final String SERVICE_QUEUE_WAIT_TIME_METRIC = "rpkicore.service.queue.wait.time";
+    public static final String SERVICE_RUN_TIME_METRIC = "rpkicore.service.run.time";
+
     public static final String TAG_STATUS = "status";
     private static final String TAG_SERVICE = "service";
 
@@ -56,6 +61,8 @@ public class BackgroundServiceMetrics {
         timings.lastSuccessTimes.set(epochSecond);
         timings.pureDuration.set(result.getPureDuration());
         timings.fullDuration.set(result.getFullDuration());
+        timings.queueWaitTime.record(Math.max(0, result.getFullDuration() - result.getPureDuration()), TimeUnit.MILLISECONDS);
+        timings.runTime.record(result.getPureDuration(), TimeUnit.MILLISECONDS);
         timings.successCount.increment();
     }
 
@@ -87,6 +94,9 @@ public class BackgroundServiceMetrics {
         final AtomicDouble pureDuration = new AtomicDouble(0);
         final AtomicDouble fullDuration = new AtomicDouble(0);
 
+        final Timer queueWaitTime;
+        final Timer runTime;
+
         final Counter successCount;
         final Counter failureCount;
         final Counter skippedCount;
@@ -117,6 +127,16 @@ public class BackgroundServiceMetrics {
                     .tag(TAG_SERVICE, serviceName)
                     .register(registry);
 
+            queueWaitTime = Timer.builder(SERVICE_QUEUE_WAIT_TIME_METRIC)
+                    .description("Time the service waited for the background services lock before running")
+                    .tag(TAG_SERVICE, serviceName)
+                    .register(registry);
+
+            runTime = Timer.builder(SERVICE_RUN_TIME_METRIC)
+                    .description("Time the service ran while holding the background services lock, including yielding to services with a higher priority")
+                    .tag(TAG_SERVICE, serviceName)
+                    .register(registry);
+
             successCount = Counter.builder(SERVICE_RESULT_COUNTER_METRIC)
                     .description(SERVICE_RESULT_COUNTER_DESCRIPTION)
                     .tag(TAG_SERVICE, serviceName)
@@ -20,6 +20,7 @@ import org.springframework.core.env.Profiles;
 import org.springframework.stereotype.Component;
 
 import jakarta.inject.Inject;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
@@ -48,8 +49,11 @@ public class BackgroundServices {
     public static final String ALL_CA_CERTIFICATE_UPDATE_SERVICE = "allCertificateUpdateService";
     public static final String KEY_PAIR_REVOCATION_MANAGEMENT_SERVICE = "keyPairRevocationManagementService";
     public static final String PRODUCTION_CA_KEY_ROLLOVER_MANAGEMENT_SERVICE = "productionCaKeyRolloverManagementService";
+    public static final String KEY_ROLL_CAMPAIGN_SERVICE = "keyRollCampaignService";
     public static final String PUBLISHED_OBJECT_CLEAN_UP_SERVICE = "publishedObjectCleanUpService";
     public static final String CA_CLEAN_UP_SERVICE = "caCleanUpService";
+    public static final String AUDIT_PARTITION_MAINTENANCE_SERVICE = "auditPartitionMaintenanceService";
+    public static final String COMMAND_AUDIT_SEARCH_INDEX_SERVICE = "commandAuditSearchIndexService";
     public static final String ROA_ALERT_BACKGROUND_SERVICE = "roaAlertBackgroundServiceDaily";
     public static final String ROA_ALERT_BACKGROUND_SERVICE_WEEKLY = "roaAlertBackgroundServiceWeekly";
 
@@ -84,6 +88,12 @@ public class BackgroundServices {
     @Value("${keypair.revocation.interval.hours}")
     private int keyPairRevocationIntervalHours;
 
+    @Value("${keypair.keyroll.campaign.enabled:false}")
+    private boolean keyRollCampaignEnabled;
+
+    @Value("${keypair.keyroll.campaign.interval.minutes:1}")
+    private int keyRollCampaignIntervalMinutes;
+
     @Value("${certificate.expiration.service.interval.minutes:7}")
     private int certificateExpirationIntervalMinutes;
 
@@ -93,9 +103,38 @@ public class BackgroundServices {
     @Value("${riswhoisdump.update.interval.hours}")
     private int riswhoisdumpUpdateIntervalHours;
 
+    @Value("${audit.partition.maintenance.interval.hours:24}")
+    private int auditPartitionMaintenanceIntervalHours;
+
+    @Value("${audit.search.index.interval.hours:1}")
+    private int auditSearchIndexIntervalHours;
+
+    @Value("${background-services.adaptive.publication.min-interval:PT10S}")
+    private Duration publicRepositoryPublicationMinInterval;
+    @Value("${background-services.adaptive.publication.max-interval:PT5M}")
+    private Duration publicRepositoryPublicationMaxInterval;
+
+    @Value("${background-services.adaptive.rrdp.min-interval:PT10S}")
+    private Duration publicRepositoryRrdpMinInterval;
+    @Value("${background-services.adaptive.rrdp.max-interval:PT5M}")
+    private Duration publicRepositoryRrdpMaxInterval;
+
+    @Value("${background-services.adaptive.rsync.min-interval:PT1M}")
+    private Duration publicRepositoryRsyncMinInterval;
+    @Value("${background-services.adaptive.rsync.max-interval:PT15M}")
+    private Duration publicRepositoryRsyncMaxInterval;
+
+    @Value("${background-services.adaptive.resource-cache.min-interval:PT5M}")
+    private Duration resourceCacheUpdateMinInterval;
+    @Value("${background-services.adaptive.resource-cache.max-interval:PT1H}")
+    private Duration resourceCacheUpdateMaxInterval;
+
     @Inject
     private Scheduler scheduler;
 
+    @Inject
+    private AdaptiveBackgroundServiceScheduler adaptiveScheduler;
+
     @Inject
     private Map<String, BackgroundService> allServices;
 
@@ -108,17 +147,26 @@ public class BackgroundServices {
             log.info("Automatic scheduling of background-services is disabled.");
             return;
         }
-        schedule(PUBLIC_REPOSITORY_PUBLICATION_SERVICE,
-                futureDate(6, MINUTE),
-                repeat().withIntervalInMinutes(publicRepositoryPublicationIntervalMinutes));
-
-        schedule(PUBLIC_REPOSITORY_RSYNC_SERVICE,
-                futureDate(7, MINUTE),
-                repeat().withIntervalInMinutes(publicRepositoryRsyncIntervalMinutes));
-
-        schedule(PUBLIC_REPOSITORY_RRDP_SERVICE,
-                futureDate(7, MINUTE),
-                repeat().withIntervalInMinutes(publicRepositoryRrdpIntervalMinutes));
+        if (adaptiveScheduler.isEnabled()) {
+            scheduleAdaptively(PUBLIC_REPOSITORY_PUBLICATION_SERVICE, futureDate(6, MINUTE),
+                    new AdaptiveInterval(publicRepositoryPublicationMinInterval, publicRepositoryPublicationMaxInterval));
+            scheduleAdaptively(PUBLIC_REPOSITORY_RSYNC_SERVICE, futureDate(7, MINUTE),
+                    new AdaptiveInterval(publicRepositoryRsyncMinInterval, publicRepositoryRsyncMaxInterval));
+            scheduleAdaptively(PUBLIC_REPOSITORY_RRDP_SERVICE, futureDate(7, MINUTE),
+                    new AdaptiveInterval(publicRepositoryRrdpMinInterval, publicRepositoryRrdpMaxInterval));
+        } else {
+            schedule(PUBLIC_REPOSITORY_PUBLICATION_SERVICE,
+                    futureDate(6, MINUTE),
+                    repeat().withIntervalInMinutes(publicRepositoryPublicationIntervalMinutes));
+
+            schedule(PUBLIC_REPOSITORY_RSYNC_SERVICE,
+                    futureDate(7, MINUTE),
+                    repeat().withIntervalInMinutes(publicRepositoryRsyncIntervalMinutes));
+
+            schedule(PUBLIC_REPOSITORY_RRDP_SERVICE,
+                    futureDate(7, MINUTE),
+                    repeat().withIntervalInMinutes(publicRepositoryRrdpIntervalMinutes));
+        }
 
         schedule(ALL_CA_CERTIFICATE_UPDATE_SERVICE,
                 futureDate(resourceUpdateIntervalHours, HOUR),
@@ -140,6 +188,12 @@ public class BackgroundServices {
                     repeat().withIntervalInHours(keyPairRevocationIntervalHours));
         }
 
+        if (keyRollCampaignEnabled) {
+            schedule(KEY_ROLL_CAMPAIGN_SERVICE,
+                    futureDate(12, MINUTE),
+                    repeat().withIntervalInMinutes(keyRollCampaignIntervalMinutes));
+        }
+
         schedule(CERTIFICATE_EXPIRATION_SERVICE,
                 futureDate(20, MINUTE),
                 repeat().withIntervalInMinutes(certificateExpirationIntervalMinutes));
@@ -148,13 +202,26 @@ public class BackgroundServices {
                 futureDate(22, MINUTE),
                 repeat().withIntervalInMinutes(publishedObjectCleanupServiceIntervalMinutes));
 
+        schedule(AUDIT_PARTITION_MAINTENANCE_SERVICE,
+                futureDate(5, MINUTE),
+                repeat().withIntervalInHours(auditPartitionMaintenanceIntervalHours));
+
+        schedule(COMMAND_AUDIT_SEARCH_INDEX_SERVICE,
+                futureDate(15, MINUTE),
+                repeat().withIntervalInHours(auditSearchIndexIntervalHours));
+
         schedule(RIS_WHOIS_UPDATE_SERVICE,
                 futureDate(10, SECOND),
                 repeat().withIntervalInHours(riswhoisdumpUpdateIntervalHours));
 
-        schedule(RESOURCE_CACHE_UPDATE_SERVICE,
-                futureDate(3, MINUTE),
-                repeat().withIntervalInMinutes(15));
+        if (adaptiveScheduler.isEnabled()) {
+            scheduleAdaptively(RESOURCE_CACHE_UPDATE_SERVICE, futureDate(3, MINUTE),
+                    new AdaptiveInterval(resourceCacheUpdateMinInterval, resourceCacheUpdateMaxInterval));
+        } else {
+            schedule(RESOURCE_CACHE_UPDATE_SERVICE,
+                    futureDate(3, MINUTE),
+                    repeat().withIntervalInMinutes(15));
+        }
 
         // Do not enable email in local or pilot environment
         if (!springEnvironment.acceptsProfiles(Profiles.of("pilot", "local"))) {
@@ -189,12 +256,23 @@ public class BackgroundServices {
         log.info("Scheduled '{}', starting from '{}'", job.getKey(), startAt);
     }
 
+    private void scheduleAdaptively(String serviceName, Date startAt, AdaptiveInterval interval) throws SchedulerException {
+        validate(serviceName);
+        // Durable, since the job has no trigger between a run and rescheduling the next run
+        adaptiveScheduler.schedule(createJobDetail(serviceName, true), startAt, interval);
+    }
+
     private static JobDetail createJobDetail(String serviceName) {
+        return createJobDetail(serviceName, false);
+    }
+
+    private static JobDetail createJobDetail(String serviceName, boolean durable) {
         final JobDataMap map = new JobDataMap();
         map.put(BackgroundJob.BACKGROUND_SERVICE_KEY, serviceName);
         return newJob(BackgroundJob.class)
             .withIdentity(serviceName)
             .usingJobData(map)
+            .storeDurably(durable)
             .build();
     }
 
@@ -0,0 +1,72 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.Validate;
+import org.joda.time.DateTimeUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Runs an expiry or clean-up job as a sequence of bounded batches, each committed in its own transaction, so that a
+ * backlog does not turn into a single long-running statement holding locks that conflict with publication.
+ *
+ * A run stops when a batch processes fewer items than the batch size, or when the time budget of the run is used up.
+ * Every batch only selects items that still need to be processed, so the remaining work is picked up by the next run
+ * and the end state is the same as when processing everything at once.
+ */
+@Slf4j
+class BatchedCleanUp {
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    @Getter
+    private final int batchSize;
+    private final Duration timeBudget;
+
+    BatchedCleanUp(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry, int batchSize, Duration timeBudget) {
+        Validate.isTrue(batchSize > 0, "batch size must be positive");
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * @param job   name of the job, used for logging and metrics
+     * @param batch processes at most the given number of items and returns the number of items processed
+     * @return the total number of items processed in this run
+     */
+    long run(String job, IntUnaryOperator batch) {
+        long deadline = DateTimeUtils.currentTimeMillis() + timeBudget.toMillis();
+        Counter batches = counter("rpkicore.cleanup.batches", "Number of clean-up batches committed", job);
+        Counter items = counter("rpkicore.cleanup.items", "Number of items processed by clean-up batches", job);
+
+        long total = 0;
+        int processed;
+        do {
+            processed = transactionTemplate.execute(status -> batch.applyAsInt(batchSize));
+            total += processed;
+            batches.increment();
+            items.increment(processed);
+            log.debug("{}: processed batch of {} items, {} in total", job, processed, total);
+        } while (processed >= batchSize && DateTimeUtils.currentTimeMillis() < deadline);
+
+        if (processed >= batchSize) {
+            counter("rpkicore.cleanup.budget.exceeded", "Number of clean-up runs stopped because the time budget was used up", job).increment();
+            log.warn("{}: stopped after processing {} items since the time budget of {} is used up, continuing in the next run", job, total, timeBudget);
+        }
+        return total;
+    }
+
+    private Counter counter(String name, String description, String job) {
+        return Counter.builder(name)
+            .description(description)
+            .tag("job", job)
+            .register(meterRegistry);
+    }
+}
@@ -3,20 +3,26 @@ package net.ripe.rpki.services.impl.background;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundServicePriority;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.ResourceCertificateRepository;
 import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import jakarta.inject.Inject;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service("certificateExpirationService")
 public class CertificateExpirationServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
 
     private final ResourceCertificateRepository resourceCertificateRepository;
+    private final BatchedCleanUp batchedCleanUp;
 
     private final Counter expiredOutgoingResourceCertificatesCounter;
     private final Counter deletedRoasCounter;
@@ -26,10 +32,14 @@ public class CertificateExpirationServiceBean extends SequentialBackgroundServic
     public CertificateExpirationServiceBean(
         BackgroundTaskRunner backgroundTaskRunner,
         ResourceCertificateRepository resourceCertificateRepository,
-        MeterRegistry meterRegistry
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        @Value("${expiry.cleanup.batch.size:10000}") int batchSize,
+        @Value("${expiry.cleanup.time.budget:PT5M}") Duration timeBudget
     ) {
         super(backgroundTaskRunner);
         this.resourceCertificateRepository = resourceCertificateRepository;
+        this.batchedCleanUp = new BatchedCleanUp(transactionManager, meterRegistry, batchSize, timeBudget);
 
         this.expiredOutgoingResourceCertificatesCounter = Counter.builder("rpkicore.expired.outgoing.resource.certificates")
             .description("The number of certificate authorities with pending publications updated")
@@ -42,6 +52,11 @@ public class CertificateExpirationServiceBean extends SequentialBackgroundServic
             .register(meterRegistry);
     }
 
+    @Override
+    protected BackgroundServicePriority getPriority() {
+        return BackgroundServicePriority.LOW;
+    }
+
     @Override
     public String getName() {
         return "Certificate Expiration Service";
@@ -49,12 +64,23 @@ public class CertificateExpirationServiceBean extends SequentialBackgroundServic
 
     @Override
     protected void runService(Map<String, String> parameters) {
-        ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult counts = resourceCertificateRepository.expireOutgoingResourceCertificates(DateTime.now());
+        DateTime now = DateTime.now();
+        AtomicReference<ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult> total =
+            new AtomicReference<>(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(0, 0, 0, 0));
+
+        batchedCleanUp.run("expire-outgoing-resource-certificates", maxResults -> {
+            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult batch = resourceCertificateRepository.expireOutgoingResourceCertificates(now, maxResults);
+
+            expiredOutgoingResourceCertificatesCounter.increment(batch.getExpiredCertificateCount());
+            deletedRoasCounter.increment(batch.getDeletedRoaCount());
+            withdrawnObjectsCounter.increment(batch.getWithdrawnObjectCount());
+            total.accumulateAndGet(batch, ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult::plus);
 
-        expiredOutgoingResourceCertificatesCounter.increment(counts.getExpiredCertificateCount());
-        deletedRoasCounter.increment(counts.getDeletedRoaCount());
-        withdrawnObjectsCounter.increment(counts.getWithdrawnObjectCount());
+            // Certificates and published objects are limited separately, continue while either may have more work
+            return (int) Math.max(batch.getExpiredCertificateCount(), batch.getWithdrawnObjectCount());
+        });
 
+        ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult counts = total.get();
         log.info(
             "expired {} outgoing resource certificates, deleted {} ROA entities, withdrew {} published objects",
             counts.getExpiredCertificateCount(), counts.getDeletedRoaCount(), counts.getWithdrawnObjectCount()
@@ -0,0 +1,90 @@
+package net.ripe.rpki.services.impl.background;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.inject.Inject;
+import java.util.List;
+import java.util.Map;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.COMMAND_AUDIT_SEARCH_INDEX_SERVICE;
+
+/**
+ * Builds the trigram index on the command audit summary for partitions that do not have it yet (the partitions that
+ * existed before the index was introduced). The index is built concurrently, one partition at a time, so the command
+ * audit stays writable, and is then attached to the index on the partitioned table. Once all partitions are indexed
+ * this service has nothing left to do.
+ *
+ * Statements are executed outside of a transaction, as required by <code>CREATE INDEX CONCURRENTLY</code>.
+ */
+@Slf4j
+@Service(COMMAND_AUDIT_SEARCH_INDEX_SERVICE)
+public class CommandAuditSearchIndexServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
+
+    static final String PARENT_INDEX = "commandaudit_commandsummary_trgm_idx";
+    private static final String INDEX_SUFFIX = "_commandsummary_trgm_idx";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final int maxPartitionsPerRun;
+
+    @Inject
+    public CommandAuditSearchIndexServiceBean(BackgroundTaskRunner backgroundTaskRunner,
+                                              NamedParameterJdbcTemplate jdbcTemplate,
+                                              @Value("${audit.search.index.max.partitions.per.run:4}") int maxPartitionsPerRun) {
+        super(backgroundTaskRunner);
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPartitionsPerRun = maxPartitionsPerRun;
+    }
+
+    @Override
+    public String getName() {
+        return "Command audit search index service";
+    }
+
+    @Override
+    protected void runService(Map<String, String> parameters) {
+        List<String> partitions = findUnindexedPartitions();
+        if (partitions.isEmpty()) {
+            return;
+        }
+
+        log.info("Building command audit summary index for {} partition(s), at most {} in this run", partitions.size(), maxPartitionsPerRun);
+        partitions.stream().limit(maxPartitionsPerRun).forEach(this::indexPartition);
+    }
+
+    List<String> findUnindexedPartitions() {
+        return jdbcTemplate.queryForList(
+            "SELECT c.relname " +
+                "  FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                " WHERE i.inhparent = CAST('commandaudit' AS regclass) " +
+                "   AND NOT EXISTS (SELECT 1 " +
+                "                     FROM pg_inherits ii JOIN pg_index x ON x.indexrelid = ii.inhrelid " +
+                "                    WHERE ii.inhparent = CAST(:parentIndex AS regclass) " +
+                "                      AND x.indrelid = c.oid) " +
+                " ORDER BY c.relname DESC",
+            Map.of("parentIndex", PARENT_INDEX),
+            String.class
+        );
+    }
+
+    private void indexPartition(String partition) {
+        String index = quoteIdentifier(partition + INDEX_SUFFIX);
+        long start = System.currentTimeMillis();
+
+        // Remove the invalid index left behind by an earlier failed (or interrupted) concurrent build
+        jdbcTemplate.getJdbcTemplate().execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+        jdbcTemplate.getJdbcTemplate().execute(
+            "CREATE INDEX CONCURRENTLY " + index + " ON " + quoteIdentifier(partition) + " USING gin (commandsummary gin_trgm_ops)");
+        jdbcTemplate.getJdbcTemplate().execute("ALTER INDEX " + PARENT_INDEX + " ATTACH PARTITION " + index);
+
+        log.info("Built command audit summary index for partition {} in {} ms", partition, System.currentTimeMillis() - start);
+    }
+
+    private static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -9,15 +9,13 @@ import net.ripe.rpki.server.api.commands.UpdateAllIncomingResourceCertificatesCo
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.services.command.CommandService;
-import net.ripe.rpki.server.api.services.command.CommandStatus;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ForkJoinPool;
-import java.util.stream.Collectors;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.KEY_PAIR_ACTIVATION_MANAGEMENT_SERVICE;
 
@@ -30,8 +28,6 @@ public class KeyPairActivationManagementServiceBean extends SequentialBackground
     private final ResourceCache resourceCache;
     private final CertificationConfiguration configuration;
 
-    private final ForkJoinPool forkJoinPool = new ForkJoinPool();
-
     public KeyPairActivationManagementServiceBean(
         BackgroundTaskRunner backgroundTaskRunner,
         CertificateAuthorityViewService caViewService,
@@ -51,43 +47,51 @@ public class KeyPairActivationManagementServiceBean extends SequentialBackground
         return "Key Pair Activation Management Service";
     }
 
+    /**
+     * Activation is independent per CA, so every node activates the keys of its own CAs. The depth levels are
+     * processed in order on each node, but not in lock step across nodes.
+     */
+    @Override
+    protected boolean isSharded() {
+        return true;
+    }
+
     @Override
     protected void runService(Map<String, String> parameters) {
         resourceCache.verifyResourcesArePresent();
 
-        // Process all key activation and certificate updates from the top down by sorting the CAs by the depth
-        // of the parent CA chain. This minimizes the number of RPKI objects that need to be generated and published.
-        // Note that the stream operations must preserve the ordering of the CAs to make this work.
-        forkJoinPool.submit(() -> {
-            List<CertificateAuthorityData> casWithPendingKeys = caViewService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth();
-            log.info("checking {} certificate authorities with pending keys for activation", casWithPendingKeys.size());
+        // Process all key activation and certificate updates from the top down by processing the CAs one depth of the
+        // parent CA chain at a time. This minimizes the number of RPKI objects that need to be generated and published.
+        List<List<CertificateAuthorityData>> casWithPendingKeysByDepth = caViewService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth();
+        log.info("checking {} certificate authorities with pending keys for activation", casWithPendingKeysByDepth.stream().mapToInt(List::size).sum());
 
-            List<CertificateAuthorityData> casWithActivatedKeys = casWithPendingKeys.parallelStream()
-                    .filter(ca -> {
-                        CommandStatus status =
-                                commandService.execute(KeyManagementActivatePendingKeysCommand.plannedActivationCommand(ca.getVersionedId(), configuration.getStagingPeriod()));
-                        return status.isHasEffect();
-                    }).toList();
-            log.info("activated keys for {} certificate authorities", casWithActivatedKeys.size());
+        List<CertificateAuthorityData> casWithActivatedKeys = new ArrayList<>();
+        for (List<CertificateAuthorityData> level : casWithPendingKeysByDepth) {
+            casWithActivatedKeys.addAll(runParallel(level.stream()
+                .filter(ca -> isAssignedToCurrentNode(ca.getId()))
+                .map(ca -> task(
+                    () -> commandService.execute(KeyManagementActivatePendingKeysCommand.plannedActivationCommand(ca.getVersionedId(), configuration.getStagingPeriod())).isHasEffect()
+                        ? ca : null,
+                    ex -> log.error("Error activating pending keys for CA '{}'", ca.getName(), ex)
+                ))));
+        }
+        log.info("activated keys for {} certificate authorities", casWithActivatedKeys.size());
 
-            casWithActivatedKeys.forEach(parentCA -> {
-                Collection<CertificateAuthorityData> children = caViewService.findAllChildrenForCa(parentCA.getName());
-                children.parallelStream()
-                    .forEach(childCA -> {
-                        try {
-                            switch (childCA.getType()) {
-                                case ALL_RESOURCES:
-                                    throw new IllegalStateException("CA with type ALL_RESOURCES (" + childCA + ") should not be a child of " + parentCA);
-                                case ROOT: case INTERMEDIATE: case HOSTED: case NONHOSTED:
-                                    commandService.execute(new UpdateAllIncomingResourceCertificatesCommand(childCA.getVersionedId(), Integer.MAX_VALUE));
-                                    return;
-                            }
-                            throw new IllegalStateException("CA with unknown type " + childCA.getType());
-                        } catch (RuntimeException e) {
-                            log.error("Error updating incoming resource certificates for CA '{}'", childCA.getName(), e);
-                        }
-                    });
-            });
-        }).join();
+        casWithActivatedKeys.forEach(parentCA -> {
+            Collection<CertificateAuthorityData> children = caViewService.findAllChildrenForCa(parentCA.getName());
+            runParallel(children.stream().map(childCA -> task(
+                () -> {
+                    switch (childCA.getType()) {
+                        case ALL_RESOURCES:
+                            throw new IllegalStateException("CA with type ALL_RESOURCES (" + childCA + ") should not be a child of " + parentCA);
+                        case ROOT: case INTERMEDIATE: case HOSTED: case NONHOSTED:
+                            commandService.execute(new UpdateAllIncomingResourceCertificatesCommand(childCA.getVersionedId(), Integer.MAX_VALUE));
+                            return;
+                    }
+                    throw new IllegalStateException("CA with unknown type " + childCA.getType());
+                },
+                ex -> log.error("Error updating incoming resource certificates for CA '{}'", childCA.getName(), ex)
+            )));
+        });
     }
 }
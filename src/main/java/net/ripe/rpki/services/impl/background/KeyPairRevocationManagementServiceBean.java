@@ -1,5 +1,6 @@
 package net.ripe.rpki.services.impl.background;
 
+import net.ripe.rpki.core.services.background.BackgroundServicePriority;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.commands.KeyManagementRevokeOldKeysCommand;
@@ -28,15 +29,26 @@ public class KeyPairRevocationManagementServiceBean extends SequentialBackground
         this.commandService = commandService;
     }
 
+    @Override
+    protected BackgroundServicePriority getPriority() {
+        return BackgroundServicePriority.LOW;
+    }
+
     @Override
     public String getName() {
         return "Key Pair Revocation Management Service";
     }
 
+    @Override
+    protected boolean isSharded() {
+        return true;
+    }
+
     @Override
     protected void runService(Map<String, String> parameters) {
         runParallel(caViewService.findManagedCasEligibleForKeyRevocation().stream()
                 .filter(ca -> ca.getType() != ALL_RESOURCES)
+                .filter(ca -> isAssignedToCurrentNode(ca.getId()))
                 .map(ca -> task(
                     () -> commandService.execute(new KeyManagementRevokeOldKeysCommand(ca.getVersionedId())),
                     ex -> log.error("Failed to process CA '{}'", ca.getName(), ex)
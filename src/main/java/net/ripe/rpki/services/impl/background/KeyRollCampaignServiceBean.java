@@ -0,0 +1,236 @@
+package net.ripe.rpki.services.impl.background;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.application.CertificationConfiguration;
+import net.ripe.rpki.core.services.background.BackgroundServicePriority;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
+import net.ripe.rpki.domain.HostedCertificateAuthority;
+import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.KeyManagementActivatePendingKeysCommand;
+import net.ripe.rpki.server.api.commands.KeyManagementInitiateRollCommand;
+import net.ripe.rpki.server.api.commands.KeyManagementRevokeOldKeysCommand;
+import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
+import net.ripe.rpki.server.api.dto.CertificateAuthorityType;
+import net.ripe.rpki.server.api.dto.KeyPairStatus;
+import net.ripe.rpki.server.api.dto.ManagedCertificateAuthorityData;
+import net.ripe.rpki.server.api.services.command.CommandService;
+import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.KEY_ROLL_CAMPAIGN_SERVICE;
+
+/**
+ * Rolls the keys of all hosted CAs as a campaign: every run moves CAs through the initiate, activate and revoke stages
+ * within a shared budget of key roll operations per minute. Later stages are processed first, so CAs that are in
+ * flight complete before new ones are started. Since the budget limits how many key rolls are initiated, activations
+ * and revocations follow at the same rate after the staging period, and the key generation, signing and publication
+ * load of a mass key roll is spread evenly instead of landing in a single window.
+ * <p>
+ * Every operation is a single command for a single CA. A command that turns out to have no effect, e.g. because the
+ * old key still has outgoing certificates, does not use up the budget.
+ * <p>
+ * The budget decides how many commands a run executes, and a rate limiter spreads their execution over the run, so the
+ * budget of a minute is not executed in a single burst. The service is not sharded but runs on the active node only,
+ * so the configured rate is the rate of the whole cluster.
+ */
+@Slf4j
+@Service(KEY_ROLL_CAMPAIGN_SERVICE)
+public class KeyRollCampaignServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
+
+    enum Stage {
+        INITIATE(3),
+        ACTIVATE(2),
+        REVOKE(1);
+
+        /**
+         * Number of operations a CA waiting in this stage still needs to complete the key roll.
+         */
+        private final int remainingOperations;
+
+        Stage(int remainingOperations) {
+            this.remainingOperations = remainingOperations;
+        }
+    }
+
+    private final CertificationConfiguration configuration;
+    private final CertificateAuthorityViewService caViewService;
+    private final CommandService commandService;
+    private final OperationBudget budget;
+    private final RateLimiter rateLimiter;
+
+    private final Map<Stage, AtomicInteger> waiting = new EnumMap<>(Stage.class);
+    private final Map<Stage, Counter> completed = new EnumMap<>(Stage.class);
+
+    @Inject
+    public KeyRollCampaignServiceBean(BackgroundTaskRunner backgroundTaskRunner,
+                                      CertificationConfiguration configuration,
+                                      CertificateAuthorityViewService caViewService,
+                                      CommandService commandService,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${keypair.keyroll.campaign.operations-per-minute:60}") int operationsPerMinute) {
+        this(backgroundTaskRunner, configuration, caViewService, commandService, meterRegistry,
+            new OperationBudget(operationsPerMinute, Ticker.systemTicker()), RateLimiter.create(operationsPerMinute / 60.0));
+    }
+
+    KeyRollCampaignServiceBean(BackgroundTaskRunner backgroundTaskRunner,
+                               CertificationConfiguration configuration,
+                               CertificateAuthorityViewService caViewService,
+                               CommandService commandService,
+                               MeterRegistry meterRegistry,
+                               OperationBudget budget,
+                               RateLimiter rateLimiter) {
+        super(backgroundTaskRunner);
+        this.configuration = configuration;
+        this.caViewService = caViewService;
+        this.commandService = commandService;
+        this.budget = budget;
+        this.rateLimiter = rateLimiter;
+
+        for (Stage stage : Stage.values()) {
+            String tag = stage.name().toLowerCase();
+            AtomicInteger count = new AtomicInteger();
+            waiting.put(stage, count);
+            Gauge.builder("rpkicore.keyroll.campaign.waiting", count, AtomicInteger::get)
+                .description("Number of hosted CAs waiting for a key roll stage")
+                .tag("stage", tag)
+                .register(meterRegistry);
+            completed.put(stage, Counter.builder("rpkicore.keyroll.campaign.completed")
+                .description("Number of hosted CAs that completed a key roll stage")
+                .tag("stage", tag)
+                .register(meterRegistry));
+        }
+        Gauge.builder("rpkicore.keyroll.campaign.eta.seconds", this, KeyRollCampaignServiceBean::estimatedSecondsRemaining)
+            .description("Estimated time until the key roll campaign completes at the configured rate, excluding the staging period")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return "Key Roll Campaign Service";
+    }
+
+    @Override
+    protected BackgroundServicePriority getPriority() {
+        return BackgroundServicePriority.LOW;
+    }
+
+    @Override
+    protected void runService(Map<String, String> parameters) {
+        Instant oldestCreationTime = Instant.now().minus(Duration.standardDays(configuration.getAutoKeyRolloverMaxAgeDays()));
+        DateTime stagedBefore = DateTime.now().minus(configuration.getStagingPeriod());
+
+        List<ManagedCertificateAuthorityData> toRevoke = inCampaign(caViewService.findManagedCasEligibleForKeyRevocation());
+        List<ManagedCertificateAuthorityData> toActivate = inCampaign(caViewService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth().stream()
+            .filter(ManagedCertificateAuthorityData.class::isInstance)
+            .map(ManagedCertificateAuthorityData.class::cast)
+            .toList());
+        List<ManagedCertificateAuthorityData> toInitiate = inCampaign(caViewService.findManagedCasEligibleForKeyRoll(HostedCertificateAuthority.class, oldestCreationTime, Optional.empty()));
+
+        waiting.get(Stage.REVOKE).set(toRevoke.size());
+        waiting.get(Stage.ACTIVATE).set(toActivate.size());
+        waiting.get(Stage.INITIATE).set(toInitiate.size());
+
+        int revoked = runStage(Stage.REVOKE, toRevoke, ca -> new KeyManagementRevokeOldKeysCommand(ca.getVersionedId()));
+        int activated = runStage(Stage.ACTIVATE, toActivate.stream().filter(ca -> isStagedBefore(ca, stagedBefore)).toList(),
+            ca -> KeyManagementActivatePendingKeysCommand.plannedActivationCommand(ca.getVersionedId(), configuration.getStagingPeriod()));
+        int initiated = runStage(Stage.INITIATE, toInitiate,
+            ca -> new KeyManagementInitiateRollCommand(ca.getVersionedId(), configuration.getAutoKeyRolloverMaxAgeDays()));
+
+        log.info("key roll campaign revoked old keys of {}/{}, activated pending keys of {}/{} and initiated key rolls of {}/{} hosted CAs, {} operations per minute",
+            revoked, toRevoke.size(), activated, toActivate.size(), initiated, toInitiate.size(), budget.getOperationsPerMinute());
+    }
+
+    /**
+     * Executes the commands for as many CAs as the budget allows, leaving the others for the next run.
+     *
+     * @return the number of CAs that completed the stage
+     */
+    private int runStage(Stage stage, List<ManagedCertificateAuthorityData> cas, Function<ManagedCertificateAuthorityData, CertificateAuthorityCommand> command) {
+        List<ManagedCertificateAuthorityData> selected = new ArrayList<>();
+        for (ManagedCertificateAuthorityData ca : cas) {
+            if (!budget.tryAcquire()) {
+                break;
+            }
+            selected.add(ca);
+        }
+
+        List<Boolean> results = runParallel(selected.stream().map(ca -> paced(task(
+            () -> {
+                boolean hasEffect = commandService.execute(command.apply(ca)).isHasEffect();
+                if (!hasEffect) {
+                    budget.release();
+                }
+                return hasEffect;
+            },
+            ex -> {
+                budget.release();
+                log.error("Key roll stage {} failed for CA '{}'", stage, ca.getName(), ex);
+            }
+        ))));
+
+        int done = (int) results.stream().filter(Boolean::booleanValue).count();
+        completed.get(stage).increment(done);
+        waiting.get(stage).addAndGet(-done);
+        return done;
+    }
+
+    /**
+     * Waits for the rate limiter before the task starts, so the wait does not keep the service from yielding the global
+     * lock to a service with a higher priority.
+     */
+    private <T> BackgroundTaskRunner.Task<T> paced(BackgroundTaskRunner.Task<T> task) {
+        return new BackgroundTaskRunner.Task<>() {
+            @Override
+            public T execute() throws Exception {
+                rateLimiter.acquire();
+                return task.execute();
+            }
+
+            @Override
+            public void onException(Exception e) {
+                task.onException(e);
+            }
+        };
+    }
+
+    private List<ManagedCertificateAuthorityData> inCampaign(Collection<ManagedCertificateAuthorityData> cas) {
+        return cas.stream()
+            .filter(ca -> ca.getType() == CertificateAuthorityType.HOSTED)
+            .toList();
+    }
+
+    private static boolean isStagedBefore(ManagedCertificateAuthorityData ca, DateTime stagedBefore) {
+        return ca.getKeys().stream()
+            .filter(key -> key.getStatus() == KeyPairStatus.PENDING)
+            .map(key -> key.getStatusChangedTimestamps().get(KeyPairStatus.PENDING))
+            .anyMatch(pendingSince -> pendingSince == null || pendingSince.isBefore(stagedBefore));
+    }
+
+    double estimatedSecondsRemaining() {
+        int operations = 0;
+        for (Stage stage : Stage.values()) {
+            operations += stage.remainingOperations * waiting.get(stage).get();
+        }
+        return operations * 60.0 / budget.getOperationsPerMinute();
+    }
+}
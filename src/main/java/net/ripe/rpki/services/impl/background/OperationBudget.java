@@ -0,0 +1,60 @@
+package net.ripe.rpki.services.impl.background;
+
+import com.google.common.base.Ticker;
+import org.apache.commons.lang.Validate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that allows a number of operations per minute. Unused operations accumulate up to a minute's worth, so
+ * a service running every few minutes can use the budget of the minutes in between, but never bursts more than that.
+ * Acquiring never blocks: operations that do not fit in the budget are left for a later run.
+ */
+class OperationBudget {
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final int operationsPerMinute;
+    private final Ticker ticker;
+
+    private double available;
+    private long lastRefillNanos;
+
+    OperationBudget(int operationsPerMinute, Ticker ticker) {
+        Validate.isTrue(operationsPerMinute > 0, "operations per minute must be positive");
+        this.operationsPerMinute = operationsPerMinute;
+        this.ticker = ticker;
+        this.available = operationsPerMinute;
+        this.lastRefillNanos = ticker.read();
+    }
+
+    int getOperationsPerMinute() {
+        return operationsPerMinute;
+    }
+
+    synchronized boolean tryAcquire() {
+        refill();
+        if (available < 1) {
+            return false;
+        }
+        available -= 1;
+        return true;
+    }
+
+    /**
+     * Returns an operation that was acquired but turned out not to be needed.
+     */
+    synchronized void release() {
+        available = Math.min(operationsPerMinute, available + 1);
+    }
+
+    synchronized int available() {
+        refill();
+        return (int) available;
+    }
+
+    private void refill() {
+        long now = ticker.read();
+        available = Math.min(operationsPerMinute, available + (double) (now - lastRefillNanos) * operationsPerMinute / NANOS_PER_MINUTE);
+        lastRefillNanos = now;
+    }
+}
@@ -1,16 +1,21 @@
 package net.ripe.rpki.services.impl.background;
 
+import com.google.common.collect.Lists;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.util.UTC;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.core.services.background.BackgroundServicePriority;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.*;
 import net.ripe.rpki.domain.manifest.ManifestEntity;
 import net.ripe.rpki.server.api.commands.IssueUpdatedManifestAndCrlCommand;
+import net.ripe.rpki.server.api.services.background.BackgroundServiceTrigger;
 import net.ripe.rpki.server.api.services.command.CommandService;
 import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
 
@@ -20,6 +25,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_RRDP_SERVICE;
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_RSYNC_SERVICE;
 
 /**
  * Updates all needed CRLs and manifests to generate a new, consistent set of published RPKI objects. The update
@@ -27,6 +34,9 @@ import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_R
  * certificates that cause child CAs to be invalidated).
  * <p>
  * The actual publishing to RRDP or RSYNC is done in separate background services.
+ * <p>
+ * When the group commit size is larger than one, the manifest and CRL updates of multiple CAs are committed in a
+ * single transaction to reduce the commit overhead after a validity-window rollover.
  */
 @Service(PUBLIC_REPOSITORY_PUBLICATION_SERVICE)
 @Slf4j
@@ -39,6 +49,8 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
     private final PublishedObjectRepository publishedObjectRepository;
     private final TrustAnchorPublishedObjectRepository trustAnchorPublishedObjectRepository;
     private final Counter certificateAuthorityCounter;
+    private final BackgroundServiceTrigger backgroundServiceTrigger;
+    private final int groupCommitSize;
 
     @Inject
     public PublicRepositoryPublicationServiceBean(
@@ -46,13 +58,17 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         CommandService commandService,
         CertificateAuthorityRepository certificateAuthorityRepository,
         TransactionTemplate transactionTemplate, PublishedObjectRepository publishedObjectRepository, TrustAnchorPublishedObjectRepository trustAnchorPublishedObjectRepository,
-        MeterRegistry meterRegistry) {
+        MeterRegistry meterRegistry,
+        BackgroundServiceTrigger backgroundServiceTrigger,
+        @Value("${public.repository.publication.group.commit.size:1}") int groupCommitSize) {
         super(backgroundTaskRunner);
         this.commandService = commandService;
+        this.backgroundServiceTrigger = backgroundServiceTrigger;
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.transactionTemplate = transactionTemplate;
         this.publishedObjectRepository = publishedObjectRepository;
         this.trustAnchorPublishedObjectRepository = trustAnchorPublishedObjectRepository;
+        this.groupCommitSize = Math.max(1, groupCommitSize);
 
         this.certificateAuthorityCounter = Counter.builder("rpkicore.publication.certificate.authorities")
             .description("The number of certificate authorities with pending publications updated")
@@ -60,6 +76,12 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
             .register(meterRegistry);
     }
 
+    @Override
+    protected BackgroundServicePriority getPriority() {
+        // Publish changes before manifests and CRLs expire, and without making users wait for their ROA changes
+        return BackgroundServicePriority.HIGH;
+    }
+
     @Override
     public String getName() {
         return "Public Repository Publication Service";
@@ -73,11 +95,23 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         DateTime manifestAndCrlValidityCutoff = UTC.dateTime().plus(ManifestEntity.TIME_TO_NEXT_UPDATE_SOFT_LIMIT)
             .withMinuteOfHour(0).withSecondOfMinute(0).withMillisOfSecond(0);
         transactionTemplate.executeWithoutResult(status -> trustAnchorPublishedObjectRepository.updatePublicationStatus());
-        publishPendingCertificateAuthorities(manifestAndCrlValidityCutoff);
+        int published = publishPendingCertificateAuthorities(manifestAndCrlValidityCutoff);
         transactionTemplate.executeWithoutResult(status -> publishedObjectRepository.withdrawObjectsForDeletedKeys());
+
+        if (published > 0) {
+            reportWorkload(BackgroundServiceExecutionResult.Workload.DID_WORK);
+            // Push the new manifests and CRLs out without waiting for the next scheduled run
+            backgroundServiceTrigger.requestRun(PUBLIC_REPOSITORY_RRDP_SERVICE);
+            backgroundServiceTrigger.requestRun(PUBLIC_REPOSITORY_RSYNC_SERVICE);
+        } else {
+            reportWorkload(BackgroundServiceExecutionResult.Workload.IDLE);
+        }
     }
 
-    private void publishPendingCertificateAuthorities(DateTime manifestAndCrlValidityCutoff) {
+    /**
+     * @return the number of CAs with pending publications
+     */
+    private int publishPendingCertificateAuthorities(DateTime manifestAndCrlValidityCutoff) {
         Collection<ManagedCertificateAuthority> pendingCertificateAuthorities =
             certificateAuthorityRepository.findAllWithOutdatedManifests(true, manifestAndCrlValidityCutoff, Integer.MAX_VALUE);
         log.info("Publishing {} CAs with updated configuration or outdated manifest/CRL", pendingCertificateAuthorities.size());
@@ -90,16 +124,29 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         // Publish top-down to ensure the parent CA's certificates are always available before publishing child CA
         // certificates. Otherwise, a child CA certificate may be invalid due to over-claiming resources.
         for (List<ManagedCertificateAuthority> cas : groupedByDepth.values()) {
-            runParallel(cas.stream().map(ca -> task(
-                () -> commandService.execute(new IssueUpdatedManifestAndCrlCommand(ca.getVersionedId())),
-                ex -> {
-                    if (ex instanceof EntityNotFoundException) {
-                        log.info("CA '{}' not found, probably deleted since initial query", ca.getName(), ex);
-                    } else {
-                        log.error("Could not publish material for CA '{}'", ca.getName(), ex);
-                    }
-                }
-            )));
+            if (groupCommitSize == 1) {
+                runParallel(cas.stream().map(ca -> task(
+                    () -> commandService.execute(new IssueUpdatedManifestAndCrlCommand(ca.getVersionedId())),
+                    ex -> logPublicationFailure(ca.getName(), ex)
+                )));
+            } else {
+                runParallel(Lists.partition(cas, groupCommitSize).stream().map(group -> task(
+                    () -> commandService.executeGroupCommitted(
+                        group.stream().map(ca -> new IssueUpdatedManifestAndCrlCommand(ca.getVersionedId())).toList(),
+                        (command, ex) -> logPublicationFailure(command.getCertificateAuthorityVersionedId(), ex)
+                    ),
+                    ex -> log.error("Could not publish material for group of {} CAs", group.size(), ex)
+                )));
+            }
+        }
+        return pendingCertificateAuthorities.size();
+    }
+
+    private void logPublicationFailure(Object ca, Exception ex) {
+        if (ex instanceof EntityNotFoundException) {
+            log.info("CA '{}' not found, probably deleted since initial query", ca, ex);
+        } else {
+            log.error("Could not publish material for CA '{}'", ca, ex);
         }
     }
 }
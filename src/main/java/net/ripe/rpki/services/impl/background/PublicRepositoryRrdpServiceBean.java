@@ -18,6 +18,10 @@ import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_R
 
 /**
  * Publishes all RPKI objects that should be publicly available to the (RRDP) publication server.
+ * <p>
+ * The active node lease is verified right before publishing, but the publication itself is not fenced: a former active
+ * node that is paused after this check can still publish a (consistent) snapshot of the objects after another node took
+ * over.
  */
 @Service(PUBLIC_REPOSITORY_RRDP_SERVICE)
 public class PublicRepositoryRrdpServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
@@ -25,6 +29,7 @@ public class PublicRepositoryRrdpServiceBean extends ConcurrentBackgroundService
     private final PublishedObjectRepository publishedObjectRepository;
     private final PublicationSupport publicationSupport;
     private final TransactionTemplate transactionTemplate;
+    private final PublishedObjectsFingerprint publishedObjectsFingerprint = new PublishedObjectsFingerprint();
 
     public PublicRepositoryRrdpServiceBean(
             BackgroundTaskRunner backgroundTaskRunner,
@@ -48,9 +53,10 @@ public class PublicRepositoryRrdpServiceBean extends ConcurrentBackgroundService
     @Override
     @SneakyThrows
     protected void runService(Map<String, String> parameters) {
-        List<PublishedObjectData> publishedObjects = transactionTemplate.execute(
-            (status) -> publishedObjectRepository.findCurrentlyPublishedObjects()
-        );
+        List<PublishedObjectData> publishedObjects = transactionTemplate.execute((status) -> publishedObjectRepository.findCurrentlyPublishedObjects());
+        // Check the lease right before publishing, the publication itself happens outside of any transaction
+        transactionTemplate.executeWithoutResult((status) -> verifyFencingToken());
         publicationSupport.publishAllObjects(publishedObjects);
+        reportWorkload(publishedObjectsFingerprint.update(publishedObjects));
     }
 }
@@ -10,12 +10,13 @@ import net.ripe.rpki.domain.PublishedObjectRepository;
 import net.ripe.rpki.domain.ResourceCertificateRepository;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.inject.Inject;
 
+import java.time.Duration;
 import java.util.Map;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLISHED_OBJECT_CLEAN_UP_SERVICE;
@@ -24,7 +25,7 @@ import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLISHE
 @Service(PUBLISHED_OBJECT_CLEAN_UP_SERVICE)
 public class PublishedObjectCleanUpServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
 
-    private final TransactionTemplate transactionTemplate;
+    private final BatchedCleanUp batchedCleanUp;
     private final CertificateAuthorityRepository certificateAuthorityRepository;
     private final PublishedObjectRepository publishedObjectRepository;
     private final ResourceCertificateRepository resourceCertificateRepository;
@@ -38,12 +39,14 @@ public class PublishedObjectCleanUpServiceBean extends ConcurrentBackgroundServi
                                              PublishedObjectRepository publishedObjectRepository,
                                              ResourceCertificateRepository resourceCertificateRepository,
                                              PlatformTransactionManager transactionManager,
-                                             MeterRegistry meterRegistry) {
+                                             MeterRegistry meterRegistry,
+                                             @Value("${expiry.cleanup.batch.size:10000}") int batchSize,
+                                             @Value("${expiry.cleanup.time.budget:PT5M}") Duration timeBudget) {
         super(backgroundTaskRunner);
         this.publishedObjectRepository = publishedObjectRepository;
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.resourceCertificateRepository = resourceCertificateRepository;
-        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchedCleanUp = new BatchedCleanUp(transactionManager, meterRegistry, batchSize, timeBudget);
 
         this.deletedNonHostedPublicKeysCounter = Counter.builder("rpkicore.deleted.non.hosted.public.keys.without.signing.cert")
             .description("The number of deleted non-hosted public keys without signing certificate")
@@ -53,17 +56,21 @@ public class PublishedObjectCleanUpServiceBean extends ConcurrentBackgroundServi
     @Override
     protected void runService(Map<String, String> parameters) {
         DateTime expirationTime = new DateTime(DateTimeZone.UTC).minusDays(daysBeforeCleanUp);
-        transactionTemplate.executeWithoutResult((status) -> {
-            int certificateCount = resourceCertificateRepository.deleteExpiredOutgoingResourceCertificates(expirationTime);
-            log.info("Deleted {} expired certificates with not valid after before {}", certificateCount, expirationTime);
+        // Certificates are deleted first, since they may still reference the published objects and public keys
+        long certificateCount = batchedCleanUp.run("delete-expired-outgoing-resource-certificates",
+            maxResults -> resourceCertificateRepository.deleteExpiredOutgoingResourceCertificates(expirationTime, maxResults));
+        log.info("Deleted {} expired certificates with not valid after before {}", certificateCount, expirationTime);
 
-            int publishedObjectCount = publishedObjectRepository.deleteExpiredObjects(expirationTime);
-            log.info("Deleted {} withdrawn published objects with not valid after before {}", publishedObjectCount, expirationTime);
+        long publishedObjectCount = batchedCleanUp.run("delete-expired-published-objects",
+            maxResults -> publishedObjectRepository.deleteExpiredObjects(expirationTime, maxResults));
+        log.info("Deleted {} withdrawn published objects with not valid after before {}", publishedObjectCount, expirationTime);
 
-            int deletedNonHostedPublicKeyCount = certificateAuthorityRepository.deleteNonHostedPublicKeysWithoutSigningCertificates();
-            deletedNonHostedPublicKeysCounter.increment(deletedNonHostedPublicKeyCount);
-            log.info("Deleted {} non-hosted public keys without signing certificates", deletedNonHostedPublicKeyCount);
+        long deletedNonHostedPublicKeyCount = batchedCleanUp.run("delete-non-hosted-public-keys", maxResults -> {
+            int count = certificateAuthorityRepository.deleteNonHostedPublicKeysWithoutSigningCertificates(maxResults);
+            deletedNonHostedPublicKeysCounter.increment(count);
+            return count;
         });
+        log.info("Deleted {} non-hosted public keys without signing certificates", deletedNonHostedPublicKeyCount);
     }
 
     @Override
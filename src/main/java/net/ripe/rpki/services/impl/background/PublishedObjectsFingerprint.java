@@ -0,0 +1,29 @@
+package net.ripe.rpki.services.impl.background;
+
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.domain.PublishedObjectData;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Detects whether the set of currently published objects changed since the previous run of a publishing service, so
+ * the service can report an idle run. A new version of an object always has a new creation time, so the URI and
+ * creation time identify the published content without hashing it.
+ */
+class PublishedObjectsFingerprint {
+    private long previous;
+    private boolean initialized;
+
+    synchronized BackgroundServiceExecutionResult.Workload update(Collection<PublishedObjectData> publishedObjects) {
+        long fingerprint = publishedObjects.size();
+        for (PublishedObjectData object : publishedObjects) {
+            // Order independent, so the order of the query results does not matter
+            fingerprint += 31L * Objects.hash(object.getUri(), object.getCreatedAt());
+        }
+        boolean changed = !initialized || fingerprint != previous;
+        previous = fingerprint;
+        initialized = true;
+        return changed ? BackgroundServiceExecutionResult.Workload.DID_WORK : BackgroundServiceExecutionResult.Workload.IDLE;
+    }
+}
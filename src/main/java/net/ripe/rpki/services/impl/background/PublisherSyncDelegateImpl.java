@@ -1,39 +1,109 @@
 package net.ripe.rpki.services.impl.background;
 
+import com.google.common.base.Ticker;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.RateLimiter;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.provisioning.identity.PublisherRequest;
 import net.ripe.rpki.ripencc.services.impl.KrillNonHostedPublisherRepositoryBean;
 import net.ripe.rpki.server.api.ports.NonHostedPublisherRepositoryService;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import org.apache.commons.lang.Validate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.CheckForNull;
 import jakarta.inject.Inject;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Provisions the publishers that are only known to Core and deletes the publishers that are only known to Krill.
+ * <p>
+ * The differences are applied with bounded concurrency and a limited request rate, and every publisher is retried
+ * with exponential back-off, so re-provisioning thousands of publishers after a Krill restore neither takes hours nor
+ * overloads Krill. A failing publisher does not stop the others and is picked up again by the next run.
+ * <p>
+ * Listing all publishers on Krill is expensive. When the publishers known to Core did not change since the last run
+ * that synced without failures, the listing is skipped until the full sync interval has passed, which bounds how long
+ * changes made on the Krill side alone (e.g. a restore) go unnoticed.
+ */
 @Slf4j
 @Service
 @ConditionalOnBean(KrillNonHostedPublisherRepositoryBean.class)
 public class PublisherSyncDelegateImpl implements PublisherSyncDelegate {
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+
     private final CertificateAuthorityViewService certificateAuthorityViewService;
     private final NonHostedPublisherRepositoryService nonHostedPublisherRepositoryService;
+    private final MeterRegistry meterRegistry;
+    private final ForkJoinPool forkJoinPool;
+    private final RateLimiter rateLimiter;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration fullSyncInterval;
+    private final Ticker ticker;
 
     private final Counter syncOnlyOnCoreCounter;
     private final Counter syncOnlyOnKrillCounter;
+    private final Counter syncRetryCounter;
+    private final Counter syncSkippedCounter;
+    private final AtomicInteger remainingOperations = new AtomicInteger();
+
+    @CheckForNull
+    private volatile SyncedState lastSyncedState;
 
     @Inject
     public PublisherSyncDelegateImpl(
             CertificateAuthorityViewService certificateAuthorityViewService,
             NonHostedPublisherRepositoryService nonHostedPublisherRepositoryService,
-            MeterRegistry meterRegistry){
+            MeterRegistry meterRegistry,
+            @Value("${non-hosted.publisher.repository.sync.concurrency:8}") int concurrency,
+            @Value("${non-hosted.publisher.repository.sync.max-requests-per-second:50}") double maxRequestsPerSecond,
+            @Value("${non-hosted.publisher.repository.sync.max-attempts:3}") int maxAttempts,
+            @Value("${non-hosted.publisher.repository.sync.retry-backoff:PT1S}") Duration retryBackoff,
+            @Value("${non-hosted.publisher.repository.sync.full-sync-interval:PT1H}") Duration fullSyncInterval) {
+        this(certificateAuthorityViewService, nonHostedPublisherRepositoryService, meterRegistry,
+            concurrency, maxRequestsPerSecond, maxAttempts, retryBackoff, fullSyncInterval, Ticker.systemTicker());
+    }
+
+    PublisherSyncDelegateImpl(
+            CertificateAuthorityViewService certificateAuthorityViewService,
+            NonHostedPublisherRepositoryService nonHostedPublisherRepositoryService,
+            MeterRegistry meterRegistry,
+            int concurrency,
+            double maxRequestsPerSecond,
+            int maxAttempts,
+            Duration retryBackoff,
+            Duration fullSyncInterval,
+            Ticker ticker) {
+        Validate.isTrue(concurrency > 0, "concurrency must be positive");
+        Validate.isTrue(maxAttempts > 0, "maximum number of attempts must be positive");
 
         this.certificateAuthorityViewService = certificateAuthorityViewService;
         this.nonHostedPublisherRepositoryService = nonHostedPublisherRepositoryService;
+        this.meterRegistry = meterRegistry;
+        this.forkJoinPool = new ForkJoinPool(concurrency);
+        this.rateLimiter = RateLimiter.create(maxRequestsPerSecond);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.fullSyncInterval = fullSyncInterval;
+        this.ticker = ticker;
+
         this.syncOnlyOnCoreCounter = Counter.builder("rpkicore.publishers.only.on.core")
                 .description("The number publishers only on core that are provisioned on sync")
                 .register(meterRegistry);
@@ -41,34 +111,139 @@ public class PublisherSyncDelegateImpl implements PublisherSyncDelegate {
         this.syncOnlyOnKrillCounter = Counter.builder("rpkicore.publisher.only.on.krill")
                 .description("The number publishers only on krill that are deleted on sync")
                 .register(meterRegistry);
+
+        this.syncRetryCounter = Counter.builder("rpkicore.publisher.sync.retries")
+                .description("The number of retried publisher provisioning and deletion requests")
+                .register(meterRegistry);
+
+        this.syncSkippedCounter = Counter.builder("rpkicore.publisher.sync.skipped")
+                .description("The number of syncs that skipped listing the publishers on krill since nothing changed on core")
+                .register(meterRegistry);
+
+        Gauge.builder("rpkicore.publisher.sync.remaining", remainingOperations, AtomicInteger::get)
+                .description("The number of provisioning and deletion requests the running sync still has to complete")
+                .register(meterRegistry);
     }
 
     @Override
     public void runService() {
+        long startedAt = ticker.read();
         Map<UUID, PublisherRequest> corePublisherRequests = certificateAuthorityViewService.findAllPublisherRequestsFromNonHostedCAs();
-
         Set<UUID> corePublisherHandles = corePublisherRequests.keySet();
+        HashCode fingerprint = fingerprint(corePublisherHandles);
+
+        SyncedState synced = lastSyncedState;
+        if (synced != null && synced.fingerprint().equals(fingerprint) && startedAt - synced.syncedAtNanos() < fullSyncInterval.toNanos()) {
+            syncSkippedCounter.increment();
+            log.info("Publishers on Core did not change since the last sync, skipping sync of {} publishers", corePublisherHandles.size());
+            return;
+        }
+
         Set<UUID> krillPublisherHandles = nonHostedPublisherRepositoryService.listPublishers();
 
+        List<SyncOperation> operations = new ArrayList<>();
         Set<UUID> onlyOnCore = Sets.difference(corePublisherHandles, krillPublisherHandles);
         syncOnlyOnCoreCounter.increment(onlyOnCore.size());
         for (UUID publisherHandle : onlyOnCore) {
             PublisherRequest request = corePublisherRequests.get(publisherHandle);
-            log.info("Reprovisioning publisher handle only on Core: {}", publisherHandle);
-            try {
-                nonHostedPublisherRepositoryService.provisionPublisher(publisherHandle, request);
-            } catch (NonHostedPublisherRepositoryService.DuplicateRepositoryException e) {
-                // should not happen since we only re-provision missing repositories, but ignore since we
-                // consider this an idem-potent operation.
-                log.warn("Duplicate repository '{}' while re-provisioning", publisherHandle);
-            }
+            operations.add(new SyncOperation("provision", publisherHandle, () -> {
+                log.info("Reprovisioning publisher handle only on Core: {}", publisherHandle);
+                try {
+                    nonHostedPublisherRepositoryService.provisionPublisher(publisherHandle, request);
+                } catch (NonHostedPublisherRepositoryService.DuplicateRepositoryException e) {
+                    // should not happen since we only re-provision missing repositories, but ignore since we
+                    // consider this an idem-potent operation.
+                    log.warn("Duplicate repository '{}' while re-provisioning", publisherHandle);
+                }
+            }));
         }
 
         Set<UUID> onlyOnKrill = Sets.difference(krillPublisherHandles, corePublisherHandles);
-        syncOnlyOnKrillCounter.increment(onlyOnCore.size());
+        syncOnlyOnKrillCounter.increment(onlyOnKrill.size());
         for (UUID publisherHandle : onlyOnKrill) {
-            log.info("Cleaning up publisher handle only on Krill: {}", publisherHandle);
-            nonHostedPublisherRepositoryService.deletePublisher(publisherHandle);
+            operations.add(new SyncOperation("delete", publisherHandle, () -> {
+                log.info("Cleaning up publisher handle only on Krill: {}", publisherHandle);
+                nonHostedPublisherRepositoryService.deletePublisher(publisherHandle);
+            }));
         }
+
+        int failed = execute(operations);
+        // Only skip the listing in later runs when Krill is known to match Core
+        lastSyncedState = failed == 0 ? new SyncedState(fingerprint, startedAt) : null;
+        log.info("Publisher sync provisioned {} and deleted {} publishers on Krill, {} failed", onlyOnCore.size(), onlyOnKrill.size(), failed);
+    }
+
+    /**
+     * @return the number of operations that failed after all attempts
+     */
+    private int execute(List<SyncOperation> operations) {
+        if (operations.isEmpty()) {
+            return 0;
+        }
+        remainingOperations.set(operations.size());
+        try {
+            return forkJoinPool.submit(() -> operations.parallelStream()
+                .mapToInt(operation -> {
+                    boolean success = executeWithRetries(operation);
+                    int remaining = remainingOperations.decrementAndGet();
+                    if (remaining % PROGRESS_LOG_INTERVAL == 0) {
+                        log.info("Publisher sync progress: {} of {} requests remaining", remaining, operations.size());
+                    }
+                    return success ? 0 : 1;
+                })
+                .sum()
+            ).join();
+        } finally {
+            remainingOperations.set(0);
+        }
+    }
+
+    private boolean executeWithRetries(SyncOperation operation) {
+        for (int attempt = 1; ; ++attempt) {
+            rateLimiter.acquire();
+            try {
+                operation.action().run();
+                operationCounter(operation, "success").increment();
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    operationCounter(operation, "failed").increment();
+                    log.error("Failed to {} publisher {} after {} attempts, retrying in the next sync", operation.type(), operation.publisherHandle(), attempt, e);
+                    return false;
+                }
+                syncRetryCounter.increment();
+                long sleepForMs = (retryBackoff.toMillis() << (attempt - 1)) + ThreadLocalRandom.current().nextLong(retryBackoff.toMillis() + 1);
+                log.warn("Failed to {} publisher {}, retry {} in {} ms: {}", operation.type(), operation.publisherHandle(), attempt, sleepForMs, e.toString());
+                try {
+                    Thread.sleep(sleepForMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    operationCounter(operation, "failed").increment();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private Counter operationCounter(SyncOperation operation, String status) {
+        return Counter.builder("rpkicore.publisher.sync.requests")
+            .description("The number of publisher provisioning and deletion requests completed by the sync")
+            .tag("operation", operation.type())
+            .tag("status", status)
+            .register(meterRegistry);
+    }
+
+    private static HashCode fingerprint(Set<UUID> publisherHandles) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        publisherHandles.stream().sorted().forEach(handle -> hasher
+            .putLong(handle.getMostSignificantBits())
+            .putLong(handle.getLeastSignificantBits()));
+        return hasher.hash();
+    }
+
+    private record SyncOperation(String type, UUID publisherHandle, Runnable action) {
+    }
+
+    private record SyncedState(HashCode fingerprint, long syncedAtNanos) {
     }
 }
@@ -14,7 +14,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.ipresource.IpResource;
-import net.ripe.rpki.core.services.background.SequentialBackgroundQueuedTaskRunner;
+import net.ripe.rpki.domain.CaUpdateNeededRepository;
 import net.ripe.rpki.server.api.configuration.RepositoryConfiguration;
 import net.ripe.rpki.server.api.ports.DelegationsCache;
 import net.ripe.rpki.server.api.ports.ResourceCache;
@@ -51,8 +51,9 @@ public class ResourceCacheService {
     private final ResourceCache resourceCache;
     private final DelegationsCache delegationsCache;
 
-    private final SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner;
+    private final ResourceCertificateUpdateQueue resourceCertificateUpdateQueue;
     private final AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean;
+    private final CaUpdateNeededRepository caUpdateNeededRepository;
 
     @Getter
     private final CaName productionCaName;
@@ -62,14 +63,20 @@ public class ResourceCacheService {
     private final AtomicReference<ResourceStat> resourceStats;
     private final ResourceCacheServiceMetrics resourceCacheServiceMetrics;
 
+    /**
+     * Whether the last full update committed changes to the resources of any CA.
+     */
+    private volatile boolean lastUpdateChangedResources;
+
     @Autowired
     public ResourceCacheService(
         TransactionOperations transactionTemplate,
         ResourceServicesClient resourceServicesClient,
         ResourceCache resourceCache,
         DelegationsCache delegationsCache,
-        SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner,
+        ResourceCertificateUpdateQueue resourceCertificateUpdateQueue,
         AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean,
+        CaUpdateNeededRepository caUpdateNeededRepository,
         @Value("${" + RepositoryConfiguration.PRODUCTION_CA_NAME + "}") X500Principal productionCaName,
         @Value("${" + RepositoryConfiguration.ALL_RESOURCES_CA_NAME + "}") X500Principal allResourcesCaName,
         MeterRegistry meterRegistry
@@ -78,8 +85,9 @@ public class ResourceCacheService {
         this.resourceCache = resourceCache;
         this.transactionTemplate = transactionTemplate;
         this.delegationsCache = delegationsCache;
-        this.sequentialBackgroundQueuedTaskRunner = sequentialBackgroundQueuedTaskRunner;
+        this.resourceCertificateUpdateQueue = resourceCertificateUpdateQueue;
         this.allCaCertificateUpdateServiceBean = allCaCertificateUpdateServiceBean;
+        this.caUpdateNeededRepository = caUpdateNeededRepository;
 
         this.productionCaName = CaName.of(productionCaName);
         this.allResourcesCaName = CaName.of(allResourcesCaName);
@@ -95,6 +103,10 @@ public class ResourceCacheService {
         resourceCacheServiceMetrics = new ResourceCacheServiceMetrics(resourceStats, meterRegistry);
     }
 
+    boolean hasLastUpdateChangedResources() {
+        return lastUpdateChangedResources;
+    }
+
     public Optional<ImmutableResourceSet> getProductionCaResources() {
         return delegationsCache.getDelegationsCache();
     }
@@ -117,6 +129,7 @@ public class ResourceCacheService {
      * @return whether update was applied.
      */
     public boolean updateFullResourceCache(Optional<String> forceUpdateCode) {
+        lastUpdateChangedResources = false;
         ResourceServicesClient.TotalResources allResources;
         try {
             allResources = resourceServicesClient.fetchAllResources();
@@ -152,13 +165,18 @@ public class ResourceCacheService {
             interpretUpdate(productionUpdate, forceUpdate);
             interpretUpdate(membersUpdate, forceUpdate);
 
+            Set<X500Principal> changedCas = changedCas(updates);
+            if (!changedCas.isEmpty() && allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()) {
+                caUpdateNeededRepository.markUpdateNeeded(changedCas, "resources changed");
+            }
+
             JdbcDBComponent.afterCommit(() -> {
                 resourceStats.getAndUpdate(rs -> rs
                     .withLastUpdatedAt(Optional.of(Instant.now()))
                     .withResourceUpdateRejection(Optional.empty())
                     .withDelegationUpdateRejection(Optional.empty())
                 );
-                scheduleResourceCertificateUpdateForChangedCas(updates);
+                scheduleResourceCertificateUpdateForChangedCas(changedCas);
             });
 
             if (!forceUpdate && !rejected.isEmpty()) {
@@ -172,34 +190,21 @@ public class ResourceCacheService {
         });
     }
 
-    private void scheduleResourceCertificateUpdateForChangedCas(List<Update> updates) {
-        Set<X500Principal> changedCas = updates.stream()
+    private static Set<X500Principal> changedCas(List<Update> updates) {
+        return updates.stream()
             .flatMap(update -> update.changes.entrySet().stream())
             .filter(entry -> entry.getValue().added > 0 || entry.getValue().deleted > 0)
             .map(entry -> entry.getKey().getPrincipal())
             .collect(Collectors.toSet());
+    }
+
+    private void scheduleResourceCertificateUpdateForChangedCas(Set<X500Principal> changedCas) {
         if (changedCas.isEmpty()) {
             return;
         }
+        lastUpdateChangedResources = true;
 
-        Runnable action = () -> allCaCertificateUpdateServiceBean.runService(
-            Collections.emptyMap(),
-            ca -> {
-                switch (ca.getType()) {
-                    case HOSTED: case NONHOSTED:
-                        return changedCas.contains(ca.getName());
-                    case ALL_RESOURCES: case ROOT: case INTERMEDIATE:
-                        return true;
-                }
-                throw new IllegalStateException(String.format("unknown type '%s' for CA '%s'", ca.getType(), ca.getName()));
-            }
-        );
-        sequentialBackgroundQueuedTaskRunner.submit(
-            "update CA certificates after resource cache update",
-            action,
-            exception -> {
-            }
-        );
+        resourceCertificateUpdateQueue.submit(changedCas);
     }
 
     private void interpretUpdate(Update r, boolean acceptUpdateAnyway) {
@@ -440,6 +445,10 @@ public class ResourceCacheService {
         return resourceCache.lookupResources(caName);
     }
 
+    public Optional<String> getCaResourcesVersion(CaName caName) {
+        return resourceCache.lookupResourcesVersion(caName);
+    }
+
     public Optional<Instant> getUpdateLastAttemptedAt() {
         return resourceStats.get().getUpdateLastAttemptedAt();
     }
@@ -1,6 +1,7 @@
 package net.ripe.rpki.services.impl.background;
 
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +31,9 @@ public class ResourceCacheUpdateServiceBean extends ConcurrentBackgroundServiceW
     @Override
     protected void runService(Map<String, String> parameters) {
         resourceCacheService.updateFullResourceCache(parseForceUpdateParameter(parameters));
+        reportWorkload(resourceCacheService.hasLastUpdateChangedResources()
+            ? BackgroundServiceExecutionResult.Workload.DID_WORK
+            : BackgroundServiceExecutionResult.Workload.IDLE);
     }
 
     @Override
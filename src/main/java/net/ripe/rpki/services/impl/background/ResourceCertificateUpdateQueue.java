@@ -0,0 +1,182 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.SequentialBackgroundQueuedTaskRunner;
+import org.apache.commons.lang.Validate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.security.auth.x500.X500Principal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Coalescing queue of CAs whose incoming resource certificate needs to be updated after a resource cache update.
+ * <p>
+ * Submitting a CA that is already queued only merges the submission, so a burst of resource cache updates results in
+ * a single update of every affected CA instead of a full run of the all CA certificate update service per update. At
+ * most one run is queued or running on the {@link SequentialBackgroundQueuedTaskRunner} at any time. CAs submitted
+ * while a run is in progress are picked up by the next run.
+ * <p>
+ * When change-driven updates are enabled the submitted CAs are already marked in the update needed index, so a run
+ * processes the index instead of the queued CAs and the index is the real backlog: the depth and age are reported from
+ * the index, and the number of CAs per run is limited by the batch size of the all CA certificate update service.
+ * CAs left in the index are picked up by the next run. Otherwise every run takes at most <code>max-cas-per-run</code>
+ * CAs from the queue.
+ */
+@Slf4j
+@Service
+public class ResourceCertificateUpdateQueue {
+
+    private final SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner;
+    private final AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean;
+    private final int maxCasPerRun;
+    private final Clock clock;
+
+    private final Counter coalesced;
+
+    /**
+     * The queued CAs with the time they were first submitted, in submission order.
+     */
+    private final LinkedHashMap<X500Principal, Instant> queued = new LinkedHashMap<>();
+    private boolean runScheduled;
+
+    public ResourceCertificateUpdateQueue(SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner,
+                                          AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean,
+                                          @Value("${certificate.authority.update.queue.max-cas-per-run:10000}") int maxCasPerRun,
+                                          MeterRegistry meterRegistry) {
+        this(sequentialBackgroundQueuedTaskRunner, allCaCertificateUpdateServiceBean, maxCasPerRun, meterRegistry, Clock.systemUTC());
+    }
+
+    ResourceCertificateUpdateQueue(SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner,
+                                   AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean,
+                                   int maxCasPerRun,
+                                   MeterRegistry meterRegistry,
+                                   Clock clock) {
+        Validate.isTrue(maxCasPerRun > 0, "max CAs per run must be positive");
+        this.sequentialBackgroundQueuedTaskRunner = sequentialBackgroundQueuedTaskRunner;
+        this.allCaCertificateUpdateServiceBean = allCaCertificateUpdateServiceBean;
+        this.maxCasPerRun = maxCasPerRun;
+        this.clock = clock;
+
+        Gauge.builder("rpkicore.ca.update.queue.depth", this, ResourceCertificateUpdateQueue::getDepth)
+            .description("Number of CAs waiting for an update of their incoming certificate")
+            .register(meterRegistry);
+        Gauge.builder("rpkicore.ca.update.queue.oldest.age.seconds", this, queue -> queue.getOldestAge().map(Duration::toSeconds).orElse(0L))
+            .description("Time the longest waiting CA has been waiting for an update of its incoming certificate")
+            .register(meterRegistry);
+        coalesced = Counter.builder("rpkicore.ca.update.queue.coalesced")
+            .description("Number of submitted CAs that were merged with a CA that was already queued")
+            .register(meterRegistry);
+    }
+
+    public void submit(Collection<X500Principal> cas) {
+        if (cas.isEmpty()) {
+            return;
+        }
+        Instant now = clock.instant();
+        boolean scheduleRun;
+        synchronized (this) {
+            for (X500Principal ca : cas) {
+                if (queued.putIfAbsent(ca, now) != null) {
+                    coalesced.increment();
+                }
+            }
+            scheduleRun = !runScheduled;
+            runScheduled = true;
+        }
+        if (scheduleRun) {
+            scheduleRun();
+        }
+    }
+
+    public int getDepth() {
+        if (allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()) {
+            return allCaCertificateUpdateServiceBean.countUpdateNeeded();
+        }
+        synchronized (this) {
+            return queued.size();
+        }
+    }
+
+    public Optional<Duration> getOldestAge() {
+        Optional<Instant> oldest;
+        if (allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()) {
+            oldest = allCaCertificateUpdateServiceBean.findOldestUpdateNeeded();
+        } else {
+            synchronized (this) {
+                oldest = queued.values().stream().findFirst();
+            }
+        }
+        return oldest.map(submittedAt -> Duration.between(submittedAt, clock.instant()));
+    }
+
+    private void scheduleRun() {
+        try {
+            sequentialBackgroundQueuedTaskRunner.submit(
+                "update CA certificates after resource cache update",
+                this::run,
+                exception -> {
+                }
+            );
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                runScheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    void run() {
+        boolean changeDriven = allCaCertificateUpdateServiceBean.isChangeDrivenEnabled();
+        Set<X500Principal> batch = takeBatch(changeDriven ? Integer.MAX_VALUE : maxCasPerRun);
+        try {
+            if (changeDriven) {
+                // The CAs were marked in the update needed index when they were submitted
+                log.info("Updating incoming certificates of CAs in the update needed index after {} CAs were queued", batch.size());
+                allCaCertificateUpdateServiceBean.runUpdateNeeded(Collections.emptyMap());
+            } else {
+                log.info("Updating incoming certificates of {} queued CAs, {} remaining", batch.size(), getDepth());
+                allCaCertificateUpdateServiceBean.runService(
+                    Collections.emptyMap(),
+                    ca -> switch (ca.getType()) {
+                        case HOSTED, NONHOSTED -> batch.contains(ca.getName());
+                        case ALL_RESOURCES, ROOT, INTERMEDIATE -> true;
+                    }
+                );
+            }
+        } finally {
+            boolean scheduleRun;
+            synchronized (this) {
+                scheduleRun = !queued.isEmpty();
+                runScheduled = scheduleRun;
+            }
+            if (scheduleRun) {
+                scheduleRun();
+            }
+        }
+    }
+
+    private synchronized Set<X500Principal> takeBatch(int maxSize) {
+        Set<X500Principal> batch = new HashSet<>();
+        Iterator<Map.Entry<X500Principal, Instant>> it = queued.entrySet().iterator();
+        while (it.hasNext() && batch.size() < maxSize) {
+            batch.add(it.next().getKey());
+            it.remove();
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,151 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.property.ActiveNodeLease;
+import net.ripe.rpki.domain.property.ActiveNodeLeaseRepository;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+public class JpaActiveNodeLeaseRepository implements ActiveNodeLeaseRepository {
+
+    private static final String RETURNING = " RETURNING owner, expires_at, fencing_token";
+
+    /**
+     * Prefix of the advisory lock ids on fencing tokens (<code>0xfe</code> for fencing), to avoid collisions with
+     * any other locks.
+     */
+    private static final long FENCING_TOKEN_LOCK_PREFIX = 0xfe000000_00000000L;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<ActiveNodeLease> find() {
+        return single(entityManager.createNativeQuery("SELECT owner, expires_at, fencing_token FROM active_node_lease WHERE id = 1"));
+    }
+
+    @Override
+    public Optional<ActiveNodeLease> renew(String owner, long fencingToken, Duration duration) {
+        return single(entityManager.createNativeQuery(
+                "UPDATE active_node_lease SET expires_at = clock_timestamp() + CAST(:duration AS INTERVAL) " +
+                    " WHERE id = 1 AND owner = :owner AND fencing_token = :fencingToken" + RETURNING)
+            .setParameter("duration", duration.toString())
+            .setParameter("owner", owner)
+            .setParameter("fencingToken", fencingToken));
+    }
+
+    @Override
+    public Optional<ActiveNodeLease> acquireExpired(String owner, Duration duration) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "SELECT fencing_token, expires_at <= clock_timestamp() FROM active_node_lease WHERE id = 1")
+            .getResultList();
+        if (rows.isEmpty()) {
+            return single(entityManager.createNativeQuery(
+                    "INSERT INTO active_node_lease (id, owner, expires_at, fencing_token) " +
+                        "VALUES (1, :owner, clock_timestamp() + CAST(:duration AS INTERVAL), 1) " +
+                        "ON CONFLICT (id) DO NOTHING" + RETURNING)
+                .setParameter("duration", duration.toString())
+                .setParameter("owner", owner));
+        }
+
+        // Only wait for the fenced transactions of the current owner once the lease has expired, otherwise the
+        // heartbeat of every other node would hold up the active node.
+        Object[] current = rows.get(0);
+        if (!Boolean.TRUE.equals(current[1])) {
+            return Optional.empty();
+        }
+        long expiredFencingToken = ((Number) current[0]).longValue();
+        advisoryLock(expiredFencingToken, false);
+        return single(entityManager.createNativeQuery(
+                "UPDATE active_node_lease " +
+                    "   SET owner = :owner, expires_at = clock_timestamp() + CAST(:duration AS INTERVAL), fencing_token = fencing_token + 1 " +
+                    " WHERE id = 1 AND fencing_token = :fencingToken AND expires_at <= clock_timestamp()" + RETURNING)
+            .setParameter("duration", duration.toString())
+            .setParameter("owner", owner)
+            .setParameter("fencingToken", expiredFencingToken));
+    }
+
+    @Override
+    public ActiveNodeLease assign(String owner, Duration duration) {
+        while (true) {
+            Optional<ActiveNodeLease> current = find();
+            if (current.isEmpty()) {
+                return single(entityManager.createNativeQuery(
+                        "INSERT INTO active_node_lease AS lease (id, owner, expires_at, fencing_token) " +
+                            "VALUES (1, :owner, clock_timestamp() + CAST(:duration AS INTERVAL), 1) " +
+                            "ON CONFLICT (id) DO UPDATE " +
+                            "   SET owner = excluded.owner, expires_at = excluded.expires_at, fencing_token = lease.fencing_token + 1" + RETURNING)
+                    .setParameter("duration", duration.toString())
+                    .setParameter("owner", owner))
+                    .orElseThrow();
+            }
+
+            long previousFencingToken = current.get().fencingToken();
+            advisoryLock(previousFencingToken, false);
+            Optional<ActiveNodeLease> assigned = single(entityManager.createNativeQuery(
+                    "UPDATE active_node_lease " +
+                        "   SET owner = :owner, expires_at = clock_timestamp() + CAST(:duration AS INTERVAL), fencing_token = fencing_token + 1 " +
+                        " WHERE id = 1 AND fencing_token = :fencingToken" + RETURNING)
+                .setParameter("duration", duration.toString())
+                .setParameter("owner", owner)
+                .setParameter("fencingToken", previousFencingToken));
+            if (assigned.isPresent()) {
+                return assigned.get();
+            }
+            // The lease changed owner while waiting for the lock, lock the new fencing token instead
+        }
+    }
+
+    @Override
+    public void release(String owner, long fencingToken) {
+        entityManager.createNativeQuery(
+                "UPDATE active_node_lease SET expires_at = clock_timestamp() " +
+                    " WHERE id = 1 AND owner = :owner AND fencing_token = :fencingToken AND expires_at > clock_timestamp()")
+            .setParameter("owner", owner)
+            .setParameter("fencingToken", fencingToken)
+            .executeUpdate();
+    }
+
+    @Override
+    public void lockFencingToken(long fencingToken) {
+        advisoryLock(fencingToken, true);
+    }
+
+    @Override
+    public boolean isHeld(String owner, long fencingToken) {
+        return !entityManager.createNativeQuery(
+                "SELECT 1 FROM active_node_lease " +
+                    " WHERE id = 1 AND owner = :owner AND fencing_token = :fencingToken AND expires_at > clock_timestamp()")
+            .setParameter("owner", owner)
+            .setParameter("fencingToken", fencingToken)
+            .getResultList()
+            .isEmpty();
+    }
+
+    private void advisoryLock(long fencingToken, boolean shared) {
+        String function = "pg_advisory_xact_lock" + (shared ? "_shared" : "");
+        entityManager.createNativeQuery(
+                // Wrap in a SELECT NULL FROM () to avoid Hibernate error since it cannot handle the VOID type
+                // returned by pg_advisory_xact_lock and friends.
+                "SELECT NULL FROM (SELECT " + function + "(:id)) AS temp"
+            )
+            .setParameter("id", FENCING_TOKEN_LOCK_PREFIX | fencingToken)
+            .getSingleResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<ActiveNodeLease> single(Query query) {
+        List<Object[]> rows = query.getResultList();
+        return rows.stream()
+            .findFirst()
+            .map(row -> new ActiveNodeLease((String) row[0], (Instant) row[1], ((Number) row[2]).longValue()));
+    }
+}
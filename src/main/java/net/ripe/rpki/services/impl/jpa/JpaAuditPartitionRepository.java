@@ -0,0 +1,136 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.domain.audit.AuditPartition;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Slf4j
+@Component
+public class JpaAuditPartitionRepository implements AuditPartitionRepository {
+
+    private static final Set<String> PARTITIONED_TABLES = Set.of(COMMAND_AUDIT_TABLE, PROVISIONING_AUDIT_LOG_TABLE);
+
+    // With the session time zone set to UTC bounds are formatted as `FOR VALUES FROM ('2024-01-01 00:00:00+00') TO (...)`
+    private static final Pattern PARTITION_BOUND = Pattern.compile("FOR VALUES FROM \\((MINVALUE|'[^']+')\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSSSSS]X");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyy'_'MM");
+    private static final String DEFAULT_PARTITION_SUFFIX = "_default";
+    private static final String DEFAULT_PARTITION_BOUND = "DEFAULT";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<AuditPartition> findPartitions(String table) {
+        checkPartitionedTable(table);
+        entityManager.createNativeQuery("SET LOCAL TimeZone = 'UTC'").executeUpdate();
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) " +
+                    "  FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                    " WHERE i.inhparent = CAST(:table AS regclass)")
+            .setParameter("table", table)
+            .getResultList();
+        return rows.stream()
+            // The default partition catches entries outside the monthly partitions and is never removed
+            .filter(row -> !DEFAULT_PARTITION_BOUND.equals(row[1]))
+            .map(row -> parsePartition((String) row[0], (String) row[1]))
+            .sorted(Comparator.comparing(AuditPartition::until))
+            .toList();
+    }
+
+    @Override
+    public AuditPartition createMonthlyPartition(String table, YearMonth month) {
+        checkPartitionedTable(table);
+        Instant from = month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant until = month.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        AuditPartition partition = new AuditPartition(table + PARTITION_SUFFIX.format(month), from, until);
+        String defaultPartition = quoteIdentifier(table + DEFAULT_PARTITION_SUFFIX);
+        boolean inDefaultPartition = (Boolean) entityManager.createNativeQuery(String.format(
+                "SELECT EXISTS (SELECT 1 FROM %s WHERE executiontime >= :from AND executiontime < :until)", defaultPartition))
+            .setParameter("from", from)
+            .setParameter("until", until)
+            .getSingleResult();
+        if (!inDefaultPartition) {
+            createPartition(table, partition);
+            return partition;
+        }
+
+        // A partition cannot be created while the default partition contains entries for its range, so the default
+        // partition is detached while the entries are moved to the new partition.
+        entityManager.createNativeQuery(String.format("ALTER TABLE %s DETACH PARTITION %s", table, defaultPartition)).executeUpdate();
+        createPartition(table, partition);
+        int moved = entityManager.createNativeQuery(String.format(
+                "WITH moved AS (DELETE FROM %s WHERE executiontime >= :from AND executiontime < :until RETURNING *) " +
+                    "INSERT INTO %s SELECT * FROM moved", defaultPartition, table))
+            .setParameter("from", from)
+            .setParameter("until", until)
+            .executeUpdate();
+        entityManager.createNativeQuery(String.format("ALTER TABLE %s ATTACH PARTITION %s DEFAULT", table, defaultPartition)).executeUpdate();
+        log.warn("Moved {} entries from the default partition of {} to {}, audit partitions were not created in time", moved, table, partition.name());
+        return partition;
+    }
+
+    private void createPartition(String table, AuditPartition partition) {
+        entityManager.createNativeQuery(String.format(
+                "CREATE TABLE %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                partition.name(), table, partition.from(), partition.until()))
+            .executeUpdate();
+    }
+
+    @Override
+    public void detachPartition(String table, AuditPartition partition) {
+        checkPartitionedTable(table);
+        entityManager.createNativeQuery(String.format("ALTER TABLE %s DETACH PARTITION %s", table, quoteIdentifier(partition.name())))
+            .executeUpdate();
+    }
+
+    @Override
+    public void dropPartition(String table, AuditPartition partition) {
+        checkPartitionedTable(table);
+        // Dropping the partition also removes it from the partitioned table
+        entityManager.createNativeQuery(String.format("DROP TABLE %s", quoteIdentifier(partition.name())))
+            .executeUpdate();
+    }
+
+    static AuditPartition parsePartition(String name, String bound) {
+        Matcher matcher = PARTITION_BOUND.matcher(bound);
+        if (!matcher.matches()) {
+            throw new IllegalStateException("unsupported partition bound for " + name + ": " + bound);
+        }
+        String from = matcher.group(1);
+        return new AuditPartition(
+            name,
+            "MINVALUE".equals(from) ? null : parseBound(from.substring(1, from.length() - 1)),
+            parseBound(matcher.group(2))
+        );
+    }
+
+    private static Instant parseBound(String value) {
+        return OffsetDateTime.parse(value, BOUND_FORMAT).toInstant();
+    }
+
+    private static void checkPartitionedTable(String table) {
+        if (!PARTITIONED_TABLES.contains(table)) {
+            throw new IllegalArgumentException("not a partitioned audit table: " + table);
+        }
+    }
+
+    private static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
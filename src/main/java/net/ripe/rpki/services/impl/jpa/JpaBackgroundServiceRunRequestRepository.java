@@ -0,0 +1,33 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.property.BackgroundServiceRunRequestRepository;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.List;
+
+@Component
+public class JpaBackgroundServiceRunRequestRepository implements BackgroundServiceRunRequestRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void request(String serviceName) {
+        entityManager.createNativeQuery(
+                "INSERT INTO background_service_run_request (service_name, requested_at) VALUES (:serviceName, clock_timestamp()) " +
+                    "ON CONFLICT (service_name) DO UPDATE SET requested_at = excluded.requested_at")
+            .setParameter("serviceName", serviceName)
+            .executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> takeRequested() {
+        return entityManager.createNativeQuery(
+                "WITH taken AS (DELETE FROM background_service_run_request RETURNING service_name) " +
+                    "SELECT service_name FROM taken ORDER BY service_name")
+            .getResultList();
+    }
+}
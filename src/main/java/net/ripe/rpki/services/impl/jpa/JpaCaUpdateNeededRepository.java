@@ -0,0 +1,113 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.CaUpdateNeededRepository;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import javax.security.auth.x500.X500Principal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+public class JpaCaUpdateNeededRepository implements CaUpdateNeededRepository {
+
+    private static final String ON_CONFLICT = " ON CONFLICT (ca_id) DO UPDATE SET reason = excluded.reason, requested_at = excluded.requested_at";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void markUpdateNeeded(Collection<X500Principal> caNames, String reason) {
+        if (caNames.isEmpty()) {
+            return;
+        }
+        // Resolve the names using JPQL, so the name is converted the same way as when the CA is stored
+        List<Long> caIds = entityManager.createQuery("SELECT ca.id FROM CertificateAuthority ca WHERE ca.name IN :names", Long.class)
+            .setParameter("names", caNames)
+            .getResultList();
+        if (caIds.isEmpty()) {
+            return;
+        }
+        entityManager.createNativeQuery(
+                "INSERT INTO ca_update_needed (ca_id, reason, requested_at) " +
+                    "SELECT id, :reason, clock_timestamp() FROM certificateauthority WHERE id IN (:caIds)" + ON_CONFLICT)
+            .setParameter("reason", reason)
+            .setParameter("caIds", caIds)
+            .executeUpdate();
+    }
+
+    @Override
+    public void markChildrenUpdateNeeded(long parentCaId, String reason) {
+        entityManager.createNativeQuery(
+                "INSERT INTO ca_update_needed (ca_id, reason, requested_at) " +
+                    "SELECT id, :reason, clock_timestamp() FROM certificateauthority WHERE parent_id = :parentCaId" + ON_CONFLICT)
+            .setParameter("reason", reason)
+            .setParameter("parentCaId", parentCaId)
+            .executeUpdate();
+    }
+
+    @Override
+    public int markIncomingCertificatesExpiringBefore(DateTime notValidAfter) {
+        return entityManager.createNativeQuery(
+                "INSERT INTO ca_update_needed (ca_id, reason, requested_at) " +
+                    "SELECT expiring.ca_id, 'validity', clock_timestamp() FROM (" +
+                    "    SELECT kp.ca_id " +
+                    "      FROM resourcecertificate rc " +
+                    "      JOIN keypair kp ON kp.id = rc.subject_keypair_id " +
+                    "      JOIN certificateauthority ca ON ca.id = kp.ca_id " +
+                    "     WHERE rc.type = 'INCOMING' " +
+                    // The production CA gets its certificate from the offline trust anchor
+                    "       AND ca.type IN ('INTERMEDIATE', 'HOSTED') " +
+                    "       AND kp.status IN ('PENDING', 'CURRENT') " +
+                    "       AND rc.validity_not_after < :notValidAfter " +
+                    "     UNION " +
+                    // Non-hosted CAs have no key pairs, their certificates are the ones issued for their public keys
+                    "    SELECT pk.ca_id " +
+                    "      FROM resourcecertificate rc " +
+                    "      JOIN non_hosted_ca_public_key pk ON pk.id = rc.subject_public_key_id " +
+                    "     WHERE rc.type = 'OUTGOING' " +
+                    "       AND rc.status = 'CURRENT' " +
+                    "       AND NOT rc.embedded " +
+                    "       AND rc.validity_not_after < :notValidAfter " +
+                    ") expiring " +
+                    // Do not refresh the request time of CAs that are already marked, so they are not processed twice
+                    "ON CONFLICT (ca_id) DO NOTHING")
+            .setParameter("notValidAfter", Instant.ofEpochMilli(notValidAfter.getMillis()))
+            .executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Long, Instant> findUpdateNeeded() {
+        List<Object[]> rows = entityManager.createNativeQuery("SELECT ca_id, requested_at FROM ca_update_needed").getResultList();
+        Map<Long, Instant> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.put(((Number) row[0]).longValue(), (Instant) row[1]);
+        }
+        return result;
+    }
+
+    @Override
+    public int countUpdateNeeded() {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM ca_update_needed").getSingleResult()).intValue();
+    }
+
+    @Override
+    public Optional<Instant> findOldestRequestedAt() {
+        return Optional.ofNullable((Instant) entityManager.createNativeQuery("SELECT MIN(requested_at) FROM ca_update_needed").getSingleResult());
+    }
+
+    @Override
+    public void remove(long caId, Instant requestedAt) {
+        entityManager.createNativeQuery("DELETE FROM ca_update_needed WHERE ca_id = :caId AND requested_at = :requestedAt")
+            .setParameter("caId", caId)
+            .setParameter("requestedAt", requestedAt)
+            .executeUpdate();
+    }
+}
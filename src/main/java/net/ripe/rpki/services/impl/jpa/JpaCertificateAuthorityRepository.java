@@ -1,6 +1,10 @@
 package net.ripe.rpki.services.impl.jpa;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.*;
+import net.ripe.rpki.domain.audit.CaStatEventType;
 import net.ripe.rpki.ripencc.support.persistence.JpaRepository;
 import net.ripe.rpki.server.api.commands.*;
 import net.ripe.rpki.server.api.dto.CaStat;
@@ -10,6 +14,7 @@ import net.ripe.rpki.server.api.dto.CaStatRoaEvent;
 import net.ripe.rpki.server.api.dto.KeyPairStatus;
 import net.ripe.rpki.util.JdbcDBComponent;
 import org.apache.commons.lang.Validate;
+import org.hibernate.Hibernate;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Duration;
@@ -25,9 +30,7 @@ import jakarta.persistence.Query;
 import javax.security.auth.x500.X500Principal;
 import java.time.Instant;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 @Repository(value = "jpaCertificateAuthorityRepository")
@@ -36,6 +39,16 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
 
     private static final DateTimeFormatter ISO_DATE_FORMAT = DateTimeFormat.forPattern("YYYY-MM-dd HH:mm:ss");
 
+    /**
+     * Matches the unique index on <code>upper(name)</code> of the CA table (<code>certificateauthority_name_key</code>).
+     */
+    private static final String FIND_ID_BY_NAME_SQL = "SELECT ca.id FROM certificateauthority ca WHERE upper(ca.name) = upper(:name)";
+
+    private final Cache<String, Long> caIdsByName = CacheBuilder.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterAccess(1, TimeUnit.HOURS)
+        .build();
+
     @Override
     protected Class<CertificateAuthority> getEntityClass() {
         return CertificateAuthority.class;
@@ -55,6 +68,7 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
 
     @Override
     public void add(CertificateAuthority entity) {
+        caIdsByName.invalidate(nameKey(entity.getName()));
         super.add(entity);
 
         try {
@@ -67,11 +81,36 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
         }
     }
 
+    @Override
+    public void remove(CertificateAuthority entity) {
+        caIdsByName.invalidate(nameKey(entity.getName()));
+        super.remove(entity);
+    }
+
+    @Override
+    public void removeAll() {
+        caIdsByName.invalidateAll();
+        super.removeAll();
+    }
+
     @Override
     public CertificateAuthority findByName(X500Principal name) {
         return findByTypeAndName(CertificateAuthority.class, name);
     }
 
+    @Override
+    public Optional<VersionedId> findDownStreamProvisioningCommunicatorVersion(UUID productionCaUuid) {
+        Validate.notNull(productionCaUuid, "uuid is null");
+        return manager.createQuery(
+                "SELECT dspc.id, dspc.version " +
+                "  FROM ProductionCertificateAuthority ca JOIN ca.myDownStreamProvisioningCommunicator dspc " +
+                " WHERE ca.uuid = :uuid", Object[].class)
+            .setParameter("uuid", productionCaUuid)
+            .getResultStream()
+            .findFirst()
+            .map(row -> new VersionedId((Long) row[0], (Long) row[1]));
+    }
+
     @Override
     public ProductionCertificateAuthority findRootCAByName(X500Principal name) {
         return findByTypeAndName(ProductionCertificateAuthority.class, name);
@@ -82,16 +121,46 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
         return findByTypeAndName(AllResourcesCertificateAuthority.class, name);
     }
 
+    /**
+     * Finds the CA by name using the name to id cache. A cached id is resolved through the persistence context, so
+     * repeated lookups in the same transaction do not query the database. CA names never change, so a cached id is
+     * only outdated when the CA was deleted (and possibly re-created with the same name), in which case the cached
+     * entry is replaced.
+     */
     @Override
     public <T extends CertificateAuthority> T findByTypeAndName(Class<T> type, X500Principal name) {
         Validate.notNull(type, "name is null");
 
-        try {
-            Query query = createQuery("from " + type.getSimpleName() + " ca where upper(:name) = upper(ca.name)");
-            return type.cast(query.setParameter("name", name.getName()).getSingleResult());
-        } catch (NoResultException e) {
-            return null;
+        String key = nameKey(name);
+        Long cachedId = caIdsByName.getIfPresent(key);
+        if (cachedId != null) {
+            CertificateAuthority ca = findById(cachedId);
+            if (ca != null) {
+                return type.isInstance(ca) ? type.cast(ca) : null;
+            }
+            caIdsByName.invalidate(key);
         }
+
+        Optional<Long> id = findIdByName(name);
+        id.ifPresent(value -> caIdsByName.put(key, value));
+        return id.map(this::findById).filter(type::isInstance).map(type::cast).orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Long> findIdByName(X500Principal name) {
+        List<Number> ids = manager.createNativeQuery(FIND_ID_BY_NAME_SQL)
+            .setParameter("name", name.getName())
+            .getResultList();
+        return ids.stream().findFirst().map(Number::longValue);
+    }
+
+    private CertificateAuthority findById(long id) {
+        // The persistence context may hold an uninitialized proxy of the CA, unwrap it for the type check
+        return (CertificateAuthority) Hibernate.unproxy(manager.find(CertificateAuthority.class, id));
+    }
+
+    private static String nameKey(X500Principal name) {
+        return name.getName().toUpperCase(Locale.ROOT);
     }
 
     @Override
@@ -138,15 +207,16 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
     @SuppressWarnings("unchecked")
     @Override
     public Collection<CaStat> getCAStats() {
+        // The number of ROA prefixes is maintained by triggers on roaconfiguration_prefixes, so this only needs a
+        // single row per CA.
         final Stream<Object[]> rowStream = manager.createNativeQuery("SELECT " +
                 "ca.name, " +
-                "count(rp.*), " +
+                "COALESCE(s.roa_prefix_count, 0), " +
                 "ca.created_at " +
                 "FROM certificateauthority ca " +
                 "LEFT JOIN roaconfiguration r ON r.certificateauthority_id = ca.id " +
-                "LEFT JOIN roaconfiguration_prefixes rp ON rp.roaconfiguration_id = r.id " +
-                "WHERE ca.type NOT IN ('ALL_RESOURCES', 'ROOT') " +
-                "GROUP BY ca.name, ca.created_at"
+                "LEFT JOIN roaconfiguration_stat s ON s.roaconfiguration_id = r.id " +
+                "WHERE ca.type NOT IN ('ALL_RESOURCES', 'ROOT')"
         ).getResultStream();
 
         return rowStream.map(row -> {
@@ -157,75 +227,30 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
         }).toList();
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public Collection<CaStatEvent> getCAStatEvents() {
-        // Two legacy command types that _may_ be present
-        final String createRoaSpec = "CreateRoaSpecificationCommand";
-        final String deleteRoaSpec = "DeleteRoaSpecificationCommand";
-
-        // recall: prefix/suffix for Collectors.joining are not in between elements, so it can not be
-        final var commandTypesSqlList = Stream.of(
-                createRoaSpec, deleteRoaSpec,
-                UpdateRoaConfigurationCommand.class.getSimpleName(),
-                ActivateHostedCertificateAuthorityCommand.class.getSimpleName(),
-                ActivateNonHostedCertificateAuthorityCommand.class.getSimpleName(),
-                DeleteCertificateAuthorityCommand.class.getSimpleName(),
-                DeleteNonHostedCertificateAuthorityCommand.class.getSimpleName()
-            ).map(s -> "'" + s + "'").collect(Collectors.joining(","));
-
-        final Query q = manager.createNativeQuery("SELECT " +
-                "ca.name, " +
-                "au.commandtype, " +
-                "au.executiontime, " +
-                "au.commandsummary " +
-                "FROM commandAudit au " +
-                "LEFT JOIN certificateAuthority ca ON ca.id = au.ca_id " +
-                "WHERE commandtype IN (" + commandTypesSqlList + ") " +
-                "ORDER BY au.executiontime ASC, ca.name");
-
-        final Pattern updateConfPattern = Pattern.compile("Updated ROA configuration. Additions: (.+). Deletions: (.+)\\.");
-        final Pattern createSpecPattern = Pattern.compile("Created ROA specification '.+' (.+).");
-        final Pattern deleteSpecPattern = Pattern.compile("Deleted ROA specification '.+' (.+).");
-
-        final List<?> resultList = q.getResultList();
-        final List<CaStatEvent> result = new ArrayList<>();
-        for (final Object r : resultList) {
-            final Object[] columns = (Object[]) r;
-            final String caName = toStr(columns[0]);
-            final String type = toStr(columns[1]);
-            final String date = ISO_DATE_FORMAT.print(new DateTime(((Instant)columns[2]).toEpochMilli()));
-            final String summary = toStr(columns[3]);
-
-            if (UpdateRoaConfigurationCommand.class.getSimpleName().equals(type)) {
-                final Matcher m = updateConfPattern.matcher(summary);
-                if (m.matches()) {
-                    final String additions = m.group(1);
-                    final String deletions = m.group(2);
-                    result.add(new CaStatRoaEvent(caName, date, countRoas(additions), countRoas(deletions)));
-                }
-            } else if (createRoaSpec.equals(type)) {
-                final Matcher m = createSpecPattern.matcher(summary);
-                if (m.matches()) {
-                    final String additions = m.group(1);
-                    int added = countRoasUpdateSpecPattern(additions);
-                    if (added > 0)
-                        result.add(new CaStatRoaEvent(caName, date, added, 0));
-                }
-            } else if (deleteRoaSpec.equals(type)) {
-                final Matcher m = deleteSpecPattern.matcher(summary);
-                if (m.matches()) {
-                    final String deletions = m.group(1);
-                    int deleted = countRoasUpdateSpecPattern(deletions);
-                    if (deleted > 0)
-                        result.add(new CaStatRoaEvent(caName, date, 0, deleted));
-                }
-            } else if (ActivateHostedCertificateAuthorityCommand.class.getSimpleName().equals(type) || ActivateNonHostedCertificateAuthorityCommand.class.getSimpleName().equals(type)) {
-                result.add(CaStatCaEvent.created(caName, date));
-            } else if (DeleteCertificateAuthorityCommand.class.getSimpleName().equals(type) || DeleteNonHostedCertificateAuthorityCommand.class.getSimpleName().equals(type)) {
-                result.add(CaStatCaEvent.deleted(date));
-            }
-        }
-        return result;
+        // Events are recorded by the command audit service when the command is executed.
+        final Stream<Object[]> rowStream = manager.createNativeQuery("SELECT " +
+                "e.event_type, " +
+                "e.ca_name, " +
+                "e.occurred_at, " +
+                "e.roas_added, " +
+                "e.roas_deleted " +
+                "FROM ca_stat_event e " +
+                "ORDER BY e.occurred_at ASC, e.id ASC"
+        ).getResultStream();
+
+        return rowStream.map(row -> {
+            final CaStatEventType type = CaStatEventType.valueOf(toStr(row[0]));
+            final String caName = toStr(row[1]);
+            final String date = ISO_DATE_FORMAT.print(new DateTime(((Instant) row[2]).toEpochMilli()));
+            return switch (type) {
+                case CA_CREATED -> CaStatCaEvent.created(caName, date);
+                case CA_DELETED -> CaStatCaEvent.deleted(date);
+                case ROAS_UPDATED -> new CaStatRoaEvent(caName, date, toInt(row[3]), toInt(row[4]));
+            };
+        }).toList();
     }
 
     @Override
@@ -295,8 +320,15 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
     }
 
     @Override
-    public int deleteNonHostedPublicKeysWithoutSigningCertificates() {
-        return createQuery("DELETE FROM PublicKeyEntity pk WHERE pk.outgoingResourceCertificates IS EMPTY")
+    public int deleteNonHostedPublicKeysWithoutSigningCertificates(int maxResults) {
+        List<Long> ids = manager.createQuery("SELECT pk.id FROM PublicKeyEntity pk WHERE pk.outgoingResourceCertificates IS EMPTY", Long.class)
+            .setMaxResults(maxResults)
+            .getResultList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return createQuery("DELETE FROM PublicKeyEntity pk WHERE pk.id IN :ids AND pk.outgoingResourceCertificates IS EMPTY")
+            .setParameter("ids", ids)
             .executeUpdate();
     }
 
@@ -347,18 +379,6 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
         }
     }
 
-    private static int countRoasUpdateSpecPattern(String summary) {
-        int c = summary.replaceFirst("\\[asn=AS[0-9]+, ", "").split("maximumLength=").length - 1;
-        return Math.max(c, 0);
-    }
-
-    private static int countRoas(String summaryArray) {
-        if (summaryArray != null && !"none".equals(summaryArray)) {
-            return summaryArray.split("\\], \\[").length;
-        }
-        return 0;
-    }
-
     private static String toStr(Object o) {
         return o == null ? null : o.toString();
     }
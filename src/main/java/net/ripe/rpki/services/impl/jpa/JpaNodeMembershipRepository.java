@@ -0,0 +1,43 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.property.NodeMembershipRepository;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class JpaNodeMembershipRepository implements NodeMembershipRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void heartbeat(String nodeName) {
+        entityManager.createNativeQuery(
+                "INSERT INTO background_node_membership (node_name, heartbeat_at) VALUES (:nodeName, now()) " +
+                    "ON CONFLICT (node_name) DO UPDATE SET heartbeat_at = excluded.heartbeat_at")
+            .setParameter("nodeName", nodeName)
+            .executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> findLiveNodes(Duration timeout) {
+        return entityManager.createNativeQuery(
+                "SELECT node_name FROM background_node_membership " +
+                    " WHERE heartbeat_at > now() - CAST(:timeout AS INTERVAL) " +
+                    " ORDER BY node_name")
+            .setParameter("timeout", timeout.toString())
+            .getResultList();
+    }
+
+    @Override
+    public void remove(String nodeName) {
+        entityManager.createNativeQuery("DELETE FROM background_node_membership WHERE node_name = :nodeName")
+            .setParameter("nodeName", nodeName)
+            .executeUpdate();
+    }
+}
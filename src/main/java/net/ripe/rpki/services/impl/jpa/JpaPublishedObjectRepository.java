@@ -140,17 +140,26 @@ public class JpaPublishedObjectRepository extends JpaRepository<PublishedObject>
     }
 
     @Override
-    public int deleteExpiredObjects(DateTime expirationTime) {
+    public int deleteExpiredObjects(DateTime expirationTime, int maxResults) {
         Validate.isTrue(expirationTime.isBeforeNow(), "expiration time must be in the past");
-        return createQuery(
-            "DELETE FROM PublishedObject po " +
-                "WHERE po.status = :withdrawn " +
-                "  AND po.validityPeriod.notValidAfter < :expirationTime" +
-                "  AND NOT EXISTS (FROM OutgoingResourceCertificate rc WHERE rc.publishedObject = po)" +
-                "  AND NOT EXISTS (FROM CrlEntity crl WHERE crl.publishedObject = po) " +
-                "  AND NOT EXISTS (FROM ManifestEntity mft WHERE mft.publishedObject = po) " +
-                "  AND NOT EXISTS (FROM RoaEntity roa WHERE roa.publishedObject = po)" +
-                "  AND NOT EXISTS (FROM AspaEntity aspa WHERE aspa.publishedObject = po)")
+        String expiredObjectCondition = "po.status = :withdrawn " +
+            "  AND po.validityPeriod.notValidAfter < :expirationTime" +
+            "  AND NOT EXISTS (FROM OutgoingResourceCertificate rc WHERE rc.publishedObject = po)" +
+            "  AND NOT EXISTS (FROM CrlEntity crl WHERE crl.publishedObject = po) " +
+            "  AND NOT EXISTS (FROM ManifestEntity mft WHERE mft.publishedObject = po) " +
+            "  AND NOT EXISTS (FROM RoaEntity roa WHERE roa.publishedObject = po)" +
+            "  AND NOT EXISTS (FROM AspaEntity aspa WHERE aspa.publishedObject = po)";
+        List<Long> ids = manager.createQuery("SELECT po.id FROM PublishedObject po WHERE " + expiredObjectCondition, Long.class)
+            .setParameter("withdrawn", PublicationStatus.WITHDRAWN)
+            .setParameter("expirationTime", expirationTime)
+            .setMaxResults(maxResults)
+            .getResultList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // Check the conditions again, since references may have been added after selecting the objects
+        return createQuery("DELETE FROM PublishedObject po WHERE po.id IN :ids AND " + expiredObjectCondition)
+            .setParameter("ids", ids)
             .setParameter("withdrawn", PublicationStatus.WITHDRAWN)
             .setParameter("expirationTime", expirationTime)
             .executeUpdate();
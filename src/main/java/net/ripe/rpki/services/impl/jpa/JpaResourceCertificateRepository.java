@@ -23,6 +23,7 @@ import javax.security.auth.x500.X500Principal;
 import java.math.BigInteger;
 import java.security.PublicKey;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -93,11 +94,14 @@ public class JpaResourceCertificateRepository extends JpaRepository<ResourceCert
     }
 
     @Override
-    public ExpireOutgoingResourceCertificatesResult expireOutgoingResourceCertificates(DateTime now) {
+    public ExpireOutgoingResourceCertificatesResult expireOutgoingResourceCertificates(DateTime now, int maxResults) {
         Object[] counts = (Object[]) createNativeQuery("WITH expired_certificates AS (\n" +
             "    UPDATE resourcecertificate\n" +
             "    SET status = :expired, version = version + 1, updated_at = :now\n" +
-            "    WHERE type = 'OUTGOING' AND validity_not_after < :now AND status <> :expired\n" +
+            "    WHERE id IN (SELECT id FROM resourcecertificate\n" +
+            "                  WHERE type = 'OUTGOING' AND validity_not_after < :now AND status <> :expired\n" +
+            "                  LIMIT :maxResults\n" +
+            "                  FOR UPDATE SKIP LOCKED)\n" +
             "    RETURNING id\n" +
             "),\n" +
             "deleted_roas AS (\n" +
@@ -118,8 +122,10 @@ public class JpaResourceCertificateRepository extends JpaRepository<ResourceCert
             "                 END,\n" +
             "        version = version + 1,\n" +
             "        updated_at = :now\n" +
-            "    WHERE po.validity_not_after < :now\n" +
-            "      AND po.status IN (:toBePublished, :published)\n" +
+            "    WHERE po.id IN (SELECT id FROM published_object\n" +
+            "                     WHERE validity_not_after < :now AND status IN (:toBePublished, :published)\n" +
+            "                     LIMIT :maxResults\n" +
+            "                     FOR UPDATE SKIP LOCKED)\n" +
             "    RETURNING id\n" +
             ")\n" +
             "SELECT (SELECT COUNT(*) FROM expired_certificates) AS expired_certificate_count,\n" +
@@ -132,21 +138,32 @@ public class JpaResourceCertificateRepository extends JpaRepository<ResourceCert
             .setParameter("published", PublicationStatus.PUBLISHED.name())
             .setParameter("toBeWithdrawn", PublicationStatus.TO_BE_WITHDRAWN.name())
             .setParameter("withdrawn", PublicationStatus.WITHDRAWN.name())
+            .setParameter("maxResults", maxResults)
             .getSingleResult();
         return new ExpireOutgoingResourceCertificatesResult((long)counts[0], (long)counts[1], (long)counts[2], (long)counts[3]);
     }
 
     @Override
-    public int deleteExpiredOutgoingResourceCertificates(DateTime expirationTime) {
+    public int deleteExpiredOutgoingResourceCertificates(DateTime expirationTime, int maxResults) {
         Validate.isTrue(expirationTime.isBeforeNow(), "expiration time must be in the past");
-        return createQuery("DELETE FROM OutgoingResourceCertificate rc " +
-            "WHERE rc.status in (:expired) AND rc.validityPeriod.notValidAfter < :expirationTime " +
+        String expiredCertificateCondition = "rc.status in (:expired) AND rc.validityPeriod.notValidAfter < :expirationTime " +
             // an expired embedded outgoing resource certificate can still be referenced from a manifest
             // if we fail to publish and update the manifest entity before the nextUpdateTime or
             // if we don't remove manifests left behind by key pairs that have been revoked
             "AND NOT EXISTS (SELECT manifest.id FROM ManifestEntity manifest WHERE manifest.certificate = rc) " +
             "AND NOT EXISTS (SELECT roa.id FROM RoaEntity roa WHERE roa.certificate = rc)" +
-            "AND NOT EXISTS (SELECT aspa.id FROM AspaEntity aspa WHERE aspa.certificate = rc)")
+            "AND NOT EXISTS (SELECT aspa.id FROM AspaEntity aspa WHERE aspa.certificate = rc)";
+        List<Long> ids = manager.createQuery("SELECT rc.id FROM OutgoingResourceCertificate rc WHERE " + expiredCertificateCondition, Long.class)
+            .setParameter("expired", OutgoingResourceCertificateStatus.EXPIRED)
+            .setParameter("expirationTime", expirationTime)
+            .setMaxResults(maxResults)
+            .getResultList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // Check the conditions again, since references may have been added after selecting the certificates
+        return createQuery("DELETE FROM OutgoingResourceCertificate rc WHERE rc.id IN :ids AND " + expiredCertificateCondition)
+                .setParameter("ids", ids)
                 .setParameter("expired", OutgoingResourceCertificateStatus.EXPIRED)
                 .setParameter("expirationTime", expirationTime)
                 .executeUpdate();
@@ -17,7 +17,12 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 @Transactional
@@ -92,56 +97,100 @@ public class JpaRoaConfigurationRepository extends JpaRepository<RoaConfiguratio
         return diff;
     }
 
+    /**
+     * Applies the diff using one statement for all removed prefixes and one statement for all added prefixes, so
+     * large ROA configuration updates do not need a database round-trip per prefix. The prefixes are passed as
+     * arrays and expanded using <code>unnest</code>.
+     */
     public void applyDiff(RoaConfiguration configuration,
                           RoaConfiguration.PrefixDiff diff) {
-
-        diff.removed().forEach(r -> {
+        if (!diff.removed().isEmpty()) {
             String sql = """
-                    WITH deleted AS (
+                    WITH removed AS (
+                        SELECT * FROM unnest(
+                            CAST(:asns AS numeric[]),
+                            CAST(:prefix_type_ids AS smallint[]),
+                            CAST(:prefix_starts AS numeric[]),
+                            CAST(:prefix_ends AS numeric[]),
+                            CAST(:maximum_lengths AS integer[])
+                        ) AS r (asn, prefix_type_id, prefix_start, prefix_end, maximum_length)
+                    ), deleted AS (
                         DELETE FROM roaconfiguration_prefixes rp
-                        WHERE roaconfiguration_id = :roaconfiguration_id
-                        AND asn = :asn
-                        AND prefix_type_id = :prefix_type_id
-                        AND prefix_start = :prefix_start
-                        AND prefix_end = :prefix_end
-                        AND maximum_length = :maximum_length
-                        RETURNING *
+                        USING removed r
+                        WHERE rp.roaconfiguration_id = :roaconfiguration_id
+                        AND rp.asn = r.asn
+                        AND rp.prefix_type_id = r.prefix_type_id
+                        AND rp.prefix_start = r.prefix_start
+                        AND rp.prefix_end = r.prefix_end
+                        AND rp.maximum_length = r.maximum_length
+                        RETURNING rp.*
                     )
                     INSERT INTO deleted_roaconfiguration_prefixes(roaconfiguration_id, asn, prefix_type_id, prefix_start, prefix_end, maximum_length, deleted_at)
                     SELECT roaconfiguration_id, asn, prefix_type_id, prefix_start, prefix_end, maximum_length, NOW()
                     FROM deleted
                     """;
-            executeForPrefix(configuration, r, sql);
-        });
+            makeQuery(configuration, diff.removed(), sql).executeUpdate();
+        }
 
-        diff.added().forEach(r -> {
+        if (!diff.added().isEmpty()) {
             String sql = """
                     INSERT INTO roaconfiguration_prefixes (roaconfiguration_id, asn, prefix_type_id, prefix_start, prefix_end, maximum_length)
-                    VALUES (:roaconfiguration_id, :asn, :prefix_type_id, :prefix_start, :prefix_end, :maximum_length)
-                    RETURNING updated_at
+                    SELECT :roaconfiguration_id, a.asn, a.prefix_type_id, a.prefix_start, a.prefix_end, a.maximum_length
+                    FROM unnest(
+                        CAST(:asns AS numeric[]),
+                        CAST(:prefix_type_ids AS smallint[]),
+                        CAST(:prefix_starts AS numeric[]),
+                        CAST(:prefix_ends AS numeric[]),
+                        CAST(:maximum_lengths AS integer[])
+                    ) AS a (asn, prefix_type_id, prefix_start, prefix_end, maximum_length)
+                    RETURNING asn, prefix_type_id, prefix_start, prefix_end, updated_at
                     """;
-            Instant updatedAt = extractForPrefix(configuration, r, sql);
-            r.setUpdatedAt(updatedAt);
-        });
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = makeQuery(configuration, diff.added(), sql).getResultList();
+            Map<PrefixKey, Instant> updatedAtByPrefix = new HashMap<>();
+            for (Object[] row : rows) {
+                PrefixKey key = new PrefixKey(
+                    ((BigDecimal) row[0]).longValue(),
+                    ((Number) row[1]).intValue(),
+                    ((BigDecimal) row[2]).toBigInteger(),
+                    ((BigDecimal) row[3]).toBigInteger()
+                );
+                updatedAtByPrefix.put(key, (Instant) row[4]);
+            }
+            diff.added().forEach(r -> r.setUpdatedAt(updatedAtByPrefix.get(PrefixKey.of(r))));
+        }
+    }
+
+    private Query makeQuery(RoaConfiguration configuration, List<RoaConfigurationPrefix> prefixes, String sql) {
+        return createNativeQuery(sql)
+                .setParameter("roaconfiguration_id", configuration.getId())
+                .setParameter("asns", arrayLiteral(prefixes, dp -> dp.getAsn().longValue()))
+                .setParameter("prefix_type_ids", arrayLiteral(prefixes, dp -> prefixTypeId(dp.getPrefix())))
+                .setParameter("prefix_starts", arrayLiteral(prefixes, dp -> dp.getPrefix().getStart().getValue()))
+                .setParameter("prefix_ends", arrayLiteral(prefixes, dp -> dp.getPrefix().getEnd().getValue()))
+                .setParameter("maximum_lengths", arrayLiteral(prefixes, RoaConfigurationPrefix::getMaximumLength));
     }
 
-    private void executeForPrefix(RoaConfiguration configuration, RoaConfigurationPrefix dp, String sql) {
-        makeQuery(configuration, dp, sql).executeUpdate();
+    /**
+     * PostgreSQL array literal (e.g. <code>{1,2,3}</code>) of numeric values, cast to the correct array type in SQL.
+     */
+    private static String arrayLiteral(List<RoaConfigurationPrefix> prefixes, Function<RoaConfigurationPrefix, Number> value) {
+        return prefixes.stream().map(value).map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
     }
 
-    private Instant extractForPrefix(RoaConfiguration configuration, RoaConfigurationPrefix dp, String sql) {
-        return (Instant) makeQuery(configuration, dp, sql).getSingleResult();
+    private static int prefixTypeId(IpRange prefix) {
+        return prefix.getType() == IpResourceType.IPv4 ? 1 : 2;
     }
 
-    private Query makeQuery(RoaConfiguration configuration, RoaConfigurationPrefix dp, String sql) {
-        IpRange prefix = dp.getPrefix();
-        return createNativeQuery(sql)
-                .setParameter("roaconfiguration_id", configuration.getId())
-                .setParameter("asn", dp.getAsn().longValue())
-                .setParameter("prefix_type_id", prefix.getType() == IpResourceType.IPv4 ? 1 : 2)
-                .setParameter("prefix_start", prefix.getStart().getValue())
-                .setParameter("prefix_end", prefix.getEnd().getValue())
-                .setParameter("maximum_length", dp.getMaximumLength());
+    private record PrefixKey(long asn, int prefixTypeId, BigInteger prefixStart, BigInteger prefixEnd) {
+        static PrefixKey of(RoaConfigurationPrefix prefix) {
+            return new PrefixKey(
+                prefix.getAsn().longValue(),
+                prefixTypeId(prefix.getPrefix()),
+                prefix.getPrefix().getStart().getValue(),
+                prefix.getPrefix().getEnd().getValue()
+            );
+        }
     }
 
     @Override
@@ -3,15 +3,27 @@ package net.ripe.rpki.util;
 import org.joda.time.DateTimeUtils;
 
 import java.math.BigInteger;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.function.Supplier;
 
+/**
+ * Generates serial numbers consisting of the current time in milliseconds followed by {@link #SERIAL_RANDOM_BITS}
+ * random bits.
+ * <p>
+ * Serial numbers are generated on every signing path, often from many threads in parallel. To avoid contention on a
+ * single generator every thread uses its own DRBG instance, personalised with random bytes from a shared source so the
+ * per-thread generators never share a state.
+ */
 public final class SerialNumberSupplier implements Supplier<BigInteger> {
 
     public static final int SERIAL_RANDOM_BITS = 8 * 12;
+    private static final int DRBG_STRENGTH = 256;
     private static final SerialNumberSupplier INSTANCE = new SerialNumberSupplier();
 
-    private SecureRandom secureRandom = new SecureRandom();
+    private final SecureRandom seedSource = new SecureRandom();
+    private final ThreadLocal<SecureRandom> threadRandom = ThreadLocal.withInitial(this::createThreadRandom);
 
     public static SerialNumberSupplier getInstance() {
         return INSTANCE;
@@ -20,8 +32,18 @@ public final class SerialNumberSupplier implements Supplier<BigInteger> {
     @Override
     public BigInteger get() {
         BigInteger now = BigInteger.valueOf(DateTimeUtils.currentTimeMillis());
-        BigInteger random = new BigInteger(SERIAL_RANDOM_BITS, secureRandom);
+        BigInteger random = new BigInteger(SERIAL_RANDOM_BITS, threadRandom.get());
         return now.shiftLeft(SERIAL_RANDOM_BITS).or(random);
     }
 
+    private SecureRandom createThreadRandom() {
+        byte[] personalization = new byte[DRBG_STRENGTH / 8];
+        seedSource.nextBytes(personalization);
+        try {
+            return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(DRBG_STRENGTH, DrbgParameters.Capability.RESEED_ONLY, personalization));
+        } catch (NoSuchAlgorithmException e) {
+            // The DRBG algorithm is always available since Java 9
+            throw new IllegalStateException("DRBG secure random not available", e);
+        }
+    }
 }
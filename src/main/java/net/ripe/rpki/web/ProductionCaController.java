@@ -19,6 +19,7 @@ import org.springframework.web.servlet.ModelAndView;
 
 import jakarta.inject.Inject;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Controller
@@ -47,16 +48,12 @@ public class ProductionCaController extends BaseController {
 
     @ModelAttribute(name = "historySummary", binding = false)
     public List<HistoryItem> historySummary() {
-        return caHistoryService.getHistoryItems(getCa(CertificateAuthorityData.class, CaName.of(repositoryConfiguration.getProductionCaPrincipal()))).stream()
-                .map(caHistoryItem -> {
-                    final String humanizedUserPrincipal = getHumanizedUserPrincipal(caHistoryItem);
-                    return new HistoryItem(humanizedUserPrincipal, caHistoryItem);
-                }).toList();
-    }
-
-    private String getHumanizedUserPrincipal(CertificateAuthorityHistoryItem historyItem) {
-        String humanizedUserPrincipal = internalNamePresenter.humanizeUserPrincipal(historyItem.getPrincipal());
-        return humanizedUserPrincipal != null ? humanizedUserPrincipal : historyItem.getPrincipal();
+        List<CertificateAuthorityHistoryItem> historyItems = caHistoryService.getHistoryItems(getCa(CertificateAuthorityData.class, CaName.of(repositoryConfiguration.getProductionCaPrincipal())));
+        Map<String, String> humanizedUserPrincipals = internalNamePresenter.humanizeUserPrincipals(
+                historyItems.stream().map(CertificateAuthorityHistoryItem::getPrincipal).toList());
+        return historyItems.stream()
+                .map(caHistoryItem -> new HistoryItem(humanizedUserPrincipals.getOrDefault(caHistoryItem.getPrincipal(), caHistoryItem.getPrincipal()), caHistoryItem))
+                .toList();
     }
 
     protected <T extends CertificateAuthorityData> T getCa(Class<T> type, CaName caName) {
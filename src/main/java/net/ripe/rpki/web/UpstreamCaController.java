@@ -138,7 +138,7 @@ public class UpstreamCaController extends BaseController {
             final CertificateAuthorityData allResourcesCa = certificateAuthorityViewService.findCertificateAuthorityByName(allResourcesCaName);
             commandService.execute(new ProcessTrustAnchorResponseCommand(allResourcesCa.getVersionedId(), response));
             sequentialBackgroundQueuedTaskRunner.submit("Updating all certificates after uploading TA response",
-                    () -> allCaCertificateUpdateServiceBean.execute(Collections.emptyMap()),
+                    () -> allCaCertificateUpdateServiceBean.execute(Collections.singletonMap(AllCaCertificateUpdateServiceBean.FULL_SWEEP_PARAMETER, "true")),
                     e -> log.error("Exception in updating certificates", e));
 
             redirectAttributes.addFlashAttribute("success", "Successfully uploaded " + file.getName());
@@ -167,7 +167,7 @@ public class UpstreamCaController extends BaseController {
                 requireACAState(allResourcesCa, KeyPairStatus.PENDING, () -> {
                     commandService.execute(KeyManagementActivatePendingKeysCommand.manualActivationCommand(allResourcesCa.getVersionedId()));
                     sequentialBackgroundQueuedTaskRunner.submit("Updating all certificates after activating All resources CA key pair",
-                            () -> allCaCertificateUpdateServiceBean.execute(Collections.emptyMap()),
+                            () -> allCaCertificateUpdateServiceBean.execute(Collections.singletonMap(AllCaCertificateUpdateServiceBean.FULL_SWEEP_PARAMETER, "true")),
                             e -> log.error("Exception in updating certificates", e));
                     return new RedirectView(UPSTREAM_CA, true);
                 }));
@@ -0,0 +1,9 @@
+/*
+ * Store the ASPA content next to the encoded CMS object so that the configured providers can be compared against
+ * the issued ASPAs without parsing every CMS object. Existing rows are filled in lazily by the application the
+ * first time they are read, or replaced when the ASPA is re-issued.
+ */
+ALTER TABLE aspaentity
+    ADD COLUMN customer_asn NUMERIC,
+    ADD COLUMN provider_asns TEXT,
+    ADD COLUMN parent_certificate_uri TEXT;
@@ -0,0 +1,85 @@
+-- Partition the command audit and provisioning audit log tables by month on their execution time, so that expired
+-- data can be removed by dropping (or detaching) whole partitions instead of deleting rows. Partitions are named
+-- <table>_pYYYY_MM and are created ahead of time by the audit partition maintenance background service.
+--
+-- The existing tables become the first partition, covering everything up to the end of the current month, so no data
+-- needs to be copied. Primary keys and unique constraints of a partitioned table must include the partition key. The
+-- existing (ca_id, ca_version) index is kept, and the other indexes and constraints of the partitioned tables are
+-- created on the old tables first, so attaching them as a partition reuses these instead of creating them again.
+
+ALTER TABLE commandaudit RENAME TO commandaudit_legacy;
+ALTER TABLE commandaudit_legacy DROP CONSTRAINT commandaudit_pkey;
+ALTER TABLE commandaudit_legacy ADD CONSTRAINT commandaudit_legacy_pkey PRIMARY KEY (id, executiontime);
+ALTER INDEX commandaudit_ca_and_version_idx RENAME TO commandaudit_legacy_ca_and_version_idx;
+CREATE INDEX commandaudit_legacy_ca_and_executiontime_idx ON commandaudit_legacy (ca_id, executiontime);
+
+CREATE TABLE commandaudit (
+    id             BIGINT                   NOT NULL,
+    executiontime  TIMESTAMP WITH TIME ZONE NOT NULL,
+    principal      TEXT                     NOT NULL,
+    ca_id          BIGINT                   NOT NULL,
+    commandtype    TEXT                     NOT NULL,
+    commandsummary TEXT                     NOT NULL,
+    ca_version     BIGINT                   NOT NULL,
+    commandgroup   TEXT                     NOT NULL,
+    deleted_at     TIMESTAMP WITH TIME ZONE NULL DEFAULT NULL,
+    commandevents  TEXT                     NOT NULL DEFAULT '',
+    ca_name        TEXT,
+    ca_uuid        UUID,
+    CONSTRAINT commandaudit_pkey PRIMARY KEY (id, executiontime)
+) PARTITION BY RANGE (executiontime);
+
+CREATE INDEX commandaudit_ca_and_version_idx ON commandaudit (ca_id, ca_version);
+CREATE INDEX commandaudit_ca_and_executiontime_idx ON commandaudit (ca_id, executiontime);
+
+ALTER TABLE provisioning_audit_log RENAME TO provisioning_audit_log_legacy;
+ALTER TABLE provisioning_audit_log_legacy DROP CONSTRAINT provisioning_audit_log_pkey;
+ALTER TABLE provisioning_audit_log_legacy ADD CONSTRAINT provisioning_audit_log_legacy_pkey PRIMARY KEY (id, executiontime);
+ALTER TABLE provisioning_audit_log_legacy DROP CONSTRAINT provisioning_audit_log_unique_entry_uuid;
+ALTER TABLE provisioning_audit_log_legacy ADD CONSTRAINT provisioning_audit_log_legacy_unique_entry_uuid UNIQUE (entry_uuid, executiontime);
+-- Replaced by the index that includes the execution time
+DROP INDEX provisioning_audit_log_non_hosted_ca_uuid_idx;
+CREATE INDEX provisioning_audit_log_legacy_non_hosted_ca_uuid_executiontime_idx ON provisioning_audit_log_legacy (non_hosted_ca_uuid, executiontime);
+
+CREATE TABLE provisioning_audit_log (
+    id                      BIGINT                   NOT NULL,
+    version                 BIGINT                   NOT NULL,
+    created_at              TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at              TIMESTAMP WITH TIME ZONE NOT NULL,
+    request_message_type    VARCHAR(100)             NOT NULL,
+    principal               TEXT                     NOT NULL,
+    summary                 TEXT                     NOT NULL,
+    executiontime           TIMESTAMP WITH TIME ZONE NOT NULL,
+    provisioning_cms_object BYTEA                    NOT NULL,
+    non_hosted_ca_uuid      UUID                     NOT NULL,
+    entry_uuid              UUID,
+    CONSTRAINT provisioning_audit_log_pkey PRIMARY KEY (id, executiontime),
+    CONSTRAINT provisioning_audit_log_unique_entry_uuid UNIQUE (entry_uuid, executiontime)
+) PARTITION BY RANGE (executiontime);
+
+CREATE INDEX provisioning_audit_log_non_hosted_ca_uuid_executiontime_idx ON provisioning_audit_log (non_hosted_ca_uuid, executiontime);
+
+DO $$
+DECLARE
+    current_month TIMESTAMP WITH TIME ZONE := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC';
+    month_start   TIMESTAMP WITH TIME ZONE;
+    audit_table   TEXT;
+BEGIN
+    FOREACH audit_table IN ARRAY ARRAY['commandaudit', 'provisioning_audit_log'] LOOP
+        -- A validated constraint that implies the partition bounds lets the attach skip scanning the table
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (executiontime < %L) NOT VALID',
+                       audit_table || '_legacy', audit_table || '_legacy_bound', current_month + INTERVAL '1 month');
+        EXECUTE format('ALTER TABLE %I VALIDATE CONSTRAINT %I', audit_table || '_legacy', audit_table || '_legacy_bound');
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                       audit_table, audit_table || '_legacy', current_month + INTERVAL '1 month');
+        -- Redundant with the partition bounds
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', audit_table || '_legacy', audit_table || '_legacy_bound');
+
+        FOR i IN 1..3 LOOP
+            month_start := current_month + make_interval(months => i);
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           audit_table || to_char(month_start AT TIME ZONE 'UTC', '"_p"YYYY"_"MM'), audit_table,
+                           month_start, month_start + INTERVAL '1 month');
+        END LOOP;
+    END LOOP;
+END $$;
@@ -0,0 +1,121 @@
+-- Materialised CA statistics for /api/ca-stat, replacing the aggregation over all ROA prefixes and the parsing of
+-- command audit summaries on every request.
+
+-- Structured CA statistics events, recorded when the command is executed.
+CREATE TABLE ca_stat_event (
+    id           BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    event_type   VARCHAR(20)              NOT NULL CHECK (event_type IN ('CA_CREATED', 'CA_DELETED', 'ROAS_UPDATED')),
+    ca_id        BIGINT                   NOT NULL,
+    ca_name      TEXT,
+    roas_added   INTEGER                  NOT NULL DEFAULT 0,
+    roas_deleted INTEGER                  NOT NULL DEFAULT 0,
+    occurred_at  TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX ca_stat_event_occurred_at_idx ON ca_stat_event (occurred_at, id);
+
+-- Backfill from the command audit, using the same interpretation of the command summaries as the code it replaces.
+WITH audit AS (
+    SELECT au.executiontime,
+           au.ca_id,
+           au.commandtype,
+           ca.name AS ca_name,
+           regexp_match(au.commandsummary, '^Updated ROA configuration. Additions: (.+). Deletions: (.+)\.$') AS roa_update,
+           regexp_match(au.commandsummary, '^Created ROA specification ''.+'' (.+).$') AS spec_created,
+           regexp_match(au.commandsummary, '^Deleted ROA specification ''.+'' (.+).$') AS spec_deleted
+      FROM commandaudit au
+      LEFT JOIN certificateauthority ca ON ca.id = au.ca_id
+     WHERE au.commandtype IN ('CreateRoaSpecificationCommand', 'DeleteRoaSpecificationCommand',
+                              'UpdateRoaConfigurationCommand',
+                              'ActivateHostedCertificateAuthorityCommand', 'ActivateNonHostedCertificateAuthorityCommand',
+                              'DeleteCertificateAuthorityCommand', 'DeleteNonHostedCertificateAuthorityCommand')
+), events AS (
+    SELECT executiontime,
+           ca_id,
+           ca_name,
+           CASE
+               WHEN commandtype IN ('ActivateHostedCertificateAuthorityCommand', 'ActivateNonHostedCertificateAuthorityCommand') THEN 'CA_CREATED'
+               WHEN commandtype IN ('DeleteCertificateAuthorityCommand', 'DeleteNonHostedCertificateAuthorityCommand') THEN 'CA_DELETED'
+               WHEN commandtype = 'UpdateRoaConfigurationCommand' AND roa_update IS NOT NULL THEN 'ROAS_UPDATED'
+               WHEN commandtype IN ('CreateRoaSpecificationCommand', 'DeleteRoaSpecificationCommand') THEN 'ROAS_UPDATED'
+           END AS event_type,
+           CASE
+               WHEN roa_update IS NOT NULL AND roa_update[1] <> 'none'
+                   THEN (length(roa_update[1]) - length(replace(roa_update[1], '], [', ''))) / 4 + 1
+               WHEN spec_created IS NOT NULL
+                   THEN (length(spec_created[1]) - length(replace(spec_created[1], 'maximumLength=', ''))) / 14
+               ELSE 0
+           END AS roas_added,
+           CASE
+               WHEN roa_update IS NOT NULL AND roa_update[2] <> 'none'
+                   THEN (length(roa_update[2]) - length(replace(roa_update[2], '], [', ''))) / 4 + 1
+               WHEN spec_deleted IS NOT NULL
+                   THEN (length(spec_deleted[1]) - length(replace(spec_deleted[1], 'maximumLength=', ''))) / 14
+               ELSE 0
+           END AS roas_deleted,
+           commandtype
+      FROM audit
+)
+INSERT INTO ca_stat_event (event_type, ca_id, ca_name, roas_added, roas_deleted, occurred_at)
+SELECT event_type, ca_id, ca_name, roas_added, roas_deleted, executiontime
+  FROM events
+ WHERE event_type IS NOT NULL
+   -- ROA specification changes were only reported when they changed at least one prefix
+   AND NOT (commandtype IN ('CreateRoaSpecificationCommand', 'DeleteRoaSpecificationCommand') AND roas_added = 0 AND roas_deleted = 0)
+ ORDER BY executiontime, ca_name;
+
+-- Number of ROA prefixes per ROA configuration (and thus per CA), maintained by statement level triggers on the
+-- ROA configuration prefixes. Rows are removed together with the ROA configuration.
+CREATE TABLE roaconfiguration_stat (
+    roaconfiguration_id BIGINT  NOT NULL PRIMARY KEY REFERENCES roaconfiguration (id) ON DELETE CASCADE,
+    roa_prefix_count    INTEGER NOT NULL
+);
+
+INSERT INTO roaconfiguration_stat (roaconfiguration_id, roa_prefix_count)
+SELECT roaconfiguration_id, count(*)
+  FROM roaconfiguration_prefixes
+ GROUP BY roaconfiguration_id;
+
+CREATE OR REPLACE FUNCTION roaconfiguration_stat_prefixes_inserted()
+  RETURNS TRIGGER
+  LANGUAGE PLPGSQL
+  AS
+$$
+BEGIN
+    INSERT INTO roaconfiguration_stat AS s (roaconfiguration_id, roa_prefix_count)
+    SELECT roaconfiguration_id, count(*)
+      FROM inserted_prefixes
+     GROUP BY roaconfiguration_id
+    ON CONFLICT (roaconfiguration_id) DO UPDATE SET roa_prefix_count = s.roa_prefix_count + EXCLUDED.roa_prefix_count;
+
+    RETURN NULL;
+END;
+$$
+;
+
+CREATE OR REPLACE FUNCTION roaconfiguration_stat_prefixes_deleted()
+  RETURNS TRIGGER
+  LANGUAGE PLPGSQL
+  AS
+$$
+BEGIN
+    -- When the ROA configuration itself is deleted its statistics row is already gone
+    UPDATE roaconfiguration_stat s
+       SET roa_prefix_count = s.roa_prefix_count - d.count
+      FROM (SELECT roaconfiguration_id, count(*) AS count FROM deleted_prefixes GROUP BY roaconfiguration_id) d
+     WHERE s.roaconfiguration_id = d.roaconfiguration_id;
+
+    RETURN NULL;
+END;
+$$
+;
+
+CREATE TRIGGER roaconfiguration_stat_prefixes_inserted
+ AFTER INSERT ON roaconfiguration_prefixes
+   REFERENCING NEW TABLE AS inserted_prefixes
+   FOR EACH STATEMENT EXECUTE FUNCTION roaconfiguration_stat_prefixes_inserted();
+
+CREATE TRIGGER roaconfiguration_stat_prefixes_deleted
+ AFTER DELETE ON roaconfiguration_prefixes
+   REFERENCING OLD TABLE AS deleted_prefixes
+   FOR EACH STATEMENT EXECUTE FUNCTION roaconfiguration_stat_prefixes_deleted();
@@ -0,0 +1,9 @@
+-- Trigram index on the command audit summary, used by the GDPR investigation to search for mentions of an email
+-- address or user id using LIKE '%...%' without scanning the complete command history.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Only create the index on the partitioned table itself, this does not lock or scan the existing partitions. Partitions
+-- created later get the index automatically. The index on the existing partitions is built concurrently, one partition
+-- at a time, by the command audit search index background service, which attaches it to this index. Until then the
+-- partitions that are already indexed can use their index.
+CREATE INDEX commandaudit_commandsummary_trgm_idx ON ONLY commandaudit USING gin (commandsummary gin_trgm_ops);
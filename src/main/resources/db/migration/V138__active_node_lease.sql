@@ -0,0 +1,18 @@
+-- The active node holds a lease that it renews with a heartbeat. When the lease expires another node can take over.
+-- Every change of owner increments the fencing token, and background jobs verify their token before committing so
+-- that a former active node (e.g. after a long pause) can no longer commit changes.
+CREATE TABLE active_node_lease (
+    id            INTEGER                  NOT NULL PRIMARY KEY CHECK (id = 1),
+    owner         TEXT                     NOT NULL,
+    expires_at    TIMESTAMP WITH TIME ZONE NOT NULL,
+    fencing_token BIGINT                   NOT NULL
+);
+
+-- The currently selected active node gets a few minutes to start renewing the lease before it can be taken over.
+INSERT INTO active_node_lease (id, owner, expires_at, fencing_token)
+SELECT 1, value, now() + INTERVAL '5 minutes', 1
+  FROM property
+ WHERE key = 'activeNode';
+
+-- The activeNode property is kept for nodes running the previous release during a rolling deploy. It is no longer
+-- read and is removed by a migration in a later release.
@@ -0,0 +1,6 @@
+-- Nodes that take part in sharded background work register themselves with a heartbeat. Nodes that did not send a
+-- heartbeat within the configured timeout are no longer considered live, and their CAs are taken over by the others.
+CREATE TABLE background_node_membership (
+    node_name    TEXT                     NOT NULL PRIMARY KEY,
+    heartbeat_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
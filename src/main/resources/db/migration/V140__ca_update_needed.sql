@@ -0,0 +1,9 @@
+-- CAs whose incoming certificate may need to be updated because their resources, their parent certificate or the
+-- validity time of certificates changed. The all CA certificate update service only processes these CAs and sweeps
+-- all CAs at a low frequency as a safety net. A CA that is marked again while it is being processed keeps its entry,
+-- since the entry is only removed when its request time did not change.
+CREATE TABLE ca_update_needed (
+    ca_id        BIGINT                   NOT NULL PRIMARY KEY REFERENCES certificateauthority (id) ON DELETE CASCADE,
+    reason       TEXT                     NOT NULL,
+    requested_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
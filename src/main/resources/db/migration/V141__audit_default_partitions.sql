@@ -0,0 +1,5 @@
+-- Catch audit entries that do not fall in any monthly partition (e.g. when the audit partition maintenance service
+-- did not run for longer than it creates partitions ahead), so inserting them does not fail. The maintenance service
+-- moves such entries to the monthly partition when it creates it.
+CREATE TABLE commandaudit_default PARTITION OF commandaudit DEFAULT;
+CREATE TABLE provisioning_audit_log_default PARTITION OF provisioning_audit_log DEFAULT;
@@ -0,0 +1,6 @@
+-- Runs of adaptively scheduled background services requested by nodes other than the active node (e.g. the node that
+-- handled an API request creating ROAs to publish). The active node polls and removes the requests.
+CREATE TABLE background_service_run_request (
+    service_name TEXT                     NOT NULL PRIMARY KEY,
+    requested_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -1,10 +1,15 @@
 package net.ripe.rpki.application.impl;
 
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.commons.validation.roa.RouteValidityState;
 import net.ripe.rpki.domain.CertificationDomainTestCase;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
 import net.ripe.rpki.domain.audit.CommandAudit;
 import net.ripe.rpki.server.api.commands.*;
+import net.ripe.rpki.server.api.dto.CaStatCaEvent;
+import net.ripe.rpki.server.api.dto.CaStatRoaEvent;
+import net.ripe.rpki.server.api.dto.RoaConfigurationPrefixData;
 import net.ripe.rpki.server.api.security.RunAsUser;
 import net.ripe.rpki.server.api.security.RunAsUserHolder;
 import org.junit.After;
@@ -16,6 +21,7 @@ import jakarta.inject.Inject;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static net.ripe.rpki.server.api.commands.CertificateAuthorityCommandGroup.USER;
@@ -105,6 +111,25 @@ public class CommandAuditServiceBeanTest extends CertificationDomainTestCase {
         assertThat(emailMentions.get("UnsubscribeFromRoaAlertCommand")).isEqualTo(1L);
     }
 
+    @Test
+    public void should_record_ca_stat_events() {
+        RoaConfigurationPrefixData prefix = new RoaConfigurationPrefixData(Asn.parse("AS64496"), IpRange.parse("10.0.0.0/8"), null);
+        recordCommand(new UpdateRoaConfigurationCommand(ca.getVersionedId(), Optional.empty(), List.of(prefix), List.of(), RunAsUser.ADMIN.getCertificationUserId()), "some event");
+        recordCommand(new UpdateAspaConfigurationCommand(ca.getVersionedId(), "", Collections.emptyList()), "some event 2");
+        recordCommand(new DeleteCertificateAuthorityCommand(ca.getVersionedId(), ca.getName()), "some event 3");
+
+        assertThat(certificateAuthorityRepository.getCAStatEvents())
+            .hasSize(2)
+            .satisfiesExactly(
+                roas -> assertThat(roas).isInstanceOfSatisfying(CaStatRoaEvent.class, event -> {
+                    assertThat(event.caName).isEqualTo(ca.getName().getName());
+                    assertThat(event.roasAdded).isEqualTo(1);
+                    assertThat(event.roasDeleted).isNull();
+                }),
+                deleted -> assertThat(deleted).isInstanceOf(CaStatCaEvent.class)
+            );
+    }
+
     private void recordCommand(CertificateAuthorityCommand command, String event) {
         CommandContext commandContext = subject.startRecording(command);
         commandContext.recordEvent(event);
@@ -33,6 +33,7 @@ public class CertificateAuthorityViewServiceImplTest extends CertificationDomain
     @Test
     public void findAllHostedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth() {
         assertThat(subject.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).isEmpty();
+        assertThat(subject.findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth()).isEmpty();
     }
     @Test
     public void findAllPublisherRequestsFromNonHostedCAs(){
@@ -71,6 +72,19 @@ public class CertificateAuthorityViewServiceImplTest extends CertificationDomain
         ).anyMatch(ca -> ca.getName().equals(CHILD_CA_NAME));
     }
 
+    @Test
+    public void findAllHostedCasWithCurrentKeyOnlyAndOlderThan_fills_batch_with_selected_cas() {
+        clearDatabase();
+        var parent = createInitializedAllResourcesAndProductionCertificateAuthority();
+        certificateAuthorityRepository.add(new HostedCertificateAuthority(HOSTED_CA_ID, CHILD_CA_NAME, UUID.randomUUID(), parent));
+        X500Principal selectedName = new X500Principal("CN=selected");
+        certificateAuthorityRepository.add(new HostedCertificateAuthority(HOSTED_CA_ID + 1, selectedName, UUID.randomUUID(), parent));
+
+        assertThat(subject.findManagedCasEligibleForKeyRoll(HostedCertificateAuthority.class, Instant.now(), Optional.of(1), caId -> caId == HOSTED_CA_ID + 1))
+            .singleElement()
+            .matches(ca -> ca.getName().equals(selectedName));
+    }
+
     @Test
     public void findAllHostedCasWithCurrentKeyOnlyAndOlderThan_has_pending() {
         clearDatabase();
@@ -109,7 +123,7 @@ public class CertificateAuthorityViewServiceImplTest extends CertificationDomain
     }
 
     /**
-     * The {@link CertificateAuthorityViewService#getCaStats()} function makes assumptions about a number of constant
+     * The backfill of the CA statistics events (V136 migration) makes assumptions about a number of constant
      * strings in the audit log. Check this invariant.
      */
 
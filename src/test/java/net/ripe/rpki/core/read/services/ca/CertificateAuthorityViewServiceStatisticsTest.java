@@ -127,6 +127,17 @@ public class CertificateAuthorityViewServiceStatisticsTest extends Certification
         assertThat(subject.getCaStats()).isEmpty();
     }
 
+    @Test
+    public void testGetCaStatTracksRemovedPrefixes() {
+        var ca = certificateAuthorityRepository.findManagedCa(HOSTED_CA_ID);
+        var roaConfiguration = roaConfigurationRepository.getOrCreateByCertificateAuthority(ca);
+        roaConfigurationRepository.removePrefixes(roaConfiguration, ALL_ROA_CONFIGURATIONS.subList(0, 2));
+
+        assertThat(subject.getCaStats())
+                .singleElement()
+                .matches(thatCa -> thatCa.roas == ALL_ROA_CONFIGURATIONS.size() - 2);
+    }
+
     @Test
     public void testGetCaStatEvents() {
         // Initially we have the all resources CA
@@ -0,0 +1,187 @@
+package net.ripe.rpki.core.services.background;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BackgroundServiceLockTest {
+
+    private final BackgroundServiceLock subject = new BackgroundServiceLock();
+    private final List<String> acquired = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void shouldAcquireFreeLockWithoutWaiting() {
+        assertThat(subject.lock("a", BackgroundServicePriority.NORMAL)).isFalse();
+        assertThat(subject.isOwnedBy("a")).isTrue();
+
+        subject.unlock("a");
+        assertThat(subject.isOwnedBy("a")).isFalse();
+    }
+
+    @Test
+    public void shouldRejectUnlockByOtherService() {
+        subject.lock("a", BackgroundServicePriority.NORMAL);
+
+        assertThatThrownBy(() -> subject.unlock("b")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldGrantLockInOrderOfPriorityAndArrival() throws Exception {
+        subject.lock("owner", BackgroundServicePriority.NORMAL);
+        List<Thread> threads = List.of(
+            lockAndUnlock("low", BackgroundServicePriority.LOW, 1),
+            lockAndUnlock("normal-1", BackgroundServicePriority.NORMAL, 2),
+            lockAndUnlock("high", BackgroundServicePriority.HIGH, 3),
+            lockAndUnlock("normal-2", BackgroundServicePriority.NORMAL, 4)
+        );
+
+        subject.unlock("owner");
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertThat(acquired).containsExactly("high", "normal-1", "normal-2", "low");
+    }
+
+    @Test
+    public void shouldNotYieldWithoutWaitingServiceWithHigherPriority() throws Exception {
+        subject.lock("bulk", BackgroundServicePriority.LOW);
+        Thread other = lockAndUnlock("other", BackgroundServicePriority.LOW, 1);
+
+        assertThat(subject.beginTask("bulk")).isTrue();
+
+        assertThat(subject.isOwnedBy("bulk")).isTrue();
+        subject.endTask("bulk");
+        subject.unlock("bulk");
+        other.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(acquired).containsExactly("other");
+    }
+
+    @Test
+    public void shouldYieldToWaitingServiceWithHigherPriorityAndResumeBeforeServicesWithSamePriority() throws Exception {
+        subject.lock("bulk", BackgroundServicePriority.LOW);
+        Thread low = lockAndUnlock("low", BackgroundServicePriority.LOW, 1);
+        Thread high = lockAndUnlock("high", BackgroundServicePriority.HIGH, 2);
+
+        assertThat(subject.beginTask("bulk")).isTrue();
+        acquired.add("bulk");
+
+        assertThat(subject.isOwnedBy("bulk")).isTrue();
+        subject.endTask("bulk");
+        subject.unlock("bulk");
+        low.join(TimeUnit.SECONDS.toMillis(5));
+        high.join(TimeUnit.SECONDS.toMillis(5));
+        assertThat(acquired).containsExactly("high", "bulk", "low");
+    }
+
+    @Test
+    public void shouldNotWaitWhenYieldingWithoutLock() {
+        subject.lock("other", BackgroundServicePriority.LOW);
+        lockAndUnlock("high", BackgroundServicePriority.HIGH, 1);
+
+        assertThat(subject.beginTask("concurrent")).isFalse();
+
+        assertThat(subject.isOwnedBy("other")).isTrue();
+    }
+
+    @Test
+    public void shouldWaitForRunningTasksBeforeYielding() throws Exception {
+        subject.lock("bulk", BackgroundServicePriority.LOW);
+        AtomicInteger runningBulkTasks = new AtomicInteger();
+        AtomicBoolean highRunning = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        CountDownLatch tasksStarted = new CountDownLatch(2);
+        CountDownLatch completeTasks = new CountDownLatch(1);
+
+        List<Thread> inFlight = List.of(
+            startThread(() -> runBulkTask(runningBulkTasks, highRunning, overlapped, () -> {
+                tasksStarted.countDown();
+                Uninterruptibles.awaitUninterruptibly(completeTasks);
+            })),
+            startThread(() -> runBulkTask(runningBulkTasks, highRunning, overlapped, () -> {
+                tasksStarted.countDown();
+                Uninterruptibles.awaitUninterruptibly(completeTasks);
+            }))
+        );
+        assertThat(tasksStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread high = startThread(() -> {
+            subject.lock("high", BackgroundServicePriority.HIGH);
+            highRunning.set(true);
+            if (runningBulkTasks.get() > 0) {
+                overlapped.set(true);
+            }
+            acquired.add("high");
+            Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+            highRunning.set(false);
+            subject.unlock("high");
+        });
+        awaitQueueLength(1);
+
+        // Started after the service with a higher priority arrived, so must wait until it completed
+        Thread next = startThread(() -> runBulkTask(runningBulkTasks, highRunning, overlapped, () -> acquired.add("next")));
+        Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+        assertThat(subject.isOwnedBy("bulk")).isTrue();
+        assertThat(acquired).isEmpty();
+
+        completeTasks.countDown();
+        for (Thread thread : inFlight) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        high.join(TimeUnit.SECONDS.toMillis(5));
+        next.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(acquired).containsExactly("high", "next");
+        assertThat(overlapped).isFalse();
+        assertThat(subject.isOwnedBy("bulk")).isTrue();
+        subject.unlock("bulk");
+    }
+
+    private void runBulkTask(AtomicInteger runningBulkTasks, AtomicBoolean highRunning, AtomicBoolean overlapped, Runnable body) {
+        assertThat(subject.beginTask("bulk")).isTrue();
+        runningBulkTasks.incrementAndGet();
+        if (highRunning.get()) {
+            overlapped.set(true);
+        }
+        try {
+            body.run();
+        } finally {
+            runningBulkTasks.decrementAndGet();
+            subject.endTask("bulk");
+        }
+    }
+
+    private Thread startThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        return thread;
+    }
+
+    private Thread lockAndUnlock(String service, BackgroundServicePriority priority, int expectedQueueLength) {
+        Thread thread = new Thread(() -> {
+            subject.lock(service, priority);
+            acquired.add(service);
+            subject.unlock(service);
+        });
+        thread.start();
+        awaitQueueLength(expectedQueueLength);
+        return thread;
+    }
+
+    private void awaitQueueLength(int expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (subject.getQueueLength() < expected) {
+            assertThat(System.nanoTime() - deadline).as("waiting for queued services").isNegative();
+            Thread.onSpinWait();
+        }
+    }
+}
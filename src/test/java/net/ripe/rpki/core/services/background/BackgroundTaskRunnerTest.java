@@ -0,0 +1,47 @@
+package net.ripe.rpki.core.services.background;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.ripencc.support.persistence.StatementStatistics;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.FencingTokenHolder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BackgroundTaskRunnerTest {
+
+    @Mock
+    private ActiveNodeService activeNodeService;
+    private BackgroundTaskRunner subject;
+
+    @Before
+    public void setUp() {
+        subject = new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void should_run_tasks_with_fencing_token_and_statement_statistics_scope_of_creator() throws Exception {
+        try (StatementStatistics.Scope scope = StatementStatistics.open("background", "TestService")) {
+            List<BackgroundTaskRunner.Task<Boolean>> tasks = FencingTokenHolder.with(OptionalLong.of(42), () -> IntStream.range(0, 100)
+                .mapToObj(i -> subject.task(
+                    () -> StatementStatistics.current().equals(Optional.of(scope)) && FencingTokenHolder.get().equals(OptionalLong.of(42)),
+                    Assertions::fail
+                ))
+                .toList());
+
+            assertThat(subject.runParallel(tasks.stream())).hasSize(100).containsOnly(true);
+        }
+        assertThat(StatementStatistics.current()).isEmpty();
+    }
+}
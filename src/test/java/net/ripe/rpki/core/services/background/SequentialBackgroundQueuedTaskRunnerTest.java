@@ -12,6 +12,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.OptionalLong;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -36,6 +37,7 @@ public class SequentialBackgroundQueuedTaskRunnerTest {
     @Before
     public void setUp() {
         when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.of(1));
         BackgroundTaskRunner backgroundTaskRunner = new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry());
         subject = new SequentialBackgroundQueuedTaskRunner(backgroundTaskRunner);
         subject.start();
@@ -0,0 +1,105 @@
+package net.ripe.rpki.core.write.services.command;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.ipresource.ImmutableResourceSet;
+import net.ripe.rpki.commons.util.UTC;
+import net.ripe.rpki.core.events.CertificateAuthorityEventVisitor;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.HostedCertificateAuthority;
+import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ProductionCertificateAuthority;
+import net.ripe.rpki.domain.audit.CommandAuditService;
+import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.IssueUpdatedManifestAndCrlCommand;
+import net.ripe.rpki.server.api.services.command.CommandStatus;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.services.impl.handlers.CommandHandlerMetrics;
+import net.ripe.rpki.services.impl.handlers.LockCertificateAuthorityHandler;
+import net.ripe.rpki.services.impl.handlers.MessageDispatcher;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import javax.security.auth.x500.X500Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Group commit against the database, where a failing statement marks the whole transaction as rollback-only.
+ */
+public class CommandServiceGroupCommitTest extends CertificationDomainTestCase {
+
+    @Inject
+    private MessageDispatcher messageDispatcher;
+    @Inject
+    private List<CertificateAuthorityEventVisitor> eventVisitors;
+    @Inject
+    private CommandAuditService commandAuditService;
+    @Inject
+    private CommandHandlerMetrics commandHandlerMetrics;
+    @Inject
+    private LockCertificateAuthorityHandler lockCertificateAuthorityHandler;
+    @Inject
+    private ActiveNodeService activeNodeService;
+
+    private List<IssueUpdatedManifestAndCrlCommand> commands;
+    private long failingCaId;
+    private CommandServiceImpl subject;
+
+    @Before
+    public void setUp() {
+        commands = withTx(() -> {
+            clearDatabase();
+            ProductionCertificateAuthority production = createInitializedAllResourcesAndProductionCertificateAuthority();
+            HostedCertificateAuthority child = new HostedCertificateAuthority(7L, new X500Principal("CN=child"), UUID.randomUUID(), production);
+            issueCertificateForNewKey(production, child, ImmutableResourceSet.parse("10.0.0.0/8"));
+            return certificateAuthorityRepository.findAllWithOutdatedManifests(true, UTC.dateTime(), Integer.MAX_VALUE).stream()
+                .map(ManagedCertificateAuthority::getVersionedId)
+                .map(IssueUpdatedManifestAndCrlCommand::new)
+                .toList();
+        });
+        assertThat(commands).hasSizeGreaterThanOrEqualTo(2);
+        failingCaId = commands.get(0).getCertificateAuthorityId();
+
+        MessageDispatcher failingDispatcher = new MessageDispatcher() {
+            @Override
+            public void dispatch(CertificateAuthorityCommand command, CommandStatus commandStatus) {
+                messageDispatcher.dispatch(command, commandStatus);
+                if (command.getCertificateAuthorityId() == failingCaId) {
+                    // Fails in the database, which marks the transaction as rollback-only
+                    entityManager.createNativeQuery("INSERT INTO property (id, key, value, created_at, updated_at) VALUES (NULL, NULL, NULL, now(), now())")
+                        .executeUpdate();
+                }
+            }
+        };
+        subject = new CommandServiceImpl(failingDispatcher, transactionTemplate, eventVisitors, commandAuditService,
+            commandHandlerMetrics, lockCertificateAuthorityHandler, entityManager, activeNodeService, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void should_commit_other_commands_with_their_audit_entries_when_a_command_fails_to_flush() {
+        List<CertificateAuthorityCommand> failed = new ArrayList<>();
+
+        subject.executeGroupCommitted(commands, (command, e) -> failed.add(command));
+
+        assertThat(failed).containsExactly(commands.get(0));
+        for (IssueUpdatedManifestAndCrlCommand command : commands) {
+            long expectedAuditEntries = command.getCertificateAuthorityId() == failingCaId ? 0 : 1;
+            assertThat(countAuditEntries(command)).as("audit entries of CA %d", command.getCertificateAuthorityId()).isEqualTo(expectedAuditEntries);
+        }
+        List<Long> outdated = withTx(() -> certificateAuthorityRepository.findAllWithOutdatedManifests(true, UTC.dateTime(), Integer.MAX_VALUE).stream()
+            .map(ManagedCertificateAuthority::getId)
+            .toList());
+        assertThat(outdated).containsExactly(failingCaId);
+    }
+
+    private long countAuditEntries(CertificateAuthorityCommand command) {
+        return withTx(() -> ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM commandaudit WHERE ca_id = :caId AND commandtype = :commandType")
+            .setParameter("caId", command.getCertificateAuthorityId())
+            .setParameter("commandType", command.getCommandType())
+            .getSingleResult()).longValue());
+    }
+}
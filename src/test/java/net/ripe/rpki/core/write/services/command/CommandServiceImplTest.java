@@ -6,8 +6,11 @@ import net.ripe.rpki.domain.audit.CommandAudit;
 import net.ripe.rpki.domain.audit.CommandAuditService;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CommandContext;
+import net.ripe.rpki.server.api.commands.GroupCommittableCommand;
 import net.ripe.rpki.server.api.services.command.CommandStatus;
 import net.ripe.rpki.server.api.services.command.CommandWithoutEffectException;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.FencingTokenHolder;
 import net.ripe.rpki.services.impl.handlers.CertificateAuthorityCommandHandler;
 import net.ripe.rpki.services.impl.handlers.CommandHandlerMetrics;
 import net.ripe.rpki.services.impl.handlers.LockCertificateAuthorityHandler;
@@ -15,16 +18,21 @@ import net.ripe.rpki.services.impl.handlers.MessageDispatcher;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.MDC;
+import org.springframework.transaction.SavepointManager;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.OptimisticLockException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -39,6 +47,8 @@ public class CommandServiceImplTest {
 
     private MessageDispatcher messageDispatcher;
     private List<TransactionStatus> transactionStatuses;
+    private List<String> savepointOperations;
+    private EntityManager entityManager;
 
 
     private CertificateAuthorityCommand command;
@@ -46,6 +56,7 @@ public class CommandServiceImplTest {
     private CommandServiceImpl subject;
     private SimpleMeterRegistry meterRegistry;
     private CommandAudit commandAudit;
+    private ActiveNodeService activeNodeService;
 
     @Before
     public void setUp() {
@@ -53,19 +64,27 @@ public class CommandServiceImplTest {
         command = mock(CertificateAuthorityCommand.class);
         messageDispatcher = mock(MessageDispatcher.class);
         transactionStatuses = new ArrayList<>();
+        savepointOperations = new ArrayList<>();
+        entityManager = mock(EntityManager.class);
         CommandAuditService commandAuditService = mock(CommandAuditService.class);
         when(commandAuditService.startRecording(any())).thenAnswer((args) -> new CommandContext(args.getArgument(0), commandAudit));
 
         final TransactionTemplate transactionTemplate = new TransactionTemplate() {
             @Override
             public <T> T execute(TransactionCallback<T> action) throws TransactionException {
-                transactionStatuses.add(new DefaultTransactionStatus("CommandServiceImplTest", null,true,true, false, true,true,null));
+                transactionStatuses.add(new DefaultTransactionStatus("CommandServiceImplTest", null,true,true, false, true,true,null) {
+                    @Override
+                    protected SavepointManager getSavepointManager() {
+                        return new RecordingSavepointManager();
+                    }
+                });
                 return action.doInTransaction(transactionStatuses.get(transactionStatuses.size()-1));
             }
         };
 
         meterRegistry = new SimpleMeterRegistry();
-        subject = new CommandServiceImpl(messageDispatcher, transactionTemplate, Collections.emptyList(), commandAuditService, new CommandHandlerMetrics(meterRegistry), mock(LockCertificateAuthorityHandler.class), null, meterRegistry);
+        activeNodeService = mock(ActiveNodeService.class);
+        subject = new CommandServiceImpl(messageDispatcher, transactionTemplate, Collections.emptyList(), commandAuditService, new CommandHandlerMetrics(meterRegistry), mock(LockCertificateAuthorityHandler.class), entityManager, activeNodeService, meterRegistry);
     }
 
     @Test
@@ -74,6 +93,32 @@ public class CommandServiceImplTest {
         verify(messageDispatcher).dispatch(command, status);
     }
 
+    @Test
+    public void should_verify_fencing_token_of_background_job() throws Exception {
+        CommandStatus status = FencingTokenHolder.with(OptionalLong.of(42), () -> subject.execute(command));
+
+        verify(activeNodeService).verifyFencingToken(42);
+        verify(messageDispatcher).dispatch(command, status);
+    }
+
+    @Test
+    public void should_not_dispatch_command_when_active_node_lease_was_lost() {
+        doThrow(new IllegalStateException("lease lost")).when(activeNodeService).verifyFencingToken(42);
+
+        assertThatThrownBy(() -> FencingTokenHolder.with(OptionalLong.of(42), () -> subject.execute(command)))
+            .isInstanceOf(IllegalStateException.class);
+
+        verifyNoInteractions(messageDispatcher);
+        assertTrue(transactionStatuses.get(0).isRollbackOnly());
+    }
+
+    @Test
+    public void should_not_verify_fencing_token_outside_of_background_jobs() {
+        subject.execute(command);
+
+        verify(activeNodeService, never()).verifyFencingToken(anyLong());
+    }
+
     @Test
     public void should_rollback_transaction_when_dispatcher_throws_command_without_effect_exception() {
         doThrow(new CommandWithoutEffectException(command)).when(messageDispatcher).dispatch(eq(command), any(CommandStatus.class));
@@ -131,6 +176,30 @@ public class CommandServiceImplTest {
     }
 
 
+    private static class GroupTestCommand extends TestCommand implements GroupCommittableCommand {
+        GroupTestCommand(long caId) {
+            super(new VersionedId(caId));
+        }
+    }
+
+    private class RecordingSavepointManager implements SavepointManager {
+        @Override
+        public Object createSavepoint() {
+            savepointOperations.add("create");
+            return new Object();
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) {
+            savepointOperations.add("rollback");
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) {
+            savepointOperations.add("release");
+        }
+    }
+
     private static class TopTestCommand extends TestCommand {
         TopTestCommand() {
             super(new VersionedId(1L));
@@ -276,4 +345,91 @@ public class CommandServiceImplTest {
 
         assertThat(meterRegistry.get("rpkicore.command.execution.duration").timer()).isNotNull();
     }
+
+    @Test
+    public void should_execute_group_committed_commands_in_a_single_transaction() {
+        List<CertificateAuthorityCommand> commands = List.of(new GroupTestCommand(1), new GroupTestCommand(2));
+
+        subject.executeGroupCommitted(commands, (command, e) -> fail("unexpected error for " + command));
+
+        verify(messageDispatcher).dispatch(eq(commands.get(0)), any(CommandStatus.class));
+        verify(messageDispatcher).dispatch(eq(commands.get(1)), any(CommandStatus.class));
+        verify(entityManager, times(2)).flush();
+        assertThat(transactionStatuses).hasSize(1);
+        assertThat(transactionStatuses.get(0).isRollbackOnly()).isFalse();
+        assertThat(savepointOperations).containsExactly("create", "release", "create", "release");
+    }
+
+    @Test
+    public void should_rollback_to_savepoint_and_execute_failed_command_individually() {
+        GroupTestCommand failing = new GroupTestCommand(1);
+        GroupTestCommand succeeding = new GroupTestCommand(2);
+        AtomicInteger attempts = new AtomicInteger(0);
+        doAnswer(invocation -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new IllegalStateException("test exception");
+            }
+            return null;
+        }).when(messageDispatcher).dispatch(eq(failing), any(CommandStatus.class));
+
+        subject.executeGroupCommitted(List.of(failing, succeeding), (command, e) -> fail("unexpected error for " + command));
+
+        assertThat(attempts.get()).isEqualTo(2);
+        verify(entityManager).clear();
+        // One group transaction and one transaction for the individual execution of the failed command.
+        assertThat(transactionStatuses).hasSize(2);
+        assertThat(savepointOperations).containsExactly("create", "rollback", "create", "release");
+        assertThat(meterRegistry.get("rpkicore.command.group.commit.fallbacks").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_rollback_to_savepoint_when_group_committed_command_has_no_effect() {
+        GroupTestCommand command = new GroupTestCommand(1);
+        doThrow(new CommandWithoutEffectException(command)).when(messageDispatcher).dispatch(eq(command), any(CommandStatus.class));
+
+        subject.executeGroupCommitted(List.of(command), (c, e) -> fail("unexpected error for " + c));
+
+        assertThat(transactionStatuses).hasSize(1);
+        assertThat(transactionStatuses.get(0).isRollbackOnly()).isFalse();
+        assertThat(savepointOperations).containsExactly("create", "rollback");
+    }
+
+    @Test
+    public void should_report_errors_of_commands_failing_individually() {
+        GroupTestCommand command = new GroupTestCommand(1);
+        doThrow(new IllegalStateException("test exception")).when(messageDispatcher).dispatch(eq(command), any(CommandStatus.class));
+
+        Map<CertificateAuthorityCommand, Exception> errors = new HashMap<>();
+        subject.executeGroupCommitted(List.of(command), errors::put);
+
+        assertThat(errors).containsOnlyKeys(command);
+        assertThat(errors.get(command)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void should_execute_all_commands_individually_when_group_transaction_fails() {
+        List<CertificateAuthorityCommand> commands = List.of(new GroupTestCommand(1), new GroupTestCommand(2));
+        doThrow(new IllegalStateException("flush failed")).doNothing().when(entityManager).flush();
+        AtomicInteger clears = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (clears.incrementAndGet() == 1) {
+                throw new IllegalStateException("connection lost");
+            }
+            return null;
+        }).when(entityManager).clear();
+
+        subject.executeGroupCommitted(commands, (command, e) -> fail("unexpected error for " + command));
+
+        // One failed group transaction and one transaction per individually executed command.
+        assertThat(transactionStatuses).hasSize(3);
+        verify(messageDispatcher, times(2)).dispatch(eq(commands.get(0)), any(CommandStatus.class));
+        verify(messageDispatcher, times(1)).dispatch(eq(commands.get(1)), any(CommandStatus.class));
+    }
+
+    @Test
+    public void should_reject_group_commit_of_commands_without_support() {
+        assertThatThrownBy(() -> subject.executeGroupCommitted(List.of(new TestCommand(new VersionedId(1))), (c, e) -> {}))
+            .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(messageDispatcher);
+    }
 }
@@ -1,6 +1,7 @@
 package net.ripe.rpki.domain.aspa;
 
 import com.google.common.collect.ImmutableSortedSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.ipresource.IpResourceSet;
@@ -41,6 +42,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,7 +69,7 @@ public class AspaEntityServiceBeanTest {
     @Before
     public void setUp() {
         DateTimeUtils.setCurrentMillisFixed(TEST_VALIDITY_PERIOD.getNotValidBefore().getMillis() + 1000);
-        subject = new AspaEntityServiceBean(certificateAuthorityRepository, aspaConfigurationRepository, aspaEntityRepository, new SingleUseKeyPairFactory(), TestServices.createSingleUseEeCertificateFactory());
+        subject = new AspaEntityServiceBean(certificateAuthorityRepository, aspaConfigurationRepository, aspaEntityRepository, new SingleUseKeyPairFactory(), TestServices.createSingleUseEeCertificateFactory(), new SimpleMeterRegistry(), 4);
 
         certificateAuthority = new ProductionCertificateAuthority(CA_ID, PRODUCTION_CA_NAME, UUID.randomUUID(), null);
         activeKeyPair = TestObjects.createActiveKeyPair("ACTIVE");
@@ -247,4 +249,39 @@ public class AspaEntityServiceBeanTest {
         verify(aspaEntityRepository, never()).remove(aspaEntity);
         verify(aspaEntityRepository, never()).add(any());
     }
+
+    @Test
+    public void should_issue_all_missing_aspas_for_certificate_authority_at_once() {
+        IncomingResourceCertificate currentIncomingCertificate = certificateAuthority.getCurrentIncomingCertificate();
+        X509ResourceCertificate certificate = createSelfSignedCaResourceCertificateBuilder()
+            .withSerial(BigInteger.valueOf(10000L))
+            .withValidityPeriod(currentIncomingCertificate.getValidityPeriod())
+            .withPublicKey(certificateAuthority.getCurrentKeyPair().getPublicKey())
+            .withResources(IpResourceSet.parse("10.0.0.0/16, AS21212-AS21219"))
+            .build();
+        certificateAuthority.processCertificateIssuanceResponse(new CertificateIssuanceResponse(certificate, TestObjects.PUBLICATION_URI), null);
+
+        SortedMap<Asn, AspaConfiguration> configuration = new TreeMap<>();
+        for (long asn = 21212; asn <= 21219; ++asn) {
+            configuration.put(new Asn(asn), new AspaConfiguration(certificateAuthority, new Asn(asn), PROVIDER_ASN_2));
+        }
+        when(aspaConfigurationRepository.findConfigurationsWithProvidersByCertificateAuthority(certificateAuthority)).thenReturn(configuration);
+
+        subject.updateAspaIfNeeded(certificateAuthority);
+
+        ArgumentCaptor<AspaEntity> aspaEntityArgumentCaptor = ArgumentCaptor.forClass(AspaEntity.class);
+        verify(aspaEntityRepository, times(8)).add(aspaEntityArgumentCaptor.capture());
+        List<AspaEntity> issued = aspaEntityArgumentCaptor.getAllValues();
+
+        assertThat(issued).extracting(AspaEntity::getCustomerAsn).containsExactlyElementsOf(configuration.keySet());
+        assertThat(issued).allSatisfy(entity -> {
+            assertThat(entity.getProviders()).isEqualTo(PROVIDER_ASN_2);
+            assertThat(entity.getParentCertificateUri()).isEqualTo(certificateAuthority.getCurrentIncomingCertificate().getPublicationUri());
+            // The extracted content matches the signed object
+            assertThat(entity.getAspaCms().getCustomerAsn()).isEqualTo(entity.getCustomerAsn());
+            assertThat(entity.getAspaCms().getProviderASSet()).isEqualTo(entity.getProviders());
+            assertThat(entity.getAspaCms().getCertificate()).isEqualTo(entity.getCertificate().getCertificate());
+        });
+        assertThat(issued).extracting(entity -> entity.getCertificate().getSubjectPublicKey()).doesNotHaveDuplicates();
+    }
 }
@@ -1,6 +1,7 @@
 package net.ripe.rpki.domain.inmemory;
 
 import jakarta.persistence.LockModeType;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.*;
 import net.ripe.rpki.ripencc.support.persistence.InMemoryRepository;
 import net.ripe.rpki.server.api.dto.CaStat;
@@ -29,6 +30,11 @@ public class InMemoryCertificateAuthorityRepository  extends InMemoryRepository<
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Optional<VersionedId> findDownStreamProvisioningCommunicatorVersion(UUID productionCaUuid) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public ProductionCertificateAuthority findRootCAByName(X500Principal name) {
         throw new UnsupportedOperationException();
@@ -75,7 +81,7 @@ public class InMemoryCertificateAuthorityRepository  extends InMemoryRepository<
     }
 
     @Override
-    public int deleteNonHostedPublicKeysWithoutSigningCertificates() {
+    public int deleteNonHostedPublicKeysWithoutSigningCertificates(int maxResults) {
         throw new UnsupportedOperationException();
     }
 
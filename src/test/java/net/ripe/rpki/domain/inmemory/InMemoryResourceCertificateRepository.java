@@ -74,12 +74,12 @@ public class InMemoryResourceCertificateRepository extends InMemoryRepository<Re
     }
 
     @Override
-    public ExpireOutgoingResourceCertificatesResult expireOutgoingResourceCertificates(DateTime now) {
+    public ExpireOutgoingResourceCertificatesResult expireOutgoingResourceCertificates(DateTime now, int maxResults) {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public int deleteExpiredOutgoingResourceCertificates(DateTime expirationTime) {
+    public int deleteExpiredOutgoingResourceCertificates(DateTime expirationTime, int maxResults) {
         throw new UnsupportedOperationException();
     }
 
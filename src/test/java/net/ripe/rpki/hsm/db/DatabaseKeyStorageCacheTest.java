@@ -0,0 +1,126 @@
+package net.ripe.rpki.hsm.db;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.crypto.ValidityPeriod;
+import net.ripe.rpki.commons.crypto.util.KeyPairFactoryTest;
+import net.ripe.rpki.commons.crypto.x509cert.X509CertificateBuilderHelper;
+import net.ripe.rpki.domain.hsm.HsmCertificateChain;
+import net.ripe.rpki.domain.hsm.HsmKey;
+import net.ripe.rpki.domain.hsm.HsmKeyStoreRepository;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class DatabaseKeyStorageCacheTest {
+
+    private static final String KEY_STORE = "keyStore";
+    private static final String ALIAS = "alias";
+    private static final byte[] KEY_BLOB = KeyPairFactoryTest.TEST_KEY_PAIR.getPublic().getEncoded();
+
+    private HsmKeyStoreRepository hsmKeyStoreRepository;
+    private DatabaseKeyStorage subject;
+    private Certificate certificate;
+
+    @Before
+    public void setUp() throws CertificateEncodingException {
+        certificate = createCertificate();
+        hsmKeyStoreRepository = mock(HsmKeyStoreRepository.class);
+        HsmKey hsmKey = new HsmKey(KEY_BLOB, ALIAS, List.of(new HsmCertificateChain(certificate.getEncoded(), 1)));
+        when(hsmKeyStoreRepository.findKeyByKeyStoreAndAlias(KEY_STORE, ALIAS)).thenReturn(Optional.of(hsmKey));
+        subject = new DatabaseKeyStorage(hsmKeyStoreRepository, new SimpleMeterRegistry());
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void should_load_key_from_database_once() {
+        assertThat(subject.getEncryptedKey(KEY_STORE, ALIAS)).isEqualTo(KEY_BLOB);
+        assertThat(subject.getCertificate(KEY_STORE, ALIAS)).isEqualTo(certificate);
+        assertThat(subject.getCertificateChain(KEY_STORE, ALIAS)).containsExactly(certificate);
+
+        verify(hsmKeyStoreRepository, times(1)).findKeyByKeyStoreAndAlias(KEY_STORE, ALIAS);
+        assertThat(subject.getKeyCache().stats().hitCount()).isEqualTo(2);
+        assertThat(subject.getKeyCache().stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_not_cache_missing_keys() {
+        assertThatThrownBy(() -> subject.getEncryptedKey(KEY_STORE, "missing")).isInstanceOf(DatabaseKeyStorageException.class);
+        assertThatThrownBy(() -> subject.getEncryptedKey(KEY_STORE, "missing")).isInstanceOf(DatabaseKeyStorageException.class);
+
+        verify(hsmKeyStoreRepository, times(2)).findKeyByKeyStoreAndAlias(KEY_STORE, "missing");
+    }
+
+    @Test
+    public void should_invalidate_key_on_delete() {
+        subject.getCertificateChain(KEY_STORE, ALIAS);
+
+        subject.deleteEntry(KEY_STORE, ALIAS);
+        when(hsmKeyStoreRepository.findKeyByKeyStoreAndAlias(KEY_STORE, ALIAS)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> subject.getCertificateChain(KEY_STORE, ALIAS)).isInstanceOf(DatabaseKeyStorageException.class);
+    }
+
+    @Test
+    public void should_invalidate_key_on_store() {
+        subject.getEncryptedKey(KEY_STORE, ALIAS);
+
+        byte[] newKeyBlob = KeyPairFactoryTest.SECOND_TEST_KEY_PAIR.getPublic().getEncoded();
+        subject.storeEncryptedKeyAndCerts(KEY_STORE, ALIAS, newKeyBlob, new Certificate[0]);
+        when(hsmKeyStoreRepository.findKeyByKeyStoreAndAlias(KEY_STORE, ALIAS)).thenReturn(Optional.of(new HsmKey(newKeyBlob, ALIAS, List.of())));
+
+        assertThat(subject.getEncryptedKey(KEY_STORE, ALIAS)).isEqualTo(newKeyBlob);
+    }
+
+    @Test
+    public void should_bypass_cache_in_transaction_that_modified_the_key_store() {
+        TransactionSynchronizationManager.initSynchronization();
+        subject.deleteEntry(KEY_STORE, "other-alias");
+
+        subject.getEncryptedKey(KEY_STORE, ALIAS);
+        subject.getEncryptedKey(KEY_STORE, ALIAS);
+        verify(hsmKeyStoreRepository, times(2)).findKeyByKeyStoreAndAlias(KEY_STORE, ALIAS);
+        assertThat(subject.getKeyCache().size()).isZero();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        subject.getEncryptedKey(KEY_STORE, ALIAS);
+        subject.getEncryptedKey(KEY_STORE, ALIAS);
+        verify(hsmKeyStoreRepository, times(3)).findKeyByKeyStoreAndAlias(KEY_STORE, ALIAS);
+        assertThat(subject.getKeyCache().size()).isEqualTo(1);
+    }
+
+    private static Certificate createCertificate() {
+        final X509CertificateBuilderHelper builder = new X509CertificateBuilderHelper();
+        builder.withSignatureProvider("SunRsaSign");
+        builder.withSerial(BigInteger.ONE);
+        builder.withValidityPeriod(new ValidityPeriod(new DateTime(DateTimeZone.UTC).minusYears(1), new DateTime(DateTimeZone.UTC).plusYears(1)));
+        builder.withCa(false);
+        builder.withIssuerDN(new X500Principal("CN=issuer"));
+        builder.withSubjectDN(new X500Principal("CN=subject"));
+        builder.withSigningKeyPair(KeyPairFactoryTest.TEST_KEY_PAIR);
+        builder.withPublicKey(KeyPairFactoryTest.TEST_KEY_PAIR.getPublic());
+        return builder.generateCertificate();
+    }
+}
@@ -3,6 +3,7 @@ package net.ripe.rpki.rest.service;
 import net.ripe.rpki.TestRpkiBootApplication;
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommandGroup;
+import net.ripe.rpki.server.api.dto.CaHistoryPage;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityHistoryItem;
 import net.ripe.rpki.server.api.dto.CommandAuditData;
@@ -94,4 +95,37 @@ public class HistoryServiceTest {
                 .andExpect(jsonPath("$.[1].caId").value("1"))
                 .andExpect(jsonPath("$.[1].summary").value("Some cool command"));
     }
+
+    @Test
+    public void shouldGetHistoryPage() throws Exception {
+        CertificateAuthorityData ca = mock(CertificateAuthorityData.class);
+        when(certificateAuthorityViewService.findCertificateAuthorityByName(any(X500Principal.class))).thenReturn(ca);
+
+        CaHistoryPage page = new CaHistoryPage(List.of(
+                new ProvisioningAuditData(
+                        DateTime.parse("2013-04-24T11:43:07.789Z"),
+                        "principal 2",
+                        "Some message"
+                )
+        ), "next");
+        when(caHistoryService.getHistoryPage(ca, "cursor", 1)).thenReturn(page);
+
+        mockMvc.perform(Rest.get(API_URL_PREFIX + "/123/history/page?olderThan=cursor&pageSize=1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON))
+                .andExpect(jsonPath("$.olderThan").value("next"))
+                .andExpect(jsonPath("$.items.length()").value("1"))
+                .andExpect(jsonPath("$.items.[0].principal").value("principal 2"))
+                .andExpect(jsonPath("$.items.[0].summary").value("Some message"));
+    }
+
+    @Test
+    public void shouldRejectInvalidHistoryCursor() throws Exception {
+        CertificateAuthorityData ca = mock(CertificateAuthorityData.class);
+        when(certificateAuthorityViewService.findCertificateAuthorityByName(any(X500Principal.class))).thenReturn(ca);
+        when(caHistoryService.getHistoryPage(ca, "invalid", 100)).thenThrow(new IllegalArgumentException("invalid history cursor: invalid"));
+
+        mockMvc.perform(Rest.get(API_URL_PREFIX + "/123/history/page?olderThan=invalid"))
+                .andExpect(status().isBadRequest());
+    }
 }
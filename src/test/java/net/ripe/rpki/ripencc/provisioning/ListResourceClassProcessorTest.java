@@ -1,5 +1,6 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.commons.crypto.rfc3779.ResourceExtension;
@@ -8,6 +9,7 @@ import net.ripe.rpki.commons.provisioning.payload.PayloadMessageType;
 import net.ripe.rpki.commons.provisioning.payload.common.CertificateElement;
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponseClassElement;
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponsePayload;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.RequestedResourceSets;
 import net.ripe.rpki.server.api.dto.NonHostedCertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.NonHostedPublicKeyData;
@@ -24,17 +26,23 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.PublicKey;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.UUID;
 
 import static net.ripe.rpki.domain.Resources.ALL_RESOURCES;
 import static net.ripe.rpki.domain.Resources.DEFAULT_RESOURCE_CLASS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -51,12 +59,16 @@ public class ListResourceClassProcessorTest {
     @Mock
     private ResourceCertificateViewService resourceCertificateViewService;
 
+    private SimpleMeterRegistry meterRegistry;
+
     private X509ResourceCertificate issuerCertificate;
     private URI uri;
 
     @Before
     public void setup() throws URISyntaxException, ResourceInformationNotAvailableException {
-        processor = new ListResourceClassProcessor(resourceLookupService, resourceCertificateViewService);
+        meterRegistry = new SimpleMeterRegistry();
+        processor = new ListResourceClassProcessor(resourceLookupService, resourceCertificateViewService, meterRegistry);
+        when(nonHostedCertificateAuthority.getUuid()).thenReturn(UUID.randomUUID());
 
         uri = new URI("rsync://test");
         issuerCertificate = mock(X509ResourceCertificate.class);
@@ -66,11 +78,14 @@ public class ListResourceClassProcessorTest {
 
         when(resourceCertificateViewService.findCurrentIncomingResourceCertificate(nonHostedCertificateAuthority.getParentId()))
             .thenReturn(Optional.of(incomingResourceCertificate));
+        when(resourceCertificateViewService.findCurrentIncomingResourceCertificateSerial(nonHostedCertificateAuthority.getParentId()))
+            .thenReturn(Optional.of(BigInteger.ONE));
 
         X500Principal x500Principal = new X500Principal("CN=101");
         when(nonHostedCertificateAuthority.getName()).thenReturn(x500Principal);
         when(resourceLookupService.lookupMemberCaPotentialResources(x500Principal))
                 .thenReturn(Optional.of(ResourceExtension.ofResources(ImmutableResourceSet.parse("127.0.0.1,::1"))));
+        when(resourceLookupService.lookupMemberCaPotentialResourcesVersion(x500Principal)).thenReturn(Optional.of("1"));
     }
 
     @Test
@@ -115,6 +130,68 @@ public class ListResourceClassProcessorTest {
         assertEquals("127.0.0.1", getDefaultResourceClassElement(responsePayload).getResourceSetIpv4().toString());
     }
 
+    @Test
+    public void shouldReuseClassElementWhenNothingChanged() throws ResourceInformationNotAvailableException {
+        when(nonHostedCertificateAuthority.getVersionedId()).thenReturn(new VersionedId(1L, 1L));
+
+        ResourceClassListResponsePayload first = processor.process(nonHostedCertificateAuthority);
+        ResourceClassListResponsePayload second = processor.process(nonHostedCertificateAuthority);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getClassElements().get(0)).isSameAs(first.getClassElements().get(0));
+        assertThat(meterRegistry.get("rpkicore.provisioning.list.response.cache").tag("result", "hit").counter().count()).isEqualTo(1.0);
+
+        // The parent certificate and resources are only loaded to build the class element
+        verify(resourceCertificateViewService, times(1)).findCurrentIncomingResourceCertificate(anyLong());
+        verify(resourceLookupService, times(1)).lookupMemberCaPotentialResources(any());
+    }
+
+    @Test
+    public void shouldRebuildClassElementWhenParentCertificateChanged() throws ResourceInformationNotAvailableException {
+        ResourceClassListResponsePayload first = processor.process(nonHostedCertificateAuthority);
+
+        when(resourceCertificateViewService.findCurrentIncomingResourceCertificateSerial(nonHostedCertificateAuthority.getParentId()))
+            .thenReturn(Optional.of(BigInteger.TWO));
+        ResourceClassListResponsePayload second = processor.process(nonHostedCertificateAuthority);
+
+        assertThat(second.getClassElements().get(0)).isNotSameAs(first.getClassElements().get(0));
+    }
+
+    @Test
+    public void shouldNotCacheClassElementWhenResourcesAreNotAvailable() throws ResourceInformationNotAvailableException {
+        when(resourceLookupService.lookupMemberCaPotentialResourcesVersion(nonHostedCertificateAuthority.getName())).thenReturn(Optional.empty());
+
+        ResourceClassListResponsePayload first = processor.process(nonHostedCertificateAuthority);
+        ResourceClassListResponsePayload second = processor.process(nonHostedCertificateAuthority);
+
+        assertThat(second.getClassElements().get(0)).isNotSameAs(first.getClassElements().get(0));
+        assertThat(meterRegistry.get("rpkicore.provisioning.list.response.cache").tag("result", "miss").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void shouldRebuildClassElementWhenCertificateAuthorityChanged() throws ResourceInformationNotAvailableException {
+        when(nonHostedCertificateAuthority.getVersionedId()).thenReturn(new VersionedId(1L, 1L), new VersionedId(1L, 2L));
+
+        ResourceClassListResponsePayload first = processor.process(nonHostedCertificateAuthority);
+        ResourceClassListResponsePayload second = processor.process(nonHostedCertificateAuthority);
+
+        assertThat(second.getClassElements().get(0)).isNotSameAs(first.getClassElements().get(0));
+    }
+
+    @Test
+    public void shouldRebuildClassElementWhenCertifiableResourcesChanged() throws ResourceInformationNotAvailableException {
+        ResourceClassListResponsePayload first = processor.process(nonHostedCertificateAuthority);
+
+        when(resourceLookupService.lookupMemberCaPotentialResources(nonHostedCertificateAuthority.getName()))
+            .thenReturn(Optional.of(ResourceExtension.ofResources(ImmutableResourceSet.parse("127.0.0.2,::1"))));
+        when(resourceLookupService.lookupMemberCaPotentialResourcesVersion(nonHostedCertificateAuthority.getName())).thenReturn(Optional.of("2"));
+        ResourceClassListResponsePayload second = processor.process(nonHostedCertificateAuthority);
+
+        assertThat(second.getClassElements().get(0)).isNotSameAs(first.getClassElements().get(0));
+        assertEquals("127.0.0.2", getDefaultResourceClassElement(second).getResourceSetIpv4().toString());
+        assertThat(meterRegistry.get("rpkicore.provisioning.list.response.cache").tag("result", "miss").counter().count()).isEqualTo(2.0);
+    }
+
     private ResourceClassListResponseClassElement getDefaultResourceClassElement(ResourceClassListResponsePayload responsePayload) {
         return responsePayload.getClassElements().stream()
             .filter(classElement -> DEFAULT_RESOURCE_CLASS.equals(classElement.getClassName()))
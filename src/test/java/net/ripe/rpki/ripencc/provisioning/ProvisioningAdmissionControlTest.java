@@ -0,0 +1,91 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProvisioningAdmissionControlTest {
+
+    private static final UUID SENDER = UUID.fromString("5a8f6d35-2a3c-4f5d-9b1e-6f0a3c1d2e4b");
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProvisioningAdmissionControl subject;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        subject = new ProvisioningAdmissionControl(meterRegistry, 1, 1, Duration.ofSeconds(5), Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void should_not_admit_concurrent_request_from_same_sender() {
+        ProvisioningAdmissionControl.Admission first = subject.admit(SENDER);
+        ProvisioningAdmissionControl.Admission second = subject.admit(SENDER);
+
+        assertThat(first.isAdmitted()).isTrue();
+        assertThat(second.isAdmitted()).isFalse();
+        assertThat(meterRegistry.get("rpkicore.rfc6492.admission.rejected").tag("reason", "already_processing").counter().count()).isEqualTo(1.0);
+
+        // Closing the rejected admission must not release the admitted request
+        second.close();
+        assertThat(subject.admit(SENDER).isAdmitted()).isFalse();
+
+        first.close();
+        assertThat(subject.admit(SENDER).isAdmitted()).isTrue();
+    }
+
+    @Test
+    public void should_admit_waiting_request_when_permit_is_released() throws Exception {
+        ProvisioningAdmissionControl.Admission first = subject.admit(SENDER);
+
+        CompletableFuture<ProvisioningAdmissionControl.Admission> waiting = CompletableFuture.supplyAsync(() -> subject.admit(UUID.randomUUID()));
+        while (meterRegistry.get("rpkicore.rfc6492.admission.waiting").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+        first.close();
+
+        assertThat(waiting.get(5, TimeUnit.SECONDS).isAdmitted()).isTrue();
+        assertThat(meterRegistry.get("rpkicore.rfc6492.admission.queue.wait").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_reject_request_when_too_many_are_waiting() throws Exception {
+        subject.admit(SENDER);
+        CompletableFuture<ProvisioningAdmissionControl.Admission> waiting = CompletableFuture.supplyAsync(() -> subject.admit(UUID.randomUUID()));
+        while (meterRegistry.get("rpkicore.rfc6492.admission.waiting").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        UUID overflow = UUID.randomUUID();
+        assertThatThrownBy(() -> subject.admit(overflow))
+            .isInstanceOfSatisfying(ProvisioningException.ServiceUnavailable.class, e -> {
+                assertThat(e.getHttpStatusCode()).isEqualTo(503);
+                assertThat(e.getRetryAfter()).hasValue(Duration.ofSeconds(30));
+            });
+        assertThat(meterRegistry.get("rpkicore.rfc6492.admission.rejected").tag("reason", "overloaded").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("rpkicore.rfc6492.admission.in.flight").gauge().value()).isEqualTo(2.0);
+
+        waiting.cancel(true);
+    }
+
+    @Test
+    public void should_reject_request_after_waiting_too_long() {
+        meterRegistry = new SimpleMeterRegistry();
+        subject = new ProvisioningAdmissionControl(meterRegistry, 1, 1, Duration.ofMillis(10), Duration.ofSeconds(30));
+        subject.admit(SENDER);
+
+        UUID other = UUID.randomUUID();
+        assertThatThrownBy(() -> subject.admit(other)).isInstanceOf(ProvisioningException.ServiceUnavailable.class);
+
+        // The rejected sender can retry later
+        assertThat(meterRegistry.get("rpkicore.rfc6492.admission.in.flight").gauge().value()).isEqualTo(1.0);
+    }
+}
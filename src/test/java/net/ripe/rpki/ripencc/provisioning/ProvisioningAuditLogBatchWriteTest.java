@@ -0,0 +1,71 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
+import net.ripe.rpki.commons.provisioning.payload.AbstractProvisioningPayload;
+import net.ripe.rpki.commons.provisioning.payload.error.NotPerformedError;
+import net.ripe.rpki.commons.provisioning.payload.error.RequestNotPerformedResponsePayloadBuilder;
+import net.ripe.rpki.commons.provisioning.payload.revocation.request.CertificateRevocationRequestPayloadBuilder;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.ProvisioningAuditLogEntity;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs against the default configuration, so it checks which message types are written as part of the request and
+ * which are written by the asynchronous batch writer.
+ */
+public class ProvisioningAuditLogBatchWriteTest extends CertificationDomainTestCase {
+
+    private static final UUID TEST_USER_UUID = UUID.fromString("6e80bc78-7f56-407a-be41-3d3f76af2919");
+
+    @Inject
+    private ProvisioningAuditLogService subject;
+
+    @Test
+    public void should_write_revocation_request_as_part_of_request() {
+        ProvisioningAuditLogEntity entry = entry(new CertificateRevocationRequestPayloadBuilder().build());
+
+        inTx(() -> {
+            subject.log(entry, new byte[] {5, 6});
+            assertThat(entityManager.contains(entry)).isTrue();
+        });
+
+        assertThat(countEntries(entry.getEntryUuid())).isOne();
+    }
+
+    @Test
+    public void should_write_error_response_using_batch_writer() throws InterruptedException {
+        ProvisioningAuditLogEntity entry = entry(new RequestNotPerformedResponsePayloadBuilder().withError(NotPerformedError.VERSION_NUMBER_ERROR).build());
+
+        inTx(() -> {
+            subject.log(entry, new byte[] {5, 6});
+            // Not written as part of the request
+            assertThat(entityManager.contains(entry)).isFalse();
+        });
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (countEntries(entry.getEntryUuid()) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(countEntries(entry.getEntryUuid())).isOne();
+    }
+
+    private static ProvisioningAuditLogEntity entry(AbstractProvisioningPayload payload) {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(payload);
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        return new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+    }
+
+    private long countEntries(UUID entryUuid) {
+        return withTx(() -> entityManager.createQuery("SELECT COUNT(pal) FROM ProvisioningAuditLogEntity pal WHERE pal.entryUuid = :entryUuid", Long.class)
+            .setParameter("entryUuid", entryUuid)
+            .getSingleResult());
+    }
+}
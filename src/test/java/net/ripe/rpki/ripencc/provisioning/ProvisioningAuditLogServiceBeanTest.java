@@ -1,6 +1,7 @@
 package net.ripe.rpki.ripencc.provisioning;
 
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
+import net.ripe.rpki.commons.provisioning.payload.PayloadMessageType;
 import net.ripe.rpki.commons.provisioning.payload.list.request.ResourceClassListQueryPayloadBuilder;
 import net.ripe.rpki.commons.provisioning.payload.revocation.request.CertificateRevocationRequestPayloadBuilder;
 import net.ripe.rpki.domain.ProvisioningAuditLogEntity;
@@ -15,12 +16,14 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,12 +35,15 @@ public class ProvisioningAuditLogServiceBeanTest {
 
     private EntityManager entityManager;
 
+    private ProvisioningAuditLogWriter asyncWriter;
+
     private static final UUID TEST_USER_UUID = UUID.fromString("6e80bc78-7f56-407a-be41-3d3f76af2919");
 
     @Before
     public void setUp() {
         entityManager = mock(EntityManager.class);
-        provisioningAuditLogServiceBean = new ProvisioningAuditLogServiceBean(entityManager);
+        asyncWriter = mock(ProvisioningAuditLogWriter.class);
+        provisioningAuditLogServiceBean = new ProvisioningAuditLogServiceBean(entityManager, asyncWriter, EnumSet.noneOf(PayloadMessageType.class));
     }
 
     @SuppressWarnings("unchecked")
@@ -96,4 +102,47 @@ public class ProvisioningAuditLogServiceBeanTest {
         verify(logEntity, times(0)).getId();
         verify(entityManager, times(1)).persist(any(ProvisioningAuditLogEntity.class));
     }
+
+    @Test
+    public void testLoggingAsyncMessageTypeIsQueued() {
+        provisioningAuditLogServiceBean = new ProvisioningAuditLogServiceBean(entityManager, asyncWriter, EnumSet.of(PayloadMessageType.list));
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new ResourceClassListQueryPayloadBuilder().build());
+        ProvisioningAuditLogEntity logEntity = new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+        final byte[] request = "<?xml version='1.0' encoding='UTF-8'?><bla></bla>".getBytes(StandardCharsets.UTF_8);
+        when(asyncWriter.offer(logEntity, request)).thenReturn(true);
+
+        provisioningAuditLogServiceBean.log(logEntity, request);
+
+        verify(asyncWriter).offer(logEntity, request);
+        verify(entityManager, times(0)).persist(any(ProvisioningAuditLogEntity.class));
+    }
+
+    @Test
+    public void testLoggingSynchronouslyWhenAsyncQueueIsFull() {
+        provisioningAuditLogServiceBean = new ProvisioningAuditLogServiceBean(entityManager, asyncWriter, EnumSet.of(PayloadMessageType.revoke));
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        ProvisioningAuditLogEntity logEntity = new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+        final byte[] request = "<?xml version='1.0' encoding='UTF-8'?><bla></bla>".getBytes(StandardCharsets.UTF_8);
+        when(asyncWriter.offer(logEntity, request)).thenReturn(false);
+
+        provisioningAuditLogServiceBean.log(logEntity, request);
+
+        verify(entityManager, times(1)).persist(logEntity);
+    }
+
+    @Test
+    public void testSynchronousMessageTypeIsNotQueued() {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        ProvisioningAuditLogEntity logEntity = new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+
+        provisioningAuditLogServiceBean.log(logEntity, new byte[] {5, 6});
+
+        verify(asyncWriter, never()).offer(any(), any());
+        verify(entityManager, times(1)).persist(logEntity);
+    }
 }
@@ -0,0 +1,140 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
+import net.ripe.rpki.commons.provisioning.payload.list.request.ResourceClassListQueryPayloadBuilder;
+import net.ripe.rpki.commons.provisioning.payload.revocation.request.CertificateRevocationRequestPayloadBuilder;
+import net.ripe.rpki.domain.ProvisioningAuditLogEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProvisioningAuditLogWriterTest {
+
+    private static final UUID TEST_USER_UUID = UUID.fromString("6e80bc78-7f56-407a-be41-3d3f76af2919");
+    private static final byte[] REQUEST = {1, 2, 3};
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private ProvisioningAuditLogWriter subject;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        subject = new ProvisioningAuditLogWriter(jdbcTemplate, mock(PlatformTransactionManager.class), meterRegistry, 2, 10, 10);
+    }
+
+    @After
+    public void tearDown() {
+        subject.stop();
+    }
+
+    @Test
+    public void should_not_accept_entries_when_not_running() {
+        assertThat(subject.offer(revocationEntry(), REQUEST)).isFalse();
+    }
+
+    @Test
+    public void should_reject_entries_when_queue_is_full() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        subject = new ProvisioningAuditLogWriter(jdbcTemplate, mock(PlatformTransactionManager.class), meterRegistry, 2, 1, 10);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new int[] {1};
+        });
+        subject.start();
+
+        // The first entry is taken by the (blocked) writer, the next two fill the queue
+        assertThat(subject.offer(revocationEntry(), REQUEST)).isTrue();
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subject.offer(revocationEntry(), REQUEST)).isTrue();
+        assertThat(subject.offer(revocationEntry(), REQUEST)).isTrue();
+        assertThat(subject.offer(revocationEntry(), REQUEST)).isFalse();
+
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.log.rejected").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.log.queue.depth").gauge().value()).isEqualTo(2.0);
+
+        release.countDown();
+    }
+
+    @Test
+    public void should_batch_insert_persisted_entries() {
+        ProvisioningAuditLogEntity revocation = revocationEntry();
+
+        subject.write(List.of(
+            new ProvisioningAuditLogWriter.PendingEntry(revocation, REQUEST, System.nanoTime()),
+            new ProvisioningAuditLogWriter.PendingEntry(listEntry(), REQUEST, System.nanoTime()),
+            new ProvisioningAuditLogWriter.PendingEntry(revocationEntry(), REQUEST, System.nanoTime())
+        ));
+
+        ArgumentCaptor<SqlParameterSource[]> captor = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(captor.getValue()[0].getValue("entry_uuid")).isEqualTo(revocation.getEntryUuid());
+        assertThat(captor.getValue()[0].getValue("request_message_type")).isEqualTo("revoke");
+
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.log.written").tag("status", "success").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.log.lag").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_not_insert_list_entries() {
+        subject.write(List.of(new ProvisioningAuditLogWriter.PendingEntry(listEntry(), REQUEST, System.nanoTime())));
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void should_count_failed_inserts() {
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenThrow(new IllegalStateException("test"));
+
+        subject.write(List.of(new ProvisioningAuditLogWriter.PendingEntry(revocationEntry(), REQUEST, System.nanoTime())));
+
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.log.written").tag("status", "failure").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void should_write_queued_entries_in_background() {
+        subject.start();
+
+        assertThat(subject.offer(revocationEntry(), REQUEST)).isTrue();
+
+        verify(jdbcTemplate, timeout(5_000)).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    private static ProvisioningAuditLogEntity revocationEntry() {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        return new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+    }
+
+    private static ProvisioningAuditLogEntity listEntry() {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new ResourceClassListQueryPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        return new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+    }
+}
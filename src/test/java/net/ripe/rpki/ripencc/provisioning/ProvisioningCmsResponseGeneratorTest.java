@@ -0,0 +1,125 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import net.ripe.rpki.commons.crypto.util.KeyPairFactoryTest;
+import net.ripe.rpki.commons.crypto.util.KeyStoreUtilTest;
+import net.ripe.rpki.commons.crypto.util.PregeneratedKeyPairFactory;
+import net.ripe.rpki.commons.util.VersionedId;
+import net.ripe.rpki.domain.CertificateAuthorityRepository;
+import net.ripe.rpki.domain.DownStreamProvisioningCommunicator;
+import net.ripe.rpki.domain.DownStreamProvisioningSigningContext;
+import net.ripe.rpki.domain.KeyPairEntitySignInfo;
+import net.ripe.rpki.domain.ProductionCertificateAuthority;
+import net.ripe.rpki.domain.SingleUseKeyPairFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.security.auth.x500.X500Principal;
+import jakarta.persistence.LockModeType;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProvisioningCmsResponseGeneratorTest {
+
+    private static final UUID PRODUCTION_CA_UUID = UUID.fromString("a1d2b3c4-0000-4000-8000-000000000001");
+
+    private CertificateAuthorityRepository certificateAuthorityRepository;
+    private DownStreamProvisioningCommunicator communicator;
+
+    @Before
+    public void setUp() {
+        certificateAuthorityRepository = mock(CertificateAuthorityRepository.class);
+
+        DownStreamProvisioningCommunicator identityMaterial = new DownStreamProvisioningCommunicator(
+            KeyPairFactoryTest.TEST_KEY_PAIR,
+            new KeyPairEntitySignInfo(KeyStoreUtilTest.DEFAULT_KEYSTORE_PROVIDER, KeyPairFactoryTest.DEFAULT_KEYPAIR_GENERATOR_PROVIDER, KeyStoreUtilTest.DEFAULT_KEYSTORE_TYPE),
+            new X500Principal("CN=test")
+        );
+        communicator = mock(DownStreamProvisioningCommunicator.class);
+        when(communicator.createSigningContext()).thenReturn(
+            signingContext(identityMaterial, new VersionedId(1, 0)),
+            signingContext(identityMaterial, new VersionedId(1, 1))
+        );
+
+        ProductionCertificateAuthority productionCa = mock(ProductionCertificateAuthority.class);
+        when(productionCa.getMyDownStreamProvisioningCommunicator()).thenReturn(communicator);
+        when(certificateAuthorityRepository.findByTypeAndUuid(ProductionCertificateAuthority.class, PRODUCTION_CA_UUID, LockModeType.NONE)).thenReturn(productionCa);
+    }
+
+    @Test
+    public void should_reuse_signing_context_within_refresh_interval() {
+        when(certificateAuthorityRepository.findDownStreamProvisioningCommunicatorVersion(PRODUCTION_CA_UUID)).thenReturn(Optional.of(new VersionedId(1, 0)));
+        ProvisioningCmsResponseGenerator subject = subject(Duration.ofHours(1));
+
+        DownStreamProvisioningSigningContext first = subject.getSigningContext(PRODUCTION_CA_UUID);
+        DownStreamProvisioningSigningContext second = subject.getSigningContext(PRODUCTION_CA_UUID);
+
+        assertThat(second).isSameAs(first);
+        verify(certificateAuthorityRepository, times(1)).findDownStreamProvisioningCommunicatorVersion(PRODUCTION_CA_UUID);
+        verify(communicator, times(1)).createSigningContext();
+    }
+
+    @Test
+    public void should_not_reload_communicator_when_version_is_unchanged() {
+        when(certificateAuthorityRepository.findDownStreamProvisioningCommunicatorVersion(PRODUCTION_CA_UUID)).thenReturn(Optional.of(new VersionedId(1, 0)));
+        ProvisioningCmsResponseGenerator subject = subject(Duration.ZERO);
+
+        DownStreamProvisioningSigningContext first = subject.getSigningContext(PRODUCTION_CA_UUID);
+        DownStreamProvisioningSigningContext second = subject.getSigningContext(PRODUCTION_CA_UUID);
+
+        assertThat(second).isSameAs(first);
+        verify(certificateAuthorityRepository, times(2)).findDownStreamProvisioningCommunicatorVersion(PRODUCTION_CA_UUID);
+        verify(communicator, times(1)).createSigningContext();
+    }
+
+    @Test
+    public void should_reload_communicator_when_version_changed() {
+        when(certificateAuthorityRepository.findDownStreamProvisioningCommunicatorVersion(PRODUCTION_CA_UUID))
+            .thenReturn(Optional.of(new VersionedId(1, 0)), Optional.of(new VersionedId(1, 1)));
+        ProvisioningCmsResponseGenerator subject = subject(Duration.ZERO);
+
+        DownStreamProvisioningSigningContext first = subject.getSigningContext(PRODUCTION_CA_UUID);
+        DownStreamProvisioningSigningContext second = subject.getSigningContext(PRODUCTION_CA_UUID);
+
+        assertThat(first.getCommunicatorVersion()).isEqualTo(new VersionedId(1, 0));
+        assertThat(second.getCommunicatorVersion()).isEqualTo(new VersionedId(1, 1));
+        verify(communicator, times(2)).createSigningContext();
+    }
+
+    @Test
+    public void should_fail_when_identity_material_is_not_initialised() {
+        when(certificateAuthorityRepository.findDownStreamProvisioningCommunicatorVersion(PRODUCTION_CA_UUID)).thenReturn(Optional.empty());
+        ProvisioningCmsResponseGenerator subject = subject(Duration.ofHours(1));
+
+        assertThatThrownBy(() -> subject.getSigningContext(PRODUCTION_CA_UUID))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining(PRODUCTION_CA_UUID.toString());
+    }
+
+    private ProvisioningCmsResponseGenerator subject(Duration refreshInterval) {
+        return new ProvisioningCmsResponseGenerator(
+            certificateAuthorityRepository,
+            new SingleUseKeyPairFactory(PregeneratedKeyPairFactory.getInstance()),
+            mock(PlatformTransactionManager.class),
+            refreshInterval
+        );
+    }
+
+    private static DownStreamProvisioningSigningContext signingContext(DownStreamProvisioningCommunicator identityMaterial, VersionedId version) {
+        return new DownStreamProvisioningSigningContext(
+            version,
+            identityMaterial.getKeyPair(),
+            KeyPairFactoryTest.DEFAULT_KEYPAIR_GENERATOR_PROVIDER,
+            identityMaterial.getProvisioningIdentityCertificate(),
+            identityMaterial.getProvisioningCrl()
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package net.ripe.rpki.ripencc.provisioning;
 
 import com.google.common.io.Resources;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectParser;
@@ -26,7 +27,8 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @ExtendWith(MockitoExtension.class)
 public class ProvisioningCmsValidationStrategyImplTest {
-    private ProvisioningCmsValidationStrategy subject;
+    private ProvisioningCmsValidationStrategyImpl subject;
+    private SimpleMeterRegistry meterRegistry;
     @Mock
     private ProvisioningMetricsService provisioningMetricsService;
 
@@ -56,7 +58,8 @@ public class ProvisioningCmsValidationStrategyImplTest {
 
     @BeforeEach
     public void setup() {
-        subject = new ProvisioningCmsValidationStrategyImpl(provisioningMetricsService);
+        meterRegistry = new SimpleMeterRegistry();
+        subject = new ProvisioningCmsValidationStrategyImpl(provisioningMetricsService, meterRegistry);
 
         // Validity periods and signatures are not validated when reading
         ca1CmsObject = readProvisioningPDU("interop/up-down/krill-ca1-list-pdu.der");
@@ -142,4 +145,46 @@ public class ProvisioningCmsValidationStrategyImplTest {
                 .asInstanceOf(InstanceOfAssertFactories.type(ProvisioningException.BadData.class))
                 .satisfies(e -> assertThat(e.getHttpStatusCode()).isEqualTo(400));
     }
+
+    @Test
+    public void should_use_cached_validation_of_certificate_chain() {
+        DateTimeUtils.setCurrentMillisFixed(DateTime.parse("2022-01-11T12:39:46.000Z").getMillis());
+
+        subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.empty(), ca1IdCert);
+        subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.of(ca1CmsObject.getSigningTime()), ca1IdCert);
+
+        assertThat(meterRegistry.get("rpkicore.rfc6492.validation.cache").tag("result", "miss").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("rpkicore.rfc6492.validation.cache").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void should_not_use_cached_validation_for_other_identity_certificate() {
+        DateTimeUtils.setCurrentMillisFixed(DateTime.parse("2022-01-11T12:39:46.000Z").getMillis());
+        subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.empty(), ca1IdCert);
+
+        assertThatThrownBy(() -> subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.empty(), ca2IdCert))
+                .isInstanceOf(ProvisioningException.BadData.class);
+    }
+
+    @Test
+    public void should_reject_replay_when_using_cached_validation() {
+        DateTimeUtils.setCurrentMillisFixed(DateTime.parse("2022-01-11T12:39:46.000Z").getMillis());
+        subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.empty(), ca1IdCert);
+
+        assertThatThrownBy(() -> subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.of(ca1CmsObject.getSigningTime().plusHours(1)), ca1IdCert))
+                .isInstanceOf(ProvisioningException.PotentialReplayAttack.class);
+        assertThat(meterRegistry.get("rpkicore.rfc6492.validation.cache").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void should_revalidate_when_cached_certificate_chain_expired() {
+        DateTimeUtils.setCurrentMillisFixed(DateTime.parse("2022-01-11T12:39:46.000Z").getMillis());
+        subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.empty(), ca1IdCert);
+
+        DateTimeUtils.setCurrentMillisFixed(DateTime.parse("2022-01-13T12:39:46.000Z").getMillis());
+
+        assertThatThrownBy(() -> subject.validateProvisioningCmsAndIdentityCertificate(ca1CmsObject, Optional.empty(), ca1IdCert))
+                .isInstanceOf(ProvisioningException.BadData.class);
+        assertThat(meterRegistry.get("rpkicore.rfc6492.validation.cache").tag("result", "hit").counter().count()).isZero();
+    }
 }
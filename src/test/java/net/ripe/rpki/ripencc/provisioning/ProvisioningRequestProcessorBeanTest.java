@@ -230,6 +230,21 @@ public class ProvisioningRequestProcessorBeanTest {
         });
     }
 
+    @Test
+    public void should_create_already_processing_response_without_validating_request() {
+        ArgumentCaptor<AbstractProvisioningResponsePayload> captor = ArgumentCaptor.forClass(AbstractProvisioningResponsePayload.class);
+
+        subject.createAlreadyProcessingResponse(listCms);
+
+        verify(provisioningCmsResponseGenerator).createProvisioningCmsResponseObject(captor.capture());
+        assertThat(captor.getValue()).isInstanceOfSatisfying(RequestNotPerformedResponsePayload.class, payload -> {
+            assertThat(payload.getStatus()).isEqualTo(NotPerformedError.ALREADY_PROCESSING_REQUEST);
+            assertThat(payload.getRecipient()).isEqualTo(listCms.getPayload().getSender());
+            assertThat(payload.getSender()).isEqualTo(listCms.getPayload().getRecipient());
+        });
+        verifyNoInteractions(certificateAuthorityViewService, validationStrategy, provisioningCmsSigningTimeStore);
+    }
+
     @Test
     public void shouldSetTheSenderAndRecipientIntoTheResponsePayload() {
         ArgumentCaptor<DateTime> timestampCaptor = ArgumentCaptor.forClass(DateTime.class);
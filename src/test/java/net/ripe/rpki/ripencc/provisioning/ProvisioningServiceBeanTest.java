@@ -1,5 +1,6 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.rpki.commons.provisioning.ProvisioningObjectMother;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectBuilder;
@@ -15,8 +16,10 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.time.Duration;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -36,11 +39,14 @@ public class ProvisioningServiceBeanTest {
     @Mock
     private ProvisioningMetricsService provisioningMetricsService;
 
+    private ProvisioningAdmissionControl admissionControl;
+
     private ProvisioningCmsObject listCms;
 
     @Before
     public void setUp() {
-        subject = new ProvisioningServiceBean(provisioningRequestProcessor, provisioningAuditLogService, provisioningMetricsService);
+        admissionControl = new ProvisioningAdmissionControl(new SimpleMeterRegistry(), 2, 0, Duration.ZERO, Duration.ofSeconds(30));
+        subject = new ProvisioningServiceBean(provisioningRequestProcessor, provisioningAuditLogService, provisioningMetricsService, admissionControl);
         listCms = givenListResourceClassRequestCms();
     }
 
@@ -80,6 +86,31 @@ public class ProvisioningServiceBeanTest {
         verify(provisioningMetricsService).trackPayload(any(ResourceClassListResponsePayload.class));
     }
 
+    @Test
+    public void should_respond_already_processing_for_concurrent_request_from_same_sender() {
+        ProvisioningCmsObject response = mock(ProvisioningCmsObject.class);
+        when(response.getPayload()).thenReturn(new ResourceClassListResponsePayloadBuilder().build());
+        when(provisioningRequestProcessor.createAlreadyProcessingResponse(any())).thenReturn(response);
+
+        ProvisioningAdmissionControl.Admission inFlight = admissionControl.admit(UUID.fromString(listCms.getPayload().getSender()));
+        subject.processRequest(listCms.getEncoded());
+        inFlight.close();
+
+        verify(provisioningRequestProcessor).createAlreadyProcessingResponse(any());
+        verify(provisioningRequestProcessor, never()).process(any());
+    }
+
+    @Test
+    public void should_reject_request_when_overloaded() {
+        admissionControl.admit(UUID.randomUUID());
+        admissionControl.admit(UUID.randomUUID());
+
+        assertThatThrownBy(() -> subject.processRequest(listCms.getEncoded()))
+            .isInstanceOf(ProvisioningException.ServiceUnavailable.class);
+
+        verifyNoInteractions(provisioningRequestProcessor, provisioningAuditLogService);
+    }
+
     private ProvisioningCmsObject givenListResourceClassRequestCms() {
         String sender = UUID.randomUUID().toString();
         String recipient = UUID.randomUUID().toString();
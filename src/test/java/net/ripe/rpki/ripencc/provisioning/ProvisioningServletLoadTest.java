@@ -0,0 +1,161 @@
+package net.ripe.rpki.ripencc.provisioning;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.ipresource.ImmutableResourceSet;
+import net.ripe.rpki.commons.provisioning.ProvisioningObjectMother;
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectBuilder;
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectParser;
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObjectParserException;
+import net.ripe.rpki.commons.provisioning.payload.list.request.ResourceClassListQueryPayload;
+import net.ripe.rpki.commons.provisioning.payload.list.request.ResourceClassListQueryPayloadBuilder;
+import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponsePayload;
+import net.ripe.rpki.commons.provisioning.x509.ProvisioningCmsCertificateBuilderTest;
+import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificateBuilderTest;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.NonHostedCertificateAuthority;
+import net.ripe.rpki.domain.ProductionCertificateAuthority;
+import net.ripe.rpki.server.api.support.objects.CaName;
+import net.ripe.rpki.ripencc.cache.JpaResourceCacheImpl;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.inject.Inject;
+import javax.security.auth.x500.X500Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test for the up-down endpoint: sends resource class list queries for many non-hosted CAs through the
+ * provisioning servlet concurrently and reports the throughput.
+ *
+ * Skipped unless run with <code>-Dprovisioning.load.test=true</code>. The number of non-hosted CAs, threads, and
+ * the duration can be set using <code>provisioning.load.test.cas</code>, <code>provisioning.load.test.threads</code>,
+ * and <code>provisioning.load.test.duration</code> (ISO-8601 duration).
+ *
+ * Every thread only sends requests for its own non-hosted CAs in turn, so the CMS signing time for a CA never goes
+ * backwards. Use enough CAs per thread that a CA is not used twice within the same second.
+ */
+@Slf4j
+public class ProvisioningServletLoadTest extends CertificationDomainTestCase {
+
+    @Inject
+    private ProvisioningService provisioningService;
+    @Inject
+    private ProvisioningMetricsService provisioningMetricsService;
+    @Inject
+    private JpaResourceCacheImpl resourceCache;
+
+    private int threads;
+    private Duration duration;
+    private UUID productionCaUuid;
+    private final List<UUID> nonHostedCaUuids = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("set -Dprovisioning.load.test=true to run the provisioning load test", Boolean.getBoolean("provisioning.load.test"));
+
+        int cas = Integer.getInteger("provisioning.load.test.cas", 1000);
+        threads = Integer.getInteger("provisioning.load.test.threads", 8);
+        duration = Duration.parse(System.getProperty("provisioning.load.test.duration", "PT30S"));
+
+        inTx(() -> {
+            clearDatabase();
+
+            ProductionCertificateAuthority productionCa = createInitialisedProdCaWithRipeResources();
+            productionCa.setMyDownStreamProvisioningCommunicator(keyPairService.createMyIdentityMaterial(productionCa));
+            productionCaUuid = productionCa.getUuid();
+
+            for (int i = 0; i < cas; ++i) {
+                X500Principal name = new X500Principal("CN=load-test-" + i);
+                NonHostedCertificateAuthority nonHostedCa = new NonHostedCertificateAuthority(
+                    10_000L + i, name, ProvisioningIdentityCertificateBuilderTest.TEST_IDENTITY_CERT, productionCa);
+                certificateAuthorityRepository.add(nonHostedCa);
+                resourceCache.updateEntry(CaName.of(name), ImmutableResourceSet.parse("10." + (i / 256 % 256) + "." + (i % 256) + ".0/24"));
+                nonHostedCaUuids.add(nonHostedCa.getUuid());
+            }
+        });
+    }
+
+    @Test
+    public void should_measure_list_request_throughput() throws Exception {
+        ProvisioningServlet servlet = new ProvisioningServlet(provisioningService, provisioningMetricsService);
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                List<UUID> senders = new ArrayList<>();
+                for (int i = t; i < nonHostedCaUuids.size(); i += threads) {
+                    senders.add(nonHostedCaUuids.get(i));
+                }
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; System.nanoTime() < deadline; ++i) {
+                        MockHttpServletResponse response = post(servlet, listQuery(senders.get(i % senders.size())));
+                        if (response.getStatus() == 200 && isListResponse(response.getContentAsByteArray())) {
+                            succeeded.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = duration.toMillis() / 1000.0;
+        log.info("{} list requests for {} non-hosted CAs using {} threads in {}: {} requests/second, {} failed",
+            succeeded.sum(), nonHostedCaUuids.size(), threads, duration, String.format("%.1f", succeeded.sum() / seconds), failed.sum());
+        assertThat(succeeded.sum()).isPositive();
+    }
+
+    private byte[] listQuery(UUID sender) {
+        ResourceClassListQueryPayload payload = new ResourceClassListQueryPayloadBuilder().build();
+        payload.setSender(sender.toString());
+        payload.setRecipient(productionCaUuid.toString());
+        return new ProvisioningCmsObjectBuilder()
+            .withCmsCertificate(ProvisioningCmsCertificateBuilderTest.TEST_CMS_CERT.getCertificate())
+            .withCrl(ProvisioningObjectMother.CRL)
+            .withPayloadContent(payload)
+            .build(ProvisioningCmsCertificateBuilderTest.EE_KEYPAIR.getPrivate())
+            .getEncoded();
+    }
+
+    private static MockHttpServletResponse post(ProvisioningServlet servlet, byte[] body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/updown");
+        request.setContentType(ProvisioningServlet.CONTENT_TYPE);
+        request.setContent(body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        servlet.doPost(request, response);
+        return response;
+    }
+
+    private static boolean isListResponse(byte[] encoded) {
+        try {
+            ProvisioningCmsObjectParser parser = new ProvisioningCmsObjectParser();
+            parser.parseCms("response.cms", encoded);
+            return !parser.getValidationResult().hasFailures()
+                && parser.getProvisioningCmsObject().getPayload() instanceof ResourceClassListResponsePayload;
+        } catch (ProvisioningCmsObjectParserException e) {
+            return false;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.mock.web.MockHttpServletResponse;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -88,6 +89,18 @@ public class ProvisioningServletTest {
         assertThat(response.getErrorMessage()).isEqualTo(provisioningException.getDescription());
     }
 
+    @Test
+    public void should_set_retry_after_header_when_service_is_unavailable() throws Exception {
+        request.setContent(new byte[] {});
+
+        when(service.processRequest(any(byte[].class))).thenThrow(new ProvisioningException.ServiceUnavailable(Duration.ofSeconds(30)));
+
+        servlet.doPost(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("30");
+    }
+
     @Test
     @Ignore("seems this is too strict and breaks rpki.net rpkid")
     public void shouldReplyWithHttpErrorResponseIfContentTypeIsNotRpkiUpdown() throws Exception {
@@ -0,0 +1,36 @@
+package net.ripe.rpki.ripencc.support.persistence;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails a test when a scenario executes more SQL statements than expected, to catch N+1 queries. Statements that
+ * JPA defers until the transaction commits are only counted when the scenario flushes the entity manager.
+ */
+public final class StatementBudget {
+
+    private StatementBudget() {
+    }
+
+    public static void assertWithinStatementBudget(int maxStatements, Runnable scenario) {
+        getWithinStatementBudget(maxStatements, () -> {
+            scenario.run();
+            return null;
+        });
+    }
+
+    public static <T> T getWithinStatementBudget(int maxStatements, Supplier<T> scenario) {
+        StatementStatistics.Scope scope = StatementStatistics.open("test", "statement-budget");
+        T result;
+        try {
+            result = scenario.get();
+        } finally {
+            scope.close();
+        }
+        assertThat(scope.getStatements())
+            .as("number of SQL statements executed (%d rows, %s)", scope.getRows(), scope.getDuration())
+            .isLessThanOrEqualTo(maxStatements);
+        return result;
+    }
+}
@@ -0,0 +1,173 @@
+package net.ripe.rpki.ripencc.support.persistence;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static net.ripe.rpki.ripencc.support.persistence.StatementBudget.assertWithinStatementBudget;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StatementStatisticsDataSourceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private StatementStatisticsDataSource subject;
+
+    @Before
+    public void setUp() throws SQLException {
+        StatementStatistics.bindTo(meterRegistry);
+
+        DataSource dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(statement.executeUpdate()).thenReturn(5);
+        when(statement.executeBatch()).thenReturn(new int[]{1, 1, PreparedStatement.SUCCESS_NO_INFO});
+
+        subject = new StatementStatisticsDataSource(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        StatementStatistics.bindTo(null);
+    }
+
+    @Test
+    public void should_count_statements_and_rows_of_scope() throws SQLException {
+        StatementStatistics.Scope scope = StatementStatistics.open("command", "TestCommand");
+        try {
+            PreparedStatement query = subject.getConnection().prepareStatement("SELECT 1");
+            ResultSet rows = query.executeQuery();
+            assertThat(Proxy.isProxyClass(rows.getClass())).isFalse();
+            while (rows.next()) {
+                // read all rows
+            }
+            subject.getConnection().prepareStatement("UPDATE x SET y = 1").executeUpdate();
+            subject.getConnection().prepareStatement("INSERT INTO x VALUES (?)").executeBatch();
+        } finally {
+            scope.close();
+        }
+
+        assertThat(scope.getStatements()).isEqualTo(3);
+        assertThat(scope.getRows()).isEqualTo(3 + 5 + 2);
+        assertThat(meterRegistry.get("rpkicore.sql.statements").tags("kind", "command", "name", "TestCommand").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("rpkicore.sql.rows").tags("kind", "command", "name", "TestCommand").summary().totalAmount()).isEqualTo(10);
+    }
+
+    @Test
+    public void should_count_plain_and_callable_statements() throws SQLException {
+        Statement plain = mock(Statement.class);
+        CallableStatement callable = mock(CallableStatement.class);
+        when(connection.createStatement()).thenReturn(plain);
+        when(connection.prepareCall(anyString())).thenReturn(callable);
+        when(plain.executeUpdate(anyString())).thenReturn(2);
+        when(callable.execute()).thenReturn(false);
+
+        StatementStatistics.Scope scope = StatementStatistics.open("command", "TestCommand");
+        try {
+            Connection instrumented = subject.getConnection();
+            assertThat(Proxy.isProxyClass(instrumented.getClass())).isFalse();
+            instrumented.createStatement().executeUpdate("DELETE FROM x");
+            CallableStatement call = instrumented.prepareCall("{call f(?)}");
+            call.setInt(1, 42);
+            call.execute();
+        } finally {
+            scope.close();
+        }
+
+        assertThat(scope.getStatements()).isEqualTo(2);
+        assertThat(scope.getRows()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_attribute_statements_of_nested_scope_to_outer_scope() throws SQLException {
+        StatementStatistics.Scope outer = StatementStatistics.open("request", "TestController.get");
+        StatementStatistics.Scope inner = StatementStatistics.open("command", "TestCommand");
+        subject.getConnection().prepareStatement("UPDATE x SET y = 1").executeUpdate();
+        inner.close();
+        subject.getConnection().prepareStatement("UPDATE x SET y = 2").executeUpdate();
+        outer.close();
+
+        assertThat(inner.getStatements()).isOne();
+        assertThat(outer.getStatements()).isEqualTo(2);
+        assertThat(StatementStatistics.isActive()).isFalse();
+    }
+
+    @Test
+    public void should_count_statements_executed_with_scope_on_other_threads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        StatementStatistics.Scope scope = StatementStatistics.open("background", "TestService");
+        try {
+            Optional<StatementStatistics.Scope> current = StatementStatistics.current();
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; ++i) {
+                futures.add(executor.submit(() -> StatementStatistics.with(current, () -> {
+                    update("UPDATE x SET y = 1");
+                    return null;
+                })));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            scope.close();
+        }
+
+        assertThat(scope.getStatements()).isEqualTo(100);
+        assertThat(scope.getRows()).isEqualTo(500);
+    }
+
+    @Test
+    public void should_not_count_statements_outside_scope() throws SQLException {
+        subject.getConnection().prepareStatement("UPDATE x SET y = 1").executeUpdate();
+
+        assertThat(meterRegistry.find("rpkicore.sql.statements").meters()).isEmpty();
+    }
+
+    @Test
+    public void should_fail_when_statement_budget_is_exceeded() {
+        assertWithinStatementBudget(1, () -> update("UPDATE x SET y = 1"));
+
+        assertThatThrownBy(() -> assertWithinStatementBudget(1, () -> {
+            update("UPDATE x SET y = 1");
+            update("UPDATE x SET y = 2");
+        })).isInstanceOf(AssertionError.class);
+    }
+
+    private void update(String sql) {
+        try {
+            subject.getConnection().prepareStatement(sql).executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package net.ripe.rpki.ripencc.ui.daemon.health.checks;
+
+import net.ripe.rpki.services.impl.background.ResourceCertificateUpdateQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceCertificateUpdateQueueHealthCheckTest {
+
+    @Mock
+    ResourceCertificateUpdateQueue queue;
+
+    ResourceCertificateUpdateQueueHealthCheck subject;
+
+    @BeforeEach
+    public void setUp() {
+        subject = new ResourceCertificateUpdateQueueHealthCheck(queue, 100);
+    }
+
+    @Test
+    public void checkHealthyWhenEmpty() {
+        when(queue.getDepth()).thenReturn(0);
+        assertTrue(subject.check().isHealthy());
+    }
+
+    @Test
+    public void checkHealthyBelowThreshold() {
+        when(queue.getDepth()).thenReturn(100);
+        when(queue.getOldestAge()).thenReturn(Optional.of(Duration.ofMinutes(5)));
+        assertTrue(subject.check().isHealthy());
+    }
+
+    @Test
+    public void checkUnhealthyAboveThreshold() {
+        when(queue.getDepth()).thenReturn(101);
+        when(queue.getOldestAge()).thenReturn(Optional.of(Duration.ofMinutes(5)));
+        assertFalse(subject.check().isHealthy());
+    }
+}
@@ -1,15 +1,24 @@
 package net.ripe.rpki.services.impl;
 
+import com.google.common.base.Ticker;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
-import net.ripe.rpki.commons.FixedDateRule;
-import net.ripe.rpki.domain.property.PropertyEntity;
-import net.ripe.rpki.domain.property.PropertyEntityRepository;
+import net.ripe.rpki.domain.property.ActiveNodeLease;
+import net.ripe.rpki.domain.property.ActiveNodeLeaseRepository;
 import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static net.ripe.rpki.services.impl.ActiveNodeServiceBean.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.*;
@@ -17,72 +26,219 @@ import static org.mockito.Mockito.*;
 
 public class ActiveNodeServiceBeanTest {
 
-    private ActiveNodeServiceBean subject;
+    private static final Duration LEASE_DURATION = Duration.ofSeconds(60);
+    private static final String OTHER_NODE_NAME = "other-node";
 
-    private PropertyEntityRepository propertyEntityRepository;
-    private static final String TEST_ACTIVE_NODE_NAME = "active-node";
+    private ActiveNodeServiceBean subject;
 
-    @Rule
-    public FixedDateRule now = new FixedDateRule("20080501");
+    private ActiveNodeLeaseRepository leaseRepository;
+    private final AtomicLong nanos = new AtomicLong();
 
     @Before
     public void setUp() {
-        propertyEntityRepository = mock(PropertyEntityRepository.class);
-        subject = new ActiveNodeServiceBean(propertyEntityRepository, new SimpleMeterRegistry());
+        leaseRepository = mock(ActiveNodeLeaseRepository.class);
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        subject = new ActiveNodeServiceBean(leaseRepository, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+            LEASE_DURATION, Duration.ofSeconds(10), true, ticker);
     }
 
     @Test
     public void shouldReturnActiveNode() {
-        PropertyEntity propertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, TEST_ACTIVE_NODE_NAME);
-
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(propertyEntity);
+        when(leaseRepository.find()).thenReturn(Optional.of(lease(OTHER_NODE_NAME, 1)));
 
-        assertEquals(TEST_ACTIVE_NODE_NAME, subject.getActiveNodeName());
+        assertEquals(OTHER_NODE_NAME, subject.getActiveNodeName());
     }
 
     @Test
     public void shouldReturnNullForNonExistingActiveNode() {
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(null);
+        when(leaseRepository.find()).thenReturn(Optional.empty());
 
         assertNull(subject.getActiveNodeName());
     }
 
     @Test
-    public void shouldSetActiveNode() {
-        PropertyEntity propertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, "new-active-node");
+    public void shouldNotBeActiveWithoutLease() {
+        assertThat(subject.isActiveNode()).isFalse();
+        assertThat(subject.getFencingToken()).isEmpty();
+        verifyNoInteractions(leaseRepository);
+    }
+
+    @Test
+    public void shouldBecomeActiveWhenAssignedToCurrentNode() {
+        when(leaseRepository.assign(subject.getCurrentNodeName(), LEASE_DURATION)).thenReturn(lease(subject.getCurrentNodeName(), 7));
 
-        subject.setActiveNodeName("new-active-node");
+        subject.activateCurrentNode();
 
-        verify(propertyEntityRepository).add(refEq(propertyEntity));
-        verify(propertyEntityRepository, never()).merge(any(PropertyEntity.class));
+        assertThat(subject.isActiveNode()).isTrue();
+        assertThat(subject.getFencingToken()).hasValue(7);
     }
 
     @Test
-    public void shouldCompareAgainstActiveNode_inactive() {
-        PropertyEntity propertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, TEST_ACTIVE_NODE_NAME);
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(propertyEntity);
+    public void shouldBecomeInactiveWhenAssignedToOtherNode() {
+        when(leaseRepository.assign(subject.getCurrentNodeName(), LEASE_DURATION)).thenReturn(lease(subject.getCurrentNodeName(), 7));
+        when(leaseRepository.assign(OTHER_NODE_NAME, LEASE_DURATION)).thenReturn(lease(OTHER_NODE_NAME, 8));
+        subject.activateCurrentNode();
+
+        subject.setActiveNodeName(OTHER_NODE_NAME);
 
         assertThat(subject.isActiveNode()).isFalse();
     }
 
     @Test
-    public void shouldCompareAgainstActiveNode_active() {
-        PropertyEntity propertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, subject.getCurrentNodeName());
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(propertyEntity);
+    public void shouldAnswerFromMemoryUntilLeaseExpires() {
+        when(leaseRepository.assign(subject.getCurrentNodeName(), LEASE_DURATION)).thenReturn(lease(subject.getCurrentNodeName(), 7));
+        subject.activateCurrentNode();
 
+        nanos.addAndGet(LEASE_DURATION.minusSeconds(1).toNanos());
         assertThat(subject.isActiveNode()).isTrue();
+
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(subject.isActiveNode()).isFalse();
+        verify(leaseRepository, never()).find();
+    }
+
+    @Test
+    public void shouldRenewHeldLeaseOnHeartbeat() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.assign(node, LEASE_DURATION)).thenReturn(lease(node, 7));
+        when(leaseRepository.renew(node, 7, LEASE_DURATION)).thenReturn(Optional.of(lease(node, 7)));
+        subject.activateCurrentNode();
+
+        nanos.addAndGet(LEASE_DURATION.minusSeconds(1).toNanos());
+        subject.heartbeat();
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertThat(subject.getFencingToken()).hasValue(7);
+    }
+
+    @Test
+    public void shouldLoseLeaseWhenRenewalFails() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.assign(node, LEASE_DURATION)).thenReturn(lease(node, 7));
+        when(leaseRepository.renew(node, 7, LEASE_DURATION)).thenReturn(Optional.empty());
+        when(leaseRepository.find()).thenReturn(Optional.of(lease(OTHER_NODE_NAME, 8)));
+        when(leaseRepository.acquireExpired(node, LEASE_DURATION)).thenReturn(Optional.empty());
+        subject.activateCurrentNode();
+
+        subject.heartbeat();
+
+        assertThat(subject.isActiveNode()).isFalse();
     }
 
     @Test
-    public void shouldChangeExistingProperty() {
-        PropertyEntity oldPropertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, TEST_ACTIVE_NODE_NAME);
-        PropertyEntity newPropertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, "new-active-node");
+    public void shouldPickUpLeaseAssignedToCurrentNodeOnHeartbeat() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.find()).thenReturn(Optional.of(lease(node, 3)));
+        when(leaseRepository.renew(node, 3, LEASE_DURATION)).thenReturn(Optional.of(lease(node, 3)));
 
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(oldPropertyEntity);
+        subject.heartbeat();
+
+        assertThat(subject.getFencingToken()).hasValue(3);
+        verify(leaseRepository, never()).acquireExpired(anyString(), any());
+    }
+
+    @Test
+    public void shouldTakeOverExpiredLeaseOnHeartbeat() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.find()).thenReturn(Optional.of(lease(OTHER_NODE_NAME, 3)));
+        when(leaseRepository.acquireExpired(node, LEASE_DURATION)).thenReturn(Optional.of(lease(node, 4)));
+
+        subject.heartbeat();
+
+        assertThat(subject.getFencingToken()).hasValue(4);
+    }
+
+    @Test
+    public void shouldNotTakeOverWhenDisabled() {
+        subject = new ActiveNodeServiceBean(leaseRepository, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+            LEASE_DURATION, Duration.ofSeconds(10), false, Ticker.systemTicker());
+        when(leaseRepository.find()).thenReturn(Optional.of(lease(OTHER_NODE_NAME, 3)));
+
+        subject.heartbeat();
+
+        assertThat(subject.isActiveNode()).isFalse();
+        verify(leaseRepository, never()).acquireExpired(anyString(), any());
+    }
+
+    @Test
+    public void shouldKeepLeaseUntilExpiryWhenHeartbeatFails() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.assign(node, LEASE_DURATION)).thenReturn(lease(node, 7));
+        when(leaseRepository.renew(node, 7, LEASE_DURATION)).thenThrow(new IllegalStateException("database unavailable"));
+        subject.activateCurrentNode();
+
+        subject.heartbeat();
+        assertThat(subject.isActiveNode()).isTrue();
+
+        nanos.addAndGet(LEASE_DURATION.toNanos());
+        assertThat(subject.isActiveNode()).isFalse();
+    }
+
+    @Test
+    public void shouldRejectLostFencingToken() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.isHeld(node, 7)).thenReturn(true);
+        when(leaseRepository.isHeld(node, 6)).thenReturn(false);
+
+        subject.verifyFencingToken(7);
+        assertThatThrownBy(() -> subject.verifyFencingToken(6))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("fencing token 6");
+    }
+
+    @Test
+    public void shouldLockFencingTokenBeforeCheckingLease() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.isHeld(node, 7)).thenReturn(true);
+
+        subject.verifyFencingToken(7);
+
+        InOrder inOrder = inOrder(leaseRepository);
+        inOrder.verify(leaseRepository).lockFencingToken(7);
+        inOrder.verify(leaseRepository).isHeld(node, 7);
+    }
+
+    @Test
+    public void shouldVerifyFencingTokenAgainBeforeCommit() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.isHeld(node, 7)).thenReturn(true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            subject.verifyFencingToken(7);
+            subject.verifyFencingToken(7);
+            assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+
+            when(leaseRepository.isHeld(node, 7)).thenReturn(false);
+            TransactionSynchronization synchronization = TransactionSynchronizationManager.getSynchronizations().get(0);
+            assertThatThrownBy(() -> synchronization.beforeCommit(false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("fencing token 7");
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void shouldReleaseLeaseOnStop() {
+        String node = subject.getCurrentNodeName();
+        when(leaseRepository.find()).thenReturn(Optional.empty());
+        when(leaseRepository.acquireExpired(node, LEASE_DURATION)).thenReturn(Optional.of(lease(node, 4)));
+        subject.heartbeat();
+
+        subject.stop();
+
+        verify(leaseRepository).release(node, 4);
+        assertThat(subject.getFencingToken()).isEqualTo(OptionalLong.empty());
+    }
 
-        assertEquals(TEST_ACTIVE_NODE_NAME, subject.getActiveNodeName());
-        subject.setActiveNodeName("new-active-node");
-        assertEquals("new-active-node", subject.getActiveNodeName());
-        verify(propertyEntityRepository).merge(refEq(newPropertyEntity));
+    private static ActiveNodeLease lease(String owner, long fencingToken) {
+        return new ActiveNodeLease(owner, Instant.now().plus(LEASE_DURATION), fencingToken);
     }
 }
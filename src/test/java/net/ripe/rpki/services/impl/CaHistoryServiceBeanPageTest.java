@@ -0,0 +1,108 @@
+package net.ripe.rpki.services.impl;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.server.api.dto.CaHistoryPage;
+import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
+import net.ripe.rpki.server.api.dto.CertificateAuthorityHistoryItem;
+import net.ripe.rpki.server.api.dto.CommandAuditData;
+import net.ripe.rpki.server.api.dto.ProvisioningAuditData;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.inject.Inject;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Transactional
+public class CaHistoryServiceBeanPageTest extends CertificationDomainTestCase {
+    private static final long CA_ID = 456L;
+    private static final UUID CA_UUID = UUID.randomUUID();
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+
+    @Inject
+    private CaHistoryServiceBean subject;
+
+    private CertificateAuthorityData ca;
+
+    @Before
+    public void setUp() {
+        clearDatabase();
+
+        ca = mock(CertificateAuthorityData.class);
+        when(ca.getId()).thenReturn(CA_ID);
+        when(ca.getUuid()).thenReturn(CA_UUID);
+
+        for (int i = 0; i < 5; ++i) {
+            insertCommand(i, START.plusSeconds(2L * i), "command " + i);
+            insertMessage(i, START.plusSeconds(2L * i + 1), "message " + i);
+        }
+        // Same execution time as the last command
+        insertMessage(5, START.plusSeconds(8), "message 5");
+        // Other CA
+        insertCommand(6, START.plusSeconds(100), "other");
+    }
+
+    @Test
+    public void should_merge_history_newest_first() {
+        CaHistoryPage page = subject.getHistoryPage(ca, null, 100);
+
+        assertThat(page.getItems()).map(CertificateAuthorityHistoryItem::getSummary).containsExactly(
+            "message 4", "message 5", "command 4", "message 3", "command 3", "message 2", "command 2", "message 1", "command 1", "message 0", "command 0"
+        );
+        assertThat(page.getItems()).filteredOn(CommandAuditData.class::isInstance).hasSize(5);
+        assertThat(page.getItems()).filteredOn(ProvisioningAuditData.class::isInstance).hasSize(6);
+        assertThat(page.getOlderThan()).isNull();
+    }
+
+    @Test
+    public void should_page_using_cursor() {
+        List<String> summaries = new ArrayList<>();
+        String olderThan = null;
+        int pages = 0;
+        do {
+            CaHistoryPage page = subject.getHistoryPage(ca, olderThan, 3);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(3);
+            page.getItems().forEach(item -> summaries.add(item.getSummary()));
+            olderThan = page.getOlderThan();
+            pages++;
+        } while (olderThan != null);
+
+        assertThat(pages).isEqualTo(4);
+        assertThat(summaries).containsExactlyElementsOf(subject.getHistoryPage(ca, null, 100).getItems().stream().map(CertificateAuthorityHistoryItem::getSummary).toList());
+    }
+
+    @Test
+    public void should_reject_invalid_cursor() {
+        assertThatThrownBy(() -> subject.getHistoryPage(ca, "not a cursor", 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void insertCommand(long id, Instant executionTime, String summary) {
+        entityManager.createNativeQuery(
+                "INSERT INTO commandaudit (id, executiontime, principal, ca_id, commandtype, commandsummary, ca_version, commandgroup) " +
+                    "VALUES (:id, :executionTime, 'principal', :caId, 'SomeCommand', :summary, :id, 'USER')")
+            .setParameter("id", id)
+            .setParameter("executionTime", executionTime)
+            .setParameter("caId", "other".equals(summary) ? CA_ID + 1 : CA_ID)
+            .setParameter("summary", summary)
+            .executeUpdate();
+    }
+
+    private void insertMessage(long id, Instant executionTime, String summary) {
+        entityManager.createNativeQuery(
+                "INSERT INTO provisioning_audit_log (id, version, created_at, updated_at, request_message_type, principal, summary, executiontime, provisioning_cms_object, non_hosted_ca_uuid, entry_uuid) " +
+                    "VALUES (:id, 0, now(), now(), 'list', 'principal', :summary, :executionTime, '\\x00', :caUuid, gen_random_uuid())")
+            .setParameter("id", 1_000_000_000L + id)
+            .setParameter("executionTime", executionTime)
+            .setParameter("summary", summary)
+            .setParameter("caUuid", CA_UUID)
+            .executeUpdate();
+    }
+}
@@ -0,0 +1,128 @@
+package net.ripe.rpki.services.impl;
+
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.domain.property.NodeMembershipRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class CaShardServiceBeanTest {
+
+    private static final Duration MEMBERSHIP_TIMEOUT = Duration.ofSeconds(60);
+    private static final int CA_COUNT = 10_000;
+
+    private CaShardServiceBean subject;
+
+    private NodeMembershipRepository membershipRepository;
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        membershipRepository = mock(NodeMembershipRepository.class);
+        subject = createSubject(true);
+    }
+
+    @Test
+    public void shouldNotAssignCasWhenDisabled() {
+        subject = createSubject(false);
+        when(membershipRepository.findLiveNodes(MEMBERSHIP_TIMEOUT)).thenReturn(List.of(subject.getCurrentNodeName()));
+        subject.heartbeat();
+
+        assertThat(subject.isEnabled()).isFalse();
+        assertThat(subject.isAssignedToCurrentNode(1)).isFalse();
+    }
+
+    @Test
+    public void shouldNotAssignCasBeforeFirstHeartbeat() {
+        assertThat(subject.isAssignedToCurrentNode(1)).isFalse();
+    }
+
+    @Test
+    public void shouldAssignAllCasToSingleLiveNode() {
+        when(membershipRepository.findLiveNodes(MEMBERSHIP_TIMEOUT)).thenReturn(List.of(subject.getCurrentNodeName()));
+
+        subject.heartbeat();
+
+        verify(membershipRepository).heartbeat(subject.getCurrentNodeName());
+        assertThat(LongStream.range(0, CA_COUNT).allMatch(subject::isAssignedToCurrentNode)).isTrue();
+    }
+
+    @Test
+    public void shouldStopWorkingOnShardWhenHeartbeatFailsUntilTimeout() {
+        when(membershipRepository.findLiveNodes(MEMBERSHIP_TIMEOUT)).thenReturn(List.of(subject.getCurrentNodeName()));
+        subject.heartbeat();
+        doThrow(new IllegalStateException("database unavailable")).when(membershipRepository).heartbeat(anyString());
+
+        subject.heartbeat();
+        assertThat(subject.isAssignedToCurrentNode(1)).isTrue();
+
+        nanos.addAndGet(MEMBERSHIP_TIMEOUT.toNanos());
+        assertThat(subject.isAssignedToCurrentNode(1)).isFalse();
+    }
+
+    @Test
+    public void shouldSpreadCasEvenlyAcrossNodes() {
+        Map<String, Long> shardSizes = shardSizes(List.of("node-a", "node-b", "node-c", "node-d"));
+
+        assertThat(shardSizes).hasSize(4);
+        assertThat(shardSizes.values()).allSatisfy(size -> assertThat(size).isBetween(CA_COUNT / 4 / 2L, CA_COUNT / 4 * 2L));
+    }
+
+    @Test
+    public void shouldOnlyMoveCasOfLeavingNodeWhenRebalancing() {
+        CaShardServiceBean.Ring before = CaShardServiceBean.Ring.of(List.of("node-a", "node-b", "node-c"));
+        CaShardServiceBean.Ring after = CaShardServiceBean.Ring.of(List.of("node-a", "node-c"));
+
+        for (long caId = 0; caId < CA_COUNT; ++caId) {
+            if (!"node-b".equals(before.ownerOf(caId))) {
+                assertThat(after.ownerOf(caId)).isEqualTo(before.ownerOf(caId));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotAssignCasWithoutLiveNodes() {
+        assertThat(CaShardServiceBean.Ring.of(List.of()).ownerOf(1)).isNull();
+    }
+
+    @Test
+    public void shouldLeaveMembershipOnStop() {
+        when(membershipRepository.findLiveNodes(MEMBERSHIP_TIMEOUT)).thenReturn(List.of(subject.getCurrentNodeName()));
+        subject.start();
+
+        subject.stop();
+
+        verify(membershipRepository).remove(subject.getCurrentNodeName());
+        assertThat(subject.isAssignedToCurrentNode(1)).isFalse();
+    }
+
+    private CaShardServiceBean createSubject(boolean enabled) {
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        return new CaShardServiceBean(membershipRepository, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+            enabled, Duration.ofSeconds(10), MEMBERSHIP_TIMEOUT, ticker);
+    }
+
+    private static Map<String, Long> shardSizes(List<String> nodes) {
+        CaShardServiceBean.Ring ring = CaShardServiceBean.Ring.of(nodes);
+        return LongStream.range(0, CA_COUNT)
+            .mapToObj(ring::ownerOf)
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+}
@@ -0,0 +1,91 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.property.BackgroundServiceRunRequestRepository;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A run requested on a node that is not the active node is delivered to the active node through the database.
+ */
+public class AdaptiveBackgroundServiceSchedulerCrossNodeTest extends CertificationDomainTestCase {
+
+    private static final AdaptiveInterval INTERVAL = new AdaptiveInterval(Duration.ofSeconds(10), Duration.ofMinutes(5));
+    private static final TriggerKey PUBLICATION_TRIGGER = TriggerKey.triggerKey(PUBLIC_REPOSITORY_PUBLICATION_SERVICE + "Trigger");
+
+    @Inject
+    private BackgroundServiceRunRequestRepository runRequestRepository;
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private Scheduler activeScheduler;
+    private Scheduler otherScheduler;
+    private AdaptiveBackgroundServiceScheduler activeNode;
+    private AdaptiveBackgroundServiceScheduler otherNode;
+
+    @Before
+    public void setUp() throws Exception {
+        inTx(() -> entityManager.createNativeQuery("DELETE FROM background_service_run_request").executeUpdate());
+
+        activeScheduler = mock(Scheduler.class);
+        otherScheduler = mock(Scheduler.class);
+        activeNode = node(activeScheduler, true);
+        otherNode = node(otherScheduler, false);
+    }
+
+    @After
+    public void tearDown() {
+        inTx(() -> entityManager.createNativeQuery("DELETE FROM background_service_run_request").executeUpdate());
+    }
+
+    @Test
+    public void should_run_service_on_active_node_when_requested_on_other_node() throws Exception {
+        otherNode.requestPublication();
+        verify(otherScheduler, never()).rescheduleJob(any(TriggerKey.class), any(Trigger.class));
+        verify(activeScheduler, never()).rescheduleJob(any(TriggerKey.class), any(Trigger.class));
+
+        // Only the active node takes the request
+        otherNode.pollRunRequests();
+        activeNode.pollRunRequests();
+
+        verify(otherScheduler, never()).rescheduleJob(any(TriggerKey.class), any(Trigger.class));
+        verify(activeScheduler).rescheduleJob(eq(PUBLICATION_TRIGGER), any(Trigger.class));
+
+        // The request was taken
+        activeNode.pollRunRequests();
+        verify(activeScheduler).rescheduleJob(eq(PUBLICATION_TRIGGER), any(Trigger.class));
+    }
+
+    private AdaptiveBackgroundServiceScheduler node(Scheduler scheduler, boolean active) throws Exception {
+        ActiveNodeService activeNodeService = mock(ActiveNodeService.class);
+        when(activeNodeService.isActiveNode()).thenReturn(active);
+        AdaptiveBackgroundServiceScheduler node = new AdaptiveBackgroundServiceScheduler(scheduler, new SimpleMeterRegistry(), activeNodeService,
+            runRequestRepository, transactionManager, true, Duration.ofSeconds(5));
+
+        JobDetail job = JobBuilder.newJob(BackgroundJob.class).withIdentity(PUBLIC_REPOSITORY_PUBLICATION_SERVICE).storeDurably().build();
+        node.schedule(job, Date.from(Instant.now().plus(Duration.ofMinutes(5))), INTERVAL);
+        return node;
+    }
+}
@@ -0,0 +1,125 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult.Status;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult.Workload;
+import net.ripe.rpki.domain.property.BackgroundServiceRunRequestRepository;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AdaptiveBackgroundServiceSchedulerTest {
+    private static final AdaptiveInterval INTERVAL = new AdaptiveInterval(Duration.ofSeconds(10), Duration.ofMinutes(5));
+    private static final Instant NOW = Instant.parse("2024-01-01T12:00:00Z");
+
+    private Scheduler scheduler;
+    private ActiveNodeService activeNodeService;
+    private BackgroundServiceRunRequestRepository runRequestRepository;
+    private AdaptiveBackgroundServiceScheduler subject;
+
+    @Before
+    public void setUp() {
+        scheduler = mock(Scheduler.class);
+        activeNodeService = mock(ActiveNodeService.class);
+        runRequestRepository = mock(BackgroundServiceRunRequestRepository.class);
+        when(activeNodeService.isActiveNode()).thenReturn(true);
+        subject = new AdaptiveBackgroundServiceScheduler(scheduler, new SimpleMeterRegistry(), activeNodeService, runRequestRepository,
+            mock(PlatformTransactionManager.class), true, Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void shouldScheduleNextRunAfterCompletion() throws Exception {
+        JobDetail job = JobBuilder.newJob(BackgroundJob.class).withIdentity(PUBLIC_REPOSITORY_PUBLICATION_SERVICE).storeDurably().build();
+        subject.schedule(job, new Date(), INTERVAL);
+        verify(scheduler).scheduleJob(eq(job), any(Trigger.class));
+
+        subject.onStarted(PUBLIC_REPOSITORY_PUBLICATION_SERVICE);
+        subject.onCompleted(PUBLIC_REPOSITORY_PUBLICATION_SERVICE, result(Workload.IDLE));
+
+        // The fired single-shot trigger no longer exists, so it is scheduled again
+        verify(scheduler).rescheduleJob(eq(TriggerKey.triggerKey(PUBLIC_REPOSITORY_PUBLICATION_SERVICE + "Trigger")), any(Trigger.class));
+        verify(scheduler).scheduleJob(any(Trigger.class));
+    }
+
+    @Test
+    public void shouldIgnoreServicesThatAreNotScheduledAdaptively() {
+        subject.requestRun("other service");
+        subject.onCompleted("other service", result(Workload.IDLE));
+
+        verifyNoInteractions(scheduler, runRequestRepository);
+    }
+
+    @Test
+    public void shouldDeliverRequestFromOtherNodeToActiveNode() throws Exception {
+        JobDetail job = JobBuilder.newJob(BackgroundJob.class).withIdentity(PUBLIC_REPOSITORY_PUBLICATION_SERVICE).storeDurably().build();
+        subject.schedule(job, Date.from(Instant.now().plus(Duration.ofMinutes(5))), INTERVAL);
+        when(activeNodeService.isActiveNode()).thenReturn(false);
+
+        subject.requestPublication();
+        subject.pollRunRequests();
+
+        verify(runRequestRepository).request(PUBLIC_REPOSITORY_PUBLICATION_SERVICE);
+        verify(runRequestRepository, never()).takeRequested();
+        verify(scheduler, never()).rescheduleJob(any(TriggerKey.class), any(Trigger.class));
+
+        when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(runRequestRepository.takeRequested()).thenReturn(List.of(PUBLIC_REPOSITORY_PUBLICATION_SERVICE, "other service"));
+        subject.pollRunRequests();
+
+        verify(scheduler).rescheduleJob(eq(TriggerKey.triggerKey(PUBLIC_REPOSITORY_PUBLICATION_SERVICE + "Trigger")), any(Trigger.class));
+    }
+
+    @Test
+    public void shouldAdaptIntervalToWorkload() {
+        AdaptiveBackgroundServiceScheduler.ServiceSchedule schedule = new AdaptiveBackgroundServiceScheduler.ServiceSchedule("service", INTERVAL, NOW);
+
+        assertThat(schedule.completed(result(Workload.IDLE), NOW)).isEqualTo(NOW.plusSeconds(20));
+        assertThat(schedule.completed(result(Workload.IDLE), NOW)).isEqualTo(NOW.plusSeconds(40));
+        assertThat(schedule.completed(result(Workload.DID_WORK), NOW)).isEqualTo(NOW.plusSeconds(20));
+        assertThat(schedule.completed(result(Workload.BACKLOG), NOW)).isEqualTo(NOW.plusSeconds(10));
+    }
+
+    @Test
+    public void shouldMoveNextRunForwardOnRequest() {
+        AdaptiveBackgroundServiceScheduler.ServiceSchedule schedule = new AdaptiveBackgroundServiceScheduler.ServiceSchedule("service", INTERVAL, NOW);
+        schedule.completed(result(Workload.IDLE), NOW);
+
+        assertThat(schedule.requestRun(NOW.plusSeconds(1))).hasValue(NOW.plusSeconds(1));
+        // Coalesced with the run that is already due
+        assertThat(schedule.requestRun(NOW.plusSeconds(2))).isEmpty();
+    }
+
+    @Test
+    public void shouldRunAgainWhenRequestedWhileRunning() {
+        AdaptiveBackgroundServiceScheduler.ServiceSchedule schedule = new AdaptiveBackgroundServiceScheduler.ServiceSchedule("service", INTERVAL, NOW);
+        schedule.started();
+
+        assertThat(schedule.requestRun(NOW)).isEmpty();
+        assertThat(schedule.completed(result(Workload.IDLE), NOW.plusSeconds(5))).isEqualTo(NOW.plusSeconds(5));
+
+        schedule.started();
+        assertThat(schedule.completed(result(Workload.IDLE), NOW.plusSeconds(6))).isEqualTo(NOW.plusSeconds(6 + 40));
+    }
+
+    private static BackgroundServiceExecutionResult result(Workload workload) {
+        return new BackgroundServiceExecutionResult(100, 100, Status.SUCCESS, workload);
+    }
+}
@@ -0,0 +1,57 @@
+package net.ripe.rpki.services.impl.background;
+
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult.Status;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult.Workload;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdaptiveIntervalTest {
+    private final AdaptiveInterval subject = new AdaptiveInterval(Duration.ofSeconds(10), Duration.ofMinutes(5));
+
+    @Test
+    public void shouldBackOffAfterIdleRun() {
+        assertThat(subject.next(Duration.ofSeconds(10), result(Status.SUCCESS, Workload.IDLE))).isEqualTo(Duration.ofSeconds(20));
+        assertThat(subject.next(Duration.ofMinutes(4), result(Status.SUCCESS, Workload.IDLE))).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void shouldSpeedUpAfterRunThatDidWork() {
+        assertThat(subject.next(Duration.ofMinutes(1), result(Status.SUCCESS, Workload.DID_WORK))).isEqualTo(Duration.ofSeconds(30));
+        assertThat(subject.next(Duration.ofSeconds(15), result(Status.SUCCESS, Workload.DID_WORK))).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void shouldRunAtMinimumIntervalWithBacklog() {
+        assertThat(subject.next(Duration.ofMinutes(5), result(Status.SUCCESS, Workload.BACKLOG))).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void shouldKeepIntervalWhenWorkloadIsUnknownOrRunDidNotSucceed() {
+        Duration current = Duration.ofMinutes(1);
+        assertThat(subject.next(current, result(Status.SUCCESS, Workload.UNKNOWN))).isEqualTo(current);
+        assertThat(subject.next(current, result(Status.FAILURE, Workload.IDLE))).isEqualTo(current);
+        assertThat(subject.next(current, result(Status.SKIPPED, Workload.DID_WORK))).isEqualTo(current);
+    }
+
+    @Test
+    public void shouldNotRunMoreOftenThanTheRunTakes() {
+        BackgroundServiceExecutionResult slowRun = new BackgroundServiceExecutionResult(45_000, 45_000, Status.SUCCESS, Workload.DID_WORK);
+
+        assertThat(subject.next(Duration.ofMinutes(1), slowRun)).isEqualTo(Duration.ofSeconds(45));
+    }
+
+    @Test
+    public void shouldRejectInvalidBounds() {
+        assertThatThrownBy(() -> new AdaptiveInterval(Duration.ZERO, Duration.ofMinutes(1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AdaptiveInterval(Duration.ofMinutes(2), Duration.ofMinutes(1))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BackgroundServiceExecutionResult result(Status status, Workload workload) {
+        return new BackgroundServiceExecutionResult(100, 100, status, workload);
+    }
+}
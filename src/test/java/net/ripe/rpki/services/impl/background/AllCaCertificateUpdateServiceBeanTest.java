@@ -4,6 +4,7 @@ import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.CaUpdateNeededRepository;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.UpdateAllIncomingResourceCertificatesCommand;
 import net.ripe.rpki.server.api.configuration.RepositoryConfiguration;
@@ -16,14 +17,18 @@ import net.ripe.rpki.server.api.services.command.CommandService;
 import net.ripe.rpki.server.api.services.command.CommandStatus;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.CaShardService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionOperations;
 
 import jakarta.persistence.EntityNotFoundException;
 import javax.security.auth.x500.X500Principal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -65,14 +70,19 @@ public class AllCaCertificateUpdateServiceBeanTest {
     @Mock
     private RepositoryConfiguration repositoryConfiguration;
 
+    @Mock
+    private CaUpdateNeededRepository caUpdateNeededRepository;
+
     @Before
     public void setUp() {
-        subject = new AllCaCertificateUpdateServiceBean(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()), caViewService, commandService, resourceCache, repositoryConfiguration, 1000, new SimpleMeterRegistry());
+        subject = new AllCaCertificateUpdateServiceBean(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()), caViewService, commandService, resourceCache, repositoryConfiguration,
+            caUpdateNeededRepository, TransactionOperations.withoutTransaction(), 1000, true, Duration.ofDays(1), new SimpleMeterRegistry());
 
         when(repositoryConfiguration.getAllResourcesCaPrincipal()).thenReturn(ALL_RESOURCES_CA_NAME);
         when(repositoryConfiguration.getProductionCaPrincipal()).thenReturn(PRODUCTION_CA_NAME);
 
         when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.of(1));
         when(commandService.execute(isA(CertificateAuthorityCommand.class))).thenReturn(CommandStatus.create());
 
         CertificateAuthorityData allResourcesCaMock = mock(CertificateAuthorityData.class);
@@ -157,6 +167,76 @@ public class AllCaCertificateUpdateServiceBeanTest {
         }
     }
 
+    @Test
+    public void should_only_update_marked_cas_after_full_sweep() {
+        when(caViewService.findAllChildrenForCa(PRODUCTION_CA_NAME)).thenReturn(Arrays.asList(MEMBER_CA_1, MEMBER_CA_2));
+        subject.execute(Collections.emptyMap());
+        clearInvocations(commandService);
+
+        Instant requestedAt = Instant.now();
+        when(caUpdateNeededRepository.findUpdateNeeded()).thenReturn(Map.of(MEMBER_CA_1.getId(), requestedAt));
+
+        subject.execute(Collections.emptyMap());
+
+        verify(caUpdateNeededRepository).markIncomingCertificatesExpiringBefore(any());
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_1.getVersionedId(), Integer.MAX_VALUE));
+        verify(commandService, never()).execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_2.getVersionedId(), Integer.MAX_VALUE));
+        verify(caUpdateNeededRepository).remove(MEMBER_CA_1.getId(), requestedAt);
+    }
+
+    @Test
+    public void should_do_nothing_when_no_cas_are_marked() {
+        subject.execute(Collections.emptyMap());
+        clearInvocations(commandService);
+
+        subject.execute(Collections.emptyMap());
+
+        verifyNoInteractions(commandService);
+    }
+
+    @Test
+    public void should_keep_mark_when_update_fails() {
+        when(caViewService.findAllChildrenForCa(PRODUCTION_CA_NAME)).thenReturn(Collections.singletonList(MEMBER_CA_1));
+        subject.execute(Collections.emptyMap());
+
+        when(caUpdateNeededRepository.findUpdateNeeded()).thenReturn(Map.of(MEMBER_CA_1.getId(), Instant.now()));
+        when(commandService.execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_1.getVersionedId(), Integer.MAX_VALUE)))
+            .thenThrow(new RuntimeException("test"));
+
+        subject.execute(Collections.emptyMap());
+
+        verify(caUpdateNeededRepository, never()).remove(anyLong(), any());
+    }
+
+    @Test
+    public void should_update_all_cas_when_full_sweep_is_requested() {
+        when(caViewService.findAllChildrenForCa(PRODUCTION_CA_NAME)).thenReturn(Arrays.asList(MEMBER_CA_1, MEMBER_CA_2));
+        subject.execute(Collections.emptyMap());
+        clearInvocations(commandService);
+
+        subject.execute(Map.of(AllCaCertificateUpdateServiceBean.FULL_SWEEP_PARAMETER, "true"));
+
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_1.getVersionedId(), Integer.MAX_VALUE));
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_2.getVersionedId(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void should_only_update_member_cas_in_shard_of_current_node() {
+        CaShardService caShardService = mock(CaShardService.class);
+        when(caShardService.isEnabled()).thenReturn(true);
+        when(caShardService.isAssignedToCurrentNode(MEMBER_CA_1.getId())).thenReturn(true);
+        when(caShardService.isAssignedToCurrentNode(MEMBER_CA_2.getId())).thenReturn(false);
+        subject = new AllCaCertificateUpdateServiceBean(new BackgroundTaskRunner(activeNodeService, caShardService, new SimpleMeterRegistry()), caViewService, commandService, resourceCache, repositoryConfiguration,
+            caUpdateNeededRepository, TransactionOperations.withoutTransaction(), 1000, true, Duration.ofDays(1), new SimpleMeterRegistry());
+        when(caViewService.findAllChildrenForCa(PRODUCTION_CA_NAME)).thenReturn(Arrays.asList(MEMBER_CA_1, MEMBER_CA_2));
+
+        subject.execute(Collections.emptyMap());
+
+        verify(commandService, times(2)).execute(new UpdateAllIncomingResourceCertificatesCommand(PRODUCTION_CA.getVersionedId(), Integer.MAX_VALUE));
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_1.getVersionedId(), Integer.MAX_VALUE));
+        verify(commandService, never()).execute(new UpdateAllIncomingResourceCertificatesCommand(MEMBER_CA_2.getVersionedId(), Integer.MAX_VALUE));
+    }
+
     private Map<CertificateAuthorityData, Collection<CertificateAuthorityData>> generateTree(CertificateAuthorityData parent, int maxDepth) {
         if (maxDepth == 0) {
             return Collections.emptyMap();
@@ -0,0 +1,113 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.FixedDateRule;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.audit.AuditPartition;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.COMMAND_AUDIT_TABLE;
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.PROVISIONING_AUDIT_LOG_TABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuditPartitionMaintenanceServiceBeanTest {
+
+    @Rule
+    public FixedDateRule fixedDateRule = new FixedDateRule(new DateTime(2024, 5, 15, 12, 0, 0, 0, DateTimeZone.UTC).getMillis());
+
+    private static final AuditPartition LEGACY = new AuditPartition("commandaudit_legacy", null, Instant.parse("2024-06-01T00:00:00Z"));
+    private static final AuditPartition JUNE = new AuditPartition("commandaudit_p2024_06", Instant.parse("2024-06-01T00:00:00Z"), Instant.parse("2024-07-01T00:00:00Z"));
+
+    @Mock
+    private ActiveNodeService activeNodeService;
+    @Mock
+    private AuditPartitionRepository auditPartitionRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(auditPartitionRepository.createMonthlyPartition(any(), any())).thenAnswer(invocation ->
+            new AuditPartition(invocation.getArgument(0) + "_new", Instant.EPOCH, Instant.EPOCH));
+    }
+
+    @Test
+    public void should_create_missing_partitions_ahead() {
+        when(auditPartitionRepository.findPartitions(COMMAND_AUDIT_TABLE)).thenReturn(List.of(LEGACY, JUNE));
+
+        subject(false).runService(Collections.emptyMap());
+
+        verify(auditPartitionRepository, never()).createMonthlyPartition(COMMAND_AUDIT_TABLE, YearMonth.of(2024, 5));
+        verify(auditPartitionRepository, never()).createMonthlyPartition(COMMAND_AUDIT_TABLE, YearMonth.of(2024, 6));
+        verify(auditPartitionRepository).createMonthlyPartition(COMMAND_AUDIT_TABLE, YearMonth.of(2024, 7));
+        verify(auditPartitionRepository).createMonthlyPartition(COMMAND_AUDIT_TABLE, YearMonth.of(2024, 8));
+        verify(auditPartitionRepository, never()).createMonthlyPartition(COMMAND_AUDIT_TABLE, YearMonth.of(2024, 9));
+
+        // Provisioning audit log has no partitions at all
+        verify(auditPartitionRepository).createMonthlyPartition(PROVISIONING_AUDIT_LOG_TABLE, YearMonth.of(2024, 5));
+        assertThat(meterRegistry.get("rpkicore.audit.partitions").tag("table", COMMAND_AUDIT_TABLE).tag("action", "created").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void should_detach_expired_partitions() {
+        AuditPartition expired = new AuditPartition("provisioning_audit_log_p2024_02", Instant.parse("2024-02-01T00:00:00Z"), Instant.parse("2024-03-01T00:00:00Z"));
+        AuditPartition retained = new AuditPartition("provisioning_audit_log_p2024_03", Instant.parse("2024-03-01T00:00:00Z"), Instant.parse("2024-04-01T00:00:00Z"));
+        when(auditPartitionRepository.findPartitions(PROVISIONING_AUDIT_LOG_TABLE)).thenReturn(List.of(expired, retained));
+
+        subject(false).runService(Collections.emptyMap());
+
+        verify(auditPartitionRepository).detachPartition(PROVISIONING_AUDIT_LOG_TABLE, expired);
+        verify(auditPartitionRepository, never()).detachPartition(PROVISIONING_AUDIT_LOG_TABLE, retained);
+        verify(auditPartitionRepository, never()).dropPartition(any(), any());
+    }
+
+    @Test
+    public void should_drop_expired_partitions_when_configured() {
+        AuditPartition expired = new AuditPartition("provisioning_audit_log_legacy", null, Instant.parse("2024-03-01T00:00:00Z"));
+        when(auditPartitionRepository.findPartitions(PROVISIONING_AUDIT_LOG_TABLE)).thenReturn(List.of(expired));
+
+        subject(true).runService(Collections.emptyMap());
+
+        verify(auditPartitionRepository).dropPartition(PROVISIONING_AUDIT_LOG_TABLE, expired);
+        verify(auditPartitionRepository, never()).detachPartition(any(), any());
+        verify(auditPartitionRepository, never()).dropPartition(eq(COMMAND_AUDIT_TABLE), any());
+    }
+
+    private AuditPartitionMaintenanceServiceBean subject(boolean dropExpiredPartitions) {
+        // Keep three months ahead, command audit for a year and the provisioning audit log for two months
+        return new AuditPartitionMaintenanceServiceBean(
+            new BackgroundTaskRunner(activeNodeService, meterRegistry),
+            auditPartitionRepository,
+            transactionManager,
+            meterRegistry,
+            3,
+            12,
+            2,
+            dropExpiredPartitions
+        );
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.Test;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.OptionalLong;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -28,6 +29,7 @@ public class BackgroundServiceBeanTest {
     public void setUp() {
         activeNodeService = mock(ActiveNodeService.class);
         when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.of(1));
 
         subject = new MyBackgroundServiceBean(activeNodeService);
     }
@@ -59,6 +61,17 @@ public class BackgroundServiceBeanTest {
         assertEquals(1, subject.getExecutionCounter());
     }
 
+    @Test
+    public void shouldNotExecuteServiceIfActiveNodeLeaseWasLost() {
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.empty());
+        subject.stoppingLatch.countDown();
+
+        subject.execute(Collections.emptyMap());
+
+        assertEquals(0, subject.getExecutionCounter());
+        assertFalse(subject.isWaitingOrRunning());
+    }
+
     @Test
     public void shouldNotExecuteServiceIfInactive() {
         when(activeNodeService.isActiveNode()).thenReturn(false);
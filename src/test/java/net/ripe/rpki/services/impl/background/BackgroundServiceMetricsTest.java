@@ -1,6 +1,7 @@
 package net.ripe.rpki.services.impl.background;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -9,8 +10,11 @@ import org.junit.Test;
 
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
+import static net.ripe.rpki.services.impl.background.BackgroundServiceMetrics.SERVICE_QUEUE_WAIT_TIME_METRIC;
 import static net.ripe.rpki.services.impl.background.BackgroundServiceMetrics.SERVICE_RESULT_COUNTER_METRIC;
+import static net.ripe.rpki.services.impl.background.BackgroundServiceMetrics.SERVICE_RUN_TIME_METRIC;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 public class BackgroundServiceMetricsTest {
@@ -43,6 +47,19 @@ public class BackgroundServiceMetricsTest {
         assertThat(valueOfGauge("rpkicore.service.last.execution.total.duration.ms", service)).isEqualTo(job.getFullDuration());
     }
 
+    @Test
+    public void shouldTrackQueueWaitAndRunTime() {
+        String service = RandomStringUtils.randomAlphanumeric(16);
+
+        subject.trackResult(service, new BackgroundServiceExecutionResult(300, 1000, BackgroundServiceExecutionResult.Status.SUCCESS));
+
+        Timer queueWaitTime = registry.get(SERVICE_QUEUE_WAIT_TIME_METRIC).tag("service", service).timer();
+        Timer runTime = registry.get(SERVICE_RUN_TIME_METRIC).tag("service", service).timer();
+        assertThat(queueWaitTime.count()).isOne();
+        assertThat(queueWaitTime.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(700);
+        assertThat(runTime.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(300);
+    }
+
     @Test
     public void shouldTrackFailedServiceExecution() {
         String service = RandomStringUtils.randomAlphanumeric(16);
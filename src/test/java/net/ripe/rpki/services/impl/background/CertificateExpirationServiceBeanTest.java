@@ -7,11 +7,16 @@ import net.ripe.rpki.server.api.services.system.ActiveNodeService;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.Collections;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,22 +25,54 @@ public class CertificateExpirationServiceBeanTest {
 
     private ResourceCertificateRepository resourceCertificateRepository;
 
+    private SimpleMeterRegistry meterRegistry;
+
     private CertificateExpirationServiceBean subject;
 
     @Before
     public void setUp() {
         resourceCertificateRepository = mock(ResourceCertificateRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
 
-        subject = new CertificateExpirationServiceBean(new BackgroundTaskRunner(mock(ActiveNodeService.class), new SimpleMeterRegistry()), resourceCertificateRepository, new SimpleMeterRegistry());
+        subject = new CertificateExpirationServiceBean(new BackgroundTaskRunner(mock(ActiveNodeService.class), new SimpleMeterRegistry()),
+            resourceCertificateRepository, mock(PlatformTransactionManager.class), meterRegistry, 10, Duration.ofMinutes(5));
     }
 
     @Test
     public void should_expire_outgoing_resource_certificates() {
-        when(resourceCertificateRepository.expireOutgoingResourceCertificates(isA(DateTime.class)))
+        when(resourceCertificateRepository.expireOutgoingResourceCertificates(isA(DateTime.class), eq(10)))
             .thenReturn(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(0, 0, 0, 0));
 
         subject.runService(Collections.emptyMap());
 
-        verify(resourceCertificateRepository).expireOutgoingResourceCertificates(isA(DateTime.class));
+        verify(resourceCertificateRepository).expireOutgoingResourceCertificates(isA(DateTime.class), eq(10));
+    }
+
+    @Test
+    public void should_expire_in_batches_until_no_more_work() {
+        when(resourceCertificateRepository.expireOutgoingResourceCertificates(isA(DateTime.class), eq(10)))
+            .thenReturn(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(10, 2, 0, 4))
+            .thenReturn(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(3, 0, 0, 10))
+            .thenReturn(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(0, 0, 0, 1));
+
+        subject.runService(Collections.emptyMap());
+
+        verify(resourceCertificateRepository, times(3)).expireOutgoingResourceCertificates(isA(DateTime.class), eq(10));
+        assertThat(meterRegistry.get("rpkicore.expired.outgoing.resource.certificates").counter().count()).isEqualTo(13);
+        assertThat(meterRegistry.get("rpkicore.withdrawn.published.objects.due.to.expired.certificate").counter().count()).isEqualTo(15);
+        assertThat(meterRegistry.get("rpkicore.cleanup.batches").tag("job", "expire-outgoing-resource-certificates").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_stop_when_time_budget_is_used_up() {
+        subject = new CertificateExpirationServiceBean(new BackgroundTaskRunner(mock(ActiveNodeService.class), new SimpleMeterRegistry()),
+            resourceCertificateRepository, mock(PlatformTransactionManager.class), meterRegistry, 10, Duration.ZERO);
+        when(resourceCertificateRepository.expireOutgoingResourceCertificates(isA(DateTime.class), eq(10)))
+            .thenReturn(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(10, 0, 0, 0));
+
+        subject.runService(Collections.emptyMap());
+
+        verify(resourceCertificateRepository).expireOutgoingResourceCertificates(isA(DateTime.class), eq(10));
+        assertThat(meterRegistry.get("rpkicore.cleanup.budget.exceeded").tag("job", "expire-outgoing-resource-certificates").counter().count()).isEqualTo(1);
     }
 }
@@ -0,0 +1,35 @@
+package net.ripe.rpki.services.impl.background;
+
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import jakarta.inject.Inject;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not transactional: concurrent index builds can not run inside a transaction.
+public class CommandAuditSearchIndexServiceBeanTest extends CertificationDomainTestCase {
+
+    @Inject
+    private BackgroundTaskRunner backgroundTaskRunner;
+    @Inject
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Test
+    public void should_index_all_partitions() {
+        CommandAuditSearchIndexServiceBean subject = new CommandAuditSearchIndexServiceBean(backgroundTaskRunner, jdbcTemplate, Integer.MAX_VALUE);
+
+        subject.runService(Collections.emptyMap());
+
+        assertThat(subject.findUnindexedPartitions()).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT indisvalid FROM pg_index WHERE indexrelid = CAST(:index AS regclass)",
+            Map.of("index", CommandAuditSearchIndexServiceBean.PARENT_INDEX),
+            Boolean.class
+        )).isTrue();
+    }
+}
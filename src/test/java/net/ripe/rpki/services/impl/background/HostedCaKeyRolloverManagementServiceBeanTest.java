@@ -20,6 +20,7 @@ import org.mockito.Mockito;
 import javax.security.auth.x500.X500Principal;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.OptionalLong;
 import java.util.UUID;
 
 import static net.ripe.ipresource.ImmutableResourceSet.*;
@@ -55,11 +56,12 @@ public class HostedCaKeyRolloverManagementServiceBeanTest {
         subject = new HostedCaKeyRolloverManagementServiceBean(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()), certificationConfiguration, certificationService, commandService, 1000);
 
         when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.of(1));
     }
 
     @Test
     public void shouldReturnIfNoCaFound() {
-        when(certificationService.findManagedCasEligibleForKeyRoll(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(certificationService.findManagedCasEligibleForKeyRoll(any(), any(), any(), any())).thenReturn(Collections.emptyList());
 
         subject.runService(Collections.emptyMap());
 
@@ -69,7 +71,7 @@ public class HostedCaKeyRolloverManagementServiceBeanTest {
     @Test
     public void shouldSendInitialiseKeyCommandToCAs() {
         int maxAge = 365;
-        when(certificationService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), any())).thenReturn(Collections.singletonList(MEMBER_CA));
+        when(certificationService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), any(), any())).thenReturn(Collections.singletonList(MEMBER_CA));
         when(certificationConfiguration.getAutoKeyRolloverMaxAgeDays()).thenReturn(maxAge);
 
         subject.execute(Collections.emptyMap());
@@ -85,7 +87,7 @@ public class HostedCaKeyRolloverManagementServiceBeanTest {
 
     @Test
     public void shouldKeepProcessingIfProcessingACAFails() {
-        when(certificationService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), any())).thenReturn(Arrays.asList(MEMBER_CA, MEMBER_CA));
+        when(certificationService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), any(), any())).thenReturn(Arrays.asList(MEMBER_CA, MEMBER_CA));
 
         doThrow(new RuntimeException("test")).when(commandService).execute(isA(KeyManagementActivatePendingKeysCommand.class));
 
@@ -15,6 +15,7 @@ import net.ripe.rpki.server.api.services.command.CommandService;
 import net.ripe.rpki.server.api.services.command.CommandStatus;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.CaShardService;
 import org.joda.time.Duration;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +36,7 @@ import static net.ripe.rpki.server.api.dto.CertificateAuthorityType.ROOT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -76,7 +78,7 @@ public class KeyPairActivationManagementServiceBeanTest {
 
     @Test
     public void shouldReturnIfNoCaFound() {
-        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).thenReturn(Collections.emptyList());
+        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth()).thenReturn(Collections.emptyList());
 
         subject.runService(Collections.emptyMap());
 
@@ -93,7 +95,7 @@ public class KeyPairActivationManagementServiceBeanTest {
 
     @Test
     public void shouldSendActivatePendingKeyCommandToProductionCA() {
-        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).thenReturn(Collections.singletonList(PROD_CA));
+        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth()).thenReturn(List.of(List.of(PROD_CA)));
         when(configuration.getStagingPeriod()).thenReturn(Duration.standardHours(24));
         when(commandService.execute(any())).thenReturn(CommandStatus.create());
 
@@ -106,7 +108,7 @@ public class KeyPairActivationManagementServiceBeanTest {
 
     @Test
     public void shouldTriggerMemberCertificatesUpdateAfterProductionCAKeyRollover() {
-        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).thenReturn(Collections.singletonList(PROD_CA));
+        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth()).thenReturn(List.of(List.of(PROD_CA)));
         when(certificationService.findAllChildrenForCa(PROD_CA.getName())).thenReturn(Arrays.asList(MEMBER_CA, NON_HOSTED_CA));
         when(configuration.getStagingPeriod()).thenReturn(Duration.standardHours(24));
         when(commandService.execute(any())).thenReturn(CommandStatus.create());
@@ -127,4 +129,21 @@ public class KeyPairActivationManagementServiceBeanTest {
         assertTrue(capturedCommands.stream().skip(1).anyMatch(c -> NON_HOSTED_CA.getVersionedId().equals(c.getCertificateAuthorityVersionedId())));
     }
 
+    @Test
+    public void shouldOnlyActivateKeysOfCasInShardOfCurrentNode() {
+        CaShardService caShardService = mock(CaShardService.class);
+        when(caShardService.isEnabled()).thenReturn(true);
+        when(caShardService.isAssignedToCurrentNode(PROD_CA.getId())).thenReturn(false);
+        when(caShardService.isAssignedToCurrentNode(MEMBER_CA.getId())).thenReturn(true);
+        subject = new KeyPairActivationManagementServiceBean(new BackgroundTaskRunner(activeNodeService, caShardService, new SimpleMeterRegistry()), certificationService, commandService, resourceCache, configuration);
+        when(certificationService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsGroupedByDepth()).thenReturn(List.of(List.of(PROD_CA), List.of(MEMBER_CA)));
+        when(configuration.getStagingPeriod()).thenReturn(Duration.standardHours(24));
+        when(commandService.execute(any())).thenReturn(CommandStatus.create());
+
+        subject.runService(Collections.emptyMap());
+
+        ArgumentCaptor<KeyManagementActivatePendingKeysCommand> commandCaptor = ArgumentCaptor.forClass(KeyManagementActivatePendingKeysCommand.class);
+        verify(commandService).execute(commandCaptor.capture());
+        assertEquals(MEMBER_CA.getVersionedId(), commandCaptor.getValue().getCertificateAuthorityVersionedId());
+    }
 }
@@ -9,11 +9,14 @@ import net.ripe.rpki.server.api.dto.ManagedCertificateAuthorityData;
 import net.ripe.rpki.server.api.services.command.CommandService;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.server.api.services.system.CaShardService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
 
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
@@ -35,6 +38,7 @@ public class KeyPairRevocationManagementServiceBeanTest {
         subject = new KeyPairRevocationManagementServiceBean(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()), certificationService, commandService);
 
         when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.of(1));
     }
 
     @Test
@@ -60,4 +64,28 @@ public class KeyPairRevocationManagementServiceBeanTest {
         verify(commandService).execute(captor.capture());
         assertEquals(expectedVersionedId, captor.getValue().getCertificateAuthorityVersionedId());
     }
+
+    @Test
+    public void shouldOnlyRevokeKeysOfCasInShardWhenSharded() {
+        ActiveNodeService activeNodeService = mock(ActiveNodeService.class);
+        CaShardService caShardService = mock(CaShardService.class);
+        when(caShardService.isEnabled()).thenReturn(true);
+        when(caShardService.isAssignedToCurrentNode(1L)).thenReturn(true);
+        subject = new KeyPairRevocationManagementServiceBean(new BackgroundTaskRunner(activeNodeService, caShardService, new SimpleMeterRegistry()), certificationService, commandService);
+
+        ManagedCertificateAuthorityData assigned = mock(ManagedCertificateAuthorityData.class);
+        given(assigned.getId()).willReturn(1L);
+        given(assigned.getVersionedId()).willReturn(VersionedId.parse("1:1"));
+        ManagedCertificateAuthorityData other = mock(ManagedCertificateAuthorityData.class);
+        given(other.getId()).willReturn(2L);
+        given(certificationService.findManagedCasEligibleForKeyRevocation()).willReturn(List.of(assigned, other));
+
+        // Runs on every node, not only on the active node
+        assertTrue(subject.isActive());
+        subject.execute(Collections.emptyMap());
+
+        ArgumentCaptor<KeyManagementRevokeOldKeysCommand> captor = ArgumentCaptor.forClass(KeyManagementRevokeOldKeysCommand.class);
+        verify(commandService).execute(captor.capture());
+        assertEquals(VersionedId.parse("1:1"), captor.getValue().getCertificateAuthorityVersionedId());
+    }
 }
@@ -0,0 +1,192 @@
+package net.ripe.rpki.services.impl.background;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.application.CertificationConfiguration;
+import net.ripe.rpki.commons.util.VersionedId;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.HostedCertificateAuthority;
+import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.KeyManagementActivatePendingKeysCommand;
+import net.ripe.rpki.server.api.commands.KeyManagementInitiateRollCommand;
+import net.ripe.rpki.server.api.commands.KeyManagementRevokeOldKeysCommand;
+import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
+import net.ripe.rpki.server.api.dto.KeyPairData;
+import net.ripe.rpki.server.api.dto.KeyPairStatus;
+import net.ripe.rpki.server.api.dto.ManagedCertificateAuthorityData;
+import net.ripe.rpki.server.api.services.command.CommandService;
+import net.ripe.rpki.server.api.services.command.CommandStatus;
+import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.security.auth.x500.X500Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.ripe.ipresource.ImmutableResourceSet.ALL_PRIVATE_USE_RESOURCES;
+import static net.ripe.rpki.server.api.dto.CertificateAuthorityType.HOSTED;
+import static net.ripe.rpki.server.api.dto.CertificateAuthorityType.ROOT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class KeyRollCampaignServiceBeanTest {
+    private static final int OPERATIONS_PER_MINUTE = 10;
+    private static final Duration STAGING_PERIOD = Duration.standardHours(24);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CertificateAuthorityViewService caViewService;
+    private CommandService commandService;
+    private RateLimiter rateLimiter;
+    private KeyRollCampaignServiceBean subject;
+
+    @Before
+    public void setUp() {
+        ActiveNodeService activeNodeService = mock(ActiveNodeService.class);
+        when(activeNodeService.isActiveNode()).thenReturn(true);
+        when(activeNodeService.getFencingToken()).thenReturn(OptionalLong.of(1));
+        caViewService = mock(CertificateAuthorityViewService.class);
+        commandService = mock(CommandService.class);
+        when(commandService.execute(any())).thenReturn(CommandStatus.create());
+        CertificationConfiguration configuration = mock(CertificationConfiguration.class);
+        when(configuration.getStagingPeriod()).thenReturn(STAGING_PERIOD);
+
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        rateLimiter = mock(RateLimiter.class);
+        subject = new KeyRollCampaignServiceBean(new BackgroundTaskRunner(activeNodeService, meterRegistry), configuration,
+            caViewService, commandService, meterRegistry, new OperationBudget(OPERATIONS_PER_MINUTE, ticker), rateLimiter);
+
+        when(caViewService.findManagedCasEligibleForKeyRevocation()).thenReturn(Collections.emptyList());
+        when(caViewService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).thenReturn(Collections.emptyList());
+        when(caViewService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), eq(Optional.empty()))).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void shouldInitiateKeyRollsWithinBudget() {
+        when(caViewService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), eq(Optional.empty()))).thenReturn(hostedCas(1, 25));
+
+        subject.execute(Collections.emptyMap());
+        assertThat(executedCommands(KeyManagementInitiateRollCommand.class)).hasSize(OPERATIONS_PER_MINUTE);
+
+        // Half a minute later half of the budget is available again
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        subject.execute(Collections.emptyMap());
+        assertThat(executedCommands(KeyManagementInitiateRollCommand.class)).hasSize(OPERATIONS_PER_MINUTE + OPERATIONS_PER_MINUTE / 2);
+    }
+
+    @Test
+    public void shouldPaceCommandsWithRateLimiter() {
+        when(caViewService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), eq(Optional.empty()))).thenReturn(hostedCas(1, 25));
+
+        subject.execute(Collections.emptyMap());
+
+        // Every command waits for the rate limiter, instead of executing the budget of a minute at once
+        verify(rateLimiter, times(OPERATIONS_PER_MINUTE)).acquire();
+        assertThat(executedCommands(KeyManagementInitiateRollCommand.class)).hasSize(OPERATIONS_PER_MINUTE);
+    }
+
+    @Test
+    public void shouldFinishCasInFlightBeforeStartingNewOnes() {
+        List<ManagedCertificateAuthorityData> withOldKeys = hostedCas(1, 6);
+        List<CertificateAuthorityData> withPendingKeys = new ArrayList<>(hostedCasWithPendingKey(100, 6, DateTime.now().minus(STAGING_PERIOD).minusHours(1)));
+        when(caViewService.findManagedCasEligibleForKeyRevocation()).thenReturn(withOldKeys);
+        when(caViewService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).thenReturn(withPendingKeys);
+        when(caViewService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), eq(Optional.empty()))).thenReturn(hostedCas(200, 10));
+
+        subject.execute(Collections.emptyMap());
+
+        assertThat(executedCommands(KeyManagementRevokeOldKeysCommand.class)).hasSize(6);
+        assertThat(executedCommands(KeyManagementActivatePendingKeysCommand.class)).hasSize(4);
+        assertThat(executedCommands(KeyManagementInitiateRollCommand.class)).isEmpty();
+        assertThat(meterRegistry.get("rpkicore.keyroll.campaign.completed").tag("stage", "revoke").counter().count()).isEqualTo(6);
+        assertThat(meterRegistry.get("rpkicore.keyroll.campaign.waiting").tag("stage", "activate").gauge().value()).isEqualTo(2);
+        // 2 CAs to activate and 10 to initiate at 10 operations per minute
+        assertThat(meterRegistry.get("rpkicore.keyroll.campaign.eta.seconds").gauge().value()).isEqualTo((2 * 2 + 10 * 3) * 6.0);
+    }
+
+    @Test
+    public void shouldNotActivateKeysDuringStagingPeriod() {
+        List<CertificateAuthorityData> staging = new ArrayList<>(hostedCasWithPendingKey(1, 3, DateTime.now().minusHours(1)));
+        when(caViewService.findAllManagedCertificateAuthoritiesWithPendingKeyPairsOrderedByDepth()).thenReturn(staging);
+
+        subject.execute(Collections.emptyMap());
+
+        verifyNoInteractions(commandService);
+    }
+
+    @Test
+    public void shouldNotUseBudgetForCommandsWithoutEffect() {
+        CommandStatus noEffect = CommandStatus.create();
+        noEffect.setHasEffect(false);
+        when(commandService.execute(any(KeyManagementRevokeOldKeysCommand.class))).thenReturn(noEffect);
+        when(caViewService.findManagedCasEligibleForKeyRevocation()).thenReturn(hostedCas(1, 5));
+        when(caViewService.findManagedCasEligibleForKeyRoll(eq(HostedCertificateAuthority.class), any(), eq(Optional.empty()))).thenReturn(hostedCas(100, 20));
+
+        subject.execute(Collections.emptyMap());
+
+        assertThat(executedCommands(KeyManagementRevokeOldKeysCommand.class)).hasSize(5);
+        assertThat(executedCommands(KeyManagementInitiateRollCommand.class)).hasSize(OPERATIONS_PER_MINUTE);
+    }
+
+    @Test
+    public void shouldOnlyRollHostedCas() {
+        ManagedCertificateAuthorityData root = new ManagedCertificateAuthorityData(new VersionedId(1L), new X500Principal("CN=root"),
+            UUID.randomUUID(), null, ROOT, ALL_PRIVATE_USE_RESOURCES, Collections.emptyList());
+        when(caViewService.findManagedCasEligibleForKeyRevocation()).thenReturn(List.of(root));
+
+        subject.execute(Collections.emptyMap());
+
+        verifyNoInteractions(commandService);
+    }
+
+    private <T extends CertificateAuthorityCommand> List<T> executedCommands(Class<T> type) {
+        ArgumentCaptor<CertificateAuthorityCommand> captor = ArgumentCaptor.forClass(CertificateAuthorityCommand.class);
+        verify(commandService, atLeast(0)).execute(captor.capture());
+        return captor.getAllValues().stream().filter(type::isInstance).map(type::cast).toList();
+    }
+
+    private static List<ManagedCertificateAuthorityData> hostedCas(long firstId, int count) {
+        List<ManagedCertificateAuthorityData> result = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; ++id) {
+            result.add(hostedCa(id, Collections.emptyList()));
+        }
+        return result;
+    }
+
+    private static List<ManagedCertificateAuthorityData> hostedCasWithPendingKey(long firstId, int count, DateTime pendingSince) {
+        List<ManagedCertificateAuthorityData> result = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; ++id) {
+            KeyPairData pendingKey = new KeyPairData(id, "keystore", KeyPairStatus.PENDING, pendingSince,
+                Map.of(KeyPairStatus.PENDING, pendingSince), null, "crl", "manifest", true);
+            result.add(hostedCa(id, List.of(pendingKey)));
+        }
+        return result;
+    }
+
+    private static ManagedCertificateAuthorityData hostedCa(long id, List<KeyPairData> keys) {
+        return new ManagedCertificateAuthorityData(new VersionedId(id), new X500Principal("CN=hosted-" + id),
+            UUID.randomUUID(), 0L, HOSTED, ALL_PRIVATE_USE_RESOURCES, keys);
+    }
+}
@@ -18,9 +18,12 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.Collections;
 
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PublishedObjectCleanUpServiceBeanTest {
@@ -49,7 +52,7 @@ public class PublishedObjectCleanUpServiceBeanTest {
     public void setUp() {
         MeterRegistry registry = new SimpleMeterRegistry();
         service = new PublishedObjectCleanUpServiceBean(new BackgroundTaskRunner(activeNodeService, registry), certificateAuthorityRepository,
-            publishedObjectRepository, resourceCertificateRepository, transactionManager, registry);
+            publishedObjectRepository, resourceCertificateRepository, transactionManager, registry, 100, Duration.ofMinutes(5));
         service.setDaysBeforeCleanUp(7);
     }
 
@@ -59,9 +62,20 @@ public class PublishedObjectCleanUpServiceBeanTest {
 
         service.runService(Collections.emptyMap());
 
-        verify(publishedObjectRepository).deleteExpiredObjects(expirationTime);
-        verify(resourceCertificateRepository).deleteExpiredOutgoingResourceCertificates(expirationTime);
-        verify(certificateAuthorityRepository).deleteNonHostedPublicKeysWithoutSigningCertificates();
+        verify(publishedObjectRepository).deleteExpiredObjects(expirationTime, 100);
+        verify(resourceCertificateRepository).deleteExpiredOutgoingResourceCertificates(expirationTime, 100);
+        verify(certificateAuthorityRepository).deleteNonHostedPublicKeysWithoutSigningCertificates(100);
+    }
+
+    @Test
+    public void should_delete_in_batches_until_no_more_work() {
+        DateTime expirationTime = new DateTime(DateTimeZone.UTC).minusDays(7);
+        when(publishedObjectRepository.deleteExpiredObjects(expirationTime, 100)).thenReturn(100, 100, 20);
+
+        service.runService(Collections.emptyMap());
+
+        verify(publishedObjectRepository, times(3)).deleteExpiredObjects(expirationTime, 100);
+        verify(resourceCertificateRepository).deleteExpiredOutgoingResourceCertificates(expirationTime, 100);
     }
 
 }
@@ -1,7 +1,10 @@
 package net.ripe.rpki.services.impl.background;
 
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.rpki.commons.provisioning.identity.PublisherRequest;
+import net.ripe.rpki.commons.provisioning.identity.RepositoryResponse;
 import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificate;
 import net.ripe.rpki.server.api.ports.NonHostedPublisherRepositoryService;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
@@ -11,6 +14,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,13 +22,23 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PublisherSyncDelegateBeanTest {
+    private static final int CONCURRENCY = 4;
+    private static final Duration FULL_SYNC_INTERVAL = Duration.ofHours(1);
+
     private PublisherSyncDelegate subject;
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
 
     @Mock
     private CertificateAuthorityViewService certificateAuthorityViewService;
@@ -36,7 +50,18 @@ public class PublisherSyncDelegateBeanTest {
 
     @Before
     public void setup() {
-        subject = new PublisherSyncDelegateImpl( certificateAuthorityViewService, nonHostedPublisherRepositoryService, new SimpleMeterRegistry());
+        subject = createSubject(nonHostedPublisherRepositoryService);
+    }
+
+    private PublisherSyncDelegateImpl createSubject(NonHostedPublisherRepositoryService repositoryService) {
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        return new PublisherSyncDelegateImpl(certificateAuthorityViewService, repositoryService, meterRegistry,
+            CONCURRENCY, 1000, 3, Duration.ZERO, FULL_SYNC_INTERVAL, ticker);
     }
 
     @Test
@@ -81,4 +106,174 @@ public class PublisherSyncDelegateBeanTest {
         verify(certificateAuthorityViewService).findAllPublisherRequestsFromNonHostedCAs();
         verify(nonHostedPublisherRepositoryService).deletePublisher(publisherHandle);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSyncManyPublishersConcurrentlyAgainstStub() {
+        StubPublisherRepository krill = new StubPublisherRepository();
+        Map<UUID, PublisherRequest> corePublishers = publisherRequests(200);
+        Set<UUID> onlyOnKrill = new HashSet<>();
+        for (int i = 0; i < 50; ++i) {
+            UUID handle = UUID.randomUUID();
+            krill.publishers.put(handle, publisherRequest(handle));
+            onlyOnKrill.add(handle);
+        }
+        when(certificateAuthorityViewService.findAllPublisherRequestsFromNonHostedCAs()).thenReturn(corePublishers);
+
+        createSubject(krill).runService();
+
+        assertThat(krill.publishers.keySet()).isEqualTo(corePublishers.keySet());
+        assertThat(krill.maxConcurrentRequests.get()).isBetween(1, CONCURRENCY);
+        assertThat(requests("provision", "success")).isEqualTo(200);
+        assertThat(requests("delete", "success")).isEqualTo(50);
+        assertThat(meterRegistry.get("rpkicore.publisher.sync.remaining").gauge().value()).isZero();
+    }
+
+    @Test
+    public void shouldRetryFailingPublisherWithoutStoppingOthers() {
+        StubPublisherRepository krill = new StubPublisherRepository();
+        Map<UUID, PublisherRequest> corePublishers = publisherRequests(10);
+        UUID flaky = corePublishers.keySet().iterator().next();
+        krill.failuresRemaining.put(flaky, new AtomicInteger(2));
+        when(certificateAuthorityViewService.findAllPublisherRequestsFromNonHostedCAs()).thenReturn(corePublishers);
+
+        createSubject(krill).runService();
+
+        assertThat(krill.publishers.keySet()).isEqualTo(corePublishers.keySet());
+        assertThat(meterRegistry.get("rpkicore.publisher.sync.retries").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRetryInNextSyncWhenAllAttemptsFail() {
+        StubPublisherRepository krill = new StubPublisherRepository();
+        Map<UUID, PublisherRequest> corePublishers = publisherRequests(10);
+        UUID broken = corePublishers.keySet().iterator().next();
+        krill.failuresRemaining.put(broken, new AtomicInteger(3));
+        when(certificateAuthorityViewService.findAllPublisherRequestsFromNonHostedCAs()).thenReturn(corePublishers);
+        PublisherSyncDelegateImpl subject = createSubject(krill);
+
+        subject.runService();
+        assertThat(krill.publishers).hasSize(9).doesNotContainKey(broken);
+        assertThat(requests("provision", "failed")).isEqualTo(1);
+
+        // Not skipped since the previous sync failed
+        subject.runService();
+        assertThat(krill.publishers.keySet()).isEqualTo(corePublishers.keySet());
+        assertThat(krill.listCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSkipListingWhenCorePublishersDidNotChange() {
+        StubPublisherRepository krill = new StubPublisherRepository();
+        Map<UUID, PublisherRequest> corePublishers = publisherRequests(5);
+        when(certificateAuthorityViewService.findAllPublisherRequestsFromNonHostedCAs()).thenReturn(corePublishers);
+        PublisherSyncDelegateImpl subject = createSubject(krill);
+
+        subject.runService();
+        subject.runService();
+        assertThat(krill.listCount.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("rpkicore.publisher.sync.skipped").counter().count()).isEqualTo(1);
+
+        // Changed on Core
+        Map<UUID, PublisherRequest> changed = new HashMap<>(corePublishers);
+        changed.putAll(publisherRequests(1));
+        when(certificateAuthorityViewService.findAllPublisherRequestsFromNonHostedCAs()).thenReturn(changed);
+        subject.runService();
+        assertThat(krill.listCount.get()).isEqualTo(2);
+        assertThat(krill.publishers.keySet()).isEqualTo(changed.keySet());
+
+        // Krill restored from an old backup, noticed after the full sync interval
+        krill.publishers.clear();
+        subject.runService();
+        assertThat(krill.publishers).isEmpty();
+        nanos.addAndGet(FULL_SYNC_INTERVAL.toNanos());
+        subject.runService();
+        assertThat(krill.publishers.keySet()).isEqualTo(changed.keySet());
+        verify(certificateAuthorityViewService, times(5)).findAllPublisherRequestsFromNonHostedCAs();
+    }
+
+    private double requests(String operation, String status) {
+        return meterRegistry.get("rpkicore.publisher.sync.requests").tag("operation", operation).tag("status", status).counter().count();
+    }
+
+    private Map<UUID, PublisherRequest> publisherRequests(int count) {
+        Map<UUID, PublisherRequest> result = new HashMap<>();
+        for (int i = 0; i < count; ++i) {
+            UUID handle = UUID.randomUUID();
+            result.put(handle, publisherRequest(handle));
+        }
+        return result;
+    }
+
+    private PublisherRequest publisherRequest(UUID handle) {
+        return new PublisherRequest(Optional.empty(), handle.toString(), identityCertificate, Optional.empty());
+    }
+
+    /**
+     * Thread-safe stand-in for Krill that tracks concurrent requests and fails a publisher a configured number of times.
+     */
+    private static class StubPublisherRepository implements NonHostedPublisherRepositoryService {
+        final Map<UUID, PublisherRequest> publishers = new ConcurrentHashMap<>();
+        final Map<UUID, AtomicInteger> failuresRemaining = new ConcurrentHashMap<>();
+        final AtomicInteger listCount = new AtomicInteger();
+        final AtomicInteger concurrentRequests = new AtomicInteger();
+        final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public RepositoryResponse provisionPublisher(UUID publisherHandle, PublisherRequest publisherRequest, String requestId) throws DuplicateRepositoryException {
+            request(publisherHandle);
+            try {
+                if (publishers.putIfAbsent(publisherHandle, publisherRequest) != null) {
+                    throw new DuplicateRepositoryException(publisherHandle);
+                }
+                return null;
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+        }
+
+        @Override
+        public Set<UUID> listPublishers() {
+            listCount.incrementAndGet();
+            return new HashSet<>(publishers.keySet());
+        }
+
+        @Override
+        public void deletePublisher(UUID publisherHandle, String requestId) {
+            request(publisherHandle);
+            try {
+                publishers.remove(publisherHandle);
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return true;
+        }
+
+        @Override
+        public Optional<Publisher> publisherInfo(UUID publisherHandle) {
+            return Optional.empty();
+        }
+
+        private void request(UUID publisherHandle) {
+            maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+            AtomicInteger failures = failuresRemaining.get(publisherHandle);
+            if (failures != null && failures.getAndDecrement() > 0) {
+                concurrentRequests.decrementAndGet();
+                throw new IllegalStateException("Krill unavailable");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
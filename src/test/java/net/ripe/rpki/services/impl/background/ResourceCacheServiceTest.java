@@ -3,8 +3,7 @@ package net.ripe.rpki.services.impl.background;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.Getter;
 import net.ripe.ipresource.ImmutableResourceSet;
-import net.ripe.rpki.core.services.background.SequentialBackgroundQueuedTaskRunner;
-import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
+import net.ripe.rpki.domain.CaUpdateNeededRepository;
 import net.ripe.rpki.server.api.ports.DelegationsCache;
 import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.ports.ResourceServicesClient;
@@ -17,7 +16,6 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.transaction.TransactionException;
@@ -33,7 +31,6 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
@@ -43,8 +40,8 @@ import static net.ripe.rpki.services.impl.background.AllCaCertificateUpdateServi
 import static net.ripe.rpki.services.impl.background.ResourceCacheService.resourcesDiff;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -60,9 +57,11 @@ public class ResourceCacheServiceTest {
     @Mock
     private ResourceServicesClient resourceServicesClient;
     @Mock
-    private SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner;
+    private ResourceCertificateUpdateQueue resourceCertificateUpdateQueue;
     @Mock
     private AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean;
+    @Mock
+    private CaUpdateNeededRepository caUpdateNeededRepository;
 
     private ResourceCacheService subject;
 
@@ -70,7 +69,7 @@ public class ResourceCacheServiceTest {
     public void setUp() {
         TransactionSynchronizationManager.initSynchronization();
         subject = new ResourceCacheService(transactionTemplate, resourceServicesClient, resourceCache, delegationsCache,
-            sequentialBackgroundQueuedTaskRunner, allCaCertificateUpdateServiceBean, new X500Principal("CN=666"), new X500Principal("CN=123"), new SimpleMeterRegistry());
+            resourceCertificateUpdateQueue, allCaCertificateUpdateServiceBean, caUpdateNeededRepository, new X500Principal("CN=666"), new X500Principal("CN=123"), new SimpleMeterRegistry());
         clock = Clock.fixed(Instant.now(), ZoneId.systemDefault());
     }
 
@@ -110,26 +109,26 @@ public class ResourceCacheServiceTest {
     }
 
     @Test
-    @SuppressWarnings("unchecked")
     public void shouldUpdateIncomingCertificatesForUpdatedCas() {
         when(resourceServicesClient.fetchAllResources()).thenReturn(DataSamples.totalResources());
         subject.updateFullResourceCache();
         assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
         TransactionSynchronizationManager.getSynchronizations().get(0).afterCommit();
 
+        verify(resourceCertificateUpdateQueue).submit(argThat(cas -> cas.contains(MEMBER_CA_1.getName()) && !cas.contains(MEMBER_CA_2.getName())));
+    }
 
-        ArgumentCaptor<Runnable> runnableArgumentCaptor = ArgumentCaptor.forClass(Runnable.class);
-        verify(sequentialBackgroundQueuedTaskRunner).submit(any(), runnableArgumentCaptor.capture(), any());
+    @Test
+    public void shouldMarkUpdatedCasWhenChangeDriven() {
+        when(allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()).thenReturn(true);
+        when(resourceServicesClient.fetchAllResources()).thenReturn(DataSamples.totalResources());
+        subject.updateFullResourceCache();
 
-        runnableArgumentCaptor.getValue().run();
+        verify(caUpdateNeededRepository).markUpdateNeeded(argThat(cas -> cas.contains(MEMBER_CA_1.getName()) && !cas.contains(MEMBER_CA_2.getName())), eq("resources changed"));
 
-        ArgumentCaptor<Predicate<CertificateAuthorityData>> predicateArgumentCaptor = ArgumentCaptor.forClass(Predicate.class);
-        verify(allCaCertificateUpdateServiceBean).runService(eq(Collections.emptyMap()), predicateArgumentCaptor.capture());
+        TransactionSynchronizationManager.getSynchronizations().get(0).afterCommit();
 
-        Predicate<CertificateAuthorityData> caIdentityPredicate = predicateArgumentCaptor.getValue();
-        assertThat(caIdentityPredicate)
-                .accepts(MEMBER_CA_1)
-                .rejects(MEMBER_CA_2);
+        verify(resourceCertificateUpdateQueue).submit(argThat(cas -> cas.contains(MEMBER_CA_1.getName())));
     }
 
     @Test
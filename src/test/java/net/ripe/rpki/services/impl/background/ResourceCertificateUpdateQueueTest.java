@@ -0,0 +1,157 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.core.services.background.SequentialBackgroundQueuedTaskRunner;
+import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.security.auth.x500.X500Principal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import static net.ripe.rpki.services.impl.background.AllCaCertificateUpdateServiceBeanTest.MEMBER_CA_1;
+import static net.ripe.rpki.services.impl.background.AllCaCertificateUpdateServiceBeanTest.MEMBER_CA_2;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResourceCertificateUpdateQueueTest {
+
+    private static final X500Principal OTHER_CA = new X500Principal("CN=other");
+
+    @Mock
+    private SequentialBackgroundQueuedTaskRunner sequentialBackgroundQueuedTaskRunner;
+    @Mock
+    private AllCaCertificateUpdateServiceBean allCaCertificateUpdateServiceBean;
+    @Mock
+    private Clock clock;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ResourceCertificateUpdateQueue subject;
+
+    @Before
+    public void setUp() {
+        lenient().when(clock.instant()).thenReturn(Instant.now());
+        subject = new ResourceCertificateUpdateQueue(sequentialBackgroundQueuedTaskRunner, allCaCertificateUpdateServiceBean, 2, meterRegistry, clock);
+    }
+
+    @Test
+    public void should_coalesce_submissions_into_a_single_run() {
+        subject.submit(List.of(MEMBER_CA_1.getName(), MEMBER_CA_2.getName()));
+        subject.submit(List.of(MEMBER_CA_1.getName()));
+
+        verify(sequentialBackgroundQueuedTaskRunner, times(1)).submit(any(), any(), any());
+        assertThat(subject.getDepth()).isEqualTo(2);
+        assertThat(meterRegistry.get("rpkicore.ca.update.queue.depth").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("rpkicore.ca.update.queue.coalesced").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void should_update_queued_cas() {
+        subject.submit(List.of(MEMBER_CA_1.getName()));
+
+        captureRun().run();
+
+        ArgumentCaptor<Predicate<CertificateAuthorityData>> predicateArgumentCaptor = ArgumentCaptor.forClass(Predicate.class);
+        verify(allCaCertificateUpdateServiceBean).runService(eq(Collections.emptyMap()), predicateArgumentCaptor.capture());
+        assertThat(predicateArgumentCaptor.getValue())
+            .accepts(MEMBER_CA_1)
+            .rejects(MEMBER_CA_2);
+        assertThat(subject.getDepth()).isZero();
+        verify(sequentialBackgroundQueuedTaskRunner, times(1)).submit(any(), any(), any());
+    }
+
+    @Test
+    public void should_limit_cas_per_run_and_schedule_next_run() {
+        subject.submit(List.of(MEMBER_CA_1.getName(), MEMBER_CA_2.getName(), OTHER_CA));
+
+        captureRun().run();
+
+        assertThat(subject.getDepth()).isOne();
+        verify(sequentialBackgroundQueuedTaskRunner, times(2)).submit(any(), any(), any());
+    }
+
+    @Test
+    public void should_schedule_next_run_for_cas_submitted_during_run() {
+        subject.submit(List.of(MEMBER_CA_1.getName()));
+        doAnswer(invocation -> {
+            subject.submit(List.of(MEMBER_CA_2.getName()));
+            return null;
+        }).when(allCaCertificateUpdateServiceBean).runService(any(), any());
+
+        captureRun().run();
+
+        assertThat(subject.getDepth()).isOne();
+        verify(sequentialBackgroundQueuedTaskRunner, times(2)).submit(any(), any(), any());
+    }
+
+    @Test
+    public void should_process_update_needed_index_when_change_driven() {
+        when(allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()).thenReturn(true);
+        subject.submit(List.of(MEMBER_CA_1.getName()));
+
+        captureRun().run();
+
+        verify(allCaCertificateUpdateServiceBean).runUpdateNeeded(Collections.emptyMap());
+        verify(allCaCertificateUpdateServiceBean, never()).runService(any(), any());
+    }
+
+    @Test
+    public void should_not_limit_cas_per_run_when_change_driven() {
+        when(allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()).thenReturn(true);
+        subject.submit(List.of(MEMBER_CA_1.getName(), MEMBER_CA_2.getName(), OTHER_CA));
+
+        captureRun().run();
+
+        verify(allCaCertificateUpdateServiceBean, times(1)).runUpdateNeeded(Collections.emptyMap());
+        verify(sequentialBackgroundQueuedTaskRunner, times(1)).submit(any(), any(), any());
+    }
+
+    @Test
+    public void should_report_depth_and_age_from_update_needed_index_when_change_driven() {
+        Instant now = Instant.now();
+        when(clock.instant()).thenReturn(now);
+        when(allCaCertificateUpdateServiceBean.isChangeDrivenEnabled()).thenReturn(true);
+        when(allCaCertificateUpdateServiceBean.countUpdateNeeded()).thenReturn(5000);
+        when(allCaCertificateUpdateServiceBean.findOldestUpdateNeeded()).thenReturn(Optional.of(now.minusSeconds(120)));
+        subject.submit(List.of(MEMBER_CA_1.getName()));
+
+        captureRun().run();
+
+        assertThat(subject.getDepth()).isEqualTo(5000);
+        assertThat(subject.getOldestAge()).contains(Duration.ofSeconds(120));
+        assertThat(meterRegistry.get("rpkicore.ca.update.queue.depth").gauge().value()).isEqualTo(5000);
+        assertThat(meterRegistry.get("rpkicore.ca.update.queue.oldest.age.seconds").gauge().value()).isEqualTo(120);
+    }
+
+    @Test
+    public void should_report_age_of_oldest_queued_ca() {
+        Instant now = Instant.now();
+        when(clock.instant()).thenReturn(now.minusSeconds(60), now.minusSeconds(10), now);
+        subject.submit(List.of(MEMBER_CA_1.getName()));
+        subject.submit(List.of(MEMBER_CA_2.getName()));
+
+        assertThat(subject.getOldestAge()).contains(Duration.ofSeconds(60));
+    }
+
+    private Runnable captureRun() {
+        ArgumentCaptor<Runnable> runnableArgumentCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(sequentialBackgroundQueuedTaskRunner, atLeastOnce()).submit(any(), runnableArgumentCaptor.capture(), any());
+        return runnableArgumentCaptor.getValue();
+    }
+}
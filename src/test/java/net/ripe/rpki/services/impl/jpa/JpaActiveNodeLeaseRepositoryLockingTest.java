@@ -0,0 +1,94 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.property.ActiveNodeLease;
+import net.ripe.rpki.domain.property.ActiveNodeLeaseRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the take-over and the fenced transaction in committed transactions on separate threads.
+ */
+public class JpaActiveNodeLeaseRepositoryLockingTest extends CertificationDomainTestCase {
+
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(1);
+
+    @Inject
+    private ActiveNodeLeaseRepository subject;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        inTx(() -> entityManager.createNativeQuery("DELETE FROM active_node_lease").executeUpdate());
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        inTx(() -> entityManager.createNativeQuery("DELETE FROM active_node_lease").executeUpdate());
+    }
+
+    @Test
+    public void should_wait_for_fenced_transaction_before_taking_over() throws Exception {
+        ActiveNodeLease lease = withTx(() -> subject.assign("node-a", LEASE_DURATION));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        Future<?> fenced = executor.submit(() -> inTx(() -> {
+            subject.lockFencingToken(lease.fencingToken());
+            locked.countDown();
+            Uninterruptibles.awaitUninterruptibly(commit);
+        }));
+        assertThat(locked.await(5, SECONDS)).isTrue();
+
+        inTx(() -> subject.release("node-a", lease.fencingToken()));
+        Future<Optional<ActiveNodeLease>> takeOver = executor.submit(() -> withTx(() -> subject.acquireExpired("node-b", LEASE_DURATION)));
+        assertThatThrownBy(() -> takeOver.get(500, MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        commit.countDown();
+        fenced.get(5, SECONDS);
+        assertThat(takeOver.get(5, SECONDS)).hasValueSatisfying(taken -> {
+            assertThat(taken.owner()).isEqualTo("node-b");
+            assertThat(taken.fencingToken()).isEqualTo(lease.fencingToken() + 1);
+        });
+    }
+
+    @Test
+    public void should_wait_for_fenced_transaction_before_assigning() throws Exception {
+        ActiveNodeLease lease = withTx(() -> subject.assign("node-a", LEASE_DURATION));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        Future<?> fenced = executor.submit(() -> inTx(() -> {
+            subject.lockFencingToken(lease.fencingToken());
+            locked.countDown();
+            Uninterruptibles.awaitUninterruptibly(commit);
+        }));
+        assertThat(locked.await(5, SECONDS)).isTrue();
+
+        Future<ActiveNodeLease> assign = executor.submit(() -> withTx(() -> subject.assign("node-b", LEASE_DURATION)));
+        assertThatThrownBy(() -> assign.get(500, MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        commit.countDown();
+        fenced.get(5, SECONDS);
+        assertThat(assign.get(5, SECONDS).owner()).isEqualTo("node-b");
+    }
+}
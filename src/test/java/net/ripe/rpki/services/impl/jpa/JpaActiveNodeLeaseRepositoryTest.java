@@ -0,0 +1,78 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.property.ActiveNodeLease;
+import net.ripe.rpki.domain.property.ActiveNodeLeaseRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+public class JpaActiveNodeLeaseRepositoryTest extends CertificationDomainTestCase {
+
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(1);
+
+    @Inject
+    private ActiveNodeLeaseRepository subject;
+
+    @Before
+    public void setUp() {
+        entityManager.createNativeQuery("DELETE FROM active_node_lease").executeUpdate();
+    }
+
+    @Test
+    public void should_acquire_missing_lease() {
+        assertThat(subject.find()).isEmpty();
+
+        assertThat(subject.acquireExpired("node-a", LEASE_DURATION)).hasValueSatisfying(lease -> {
+            assertThat(lease.owner()).isEqualTo("node-a");
+            assertThat(lease.fencingToken()).isEqualTo(1);
+        });
+        assertThat(subject.find()).map(ActiveNodeLease::owner).hasValue("node-a");
+    }
+
+    @Test
+    public void should_only_take_over_expired_lease() {
+        ActiveNodeLease lease = subject.assign("node-a", LEASE_DURATION);
+
+        assertThat(subject.acquireExpired("node-b", LEASE_DURATION)).isEmpty();
+
+        subject.release("node-a", lease.fencingToken());
+        assertThat(subject.acquireExpired("node-b", LEASE_DURATION)).hasValueSatisfying(taken -> {
+            assertThat(taken.owner()).isEqualTo("node-b");
+            assertThat(taken.fencingToken()).isEqualTo(lease.fencingToken() + 1);
+        });
+    }
+
+    @Test
+    public void should_only_renew_and_hold_with_current_fencing_token() {
+        ActiveNodeLease first = subject.assign("node-a", LEASE_DURATION);
+        ActiveNodeLease second = subject.assign("node-a", LEASE_DURATION);
+        assertThat(second.fencingToken()).isEqualTo(first.fencingToken() + 1);
+
+        assertThat(subject.renew("node-a", first.fencingToken(), LEASE_DURATION)).isEmpty();
+        assertThat(subject.renew("node-a", second.fencingToken(), LEASE_DURATION)).isPresent();
+
+        assertThat(subject.isHeld("node-a", first.fencingToken())).isFalse();
+        assertThat(subject.isHeld("node-b", second.fencingToken())).isFalse();
+        assertThat(subject.isHeld("node-a", second.fencingToken())).isTrue();
+
+        subject.release("node-a", second.fencingToken());
+        assertThat(subject.isHeld("node-a", second.fencingToken())).isFalse();
+    }
+
+    @Test
+    public void should_expire_lease_during_transaction() throws InterruptedException {
+        ActiveNodeLease lease = subject.assign("node-a", Duration.ofMillis(100));
+        assertThat(subject.isHeld("node-a", lease.fencingToken())).isTrue();
+
+        Thread.sleep(200);
+
+        assertThat(subject.isHeld("node-a", lease.fencingToken())).isFalse();
+    }
+}
@@ -0,0 +1,83 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.audit.AuditPartition;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import java.time.Instant;
+import java.time.YearMonth;
+
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.COMMAND_AUDIT_TABLE;
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.PROVISIONING_AUDIT_LOG_TABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Transactional
+public class JpaAuditPartitionRepositoryTest extends CertificationDomainTestCase {
+
+    @Inject
+    private AuditPartitionRepository subject;
+
+    @Test
+    public void should_find_legacy_partition() {
+        assertThat(subject.findPartitions(COMMAND_AUDIT_TABLE))
+            .anySatisfy(partition -> {
+                assertThat(partition.name()).isEqualTo("commandaudit_legacy");
+                assertThat(partition.from()).isNull();
+            });
+        assertThat(subject.findPartitions(PROVISIONING_AUDIT_LOG_TABLE))
+            .anySatisfy(partition -> assertThat(partition.name()).isEqualTo("provisioning_audit_log_legacy"));
+    }
+
+    @Test
+    public void should_create_and_detach_monthly_partition() {
+        AuditPartition created = subject.createMonthlyPartition(PROVISIONING_AUDIT_LOG_TABLE, YearMonth.of(2100, 1));
+
+        assertThat(created).isEqualTo(new AuditPartition("provisioning_audit_log_p2100_01", Instant.parse("2100-01-01T00:00:00Z"), Instant.parse("2100-02-01T00:00:00Z")));
+        assertThat(subject.findPartitions(PROVISIONING_AUDIT_LOG_TABLE)).contains(created);
+
+        subject.detachPartition(PROVISIONING_AUDIT_LOG_TABLE, created);
+        assertThat(subject.findPartitions(PROVISIONING_AUDIT_LOG_TABLE)).doesNotContain(created);
+
+        subject.dropPartition(PROVISIONING_AUDIT_LOG_TABLE, created);
+    }
+
+    @Test
+    public void should_store_entries_outside_monthly_partitions_in_default_partition() {
+        entityManager.createNativeQuery(
+                "INSERT INTO commandaudit (id, executiontime, principal, ca_id, commandtype, commandsummary, ca_version, commandgroup) " +
+                    "VALUES (1, '2100-03-15T00:00:00Z', 'test', 1, 'TestCommand', 'test', 1, 'USER')")
+            .executeUpdate();
+        assertThat(partitionOfCommandAudit(1)).isEqualTo("commandaudit_default");
+        assertThat(subject.findPartitions(COMMAND_AUDIT_TABLE)).noneSatisfy(partition -> assertThat(partition.name()).isEqualTo("commandaudit_default"));
+
+        subject.createMonthlyPartition(COMMAND_AUDIT_TABLE, YearMonth.of(2100, 3));
+
+        assertThat(partitionOfCommandAudit(1)).isEqualTo("commandaudit_p2100_03");
+    }
+
+    private String partitionOfCommandAudit(long id) {
+        return (String) entityManager.createNativeQuery("SELECT CAST(CAST(tableoid AS regclass) AS text) FROM commandaudit WHERE id = :id")
+            .setParameter("id", id)
+            .getSingleResult();
+    }
+
+    @Test
+    public void should_parse_partition_bounds() {
+        assertThat(JpaAuditPartitionRepository.parsePartition("commandaudit_legacy", "FOR VALUES FROM (MINVALUE) TO ('2024-06-01 00:00:00+00')"))
+            .isEqualTo(new AuditPartition("commandaudit_legacy", null, Instant.parse("2024-06-01T00:00:00Z")));
+        assertThat(JpaAuditPartitionRepository.parsePartition("commandaudit_p2024_06", "FOR VALUES FROM ('2024-06-01 00:00:00+00') TO ('2024-07-01 00:00:00+00')"))
+            .isEqualTo(new AuditPartition("commandaudit_p2024_06", Instant.parse("2024-06-01T00:00:00Z"), Instant.parse("2024-07-01T00:00:00Z")));
+        assertThatThrownBy(() -> JpaAuditPartitionRepository.parsePartition("commandaudit_default", "DEFAULT"))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void should_reject_other_tables() {
+        assertThatThrownBy(() -> subject.findPartitions("certificateauthority"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,36 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.property.BackgroundServiceRunRequestRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+public class JpaBackgroundServiceRunRequestRepositoryTest extends CertificationDomainTestCase {
+
+    @Inject
+    private BackgroundServiceRunRequestRepository subject;
+
+    @Before
+    public void setUp() {
+        entityManager.createNativeQuery("DELETE FROM background_service_run_request").executeUpdate();
+    }
+
+    @Test
+    public void should_coalesce_requests_until_taken() {
+        subject.request("service-b");
+        subject.request("service-a");
+        subject.request("service-b");
+
+        assertThat(subject.takeRequested()).containsExactly("service-a", "service-b");
+        assertThat(subject.takeRequested()).isEmpty();
+
+        subject.request("service-a");
+        assertThat(subject.takeRequested()).containsExactly("service-a");
+    }
+}
@@ -0,0 +1,125 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.ipresource.ImmutableResourceSet;
+import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificateBuilderTest;
+import net.ripe.rpki.domain.CaUpdateNeededRepository;
+import net.ripe.rpki.domain.CertificateAuthority;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.HostedCertificateAuthority;
+import net.ripe.rpki.domain.NonHostedCertificateAuthority;
+import net.ripe.rpki.domain.ProductionCertificateAuthority;
+import net.ripe.rpki.domain.RequestedResourceSets;
+import net.ripe.rpki.domain.TestObjects;
+import net.ripe.rpki.ripencc.cache.JpaResourceCacheImpl;
+import net.ripe.rpki.server.api.commands.UpdateAllIncomingResourceCertificatesCommand;
+import net.ripe.rpki.server.api.support.objects.CaName;
+import net.ripe.rpki.services.impl.handlers.ChildParentCertificateUpdateSagaNonHostedTest;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import javax.security.auth.x500.X500Principal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static net.ripe.rpki.domain.NonHostedCertificateAuthority.INCOMING_RESOURCE_CERTIFICATES_PER_PUBLIC_KEY_LIMIT;
+import static net.ripe.rpki.ripencc.support.persistence.StatementBudget.assertWithinStatementBudget;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+public class JpaCaUpdateNeededRepositoryTest extends CertificationDomainTestCase {
+
+    @Inject
+    private CaUpdateNeededRepository subject;
+    @Inject
+    private JpaResourceCacheImpl resourceCache;
+
+    private ProductionCertificateAuthority production;
+    private HostedCertificateAuthority hosted;
+
+    @Before
+    public void setUp() {
+        clearDatabase();
+        production = createInitializedAllResourcesAndProductionCertificateAuthority();
+        hosted = new HostedCertificateAuthority(1000L, new X500Principal("CN=hosted"), UUID.randomUUID(), production);
+        issueCertificateForNewKey(production, hosted, ImmutableResourceSet.parse("10.0.0.0/8"));
+        entityManager.flush();
+    }
+
+    @Test
+    public void should_mark_cas_by_name() {
+        subject.markUpdateNeeded(List.of(hosted.getName(), new X500Principal("CN=unknown")), "test");
+
+        assertThat(subject.findUpdateNeeded()).containsOnlyKeys(hosted.getId());
+    }
+
+    @Test
+    public void should_mark_cas_using_a_fixed_number_of_statements() {
+        assertWithinStatementBudget(2, () -> subject.markUpdateNeeded(List.of(hosted.getName(), production.getName(), new X500Principal("CN=unknown")), "test"));
+
+        assertThat(subject.findUpdateNeeded()).containsOnlyKeys(hosted.getId(), production.getId());
+    }
+
+    @Test
+    public void should_mark_children() {
+        subject.markChildrenUpdateNeeded(production.getId(), "test");
+
+        assertThat(subject.findUpdateNeeded()).containsOnlyKeys(hosted.getId());
+    }
+
+    @Test
+    public void should_mark_cas_with_incoming_certificate_expiring_before() {
+        DateTime now = new DateTime(DateTimeZone.UTC);
+        assertThat(subject.markIncomingCertificatesExpiringBefore(CertificateAuthority.calculateValidityNotAfter(now))).isZero();
+        assertThat(subject.findUpdateNeeded()).isEmpty();
+
+        // The production CA gets its certificate from the trust anchor and is never marked
+        assertThat(subject.markIncomingCertificatesExpiringBefore(now.plusYears(10))).isOne();
+        assertThat(subject.findUpdateNeeded()).containsOnlyKeys(hosted.getId());
+    }
+
+    @Test
+    public void should_mark_non_hosted_cas_with_certificate_expiring_before() {
+        NonHostedCertificateAuthority nonHosted = new NonHostedCertificateAuthority(2000L, new X500Principal("CN=non-hosted"), ProvisioningIdentityCertificateBuilderTest.TEST_IDENTITY_CERT, production);
+        nonHosted.findOrCreatePublicKeyEntityByPublicKey(TestObjects.createTestKeyPair().getPublicKey())
+            .setLatestIssuanceRequest(new RequestedResourceSets(), ChildParentCertificateUpdateSagaNonHostedTest.SIA);
+        certificateAuthorityRepository.add(nonHosted);
+        resourceCache.updateEntry(CaName.of(nonHosted.getName()), ImmutableResourceSet.parse("192.168.0.0/16"));
+        execute(new UpdateAllIncomingResourceCertificatesCommand(nonHosted.getVersionedId(), INCOMING_RESOURCE_CERTIFICATES_PER_PUBLIC_KEY_LIMIT));
+
+        DateTime now = new DateTime(DateTimeZone.UTC);
+        assertThat(subject.markIncomingCertificatesExpiringBefore(CertificateAuthority.calculateValidityNotAfter(now))).isZero();
+
+        assertThat(subject.markIncomingCertificatesExpiringBefore(now.plusYears(10))).isEqualTo(2);
+        assertThat(subject.findUpdateNeeded()).containsOnlyKeys(hosted.getId(), nonHosted.getId());
+    }
+
+    @Test
+    public void should_count_marked_cas_and_find_oldest_request_time() {
+        assertThat(subject.countUpdateNeeded()).isZero();
+        assertThat(subject.findOldestRequestedAt()).isEmpty();
+
+        subject.markUpdateNeeded(List.of(hosted.getName()), "test");
+        subject.markUpdateNeeded(List.of(production.getName()), "test");
+
+        assertThat(subject.countUpdateNeeded()).isEqualTo(2);
+        assertThat(subject.findOldestRequestedAt()).contains(subject.findUpdateNeeded().get(hosted.getId()));
+    }
+
+    @Test
+    public void should_only_remove_mark_when_not_marked_again() {
+        subject.markUpdateNeeded(List.of(hosted.getName()), "test");
+        Instant requestedAt = subject.findUpdateNeeded().get(hosted.getId());
+
+        subject.markUpdateNeeded(List.of(hosted.getName()), "test again");
+        subject.remove(hosted.getId(), requestedAt);
+        assertThat(subject.findUpdateNeeded()).containsOnlyKeys(hosted.getId());
+
+        subject.remove(hosted.getId(), subject.findUpdateNeeded().get(hosted.getId()));
+        assertThat(subject.findUpdateNeeded()).isEmpty();
+    }
+}
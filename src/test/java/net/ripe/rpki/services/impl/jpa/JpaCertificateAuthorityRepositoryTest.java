@@ -5,6 +5,7 @@ import net.ripe.rpki.commons.util.UTC;
 import net.ripe.rpki.domain.CertificateAuthority;
 import net.ripe.rpki.domain.CertificationDomainTestCase;
 import net.ripe.rpki.domain.HostedCertificateAuthority;
+import net.ripe.rpki.domain.ManagedCertificateAuthority;
 import net.ripe.rpki.domain.NameNotUniqueException;
 import net.ripe.rpki.domain.NonHostedCertificateAuthority;
 import net.ripe.rpki.domain.ProductionCertificateAuthority;
@@ -53,7 +54,7 @@ public class JpaCertificateAuthorityRepositoryTest extends CertificationDomainTe
 
     @Test
     public void deleteNonHostedPublicKeysWithoutSigningCertificates() {
-        assertThat(certificateAuthorityRepository.deleteNonHostedPublicKeysWithoutSigningCertificates()).isZero();
+        assertThat(certificateAuthorityRepository.deleteNonHostedPublicKeysWithoutSigningCertificates(100)).isZero();
     }
 
     @Test
@@ -77,4 +78,62 @@ public class JpaCertificateAuthorityRepositoryTest extends CertificationDomainTe
     public void findSmallestIntermediateCa() {
         assertThat(certificateAuthorityRepository.findSmallestIntermediateCA(PRODUCTION_CA_NAME)).isEmpty();
     }
+
+    @Test
+    public void findByTypeAndName_should_ignore_case_and_check_type() {
+        ProductionCertificateAuthority prodCa = createInitialisedProdCaWithRipeResources();
+        HostedCertificateAuthority ca = new HostedCertificateAuthority(1000L, new X500Principal("CN=Hosted"), UUID.randomUUID(), prodCa);
+        certificateAuthorityRepository.add(ca);
+
+        assertThat(certificateAuthorityRepository.findByTypeAndName(HostedCertificateAuthority.class, new X500Principal("cn=hosted"))).isSameAs(ca);
+        assertThat(certificateAuthorityRepository.findByTypeAndName(ManagedCertificateAuthority.class, new X500Principal("CN=Hosted"))).isSameAs(ca);
+        assertThat(certificateAuthorityRepository.findByTypeAndName(NonHostedCertificateAuthority.class, new X500Principal("CN=Hosted"))).isNull();
+        assertThat(certificateAuthorityRepository.findByTypeAndName(HostedCertificateAuthority.class, new X500Principal("CN=Other"))).isNull();
+    }
+
+    @Test
+    public void findByTypeAndName_should_find_ca_recreated_with_same_name() {
+        ProductionCertificateAuthority prodCa = createInitialisedProdCaWithRipeResources();
+        HostedCertificateAuthority ca = new HostedCertificateAuthority(1000L, new X500Principal("CN=ca"), UUID.randomUUID(), prodCa);
+        certificateAuthorityRepository.add(ca);
+        assertThat(certificateAuthorityRepository.findByName(new X500Principal("CN=ca"))).isSameAs(ca);
+
+        certificateAuthorityRepository.remove(ca);
+        assertThat(certificateAuthorityRepository.findByName(new X500Principal("CN=ca"))).isNull();
+
+        NonHostedCertificateAuthority recreated = new NonHostedCertificateAuthority(1001L, new X500Principal("CN=ca"), ProvisioningIdentityCertificateBuilderTest.TEST_IDENTITY_CERT, prodCa);
+        certificateAuthorityRepository.add(recreated);
+        assertThat(certificateAuthorityRepository.findByName(new X500Principal("CN=ca"))).isSameAs(recreated);
+    }
+
+    @Test
+    public void name_lookups_should_use_name_index() {
+        ProductionCertificateAuthority prodCa = createInitialisedProdCaWithRipeResources();
+        certificateAuthorityRepository.add(new HostedCertificateAuthority(1000L, new X500Principal("CN=Hosted"), UUID.randomUUID(), prodCa));
+
+        assertThat(sequentialScansOnCaTable(() -> certificateAuthorityRepository.findByName(new X500Principal("cn=hosted")))).isZero();
+        assertThat(sequentialScansOnCaTable(() -> resourceCertificateRepository.findCurrentOutgoingChildCertificateResources(PRODUCTION_CA_NAME))).isZero();
+        assertThat(sequentialScansOnCaTable(() -> resourceCertificateRepository.findCurrentOutgoingResourceCertificateResources(PRODUCTION_CA_NAME))).isZero();
+    }
+
+    /**
+     * Returns the number of sequential scans on the CA table performed by <code>action</code>. Sequential scans are
+     * disabled for planning, so the table is only scanned when no index can be used (the table is mostly empty in
+     * tests, so the planner would otherwise prefer a sequential scan).
+     */
+    private long sequentialScansOnCaTable(Runnable action) {
+        entityManager.flush();
+        entityManager.createNativeQuery("SET LOCAL enable_seqscan = off").executeUpdate();
+        long before = sequentialScansOnCaTable();
+        action.run();
+        return sequentialScansOnCaTable() - before;
+    }
+
+    private long sequentialScansOnCaTable() {
+        // Statistics of the current transaction, including the scans that are not reported to the collector yet
+        Number count = (Number) entityManager.createNativeQuery(
+                "SELECT coalesce(sum(seq_scan), 0) FROM pg_stat_xact_user_tables WHERE relname = 'certificateauthority'")
+            .getSingleResult();
+        return count.longValue();
+    }
 }
@@ -0,0 +1,58 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.property.NodeMembershipRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+public class JpaNodeMembershipRepositoryTest extends CertificationDomainTestCase {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+    @Inject
+    private NodeMembershipRepository subject;
+
+    @Before
+    public void setUp() {
+        entityManager.createNativeQuery("DELETE FROM background_node_membership").executeUpdate();
+    }
+
+    @Test
+    public void should_list_live_nodes_by_name() {
+        subject.heartbeat("node-b");
+        subject.heartbeat("node-a");
+        subject.heartbeat("node-b");
+
+        assertThat(subject.findLiveNodes(TIMEOUT)).containsExactly("node-a", "node-b");
+    }
+
+    @Test
+    public void should_exclude_nodes_without_recent_heartbeat() {
+        subject.heartbeat("node-a");
+        entityManager.createNativeQuery(
+            "INSERT INTO background_node_membership (node_name, heartbeat_at) VALUES ('node-b', now() - INTERVAL '2 minutes')"
+        ).executeUpdate();
+
+        assertThat(subject.findLiveNodes(TIMEOUT)).containsExactly("node-a");
+
+        subject.heartbeat("node-b");
+        assertThat(subject.findLiveNodes(TIMEOUT)).containsExactly("node-a", "node-b");
+    }
+
+    @Test
+    public void should_remove_node() {
+        subject.heartbeat("node-a");
+        subject.heartbeat("node-b");
+
+        subject.remove("node-a");
+
+        assertThat(subject.findLiveNodes(TIMEOUT)).containsExactly("node-b");
+    }
+}
@@ -240,12 +240,12 @@ public class JpaPublishedObjectRepositoryTest extends CertificationDomainTestCas
     public void deleteExpiredObjects() {
         DateTime expirationTime = DateTime.now().minusDays(1);
 
-        assertEquals(0, publishedObjectRepository.deleteExpiredObjects(expirationTime));
+        assertEquals(0, publishedObjectRepository.deleteExpiredObjects(expirationTime, 100));
 
         publishedObject.withdraw();
         publishedObject.withdrawn();
 
-        assertEquals(1, publishedObjectRepository.deleteExpiredObjects(expirationTime));
+        assertEquals(1, publishedObjectRepository.deleteExpiredObjects(expirationTime, 100));
     }
 
     @Test
@@ -52,7 +52,7 @@ public class JpaResourceCertificateRepositoryTest extends CertificationDomainTes
     @Test
     @Transactional
     public void expireOutgoingResourceCertificates() {
-        assertThat(subject.expireOutgoingResourceCertificates(DateTime.now())).isEqualTo(
+        assertThat(subject.expireOutgoingResourceCertificates(DateTime.now(), 100)).isEqualTo(
             new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(0, 0, 0, 0)
         );
     }
@@ -83,7 +83,7 @@ public class JpaResourceCertificateRepositoryTest extends CertificationDomainTes
         transactionTemplate.executeWithoutResult((status) -> {
             // Nothing to expire, so nothing changes.
             DateTime now = new DateTime(DateTimeZone.UTC);
-            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult expired = subject.expireOutgoingResourceCertificates(now);
+            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult expired = subject.expireOutgoingResourceCertificates(now, 100);
 
             assertThat(expired.getExpiredCertificateCount()).isZero();
             assertThat(expired.getDeletedRoaCount()).isZero();
@@ -104,7 +104,7 @@ public class JpaResourceCertificateRepositoryTest extends CertificationDomainTes
         transactionTemplate.executeWithoutResult((status) -> {
             // Outgoing resource certificates expire, ROA gets deleted, published objects withdrawn
             DateTime afterValidity = new DateTime(DateTimeZone.UTC).plusYears(2);
-            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult expired = subject.expireOutgoingResourceCertificates(afterValidity);
+            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult expired = subject.expireOutgoingResourceCertificates(afterValidity, 100);
 
             assertThat(expired.getExpiredCertificateCount()).isEqualTo(3);
             assertThat(expired.getDeletedRoaCount()).isEqualTo(1);
@@ -125,7 +125,7 @@ public class JpaResourceCertificateRepositoryTest extends CertificationDomainTes
         transactionTemplate.executeWithoutResult((status) -> {
             // Running the expiration again should not have any affect
             DateTime afterValidity = new DateTime(DateTimeZone.UTC).plusYears(2);
-            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult expired = subject.expireOutgoingResourceCertificates(afterValidity);
+            ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult expired = subject.expireOutgoingResourceCertificates(afterValidity, 100);
 
             assertThat(expired.getExpiredCertificateCount()).isZero();
             assertThat(expired.getDeletedRoaCount()).isZero();
@@ -133,10 +133,43 @@ public class JpaResourceCertificateRepositoryTest extends CertificationDomainTes
         });
     }
 
+    @Test
+    public void expireOutgoingResourceCertificates_in_batches_should_reach_same_end_state() {
+        ManagedCertificateAuthority ca = withTx(() -> createInitialisedProdCaWithRipeResources());
+        commandService.execute(new UpdateRoaConfigurationCommand(
+            ca.getVersionedId(),
+            Optional.empty(),
+            Collections.singleton(new RoaConfigurationPrefixData(Asn.parse("AS3333"), IpRange.parse("10.0.0.0/8"), null)),
+            Collections.emptyList(), ADMIN.getCertificationUserId()));
+        commandService.execute(new IssueUpdatedManifestAndCrlCommand(ca.getVersionedId()));
+
+        DateTime afterValidity = new DateTime(DateTimeZone.UTC).plusYears(2);
+        ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult total = new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(0, 0, 0, 0);
+        ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult batch;
+        int batches = 0;
+        do {
+            batch = transactionTemplate.execute((status) -> subject.expireOutgoingResourceCertificates(afterValidity, 2));
+            total = total.plus(batch);
+            batches++;
+        } while (batch.getExpiredCertificateCount() >= 2 || batch.getWithdrawnObjectCount() >= 2);
+
+        assertThat(batches).isEqualTo(3);
+        assertThat(total).isEqualTo(new ResourceCertificateRepository.ExpireOutgoingResourceCertificatesResult(3, 1, 0, 4));
+        transactionTemplate.executeWithoutResult((status) -> {
+            assertThat(subject.findAllBySigningKeyPair(ca.getCurrentKeyPair()))
+                .hasSize(3)
+                .allSatisfy(cert -> assertThat(cert.getStatus()).isEqualTo(OutgoingResourceCertificateStatus.EXPIRED));
+            assertThat(roaEntityRepository.findAll()).isEmpty();
+            assertThat(publishedObjectRepository.findAll())
+                .hasSize(4)
+                .allSatisfy(po -> assertThat(po.getStatus()).isEqualTo(PublicationStatus.TO_BE_WITHDRAWN));
+        });
+    }
+
     @Test
     @Transactional
     public void deleteExpiredOutgoingResourceCertificates() {
-        assertThat(subject.deleteExpiredOutgoingResourceCertificates(new DateTime(DateTimeZone.UTC).minusDays(1))).isZero();
+        assertThat(subject.deleteExpiredOutgoingResourceCertificates(new DateTime(DateTimeZone.UTC).minusDays(1), 100)).isZero();
     }
 
     @Test
@@ -17,6 +17,7 @@ import org.springframework.test.annotation.Commit;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.BDDAssertions.then;
 import static org.junit.Assert.assertEquals;
@@ -141,6 +142,25 @@ public class JpaRoaConfigurationRepositoryTest extends CertificationDomainTestCa
         assertEquals(1L, countQuery("SELECT COUNT(*) FROM deleted_roaconfiguration_prefixes WHERE asn = 10 AND prefix_type_id = 1 AND maximum_length = 8"));
     }
 
+    @Test
+    public void shouldApplyLargeDiffsInBulk() {
+        RoaConfiguration roaConfig = subject.getOrCreateByCertificateAuthority(ca);
+        List<RoaConfigurationPrefix> prefixes = IntStream.range(0, 1000)
+            .mapToObj(i -> new RoaConfigurationPrefix(new Asn(64496 + i % 10), IpRange.parse("2001:db8:" + Integer.toHexString(i) + "::/48"), 48 + i % 2))
+            .toList();
+
+        subject.addPrefixes(roaConfig, prefixes);
+
+        assertEquals(1000L, countQuery("SELECT COUNT(*) FROM roaconfiguration_prefixes"));
+        then(prefixes).allSatisfy(prefix -> then(prefix.getUpdatedAt()).isNotNull());
+
+        subject.removePrefixes(roaConfig, prefixes.subList(0, 600));
+
+        assertEquals(400L, countQuery("SELECT COUNT(*) FROM roaconfiguration_prefixes"));
+        assertEquals(600L, countQuery("SELECT COUNT(*) FROM deleted_roaconfiguration_prefixes"));
+        assertEquals(300L, countQuery("SELECT COUNT(*) FROM deleted_roaconfiguration_prefixes WHERE prefix_type_id = 2 AND maximum_length = 49"));
+    }
+
     long countQuery(String sql) {
         return (Long) entityManager
                 .createNativeQuery(sql)
@@ -4,8 +4,18 @@ import org.joda.time.DateTimeUtils;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
+import static net.ripe.rpki.util.SerialNumberSupplier.SERIAL_RANDOM_BITS;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SerialNumberSupplierTest {
@@ -42,4 +52,39 @@ public class SerialNumberSupplierTest {
         }
     }
 
+    @Test
+    public void should_generate_unique_serial_numbers_from_many_threads() throws Exception {
+        int threads = 32;
+        int serialsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<List<BigInteger>>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                tasks.add(() -> Stream.generate(subject).limit(serialsPerThread).toList());
+            }
+
+            Set<BigInteger> serials = new HashSet<>();
+            int[] bitCounts = new int[SERIAL_RANDOM_BITS];
+            for (Future<List<BigInteger>> result : executor.invokeAll(tasks)) {
+                for (BigInteger serial : result.get()) {
+                    serials.add(serial);
+                    for (int bit = 0; bit < SERIAL_RANDOM_BITS; ++bit) {
+                        if (serial.testBit(bit)) {
+                            bitCounts[bit]++;
+                        }
+                    }
+                }
+            }
+
+            int total = threads * serialsPerThread;
+            assertThat(serials).hasSize(total);
+            // Every random bit is set in about half of the serials. With 320,000 samples the standard deviation is
+            // ~283, so a deviation of 2% (6,400) is practically impossible for a uniform generator.
+            for (int bit = 0; bit < SERIAL_RANDOM_BITS; ++bit) {
+                assertThat((double) bitCounts[bit] / total).as("ratio of bit %d set", bit).isBetween(0.48, 0.52);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }